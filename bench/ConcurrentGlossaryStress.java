@@ -0,0 +1,256 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Stress test of {@code ConcurrentGlossary}: {@code bench.readers} threads
+ * take snapshots and look terms up in them while {@code bench.writers}
+ * threads add, redefine and remove terms as fast as they can. Every reader
+ * checks that each snapshot it takes is in strict term order and finds its
+ * own terms, and that versions never go backwards. Reader throughput is
+ * measured with no writers and then under the write load, over
+ * {@code bench.seconds} seconds each.
+ *
+ * <p>
+ * Other settings: {@code bench.terms}, {@code bench.definitionWords},
+ * {@code bench.linkDensity} (of the synthetic glossary the store starts
+ * from), {@code bench.lookups} (lookups per snapshot) and
+ * {@code bench.batch} (changes per {@code putAll}, 1 for single puts and
+ * removes).
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class ConcurrentGlossaryStress {
+
+    /**
+     * Milliseconds per second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Terms of a snapshot checked for order, besides the lookups.
+     */
+    private static final int ORDER_CHECKS = 16;
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private ConcurrentGlossaryStress() {
+    }
+
+    /**
+     * Reads snapshots until stopped, checking each.
+     *
+     * @param store
+     *            the store
+     * @param lookups
+     *            lookups per snapshot
+     * @param seed
+     *            seed of the reader's random generator
+     * @param stop
+     *            set to stop
+     * @param reads
+     *            count of lookups done
+     */
+    private static void read(ConcurrentGlossary store, int lookups,
+            long seed, AtomicBoolean stop, LongAdder reads) {
+        Random random = new Random(seed);
+        long version = -1;
+        while (!stop.get()) {
+            ConcurrentGlossary.Snapshot s = store.snapshot();
+            if (s.version() < version) {
+                throw new IllegalStateException("version went backwards");
+            }
+            version = s.version();
+            int n = s.size();
+            for (int k = 0; k < ORDER_CHECKS && n > 1; k++) {
+                int i = random.nextInt(n - 1);
+                if (s.term(i).compareTo(s.term(i + 1)) >= 0) {
+                    throw new IllegalStateException("snapshot out of order");
+                }
+            }
+            for (int k = 0; k < lookups && n > 0; k++) {
+                int i = random.nextInt(n);
+                if (s.indexOf(s.term(i)) != i || s.definition(i) == null) {
+                    throw new IllegalStateException("lookup failed");
+                }
+            }
+            reads.add(lookups);
+        }
+    }
+
+    /**
+     * Changes terms until stopped: each change adds a new term, redefines a
+     * term, or removes one, in equal shares.
+     *
+     * @param store
+     *            the store
+     * @param batch
+     *            changes per update
+     * @param id
+     *            the writer's number, for naming its terms
+     * @param stop
+     *            set to stop
+     * @param writes
+     *            count of changes done
+     */
+    private static void write(ConcurrentGlossary store, int batch, int id,
+            AtomicBoolean stop, LongAdder writes) {
+        Random random = new Random(-1L - id);
+        int added = 0;
+        while (!stop.get()) {
+            if (batch <= 1) {
+                ConcurrentGlossary.Snapshot s = store.snapshot();
+                int choice = random.nextInt(3);
+                if (choice == 0 || s.size() == 0) {
+                    store.put("w" + id + "-" + added, "added");
+                    added++;
+                } else if (choice == 1) {
+                    store.put(s.term(random.nextInt(s.size())), "redefined");
+                } else {
+                    store.remove(s.term(random.nextInt(s.size())));
+                }
+                writes.increment();
+            } else {
+                ConcurrentGlossary.Snapshot s = store.snapshot();
+                String[] adds = new String[batch];
+                String[] dels = new String[batch];
+                int a = 0;
+                int d = 0;
+                for (int k = 0; k < batch; k++) {
+                    int choice = random.nextInt(3);
+                    if (choice == 0 || s.size() == 0) {
+                        adds[a] = "w" + id + "-" + added;
+                        added++;
+                        a++;
+                    } else if (choice == 1) {
+                        adds[a] = s.term(random.nextInt(s.size()));
+                        a++;
+                    } else {
+                        dels[d] = s.term(random.nextInt(s.size()));
+                        d++;
+                    }
+                }
+                String[] defs = new String[a];
+                Arrays.fill(defs, "batched");
+                store.putAll(new SortedGlossary(adds, defs, a),
+                        new SortedGlossary(dels, new String[d], d));
+                writes.add(batch);
+            }
+        }
+    }
+
+    /**
+     * Runs readers, and writers if {@code writers > 0}, for a while.
+     *
+     * @param store
+     *            the store
+     * @param readers
+     *            number of readers
+     * @param writers
+     *            number of writers
+     * @param lookups
+     *            lookups per snapshot
+     * @param batch
+     *            changes per update
+     * @param millis
+     *            how long to run
+     * @return lookups and changes per second
+     * @throws InterruptedException
+     *             if interrupted
+     */
+    private static double[] run(ConcurrentGlossary store, int readers,
+            int writers, int lookups, int batch, long millis)
+            throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean(false);
+        LongAdder reads = new LongAdder();
+        LongAdder writes = new LongAdder();
+        Thread[] threads = new Thread[readers + writers];
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                if (id < readers) {
+                    read(store, lookups, id, stop, reads);
+                } else {
+                    write(store, batch, id - readers, stop, writes);
+                }
+            });
+            threads[t].setUncaughtExceptionHandler((th, e) -> {
+                failure[0] = e;
+                stop.set(true);
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread t : threads) {
+            t.join();
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        if (failure[0] != null) {
+            throw new IllegalStateException(failure[0]);
+        }
+        return new double[] { reads.sum() / seconds, writes.sum() / seconds };
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments, unused
+     * @throws Exception
+     *             if the glossary cannot be written or a check fails
+     */
+    public static void main(String[] args) throws Exception {
+        int readers = Integer.getInteger("bench.readers",
+                Runtime.getRuntime().availableProcessors());
+        int writers = Integer.getInteger("bench.writers", 2);
+        int lookups = Integer.getInteger("bench.lookups", 64);
+        int batch = Integer.getInteger("bench.batch", 1);
+        long millis = Integer.getInteger("bench.seconds", 5)
+                * MILLIS_PER_SECOND;
+        Path dir = Files.createTempDirectory("glossary-stress");
+        Path input = dir.resolve("glossary.txt");
+        SyntheticGlossary.write(input,
+                Integer.getInteger("bench.terms", 20000),
+                Integer.getInteger("bench.definitionWords", 30),
+                Double.parseDouble(
+                        System.getProperty("bench.linkDensity", "0.1")),
+                1L);
+        SimpleReader in = new SimpleReader1L(input.toString());
+        ConcurrentGlossary store = new ConcurrentGlossary(
+                new GlossaryIngester().ingest(in));
+        in.close();
+        Files.delete(input);
+        Files.delete(dir);
+
+        System.out.printf("# terms=%d readers=%d writers=%d batch=%d%n",
+                store.snapshot().size(), readers, writers, batch);
+        double[] idle = run(store, readers, 0, lookups, batch, millis);
+        System.out.printf("no writers    %12.0f lookups/s%n", idle[0]);
+        double[] loaded = run(store, readers, writers, lookups, batch,
+                millis);
+        System.out.printf("under writes  %12.0f lookups/s  %10.0f changes/s"
+                + "  (%.0f%% of idle)%n", loaded[0], loaded[1],
+                100 * loaded[0] / idle[0]);
+        System.out.printf("final terms=%d version=%d%n",
+                store.snapshot().size(), store.snapshot().version());
+    }
+
+}
@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import benchmarks.HotPaths;
+import components.map.Map;
+import components.map.Map1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.set.Set;
+import components.set.Set1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * The hot paths of {@code Glossary} run by the JMH benchmarks of
+ * {@code benchmarks.GlossaryBenchmark}, on a synthetic glossary. JMH cannot
+ * benchmark a class of the default package, and a class of a package cannot
+ * use one of the default package, so the benchmarks reach these through
+ * {@code benchmarks.HotPaths}.
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryHotPaths implements HotPaths {
+
+    /**
+     * Separators used by {@code Glossary.main}.
+     */
+    private static final String SEPARATORS = " \t, ";
+
+    /**
+     * Collections run before reading the used heap.
+     */
+    private static final int GC_ROUNDS = 3;
+
+    /**
+     * Directory of the glossary file and the pages.
+     */
+    private Path dir;
+
+    /**
+     * The synthetic glossary file.
+     */
+    private Path input;
+
+    /**
+     * Folder the pages are written to.
+     */
+    private Path folder;
+
+    /**
+     * The separators.
+     */
+    private Set<Character> separators;
+
+    /**
+     * The terms, in alphabet order.
+     */
+    private Queue<String> termQueue;
+
+    /**
+     * The term-definition pairs.
+     */
+    private Map<String, String> termMap;
+
+    /**
+     * The definitions.
+     */
+    private List<String> definitions;
+
+    /**
+     * The glossary frozen into a dictionary.
+     */
+    private TermDictionary dictionary;
+
+    /**
+     * Copies of the terms, so a lookup compares characters as it would for
+     * a term read from a definition.
+     */
+    private String[] keys;
+
+    /**
+     * Start of each word of each definition.
+     */
+    private int[][] wordStarts;
+
+    /**
+     * End of each word of each definition.
+     */
+    private int[][] wordEnds;
+
+    @Override
+    public void setUp(int terms, int definitionWords, double linkDensity)
+            throws IOException {
+        this.dir = Files.createTempDirectory("glossary-bench");
+        this.input = this.dir.resolve("glossary.txt");
+        this.folder = Files.createDirectory(this.dir.resolve("out"));
+        SyntheticGlossary.write(this.input, terms, definitionWords,
+                linkDensity, 1L);
+        this.separators = new Set1L<>();
+        Glossary.generateElements(SEPARATORS, this.separators);
+        this.termQueue = new Queue1L<>();
+        this.termMap = new Map1L<>();
+        SimpleReader in = new SimpleReader1L(this.input.toString());
+        Glossary.readFileStoreInMap(in, this.termQueue, this.termMap);
+        in.close();
+        this.definitions = new ArrayList<>();
+        for (Map.Pair<String, String> p : this.termMap) {
+            this.definitions.add(p.value());
+        }
+        this.dictionary = TermDictionary.freeze(this.termQueue, this.termMap);
+        this.keys = new String[this.termQueue.length()];
+        int k = 0;
+        for (String term : this.termQueue) {
+            this.keys[k] = new String(term.toCharArray());
+            k++;
+        }
+        SeparatorTable table = SeparatorTable.fromString(SEPARATORS);
+        this.wordStarts = new int[this.definitions.size()][];
+        this.wordEnds = new int[this.definitions.size()][];
+        for (int d = 0; d < this.definitions.size(); d++) {
+            String definition = this.definitions.get(d);
+            List<Integer> starts = new ArrayList<>();
+            List<Integer> ends = new ArrayList<>();
+            int position = 0;
+            while (position < definition.length()) {
+                int end = table.tokenEnd(definition, position);
+                if (!table.isSeparator(definition.charAt(position))) {
+                    starts.add(position);
+                    ends.add(end);
+                }
+                position = end;
+            }
+            this.wordStarts[d] = starts.stream().mapToInt(i -> i).toArray();
+            this.wordEnds[d] = ends.stream().mapToInt(i -> i).toArray();
+        }
+    }
+
+    /**
+     * Returns the heap in use after collecting the garbage.
+     *
+     * @return the used bytes
+     */
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int k = 0; k < GC_ROUNDS; k++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            for (Path p : (Iterable<Path>) files
+                    .sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Override
+    public int readFileStoreInMap() {
+        SimpleReader r = new SimpleReader1L(this.input.toString());
+        Queue<String> q = new Queue1L<>();
+        Map<String, String> m = new Map1L<>();
+        Glossary.readFileStoreInMap(r, q, m);
+        r.close();
+        return q.length();
+    }
+
+    @Override
+    public long nextWordOrSeparator() {
+        long tokens = 0;
+        for (String definition : this.definitions) {
+            int position = 0;
+            while (position < definition.length()) {
+                position += Glossary.nextWordOrSeparator(definition,
+                        position, this.separators).length();
+                tokens++;
+            }
+        }
+        return tokens;
+    }
+
+    @Override
+    public int termMapLookup() {
+        int found = 0;
+        for (String key : this.keys) {
+            if (this.termMap.hasKey(key)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int termDictionaryLookup() {
+        int found = 0;
+        for (String key : this.keys) {
+            if (this.dictionary.hasKey(key)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int termMapSpanLookup() {
+        int found = 0;
+        for (int d = 0; d < this.wordStarts.length; d++) {
+            String definition = this.definitions.get(d);
+            for (int w = 0; w < this.wordStarts[d].length; w++) {
+                if (this.termMap.hasKey(definition.substring(
+                        this.wordStarts[d][w], this.wordEnds[d][w]))) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int termDictionarySpanLookup() {
+        int found = 0;
+        for (int d = 0; d < this.wordStarts.length; d++) {
+            String definition = this.definitions.get(d);
+            for (int w = 0; w < this.wordStarts[d].length; w++) {
+                if (this.dictionary.indexOf(definition, this.wordStarts[d][w],
+                        this.wordEnds[d][w]) >= 0) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public long termMapBytes(int terms, int definitionWords,
+            double linkDensity) throws IOException {
+        Path file = Files.createTempFile("glossary-footprint", ".txt");
+        long bytes;
+        try {
+            SyntheticGlossary.write(file, terms, definitionWords,
+                    linkDensity, 1L);
+            long before = usedAfterGc();
+            Queue<String> q = new Queue1L<>();
+            Map<String, String> m = new Map1L<>();
+            SimpleReader in = new SimpleReader1L(file.toString());
+            Glossary.readFileStoreInMap(in, q, m);
+            in.close();
+            bytes = usedAfterGc() - before;
+            Reference.reachabilityFence(q);
+            Reference.reachabilityFence(m);
+        } finally {
+            Files.delete(file);
+        }
+        return bytes;
+    }
+
+    @Override
+    public long termDictionaryBytes(int terms, int definitionWords,
+            double linkDensity) throws IOException {
+        Path file = Files.createTempFile("glossary-footprint", ".txt");
+        long bytes;
+        try {
+            SyntheticGlossary.write(file, terms, definitionWords,
+                    linkDensity, 1L);
+            Queue<String> q = new Queue1L<>();
+            Map<String, String> m = new Map1L<>();
+            SimpleReader in = new SimpleReader1L(file.toString());
+            Glossary.readFileStoreInMap(in, q, m);
+            in.close();
+            long before = usedAfterGc();
+            TermDictionary d = TermDictionary.freeze(q, m);
+            bytes = usedAfterGc() - before;
+            Reference.reachabilityFence(d);
+            Reference.reachabilityFence(q);
+            Reference.reachabilityFence(m);
+        } finally {
+            Files.delete(file);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void outputIndex() {
+        Glossary.outputIndex(this.folder.toString(), this.termQueue);
+    }
+
+    @Override
+    public void outputWordPage() {
+        Glossary.outputWordPage(this.folder.toString(), this.termQueue,
+                this.termMap, this.separators);
+    }
+
+    @Override
+    public int encodeDefinitions() {
+        PageBuffer page = new PageBuffer();
+        for (String definition : this.definitions) {
+            page.appendUtf8(definition);
+        }
+        return page.length();
+    }
+
+    @Override
+    public int escapeDefinitions() {
+        PageBuffer page = new PageBuffer();
+        for (String definition : this.definitions) {
+            HtmlEscaper.append(HtmlEscaper.Context.TEXT, definition, 0,
+                    definition.length(), page);
+        }
+        return page.length();
+    }
+
+}
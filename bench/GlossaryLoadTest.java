@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpServer;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Load test of {@code GlossaryServer}. A synthetic glossary (or the one
+ * named by {@code bench.glossary}) is served on a free port, unless
+ * {@code bench.url} names a server already serving it, and
+ * {@code bench.clients} clients send {@code bench.requests} requests in all,
+ * each for a term page drawn from a Zipf distribution so a few terms are
+ * popular and most are rarely viewed. A share {@code bench.conditional} of
+ * the requests for a page a client has already seen revalidate it with
+ * If-None-Match. The median and 99th percentile latency and the requests per
+ * second are printed.
+ *
+ * <p>
+ * Other settings: {@code bench.terms}, {@code bench.definitionWords},
+ * {@code bench.linkDensity}, {@code bench.skew} (the Zipf exponent),
+ * {@code bench.warmup} (untimed requests first) and
+ * {@code bench.cacheBytes}.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryLoadTest {
+
+    /**
+     * Nanoseconds per microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Median.
+     */
+    private static final double P50 = 0.50;
+
+    /**
+     * 99th percentile.
+     */
+    private static final double P99 = 0.99;
+
+    /**
+     * HTTP status: not modified.
+     */
+    private static final int NOT_MODIFIED = 304;
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private GlossaryLoadTest() {
+    }
+
+    /**
+     * Returns the cumulative Zipf distribution over {@code n} ranks.
+     *
+     * @param n
+     *            the number of ranks
+     * @param skew
+     *            the exponent
+     * @return cdf[k] = P(rank <= k)
+     */
+    private static double[] zipf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    /**
+     * Returns the latency below which a fraction {@code q} of the requests
+     * were answered.
+     *
+     * @param sorted
+     *            the latencies, sorted
+     * @param q
+     *            the fraction
+     * @return the latency in ns
+     */
+    private static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Sends the requests of one client.
+     *
+     * @param client
+     *            the HTTP client
+     * @param base
+     *            the server
+     * @param terms
+     *            the terms, most popular first
+     * @param cdf
+     *            the popularity distribution
+     * @param conditional
+     *            share of revalidating requests
+     * @param seed
+     *            seed of the client's random generator
+     * @param latencies
+     *            where to record each latency, or null for warm-up
+     * @param from
+     *            first slot of latencies to fill
+     * @param count
+     *            number of requests
+     * @param notModified
+     *            count of 304 answers
+     * @throws IOException
+     *             if a request fails
+     * @throws InterruptedException
+     *             if interrupted
+     * @throws URISyntaxException
+     *             if a term does not make a valid path
+     */
+    private static void client(HttpClient client, URI base, String[] terms,
+            double[] cdf, double conditional, long seed, long[] latencies,
+            int from, int count, AtomicLong notModified)
+            throws IOException, InterruptedException, URISyntaxException {
+        Random random = new Random(seed);
+        HashMap<String, String> etags = new HashMap<>();
+        for (int r = 0; r < count; r++) {
+            int k = Arrays.binarySearch(cdf, random.nextDouble());
+            if (k < 0) {
+                k = Math.min(terms.length - 1, -k - 1);
+            }
+            String term = terms[k];
+            HttpRequest.Builder request = HttpRequest.newBuilder(
+                    base.resolve(new URI(null, null, term + ".html", null)));
+            String etag = etags.get(term);
+            if (etag != null && random.nextDouble() < conditional) {
+                request.header("If-None-Match", etag);
+            }
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(request.build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            long elapsed = System.nanoTime() - start;
+            if (latencies != null) {
+                latencies[from + r] = elapsed;
+            }
+            if (response.statusCode() == NOT_MODIFIED) {
+                notModified.incrementAndGet();
+            }
+            response.headers().firstValue("ETag")
+                    .ifPresent(t -> etags.put(term, t));
+        }
+    }
+
+    /**
+     * Runs {@code requests} requests spread over {@code clients} clients.
+     *
+     * @param pool
+     *            the client threads
+     * @param client
+     *            the HTTP client
+     * @param base
+     *            the server
+     * @param terms
+     *            the terms, most popular first
+     * @param cdf
+     *            the popularity distribution
+     * @param conditional
+     *            share of revalidating requests
+     * @param clients
+     *            number of clients
+     * @param requests
+     *            number of requests
+     * @param latencies
+     *            where to record each latency, or null for warm-up
+     * @param notModified
+     *            count of 304 answers
+     * @throws Exception
+     *             if a request fails
+     */
+    private static void run(ExecutorService pool, HttpClient client,
+            URI base, String[] terms, double[] cdf, double conditional,
+            int clients, int requests, long[] latencies,
+            AtomicLong notModified) throws Exception {
+        Future<?>[] running = new Future<?>[clients];
+        for (int c = 0; c < clients; c++) {
+            int from = (int) ((long) requests * c / clients);
+            int to = (int) ((long) requests * (c + 1) / clients);
+            long seed = c + (latencies == null ? clients : 0);
+            running[c] = pool.submit(() -> {
+                client(client, base, terms, cdf, conditional, seed,
+                        latencies, from, to - from, notModified);
+                return null;
+            });
+        }
+        for (Future<?> f : running) {
+            f.get();
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments, unused
+     * @throws Exception
+     *             if the glossary cannot be read or a request fails
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("bench.clients", 8);
+        int requests = Integer.getInteger("bench.requests", 20000);
+        int warmup = Integer.getInteger("bench.warmup", 2000);
+        double skew = Double
+                .parseDouble(System.getProperty("bench.skew", "1.0"));
+        double conditional = Double
+                .parseDouble(System.getProperty("bench.conditional", "0.2"));
+        String file = System.getProperty("bench.glossary");
+        if (file == null) {
+            Path dir = Files.createTempDirectory("glossary-load");
+            Path input = dir.resolve("glossary.txt");
+            SyntheticGlossary.write(input,
+                    Integer.getInteger("bench.terms", 20000),
+                    Integer.getInteger("bench.definitionWords", 30),
+                    Double.parseDouble(
+                            System.getProperty("bench.linkDensity", "0.1")),
+                    1L);
+            file = input.toString();
+        }
+        SimpleReader in = new SimpleReader1L(file);
+        GlossaryView glossary = TermDictionary
+                .freeze(new GlossaryIngester().ingest(in));
+        in.close();
+        /*
+         * shuffle the terms, so popularity does not follow term order
+         */
+        String[] terms = new String[glossary.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = glossary.term(i);
+        }
+        Random random = new Random(2L);
+        for (int i = terms.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String t = terms[i];
+            terms[i] = terms[j];
+            terms[j] = t;
+        }
+        double[] cdf = zipf(terms.length, skew);
+
+        GlossaryServer glossaryServer = null;
+        HttpServer server = null;
+        String url = System.getProperty("bench.url");
+        if (url == null) {
+            GlossaryServer.useNoDelay();
+            glossaryServer = new GlossaryServer(glossary,
+                    TermMatcher.of(glossary,
+                            SeparatorTable.fromString(" \t, "),
+                            TermMatcher.Boundary.SEPARATOR),
+                    PageLayout.DEFAULT,
+                    Long.getLong("bench.cacheBytes", 16L << 20));
+            server = glossaryServer.start(0);
+            url = "http://localhost:" + server.getAddress().getPort() + "/";
+        }
+        URI base = URI.create(url);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1).build();
+        try {
+            AtomicLong notModified = new AtomicLong();
+            run(pool, client, base, terms, cdf, conditional, clients, warmup,
+                    null, notModified);
+            notModified.set(0);
+            long[] latencies = new long[requests];
+            long start = System.nanoTime();
+            run(pool, client, base, terms, cdf, conditional, clients,
+                    requests, latencies, notModified);
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            System.out.printf("# terms=%d clients=%d requests=%d skew=%s%n",
+                    terms.length, clients, requests, skew);
+            System.out.printf("p50 %10.1f us%n",
+                    percentile(latencies, P50) / NANOS_PER_MICRO);
+            System.out.printf("p99 %10.1f us%n",
+                    percentile(latencies, P99) / NANOS_PER_MICRO);
+            System.out.printf("rps %10.1f%n",
+                    requests * NANOS_PER_SECOND / elapsed);
+            System.out.printf("304 %10d%n", notModified.get());
+            if (glossaryServer != null) {
+                System.out.printf("cache hits %d, misses %d, %d bytes%n",
+                        glossaryServer.hits(), glossaryServer.misses(),
+                        glossaryServer.cachedBytes());
+            }
+        } finally {
+            pool.shutdown();
+            if (server != null) {
+                GlossaryServer.stop(server);
+            }
+        }
+    }
+
+}
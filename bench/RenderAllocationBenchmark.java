@@ -0,0 +1,191 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.sun.management.ThreadMXBean;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Measures what rendering the term pages allocates, the way
+ * {@code PageRenderEngine} renders them: links found with the term matcher,
+ * then the page rendered into a reused {@code PageBuffer}. The bytes
+ * allocated by the rendering thread are read from its
+ * {@code ThreadMXBean} counter after a warm-up, and printed per page and
+ * per token of the definitions, once with each term and definition taken
+ * as a {@code String} and once as a {@code CharSpan} over the dictionary.
+ * Writing the pages is left out.
+ *
+ * <p>
+ * Settings: {@code bench.terms}, {@code bench.definitionWords},
+ * {@code bench.linkDensity}, {@code bench.warmup} and
+ * {@code bench.iterations} (passes over every page).
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class RenderAllocationBenchmark {
+
+    /**
+     * Separators used by {@code Glossary.main}.
+     */
+    private static final String SEPARATORS = " \t, ";
+
+    /**
+     * Sink for the rendered pages, so the JIT cannot drop the work.
+     */
+    private static long sink = 0;
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private RenderAllocationBenchmark() {
+    }
+
+    /**
+     * Renders every page of the glossary once.
+     *
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from its terms
+     * @param matches
+     *            reused match buffer
+     * @param page
+     *            reused page buffer
+     * @param spans
+     *            reused term and definition spans, or null to take terms and
+     *            definitions as strings
+     */
+    private static void renderAll(TermDictionary glossary,
+            TermMatcher matcher, TermMatcher.Matches matches, PageBuffer page,
+            CharSpan[] spans) {
+        for (int i = 0; i < glossary.size(); i++) {
+            CharSequence term;
+            CharSequence definition;
+            if (spans != null) {
+                term = glossary.term(i, spans[0]);
+                definition = glossary.definition(i, spans[1]);
+            } else {
+                term = glossary.term(i);
+                definition = glossary.definition(i);
+            }
+            matcher.findAll(definition, matches);
+            page.clear();
+            PageLayout.DEFAULT.renderPage(term, definition, matches, page);
+            sink += page.length();
+        }
+    }
+
+    /**
+     * Counts the tokens of every definition: runs of characters that are
+     * not separators.
+     *
+     * @param glossary
+     *            the glossary
+     * @param separators
+     *            the separators
+     * @return the number of tokens
+     */
+    private static long tokens(GlossaryView glossary,
+            SeparatorTable separators) {
+        long tokens = 0;
+        for (int i = 0; i < glossary.size(); i++) {
+            String definition = glossary.definition(i);
+            boolean inToken = false;
+            for (int k = 0; k < definition.length(); k++) {
+                boolean separator = separators
+                        .isSeparator(definition.charAt(k));
+                if (!separator && !inToken) {
+                    tokens++;
+                }
+                inToken = !separator;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Measures one way of rendering.
+     *
+     * @param name
+     *            name printed for it
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from its terms
+     * @param spans
+     *            reused term and definition spans, or null to take terms and
+     *            definitions as strings
+     * @param warmup
+     *            untimed passes
+     * @param iterations
+     *            measured passes
+     * @param tokens
+     *            tokens in one pass
+     */
+    private static void measure(String name, TermDictionary glossary,
+            TermMatcher matcher, CharSpan[] spans, int warmup, int iterations,
+            long tokens) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        PageBuffer page = new PageBuffer();
+        for (int w = 0; w < warmup; w++) {
+            renderAll(glossary, matcher, matches, page, spans);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int it = 0; it < iterations; it++) {
+            renderAll(glossary, matcher, matches, page, spans);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        long pages = (long) iterations * glossary.size();
+        System.out.printf("%-8s %10.1f B/page %8.3f B/token %8.1f ns/page%n",
+                name, (double) allocated / pages,
+                (double) allocated / (tokens * iterations),
+                (double) elapsed / pages);
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments, unused
+     * @throws Exception
+     *             if the synthetic glossary cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        int warmup = Integer.getInteger("bench.warmup", 5);
+        int iterations = Integer.getInteger("bench.iterations", 10);
+        Path dir = Files.createTempDirectory("glossary-alloc");
+        Path input = dir.resolve("glossary.txt");
+        SyntheticGlossary.write(input,
+                Integer.getInteger("bench.terms", 20000),
+                Integer.getInteger("bench.definitionWords", 30),
+                Double.parseDouble(
+                        System.getProperty("bench.linkDensity", "0.1")),
+                1L);
+        SimpleReader in = new SimpleReader1L(input.toString());
+        TermDictionary glossary = TermDictionary
+                .freeze(new GlossaryIngester().ingest(in));
+        in.close();
+        Files.delete(input);
+        Files.delete(dir);
+        SeparatorTable separators = SeparatorTable.fromString(SEPARATORS);
+        TermMatcher matcher = TermMatcher.of(glossary, separators,
+                TermMatcher.Boundary.SEPARATOR);
+        long tokens = tokens(glossary, separators);
+
+        System.out.printf("# terms=%d tokens/pass=%d iterations=%d%n",
+                glossary.size(), tokens, iterations);
+        measure("string", glossary, matcher, null, warmup, iterations,
+                tokens);
+        measure("span", glossary, matcher,
+                new CharSpan[] { new CharSpan(), new CharSpan() }, warmup,
+                iterations, tokens);
+    }
+
+}
@@ -0,0 +1,113 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generator of synthetic glossary files for benchmarks. The shape of the
+ * glossary is set by the number of terms, the number of words per definition
+ * and the link density, the chance that a definition word is another term.
+ *
+ * @author Zheyuan Gao
+ */
+public final class SyntheticGlossary {
+
+    /**
+     * Letters used to spell generated words.
+     */
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Words per definition line; longer definitions wrap onto more lines.
+     */
+    private static final int WORDS_PER_LINE = 12;
+
+    /**
+     * Number of distinct filler (non-term) words.
+     */
+    private static final int FILLER_WORDS = 5000;
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private SyntheticGlossary() {
+    }
+
+    /**
+     * Returns the i-th generated word: a letter spelling of i, so the words
+     * are distinct and sort differently from their generation order.
+     *
+     * @param i
+     *            the word number
+     * @param prefix
+     *            prefix keeping terms and filler words apart
+     * @return the word
+     */
+    private static String word(int i, String prefix) {
+        StringBuilder sb = new StringBuilder(prefix);
+        int n = i;
+        do {
+            sb.append(LETTERS.charAt(n % LETTERS.length()));
+            n /= LETTERS.length();
+        } while (n > 0);
+        return sb.toString();
+    }
+
+    /**
+     * Writes a synthetic glossary file.
+     *
+     * @param file
+     *            the file to write
+     * @param terms
+     *            number of terms
+     * @param definitionWords
+     *            number of words in each definition
+     * @param linkDensity
+     *            chance that a definition word is a term
+     * @param seed
+     *            seed of the random generator, for repeatable files
+     * @throws IOException
+     *             if the file cannot be written
+     * @requires terms > 0 and definitionWords > 0 and 0 <= linkDensity <= 1
+     */
+    public static void write(Path file, int terms, int definitionWords,
+            double linkDensity, long seed) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert terms > 0 : "Violation of: terms > 0";
+        assert definitionWords > 0 : "Violation of: definitionWords > 0";
+
+        Random random = new Random(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            for (int t = 0; t < terms; t++) {
+                if (t > 0) {
+                    out.newLine();
+                    out.newLine();
+                }
+                out.write(word(t, "t"));
+                out.newLine();
+                for (int w = 0; w < definitionWords; w++) {
+                    if (w > 0 && w % WORDS_PER_LINE == 0) {
+                        /*
+                         * continuation lines are joined without a space, so
+                         * start them with one
+                         */
+                        out.newLine();
+                        out.write(' ');
+                    } else if (w > 0) {
+                        out.write(random.nextInt(WORDS_PER_LINE) == 0 ? ", "
+                                : " ");
+                    }
+                    if (random.nextDouble() < linkDensity) {
+                        out.write(word(random.nextInt(terms), "t"));
+                    } else {
+                        out.write(word(random.nextInt(FILLER_WORDS), "f"));
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Latency check of {@code GlossaryWatch}. A synthetic glossary of
+ * {@code bench.terms} terms is built once, then {@code bench.rounds} times a
+ * definition is edited, a term added and the same term removed again, each
+ * change written to the file and applied with {@code update}. The median and
+ * 99th percentile time of each kind of update are printed, with the ones
+ * over {@code bench.targetMillis} flagged.
+ *
+ * <p>
+ * Other settings: {@code bench.definitionWords}, {@code bench.linkDensity}
+ * and {@code bench.warmup} (untimed rounds first).
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class WatchLatency {
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Median.
+     */
+    private static final double P50 = 0.50;
+
+    /**
+     * 99th percentile.
+     */
+    private static final double P99 = 0.99;
+
+    /**
+     * Kinds of update timed.
+     */
+    private static final String[] KINDS = {"edit", "add", "remove"};
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private WatchLatency() {
+    }
+
+    /**
+     * Returns the latency below which a fraction {@code q} of the updates
+     * were done.
+     *
+     * @param sorted
+     *            the latencies, sorted
+     * @param q
+     *            the fraction
+     * @return the latency in ns
+     */
+    private static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Writes {@code text} to the glossary file and times the update.
+     *
+     * @param watch
+     *            the watcher
+     * @param input
+     *            the glossary file
+     * @param text
+     *            the new text of the file
+     * @return the time of the update in ns
+     * @throws IOException
+     *             if the file cannot be written or the update fails
+     */
+    private static long timeUpdate(GlossaryWatch watch, Path input,
+            String text) throws IOException {
+        Files.writeString(input, text, StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        watch.update();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Runs one round: an edit, an addition and a removal.
+     *
+     * @param watch
+     *            the watcher
+     * @param input
+     *            the glossary file
+     * @param text
+     *            the text of the file, which the round leaves edited
+     * @param random
+     *            the random generator
+     * @param round
+     *            the round number, naming the added term
+     * @param latencies
+     *            where to record the times, one array per kind, or null for
+     *            warm-up
+     * @return the text of the file after the round
+     * @throws IOException
+     *             if the file cannot be written or an update fails
+     */
+    private static String round(GlossaryWatch watch, Path input, String text,
+            Random random, int round, long[][] latencies) throws IOException {
+        /*
+         * edit the first definition line of a random block
+         */
+        int block = text.indexOf("\n\n", random.nextInt(text.length()));
+        if (block < 0) {
+            block = 0;
+        }
+        int line = text.indexOf('\n', text.indexOf('\n', block + 2) + 1);
+        if (line < 0) {
+            line = text.length();
+        }
+        String edited = text.substring(0, line) + " edited"
+                + text.substring(line);
+        long[] times = new long[KINDS.length];
+        times[0] = timeUpdate(watch, input, edited);
+        /*
+         * add a term that one word of the new definition links to, then
+         * remove it
+         */
+        String added = edited + "\n\nnew" + round + "\nnew" + round
+                + " is new";
+        times[1] = timeUpdate(watch, input, added);
+        times[2] = timeUpdate(watch, input, edited);
+        if (latencies != null) {
+            for (int k = 0; k < KINDS.length; k++) {
+                latencies[k][round] = times[k];
+            }
+        }
+        return edited;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments, unused
+     * @throws IOException
+     *             if the glossary cannot be written or an update fails
+     */
+    public static void main(String[] args) throws IOException {
+        int terms = Integer.getInteger("bench.terms", 200000);
+        int rounds = Integer.getInteger("bench.rounds", 50);
+        int warmup = Integer.getInteger("bench.warmup", 10);
+        long target = Long.getLong("bench.targetMillis", 100);
+        Path dir = Files.createTempDirectory("glossary-watch");
+        Path input = dir.resolve("glossary.txt");
+        SyntheticGlossary.write(input, terms,
+                Integer.getInteger("bench.definitionWords", 30),
+                Double.parseDouble(
+                        System.getProperty("bench.linkDensity", "0.1")),
+                1L);
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        GlossaryWatch watch = new GlossaryWatch(input, folder.toString(),
+                SeparatorTable.fromString(" \t, "),
+                new PageRenderEngine(Integer.getInteger(
+                        "glossary.parallelism",
+                        Runtime.getRuntime().availableProcessors())));
+        long start = System.nanoTime();
+        watch.buildAll();
+        System.out.printf("# terms=%d full build %.1f ms%n", terms,
+                (System.nanoTime() - start) / NANOS_PER_MILLI);
+
+        String text = Files.readString(input, StandardCharsets.UTF_8);
+        Random random = new Random(2L);
+        for (int r = 0; r < warmup; r++) {
+            text = round(watch, input, text, random, r, null);
+        }
+        long[][] latencies = new long[KINDS.length][rounds];
+        for (int r = 0; r < rounds; r++) {
+            text = round(watch, input, text, random, r, latencies);
+        }
+        for (int k = 0; k < KINDS.length; k++) {
+            Arrays.sort(latencies[k]);
+            double p50 = percentile(latencies[k], P50) / NANOS_PER_MILLI;
+            double p99 = percentile(latencies[k], P99) / NANOS_PER_MILLI;
+            String flag = "";
+            if (p99 > target) {
+                flag = "  over " + target + " ms";
+            }
+            System.out.printf("%-6s p50 %8.1f ms  p99 %8.1f ms%s%n",
+                    KINDS[k], p50, p99, flag);
+        }
+    }
+
+}
@@ -0,0 +1,368 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the hot paths of {@code Glossary}: readFileStoreInMap,
+ * nextWordOrSeparator, term lookups, outputIndex, outputWordPage and
+ * escaping, run on a synthetic glossary by {@code GlossaryHotPaths}. The
+ * shape of the glossary is set by the {@code terms},
+ * {@code definitionWords} and {@code linkDensity} parameters. {@code main}
+ * runs them, writes the mean time of each to a results file, and compares it
+ * with a baseline results file when one is given; bench/baseline.txt is the
+ * committed baseline. It also records the heap retained by the term map and
+ * by the frozen dictionary of a glossary of {@code bench.footprintTerms}
+ * terms (200000 by default, 0 to skip), compared the same way.
+ *
+ * <p>
+ * Settings of {@code main} are system properties: {@code bench.terms},
+ * {@code bench.definitionWords}, {@code bench.linkDensity},
+ * {@code bench.warmup}, {@code bench.iterations},
+ * {@code bench.footprintTerms}, {@code bench.results} (where to write the
+ * results) and {@code bench.baseline} (results to compare with). JMH options
+ * can be given instead by running {@code org.openjdk.jmh.Main}.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlossaryBenchmark {
+
+    /**
+     * Slow-down over the baseline reported as a regression.
+     */
+    private static final double REGRESSION = 1.10;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Bytes per MiB.
+     */
+    private static final double BYTES_PER_MIB = 1 << 20;
+
+    /**
+     * Number of terms of the glossary whose retained heap is measured,
+     * unless {@code bench.footprintTerms} is given.
+     */
+    private static final int DEFAULT_FOOTPRINT_TERMS = 200000;
+
+    /**
+     * The default-package class implementing the operations.
+     */
+    private static final String HOT_PATHS = "GlossaryHotPaths";
+
+    /**
+     * Number of terms of the synthetic glossary.
+     */
+    @Param("2000")
+    public int terms;
+
+    /**
+     * Words per definition.
+     */
+    @Param("30")
+    public int definitionWords;
+
+    /**
+     * Chance that a definition word is another term.
+     */
+    @Param("0.1")
+    public double linkDensity;
+
+    /**
+     * The operations, created by name since they are in the default package.
+     */
+    private HotPaths hotPaths;
+
+    /**
+     * Writes the synthetic glossary and reads it once.
+     *
+     * @throws IOException
+     *             if the glossary cannot be written
+     * @throws ReflectiveOperationException
+     *             if the operations cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, ReflectiveOperationException {
+        this.hotPaths = (HotPaths) Class.forName(HOT_PATHS)
+                .getDeclaredConstructor().newInstance();
+        this.hotPaths.setUp(this.terms, this.definitionWords,
+                this.linkDensity);
+    }
+
+    /**
+     * Deletes the glossary file and the pages.
+     *
+     * @throws IOException
+     *             if a file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.hotPaths.tearDown();
+    }
+
+    /**
+     * Times {@code Glossary.readFileStoreInMap}.
+     *
+     * @return the number of terms read
+     */
+    @Benchmark
+    public int readFileStoreInMap() {
+        return this.hotPaths.readFileStoreInMap();
+    }
+
+    /**
+     * Times {@code Glossary.nextWordOrSeparator} over every definition.
+     *
+     * @return the number of tokens
+     */
+    @Benchmark
+    public long nextWordOrSeparator() {
+        return this.hotPaths.nextWordOrSeparator();
+    }
+
+    /**
+     * Times looking up every term in the term map.
+     *
+     * @return the number of terms found
+     */
+    @Benchmark
+    public int termMapLookup() {
+        return this.hotPaths.termMapLookup();
+    }
+
+    /**
+     * Times looking up every term in the frozen dictionary.
+     *
+     * @return the number of terms found
+     */
+    @Benchmark
+    public int termDictionaryLookup() {
+        return this.hotPaths.termDictionaryLookup();
+    }
+
+    /**
+     * Times looking up every definition word in the term map.
+     *
+     * @return the number of words that are terms
+     */
+    @Benchmark
+    public int termMapSpanLookup() {
+        return this.hotPaths.termMapSpanLookup();
+    }
+
+    /**
+     * Times looking up every definition word in the frozen dictionary.
+     *
+     * @return the number of words that are terms
+     */
+    @Benchmark
+    public int termDictionarySpanLookup() {
+        return this.hotPaths.termDictionarySpanLookup();
+    }
+
+    /**
+     * Times {@code Glossary.outputIndex}.
+     */
+    @Benchmark
+    public void outputIndex() {
+        this.hotPaths.outputIndex();
+    }
+
+    /**
+     * Times {@code Glossary.outputWordPage}.
+     */
+    @Benchmark
+    public void outputWordPage() {
+        this.hotPaths.outputWordPage();
+    }
+
+    /**
+     * Times encoding every definition to UTF-8, unescaped.
+     *
+     * @return the number of bytes
+     */
+    @Benchmark
+    public int encodeDefinitions() {
+        return this.hotPaths.encodeDefinitions();
+    }
+
+    /**
+     * Times escaping and encoding every definition, as a page does.
+     *
+     * @return the number of bytes
+     */
+    @Benchmark
+    public int escapeDefinitions() {
+        return this.hotPaths.escapeDefinitions();
+    }
+
+    /**
+     * Reads a results file.
+     *
+     * @param file
+     *            the file
+     * @return benchmark name to mean nanoseconds
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static LinkedHashMap<String, Double> readResults(Path file)
+            throws IOException {
+        LinkedHashMap<String, Double> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            if (fields.length == 2 && !line.startsWith("#")) {
+                results.put(fields[0], Double.parseDouble(fields[1]));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the report line of one result, compared with the baseline.
+     *
+     * @param name
+     *            the name of the result
+     * @param value
+     *            the result
+     * @param unit
+     *            the unit it is shown in
+     * @param scale
+     *            the result per unit
+     * @param base
+     *            the baseline results
+     * @return the line
+     */
+    private static String line(String name, double value, String unit,
+            double scale, LinkedHashMap<String, Double> base) {
+        String line = String.format("%-24s %12.3f %s", name, value / scale,
+                unit);
+        Double old = base.get(name);
+        if (old != null) {
+            line += String.format("  %+7.1f%% vs baseline",
+                    (value / old - 1) * 100);
+            if (value > old * REGRESSION) {
+                line += "  REGRESSION";
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments, unused
+     * @throws IOException
+     *             if the results cannot be written or the baseline read
+     * @throws RunnerException
+     *             if a benchmark fails
+     * @throws ReflectiveOperationException
+     *             if the operations cannot be created
+     */
+    public static void main(String[] args) throws IOException,
+            RunnerException, ReflectiveOperationException {
+        String terms = System.getProperty("bench.terms", "2000");
+        String definitionWords = System.getProperty("bench.definitionWords",
+                "30");
+        String linkDensity = System.getProperty("bench.linkDensity", "0.1");
+        Path results = Paths
+                .get(System.getProperty("bench.results", "bench-results.txt"));
+        String baseline = System.getProperty("bench.baseline");
+        int footprintTerms = Integer.getInteger("bench.footprintTerms",
+                DEFAULT_FOOTPRINT_TERMS);
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include("^" + GlossaryBenchmark.class.getName() + "\\.")
+                .param("terms", terms)
+                .param("definitionWords", definitionWords)
+                .param("linkDensity", linkDensity);
+        if (Integer.getInteger("bench.warmup") != null) {
+            options.warmupIterations(Integer.getInteger("bench.warmup"));
+        }
+        if (Integer.getInteger("bench.iterations") != null) {
+            options.measurementIterations(
+                    Integer.getInteger("bench.iterations"));
+        }
+        LinkedHashMap<String, Double> base = new LinkedHashMap<>();
+        if (baseline != null) {
+            base = readResults(Paths.get(baseline));
+        }
+        StringBuilder report = new StringBuilder();
+        report.append("# terms=").append(terms).append(" definitionWords=")
+                .append(definitionWords).append(" linkDensity=")
+                .append(linkDensity).append(" footprintTerms=")
+                .append(footprintTerms).append(" java=")
+                .append(System.getProperty("java.version")).append(" cpus=")
+                .append(Runtime.getRuntime().availableProcessors())
+                .append('\n');
+        List<String> lines = new ArrayList<>();
+        for (RunResult run : new Runner(options.build()).run()) {
+            String name = run.getParams().getBenchmark();
+            name = name.substring(name.lastIndexOf('.') + 1);
+            double nanos = run.getPrimaryResult().getScore() * NANOS_PER_MILLI;
+            report.append(name).append('\t')
+                    .append(String.format("%.0f", nanos)).append('\n');
+            lines.add(line(name, nanos, "ms/op", NANOS_PER_MILLI, base));
+        }
+        if (footprintTerms > 0) {
+            HotPaths hotPaths = (HotPaths) Class.forName(HOT_PATHS)
+                    .getDeclaredConstructor().newInstance();
+            int words = Integer.parseInt(definitionWords);
+            double density = Double.parseDouble(linkDensity);
+            long[] bytes = {
+                    hotPaths.termMapBytes(footprintTerms, words, density),
+                    hotPaths.termDictionaryBytes(footprintTerms, words,
+                            density) };
+            String[] names = {"termMapBytes", "termDictionaryBytes"};
+            for (int k = 0; k < names.length; k++) {
+                report.append(names[k]).append('\t').append(bytes[k])
+                        .append('\n');
+                lines.add(line(names[k], bytes[k], "MiB", BYTES_PER_MIB,
+                        base));
+            }
+        }
+        Files.write(results,
+                report.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println(report.substring(0, report.indexOf("\n")));
+        for (String line : lines) {
+            System.out.println(line);
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package benchmarks;
+
+import java.io.IOException;
+
+/**
+ * The operations timed by {@code GlossaryBenchmark}, run on a synthetic
+ * glossary. Implemented in the default package, next to {@code Glossary},
+ * by {@code GlossaryHotPaths}.
+ *
+ * @author Zheyuan Gao
+ */
+public interface HotPaths {
+
+    /**
+     * Writes a synthetic glossary and reads it once.
+     *
+     * @param terms
+     *            number of terms
+     * @param definitionWords
+     *            words per definition
+     * @param linkDensity
+     *            chance that a definition word is another term
+     * @throws IOException
+     *             if the glossary cannot be written
+     */
+    void setUp(int terms, int definitionWords, double linkDensity)
+            throws IOException;
+
+    /**
+     * Deletes the glossary file and the pages.
+     *
+     * @throws IOException
+     *             if a file cannot be deleted
+     */
+    void tearDown() throws IOException;
+
+    /**
+     * Reads and sorts the glossary file with
+     * {@code Glossary.readFileStoreInMap}.
+     *
+     * @return the number of terms read
+     */
+    int readFileStoreInMap();
+
+    /**
+     * Splits every definition into words and separators with
+     * {@code Glossary.nextWordOrSeparator}.
+     *
+     * @return the number of tokens
+     */
+    long nextWordOrSeparator();
+
+    /**
+     * Looks up every term in the term map, with keys built apart from the
+     * terms stored in it.
+     *
+     * @return the number of terms found
+     */
+    int termMapLookup();
+
+    /**
+     * Looks up every term in the frozen dictionary, with the keys of
+     * {@code termMapLookup}.
+     *
+     * @return the number of terms found
+     */
+    int termDictionaryLookup();
+
+    /**
+     * Looks up every word of every definition in the term map, as a page
+     * links its words: each word is cut out of the definition with
+     * {@code substring} first.
+     *
+     * @return the number of words that are terms
+     */
+    int termMapSpanLookup();
+
+    /**
+     * Looks up every word of every definition in the frozen dictionary with
+     * {@code indexOf(CharSequence, int, int)}, without cutting it out.
+     *
+     * @return the number of words that are terms
+     */
+    int termDictionarySpanLookup();
+
+    /**
+     * Reports the heap retained by the term queue and map of a synthetic
+     * glossary of {@code terms} terms, as {@code Glossary.main} holds them.
+     *
+     * @param terms
+     *            number of terms
+     * @param definitionWords
+     *            words per definition
+     * @param linkDensity
+     *            chance that a definition word is another term
+     * @return the retained bytes
+     * @throws IOException
+     *             if the glossary cannot be written
+     */
+    long termMapBytes(int terms, int definitionWords, double linkDensity)
+            throws IOException;
+
+    /**
+     * Reports the heap retained by the frozen dictionary of a synthetic
+     * glossary of {@code terms} terms.
+     *
+     * @param terms
+     *            number of terms
+     * @param definitionWords
+     *            words per definition
+     * @param linkDensity
+     *            chance that a definition word is another term
+     * @return the retained bytes
+     * @throws IOException
+     *             if the glossary cannot be written
+     */
+    long termDictionaryBytes(int terms, int definitionWords,
+            double linkDensity) throws IOException;
+
+    /**
+     * Writes index.html with {@code Glossary.outputIndex}.
+     */
+    void outputIndex();
+
+    /**
+     * Writes every term page with {@code Glossary.outputWordPage}.
+     */
+    void outputWordPage();
+
+    /**
+     * Encodes every definition to UTF-8 with {@code PageBuffer.appendUtf8},
+     * unescaped.
+     *
+     * @return the number of bytes
+     */
+    int encodeDefinitions();
+
+    /**
+     * Escapes every definition as HTML text and encodes it to UTF-8 with
+     * {@code HtmlEscaper.append}.
+     *
+     * @return the number of bytes
+     */
+    int escapeDefinitions();
+
+}
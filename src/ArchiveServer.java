@@ -0,0 +1,128 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Small local HTTP server for a glossary archive written by
+ * {@code GlossaryArchive}. Each request is answered with the stored entry of
+ * the same name, read in place from the archive; nothing is extracted.
+ *
+ * @author Zheyuan Gao
+ */
+public final class ArchiveServer {
+
+    /**
+     * Default port.
+     */
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * HTTP status: OK.
+     */
+    private static final int OK = 200;
+
+    /**
+     * HTTP status: not found.
+     */
+    private static final int NOT_FOUND = 404;
+
+    /**
+     * HTTP status: method not allowed.
+     */
+    private static final int BAD_METHOD = 405;
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private ArchiveServer() {
+    }
+
+    /**
+     * Starts serving an archive.
+     *
+     * @param zip
+     *            the open archive
+     * @param port
+     *            the port to listen on, 0 for any free port
+     * @return the running server
+     * @throws IOException
+     *             if the server cannot be started
+     */
+    public static HttpServer start(ZipFile zip, int port) throws IOException {
+        assert zip != null : "Violation of: zip is not null";
+
+        HttpServer server = HttpServer
+                .create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", exchange -> serve(zip, exchange));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    /**
+     * Answers one request.
+     *
+     * @param zip
+     *            the archive
+     * @param exchange
+     *            the request
+     * @throws IOException
+     *             if the answer cannot be sent
+     */
+    private static void serve(ZipFile zip, HttpExchange exchange)
+            throws IOException {
+        try {
+            String name = exchange.getRequestURI().getPath().substring(1);
+            if (name.isEmpty()) {
+                name = "index.html";
+            }
+            ZipEntry entry = zip.getEntry(name);
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(BAD_METHOD, -1);
+            } else if (entry == null || entry.isDirectory()) {
+                exchange.sendResponseHeaders(NOT_FOUND, -1);
+            } else {
+                exchange.getResponseHeaders().set("Content-Type",
+                        "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(OK, entry.getSize());
+                try (InputStream in = zip.getInputStream(entry);
+                        OutputStream out = exchange.getResponseBody()) {
+                    in.transferTo(out);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the archive file, then optionally the port
+     * @throws IOException
+     *             if the archive cannot be opened or the server started
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: ArchiveServer <archive.zip> [port]");
+        } else {
+            int port = DEFAULT_PORT;
+            if (args.length > 1) {
+                port = Integer.parseInt(args[1]);
+            }
+            ZipFile zip = new ZipFile(args[0]);
+            HttpServer server = start(zip, port);
+            System.out.println("Serving " + args[0] + " on http://localhost:"
+                    + server.getAddress().getPort() + "/");
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The terms whose definitions refer to each term of a glossary: the link
+ * graph inverted by a counting sort of its links, so the definitions are
+ * searched once, when the graph is built. The referring terms of term i are
+ * entries {@code offsets[i]} to {@code offsets[i + 1]} of the sources array,
+ * each once, a term referring to itself left out. Sources are visited in id
+ * order, so every list comes out in StringLT order without sorting.
+ *
+ * @author Zheyuan Gao
+ */
+public final class Backlinks {
+
+    /**
+     * Start of the referring terms of each term; one more entry than terms.
+     */
+    private final int[] offsets;
+
+    /**
+     * Referring terms, term after term.
+     */
+    private final int[] sources;
+
+    /**
+     * Creates backlinks from their arrays.
+     *
+     * @param offsets
+     *            start of the referring terms of each term
+     * @param sources
+     *            the referring terms
+     */
+    private Backlinks(int[] offsets, int[] sources) {
+        this.offsets = offsets;
+        this.sources = sources;
+    }
+
+    /**
+     * Inverts a link graph.
+     *
+     * @param graph
+     *            the link graph
+     * @return the backlinks of its terms
+     */
+    public static Backlinks of(LinkGraph graph) {
+        assert graph != null : "Violation of: graph is not null";
+
+        int n = graph.size();
+        /*
+         * last[j] is the last term counted as referring to j, so a term
+         * linking to j several times counts once
+         */
+        int[] last = new int[n];
+        Arrays.fill(last, -1);
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < graph.outDegree(i); k++) {
+                int j = graph.target(i, k);
+                if (j != i && last[j] != i) {
+                    last[j] = i;
+                    offsets[j + 1]++;
+                }
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            offsets[j + 1] += offsets[j];
+        }
+        int[] sources = new int[offsets[n]];
+        int[] next = Arrays.copyOf(offsets, n);
+        Arrays.fill(last, -1);
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < graph.outDegree(i); k++) {
+                int j = graph.target(i, k);
+                if (j != i && last[j] != i) {
+                    last[j] = i;
+                    sources[next[j]] = i;
+                    next[j]++;
+                }
+            }
+        }
+        return new Backlinks(offsets, sources);
+    }
+
+    /**
+     * Reports the number of terms referring to term {@code i}.
+     *
+     * @param i
+     *            the term
+     * @return the number of referring terms
+     */
+    public int count(int i) {
+        return this.offsets[i + 1] - this.offsets[i];
+    }
+
+    /**
+     * Returns the k-th term referring to term {@code i}.
+     *
+     * @param i
+     *            the term
+     * @param k
+     *            the position in its list
+     * @return the referring term
+     * @requires 0 <= k < count(i)
+     */
+    public int source(int i, int k) {
+        return this.sources[this.offsets[i] + k];
+    }
+
+    /**
+     * Returns the terms referring to term {@code i}, as a view naming them
+     * from the glossary.
+     *
+     * @param glossary
+     *            the glossary the graph was built from
+     * @param i
+     *            the term
+     * @return the referring terms, in StringLT order
+     */
+    public List<String> terms(GlossaryView glossary, int i) {
+        assert glossary != null : "Violation of: glossary is not null";
+
+        int from = this.offsets[i];
+        int size = this.count(i);
+        return new AbstractList<String>() {
+            @Override
+            public String get(int k) {
+                if (k < 0 || k >= size) {
+                    throw new IndexOutOfBoundsException(k);
+                }
+                return glossary.term(Backlinks.this.sources[from + k]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,169 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable {@code CharSequence} view of a range of a {@code char} array, or
+ * of a {@code byte} array holding Latin-1 text one byte per character. A
+ * glossary that keeps its text in arrays can hand out a term or definition
+ * by pointing a span at it instead of copying it into a new {@code String};
+ * the span is valid until it is pointed somewhere else.
+ *
+ * @author Zheyuan Gao
+ */
+public final class CharSpan implements CharSequence {
+
+    /**
+     * Empty array a new span points at.
+     */
+    private static final char[] EMPTY = new char[0];
+
+    /**
+     * Mask turning a Latin-1 byte into its character.
+     */
+    private static final int LATIN1_MASK = 0xFF;
+
+    /**
+     * The array.
+     */
+    private char[] chars = EMPTY;
+
+    /**
+     * The Latin-1 array, or null if the span points into {@code chars}.
+     */
+    private byte[] latin1;
+
+    /**
+     * Start of the range.
+     */
+    private int start;
+
+    /**
+     * Length of the range.
+     */
+    private int length;
+
+    /**
+     * Points the span at characters {@code [start, end)} of {@code chars}.
+     *
+     * @param chars
+     *            the array
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @return this span
+     * @requires 0 <= start <= end <= |chars|
+     */
+    public CharSpan set(char[] chars, int start, int end) {
+        assert chars != null : "Violation of: chars is not null";
+        assert 0 <= start && start <= end && end <= chars.length
+                : "Violation of: 0 <= start <= end <= |chars|";
+
+        this.chars = chars;
+        this.latin1 = null;
+        this.start = start;
+        this.length = end - start;
+        return this;
+    }
+
+    /**
+     * Points the span at bytes {@code [start, end)} of {@code latin1}, each
+     * byte being one Latin-1 character.
+     *
+     * @param latin1
+     *            the array
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @return this span
+     * @requires 0 <= start <= end <= |latin1|
+     */
+    public CharSpan set(byte[] latin1, int start, int end) {
+        assert latin1 != null : "Violation of: latin1 is not null";
+        assert 0 <= start && start <= end && end <= latin1.length
+                : "Violation of: 0 <= start <= end <= |latin1|";
+
+        this.chars = EMPTY;
+        this.latin1 = latin1;
+        this.start = start;
+        this.length = end - start;
+        return this;
+    }
+
+    /**
+     * Returns the {@code char} array the span points into, or null if it
+     * points into a Latin-1 array.
+     *
+     * @return the array
+     */
+    char[] array() {
+        char[] result = null;
+        if (this.latin1 == null) {
+            result = this.chars;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position in {@code array()} of the first character.
+     *
+     * @return the offset
+     */
+    int offset() {
+        return this.start;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        char c;
+        if (this.latin1 == null) {
+            c = this.chars[this.start + index];
+        } else {
+            c = (char) (this.latin1[this.start + index] & LATIN1_MASK);
+        }
+        return c;
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || from > to || to > this.length) {
+            throw new IndexOutOfBoundsException(from);
+        }
+        return this.string(this.start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+        return this.string(this.start, this.length);
+    }
+
+    /**
+     * Copies {@code count} characters from position {@code from} of the
+     * array into a new {@code String}.
+     *
+     * @param from
+     *            position in the array
+     * @param count
+     *            number of characters
+     * @return the string
+     */
+    private String string(int from, int count) {
+        String s;
+        if (this.latin1 == null) {
+            s = new String(this.chars, from, count);
+        } else {
+            s = new String(this.latin1, from, count,
+                    StandardCharsets.ISO_8859_1);
+        }
+        return s;
+    }
+
+}
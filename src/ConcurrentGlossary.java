@@ -0,0 +1,340 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Glossary that can be read and updated at the same time. The glossary is
+ * held as an immutable snapshot, parallel arrays of terms in {@code StringLT}
+ * order and their definitions; an update copies the arrays with its change
+ * applied and swaps the new snapshot in with a compare-and-set, retrying if
+ * another update got in first. Readers take a snapshot with one volatile read
+ * and never block or see a half-applied update, so a page renderer working
+ * from one snapshot sees one term order and one set of definitions
+ * throughout.
+ *
+ * <p>
+ * Snapshots are never changed, so every update copies: {@code put} of a term
+ * already there copies the definitions and shares the terms, and an addition
+ * or a removal copies both arrays. One {@code put} or {@code remove} thus
+ * costs time and garbage proportional to the size of the glossary, O(N), and
+ * k of them O(kN). {@code putAll} applies a whole batch with one copy, O(N +
+ * k log N): each change is found by a binary search and the unchanged runs
+ * between them are copied in bulk. Batch the edits of one update with it.
+ * </p>
+ *
+ * <p>
+ * Terms are unique: the first of several equal terms given to the
+ * constructor or {@code putAll} is kept.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class ConcurrentGlossary {
+
+    /**
+     * Order used for the terms.
+     */
+    private static final Comparator<String> ORDER = new Glossary.StringLT();
+
+    /**
+     * One version of the glossary, never changed once published.
+     */
+    public static final class Snapshot implements GlossaryView {
+
+        /**
+         * Sorted, unique terms.
+         */
+        private final String[] terms;
+
+        /**
+         * Definitions, {@code definitions[i]} belongs to {@code terms[i]}.
+         */
+        private final String[] definitions;
+
+        /**
+         * Number of updates applied before this snapshot.
+         */
+        private final long version;
+
+        /**
+         * Creates a snapshot.
+         *
+         * @param terms
+         *            the sorted, unique terms
+         * @param definitions
+         *            the definitions, in the same order
+         * @param version
+         *            number of updates applied before it
+         */
+        private Snapshot(String[] terms, String[] definitions, long version) {
+            this.terms = terms;
+            this.definitions = definitions;
+            this.version = version;
+        }
+
+        @Override
+        public int size() {
+            return this.terms.length;
+        }
+
+        @Override
+        public String term(int i) {
+            return this.terms[i];
+        }
+
+        @Override
+        public String definition(int i) {
+            return this.definitions[i];
+        }
+
+        @Override
+        public int indexOf(String term) {
+            assert term != null : "Violation of: term is not null";
+            return Arrays.binarySearch(this.terms, term, ORDER);
+        }
+
+        /**
+         * Reports the number of updates applied before this snapshot. A
+         * later snapshot of the same glossary has a larger version.
+         *
+         * @return the version
+         */
+        public long version() {
+            return this.version;
+        }
+    }
+
+    /**
+     * The current snapshot.
+     */
+    private final AtomicReference<Snapshot> current;
+
+    /**
+     * Creates an empty glossary.
+     */
+    public ConcurrentGlossary() {
+        this.current = new AtomicReference<>(
+                new Snapshot(new String[0], new String[0], 0));
+    }
+
+    /**
+     * Creates a glossary holding the terms of {@code glossary}.
+     *
+     * @param glossary
+     *            the terms and definitions to start with
+     */
+    public ConcurrentGlossary(GlossaryView glossary) {
+        assert glossary != null : "Violation of: glossary is not null";
+
+        String[] terms = new String[glossary.size()];
+        String[] definitions = new String[glossary.size()];
+        int n = 0;
+        for (int i = 0; i < glossary.size(); i++) {
+            if (n == 0 || !terms[n - 1].equals(glossary.term(i))) {
+                terms[n] = glossary.term(i);
+                definitions[n] = glossary.definition(i);
+                n++;
+            }
+        }
+        this.current = new AtomicReference<>(new Snapshot(
+                Arrays.copyOf(terms, n), Arrays.copyOf(definitions, n), 0));
+    }
+
+    /**
+     * Returns the current snapshot. It does not change when the glossary is
+     * updated afterwards.
+     *
+     * @return the current snapshot
+     */
+    public Snapshot snapshot() {
+        return this.current.get();
+    }
+
+    /**
+     * Adds a term, or replaces its definition if it is already there.
+     *
+     * @param term
+     *            the term
+     * @param definition
+     *            its definition
+     * @return the snapshot the update published
+     */
+    public Snapshot put(String term, String definition) {
+        assert term != null : "Violation of: term is not null";
+        assert definition != null : "Violation of: definition is not null";
+
+        Snapshot old;
+        Snapshot next;
+        do {
+            old = this.current.get();
+            int i = old.indexOf(term);
+            if (i >= 0) {
+                String[] definitions = old.definitions.clone();
+                definitions[i] = definition;
+                next = new Snapshot(old.terms, definitions, old.version + 1);
+            } else {
+                int at = -i - 1;
+                next = new Snapshot(insert(old.terms, at, term),
+                        insert(old.definitions, at, definition),
+                        old.version + 1);
+            }
+        } while (!this.current.compareAndSet(old, next));
+        return next;
+    }
+
+    /**
+     * Removes a term, if it is there.
+     *
+     * @param term
+     *            the term
+     * @return true iff the term was removed
+     */
+    public boolean remove(String term) {
+        assert term != null : "Violation of: term is not null";
+
+        Snapshot old;
+        Snapshot next;
+        do {
+            old = this.current.get();
+            int i = old.indexOf(term);
+            next = old;
+            if (i >= 0) {
+                next = new Snapshot(delete(old.terms, i),
+                        delete(old.definitions, i), old.version + 1);
+            }
+        } while (next != old && !this.current.compareAndSet(old, next));
+        return next != old;
+    }
+
+    /**
+     * Applies a batch of changes as one update: every term of
+     * {@code additions} is added or given its definition there, and every
+     * term of {@code deletions} that is not in {@code additions} is removed.
+     * Readers see either none of the changes or all of them.
+     *
+     * @param additions
+     *            terms to add or redefine
+     * @param deletions
+     *            terms to remove; only the terms are used
+     * @return the snapshot the update published
+     */
+    public Snapshot putAll(GlossaryView additions, GlossaryView deletions) {
+        assert additions != null : "Violation of: additions is not null";
+        assert deletions != null : "Violation of: deletions is not null";
+
+        Snapshot old;
+        Snapshot next;
+        do {
+            old = this.current.get();
+            next = merge(old, additions, deletions);
+        } while (!this.current.compareAndSet(old, next));
+        return next;
+    }
+
+    /**
+     * Merges a batch of changes into a snapshot: each change is found by a
+     * binary search, and the unchanged terms between two changes are copied
+     * in one go.
+     *
+     * @param old
+     *            the snapshot
+     * @param additions
+     *            terms to add or redefine
+     * @param deletions
+     *            terms to remove
+     * @return the new snapshot
+     */
+    private static Snapshot merge(Snapshot old, GlossaryView additions,
+            GlossaryView deletions) {
+        int capacity = old.terms.length + additions.size();
+        String[] terms = new String[capacity];
+        String[] definitions = new String[capacity];
+        int n = 0;
+        int i = 0;
+        int a = 0;
+        int d = 0;
+        while (a < additions.size() || d < deletions.size()) {
+            /*
+             * the next change in term order; an addition goes before the
+             * deletion of the same term, which then finds nothing to remove
+             */
+            boolean add = d == deletions.size() || (a < additions.size()
+                    && ORDER.compare(additions.term(a),
+                            deletions.term(d)) <= 0);
+            String term;
+            if (add) {
+                term = additions.term(a);
+            } else {
+                term = deletions.term(d);
+            }
+            int at = Arrays.binarySearch(old.terms, i, old.terms.length, term,
+                    ORDER);
+            int run = at;
+            if (at < 0) {
+                run = -at - 1;
+            }
+            System.arraycopy(old.terms, i, terms, n, run - i);
+            System.arraycopy(old.definitions, i, definitions, n, run - i);
+            n += run - i;
+            i = run;
+            if (at >= 0) {
+                /*
+                 * the old entry is replaced or removed
+                 */
+                i++;
+            }
+            if (add) {
+                if (n == 0 || !terms[n - 1].equals(term)) {
+                    terms[n] = term;
+                    definitions[n] = additions.definition(a);
+                    n++;
+                }
+                a++;
+            } else {
+                d++;
+            }
+        }
+        System.arraycopy(old.terms, i, terms, n, old.terms.length - i);
+        System.arraycopy(old.definitions, i, definitions, n,
+                old.terms.length - i);
+        n += old.terms.length - i;
+        return new Snapshot(Arrays.copyOf(terms, n),
+                Arrays.copyOf(definitions, n), old.version + 1);
+    }
+
+    /**
+     * Returns a copy of an array with an element inserted.
+     *
+     * @param array
+     *            the array
+     * @param at
+     *            where to insert
+     * @param element
+     *            the element
+     * @return the longer copy
+     */
+    private static String[] insert(String[] array, int at, String element) {
+        String[] copy = new String[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, at);
+        copy[at] = element;
+        System.arraycopy(array, at, copy, at + 1, array.length - at);
+        return copy;
+    }
+
+    /**
+     * Returns a copy of an array with an element removed.
+     *
+     * @param array
+     *            the array
+     * @param at
+     *            the element to remove
+     * @return the shorter copy
+     */
+    private static String[] delete(String[] array, int at) {
+        String[] copy = new String[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, at);
+        System.arraycopy(array, at + 1, copy, at, array.length - at - 1);
+        return copy;
+    }
+
+}
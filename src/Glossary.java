@@ -1,10 +1,18 @@
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.management.JMException;
 
 import components.map.Map;
-import components.map.Map1L;
 import components.queue.Queue;
-import components.queue.Queue1L;
 import components.set.Set;
 import components.set.Set1L;
 import components.simplereader.SimpleReader;
@@ -22,6 +30,16 @@ import components.simplewriter.SimpleWriter1L;
  */
 public final class Glossary {
 
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Number of most linked-to terms in the link report.
+     */
+    private static final int LINK_REPORT_TOP = 20;
+
     /**
      * Default constructor--private to prevent instantiation.
      */
@@ -91,55 +109,44 @@ public final class Glossary {
         assert 0 <= position : "Violation of: 0 <= position";
         assert position < text.length() : "Violation of: position < |text|";
 
-        char c = text.charAt(position);
-        boolean isSeparator = false;
-
         /*
-         * First check if the character at the given position is a separator
+         * the set may change between calls, so it is asked directly; callers
+         * tokenizing a whole text compile it once with SeparatorTable
          */
-        for (char separator : separators) {
-            if (!isSeparator && separator == c) {
-                isSeparator = true;
-            }
+        boolean separator = separators.contains(text.charAt(position));
+        int end = position + 1;
+        while (end < text.length()
+                && separators.contains(text.charAt(end)) == separator) {
+            end++;
         }
+        return text.substring(position, end);
+    }
 
-        StringBuilder subString = new StringBuilder();
-        int endIndex = position;
-        boolean end = false;
-        /*
-         * if the character is not a separator, then return the substring start
-         * from position to the appearance of the next separator
-         */
-        if (!isSeparator) {
-            while (!end && endIndex < text.length()) {
-
-                if (!separators.contains(text.charAt(endIndex))) {
-                    subString.append(text.charAt(endIndex));
-                } else {
-                    end = true;
-                }
-                endIndex++;
-
-            }
-
-        } else {
-            /*
-             * if the character is a separator, then return the substring start
-             * at position and end at the first appearance of the character that
-             * not in the separator set.
-             */
-            while (!end && endIndex < text.length()) {
-
-                if (separators.contains(text.charAt(endIndex))) {
-                    subString.append(text.charAt(endIndex));
-                } else {
-                    end = true;
-                }
-                endIndex++;
-            }
+    /**
+     * Returns the first "word" or "separator string" in the given {@code text}
+     * starting at the given {@code position}, using a compiled separator
+     * table.
+     *
+     * @param text
+     *            the {@code String} from which to get the word or separator
+     *            string
+     * @param position
+     *            the starting index
+     * @param separators
+     *            the compiled separator characters
+     * @return the first word or separator string found in {@code text} starting
+     *         at index {@code position}
+     * @requires 0 <= position < |text|
+     * @ensures same as nextWordOrSeparator(text, position, set of separators)
+     */
+    public static String nextWordOrSeparator(String text, int position,
+            SeparatorTable separators) {
+        assert text != null : "Violation of: text is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert 0 <= position : "Violation of: 0 <= position";
+        assert position < text.length() : "Violation of: position < |text|";
 
-        }
-        return subString.toString();
+        return text.substring(position, separators.tokenEnd(text, position));
     }
 
     /**
@@ -181,32 +188,16 @@ public final class Glossary {
     public static void readFileStoreInMap(SimpleReader input,
             Queue<String> glossary, Map<String, String> wordMap) {
 
-        String word = "";
-        String definition = "";
-        while (!input.atEOS()) {
-            /*
-             * the first line of the file is always a glossary
-             */
-            word = input.nextLine();
-            glossary.enqueue(word);
-            /*
-             * word is followed by its definition
-             */
-            definition = input.nextLine();
-            /*
-             * Definition can be longer than one line, check the next to see if
-             * it's an empty line. Also need to make sure it's not the end of
-             * the file
-             */
-            StringBuilder sb = new StringBuilder();
-            String possibleDefination = "something";
-            while (possibleDefination.length() != 0 && !input.atEOS()) {
-                possibleDefination = input.nextLine();
-                sb.append(possibleDefination);
-            }
-            definition += sb.toString();
-            wordMap.add(word, definition.toString());
-            //use the comparator to sort the string
+        boolean hadTerms = glossary.length() > 0;
+        /*
+         * parse every block in one pass, sorted once at the end
+         */
+        SortedGlossary entries = new GlossaryIngester().ingest(input);
+        entries.copyTo(glossary, wordMap);
+        /*
+         * terms already in the queue still have to be merged into order
+         */
+        if (hadTerms) {
             Comparator<String> compare = new StringLT();
             glossary.sort(compare);
         }
@@ -225,45 +216,42 @@ public final class Glossary {
      */
     public static void outputIndex(String folder, Queue<String> termQueue) {
 
-        SimpleWriter out = new SimpleWriter1L(folder + "/index.html");
-        /*
-         * output the html format header
-         */
-        out.println("<html>");
-        out.println(" <head>");
-        out.println("  <title>Glossary</title>");
-        out.println(" </head>");
-        out.println(" <body>");
-        out.println("  <h2>Glossary</h2>");
-        out.println("  <hr>");
-        out.println("  <h3>Index</h3>");
         /*
-         * output the main body
+         * header, one entry per term and footer, from the default layout
          */
-        out.println("  <ul>");
-        for (int i = 0; i < termQueue.length(); i++) {
-            String term = termQueue.dequeue();
-            termQueue.enqueue(term);
-            out.println("   <li>");
-            out.println("    <a href=" + term + ".html>" + term + "</a>");
-            out.println("   </li>");
-        }
-        out.println("  </ul>");
+        PageBuffer page = new PageBuffer();
+        PageLayout.DEFAULT.renderIndex(termQueue, page);
         /*
-         * output the footer
+         * write the whole page at once
          */
-        out.println(" </body>");
-        out.println("</html>");
+        writePage(new PageOutput(), folder + "/index.html", page);
+    }
 
-        /*
-         * close the simple writer
-         */
-        out.close();
+    /**
+     * Writes a rendered page to a file.
+     *
+     * @param output
+     *            the page writer
+     * @param file
+     *            the name of the file
+     * @param page
+     *            the rendered page
+     * @ensures file contains page
+     */
+    private static void writePage(PageOutput output, String file,
+            PageBuffer page) {
+        try {
+            output.write(Paths.get(file), page);
+        } catch (IOException e) {
+            throw new UncheckedIOException(file, e);
+        }
     }
 
     /**
      * Generate glossary page that contain the definition of the term and link
-     * to other glossary page.
+     * to other glossary page. Every term found in a definition as whole words
+     * is linked, multi-word terms included; when terms overlap the leftmost,
+     * then longest, one is linked.
      *
      * @param folder
      *            Folder choose by user to store all the html files
@@ -280,68 +268,92 @@ public final class Glossary {
     public static void outputWordPage(String folder, Queue<String> termQueue,
             Map<String, String> termMap, Set<Character> separator) {
 
+        /*
+         * build the term matcher once from every term
+         */
+        String[] terms = new String[termQueue.length()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = termQueue.dequeue();
+            termQueue.enqueue(terms[i]);
+        }
+        TermMatcher matcher = new TermMatcher(terms,
+                SeparatorTable.fromSet(separator),
+                TermMatcher.Boundary.SEPARATOR);
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        PageBuffer page = new PageBuffer();
+        PageOutput output = new PageOutput();
         for (int i = 0; i < termQueue.length(); i++) {
 
             String term = termQueue.dequeue();
             termQueue.enqueue(term);
-            SimpleWriter out = new SimpleWriter1L(
-                    folder + "/" + term + ".html");
-            /*
-             * output header for the term page
-             */
-            out.println("<html>");
-            out.println(" <head>");
-            out.println("  <title>term</title>");
-            out.println(" </head>");
-            out.println(" <body>");
-            out.println("  <h2>");
-            out.println("   <b>");
-            out.println("    <i>");
-            out.println("     <font color = red>" + term + "</font>");
-            out.println("    </i>");
-            out.println("   </b>");
-            out.println("  </h2>");
-            String defination = termMap.value(term);
-            /*
-             * start to split the definition word by word, and print the body of
-             * the html file
-             */
-            out.println("  <blockquote>");
-            out.print("    ");
-            int position = 0;
-            while (position < defination.length()) {
-                String token = nextWordOrSeparator(defination, position,
-                        separator);
-                //if the given token is not a glossary
-                if (!termMap.hasKey(token)) {
-                    out.print(token);
-                } else { //if the token is a glossary, create a link to its on page
-                    out.println();
-                    out.println(
-                            "    <a href=" + token + ".html>" + token + "</a>");
-                }
-                position += token.length();
-            }
-            /*
-             * output the footer for the word page
-             */
-            out.println("   </blockquote>");
-            out.println("  <hr>");
-            out.println("  <p>");
-            out.println("   Return to ");
-            out.println("   <a href = index.html>index</a>");
-            out.println("   .");
-            out.println("  </p>");
-            out.println(" </body>");
-            out.println("</html>");
+            page.clear();
+            PageLayout.DEFAULT.renderPage(term, termMap.value(term), matcher,
+                    matches, page);
             /*
-             * close the simple writer
+             * write the whole page at once
              */
-            out.close();
+            writePage(output, folder + "/" + HtmlEscaper.fileName(term),
+                    page);
 
         }
     }
 
+    /**
+     * Generate glossary page that contain the definition of the term and link
+     * to other glossary page, and, if {@code backlinks}, the terms whose
+     * definitions refer to it, in alphabet order. The links of every
+     * definition are found once and inverted, so listing the referring terms
+     * does not search the definitions again.
+     *
+     * @param folder
+     *            Folder choose by user to store all the html files
+     * @param termQueue
+     *            Queue contains all the glossaries in the alphabet order
+     * @param termMap
+     *            Map that contains the terms and their corresponding
+     *            definitions
+     * @param separator
+     *            set that contains all the separator characters
+     * @param backlinks
+     *            whether to list the terms referring to each term
+     * @requires folder exists. termQueue is not empty. termMap is not empty.
+     *           term in termQueue also are keys in termMap
+     */
+    public static void outputWordPage(String folder, Queue<String> termQueue,
+            Map<String, String> termMap, Set<Character> separator,
+            boolean backlinks) {
+        if (backlinks) {
+            String[] terms = new String[termQueue.length()];
+            String[] definitions = new String[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = termQueue.dequeue();
+                definitions[i] = termMap.value(terms[i]);
+                termQueue.enqueue(terms[i]);
+            }
+            SortedGlossary glossary = new SortedGlossary(terms, definitions,
+                    terms.length);
+            LinkGraph graph = LinkGraph.build(glossary,
+                    TermMatcher.of(glossary, SeparatorTable.fromSet(separator),
+                            TermMatcher.Boundary.SEPARATOR),
+                    ForkJoinPool.commonPool());
+            Backlinks referring = Backlinks.of(graph);
+            TermMatcher.Matches matches = new TermMatcher.Matches();
+            PageBuffer page = new PageBuffer();
+            PageOutput output = new PageOutput();
+            for (int i = 0; i < glossary.size(); i++) {
+                graph.matches(i, matches);
+                page.clear();
+                PageLayout.DEFAULT.renderPage(glossary.term(i),
+                        glossary.definition(i), matches,
+                        referring.terms(glossary, i), page);
+                writePage(output, folder + "/"
+                        + HtmlEscaper.fileName(glossary.term(i)), page);
+            }
+        } else {
+            outputWordPage(folder, termQueue, termMap, separator);
+        }
+    }
+
     /**
      * Main method.
      *
@@ -368,26 +380,294 @@ public final class Glossary {
         String file = in.nextLine();
         out.print("Please enter the folder you want to store the html files: ");
         String folder = in.nextLine();
-        SimpleReader input = new SimpleReader1L(file);
-        Queue<String> terms = new Queue1L<>();
-        Map<String, String> termDefinition = new Map1L<>();
         /*
-         * store the data into queue and map
+         * the workers: every core unless glossary.parallelism says otherwise
+         */
+        ForkJoinPool pool = new ForkJoinPool(Integer.getInteger(
+                "glossary.parallelism",
+                Runtime.getRuntime().availableProcessors()));
+        /*
+         * read and sort the glossary, straight from a memory-mapped file if
+         * glossary.mapped is set, in parallel chunks if
+         * glossary.parallelIngest is; glossary.offHeap keeps the definitions
+         * in a temporary spill file, or in direct buffers if it is "direct"
+         * (capped by -XX:MaxDirectMemorySize, by default the -Xmx size), and
+         * glossary.spill in the file it names, which must not exist yet, so
+         * only the terms need the heap; glossary.snapshot names a precompiled snapshot of the file,
+         * loaded instead when it is current and written after the text is
+         * read otherwise
+         */
+        String spill = System.getProperty("glossary.spill");
+        String offHeapMode = System.getProperty("glossary.offHeap", "false");
+        String snapshotFile = System.getProperty("glossary.snapshot");
+        GlossarySnapshot snapshot = null;
+        OffHeapGlossary offHeap = null;
+        MappedGlossary mapped = null;
+        GlossaryView glossary;
+        long ingestNanos;
+        long sortNanos;
+        long loadStart = System.nanoTime();
+        if (snapshotFile != null && Files.exists(Paths.get(snapshotFile))) {
+            try {
+                snapshot = GlossarySnapshot.read(Paths.get(snapshotFile),
+                        Paths.get(file), separatorStr);
+            } catch (IOException e) {
+                out.println("Snapshot not used: " + e.getMessage());
+            }
+        }
+        if (snapshot != null) {
+            glossary = snapshot.glossary();
+            out.println("Loaded " + glossary.size() + " terms from "
+                    + snapshotFile);
+            ingestNanos = System.nanoTime() - loadStart;
+            sortNanos = 0;
+        } else if (Boolean.getBoolean("glossary.mapped")) {
+            long start = System.nanoTime();
+            try {
+                mapped = MappedGlossary.open(Paths.get(file));
+                glossary = mapped;
+            } catch (IOException e) {
+                out.println("Failed: " + file + ": " + e);
+                glossary = new SortedGlossary(new String[0], new String[0], 0);
+            }
+            out.println("Mapped " + glossary.size() + " terms");
+            ingestNanos = System.nanoTime() - start;
+            sortNanos = 0;
+        } else if (offHeapMode.equals("true") || offHeapMode.equals("direct")
+                || spill != null) {
+            long start = System.nanoTime();
+            SimpleReader input = new SimpleReader1L(file);
+            try {
+                if (spill != null) {
+                    offHeap = OffHeapGlossary.read(input, Paths.get(spill));
+                } else if (offHeapMode.equals("direct")) {
+                    offHeap = OffHeapGlossary.read(input, null);
+                } else {
+                    offHeap = OffHeapGlossary.read(input);
+                }
+                glossary = offHeap;
+            } catch (IOException e) {
+                out.println("Failed: " + e);
+                glossary = new SortedGlossary(new String[0], new String[0], 0);
+            }
+            input.close();
+            out.println("Read " + glossary.size() + " terms, definitions off"
+                    + " the heap");
+            ingestNanos = System.nanoTime() - start;
+            sortNanos = 0;
+        } else {
+            GlossaryIngester ingester = new GlossaryIngester();
+            SortedGlossary sorted;
+            if (Boolean.getBoolean("glossary.parallelIngest")) {
+                try {
+                    sorted = ingester.ingest(Paths.get(file), pool);
+                } catch (IOException e) {
+                    out.println("Failed: " + file + ": " + e);
+                    sorted = new SortedGlossary(new String[0], new String[0],
+                            0);
+                }
+            } else {
+                SimpleReader input = new SimpleReader1L(file);
+                sorted = ingester.ingest(input);
+                input.close();
+            }
+            out.println("Read " + ingester.entries() + " terms ("
+                    + (long) ingester.entriesPerSecond() + " entries/s)");
+            for (String term : ingester.duplicates()) {
+                out.println("Duplicate term: " + term);
+            }
+            /*
+             * freeze into the compact dictionary; the sorted arrays and
+             * their strings can then be collected
+             */
+            long start = System.nanoTime();
+            glossary = TermDictionary.freeze(sorted);
+            sortNanos = ingester.sortNanos();
+            ingestNanos = ingester.elapsedNanos() - sortNanos
+                    + System.nanoTime() - start;
+        }
+        /*
+         * generate index page and glossaries pages, the pages on the
+         * workers; glossary.incremental only rewrites the pages that changed
+         * since the last run, and glossary.archive writes one archive instead
          */
-        readFileStoreInMap(input, terms, termDefinition);
+        TermMatcher matcher = TermMatcher.of(glossary,
+                SeparatorTable.fromSet(separatorSet),
+                TermMatcher.Boundary.SEPARATOR);
         /*
-         * generate index page
+         * glossary.templates names a directory of page templates replacing
+         * the default layout
          */
-        outputIndex(folder, terms);
+        PageLayout layout = PageLayout.DEFAULT;
+        String templates = System.getProperty("glossary.templates");
+        if (templates != null) {
+            try {
+                layout = PageLayout.load(Paths.get(templates));
+            } catch (IOException e) {
+                out.println("Failed: " + e.getMessage()
+                        + "; using the default layout");
+            }
+        }
+        /*
+         * glossary.indexPageSize splits a larger index into pages
+         */
+        PageRenderEngine engine = new PageRenderEngine(pool, layout,
+                Integer.getInteger("glossary.indexPageSize", 0));
+        /*
+         * the metrics can be watched over JMX while the pages are written,
+         * and glossary.metrics names a file for a JSON report of them
+         */
+        GlossaryMetrics metrics = engine.metrics();
+        metrics.addTime(GlossaryMetrics.Phase.INGEST, ingestNanos);
+        metrics.addTime(GlossaryMetrics.Phase.SORT, sortNanos);
+        metrics.addTerms(glossary.size());
+        try {
+            metrics.register(file);
+        } catch (JMException e) {
+            out.println("Failed: metrics MBean: " + e);
+        }
+        /*
+         * glossary.linkReport finds the links of every definition once, up
+         * front, writes a report on them, and renders the pages from them;
+         * glossary.backlinks also lists on each page the terms referring to
+         * it (folder builds, full or incremental); a snapshot brings its
+         * links along, and a new snapshot is written with them
+         */
+        LinkGraph graph = null;
+        Backlinks backlinks = null;
+        String linkReport = System.getProperty("glossary.linkReport");
+        if (linkReport != null || Boolean.getBoolean("glossary.backlinks")
+                || snapshotFile != null) {
+            long start = System.nanoTime();
+            if (snapshot != null) {
+                graph = snapshot.links(matcher);
+            } else {
+                graph = LinkGraph.build(glossary, matcher, pool);
+            }
+            if (snapshot == null && snapshotFile != null) {
+                try {
+                    GlossarySnapshot.write(Paths.get(snapshotFile),
+                            Paths.get(file), separatorStr, glossary, graph);
+                    out.println("Wrote snapshot " + snapshotFile);
+                } catch (IOException e) {
+                    out.println("Failed: " + snapshotFile + ": " + e);
+                }
+            }
+            if (Boolean.getBoolean("glossary.backlinks")) {
+                backlinks = Backlinks.of(graph);
+            }
+            metrics.addTime(GlossaryMetrics.Phase.LINK,
+                    System.nanoTime() - start);
+        }
+        if (linkReport != null) {
+            try {
+                Files.write(Paths.get(linkReport), graph
+                        .report(glossary, LINK_REPORT_TOP)
+                        .getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                out.println("Failed: " + linkReport + ": " + e);
+            }
+        }
+        String archive = System.getProperty("glossary.archive");
         /*
-         * generate glossaries pages
+         * glossary.search also writes the search index, on the same workers
+         * while they write the term pages
          */
-        outputWordPage(folder, terms, termDefinition, separatorSet);
+        ForkJoinTask<Integer> search = null;
+        if (archive == null && Boolean.getBoolean("glossary.search")) {
+            GlossaryView terms = glossary;
+            search = pool.submit(() -> SearchIndex.write(Paths.get(folder),
+                    terms, engine.output()));
+        }
+        if (archive != null) {
+            /*
+             * the whole site goes into one archive instead of the folder
+             */
+            try {
+                int entries = GlossaryArchive.write(Paths.get(archive),
+                        glossary, matcher, layout, pool);
+                out.println("Wrote " + entries + " pages to " + archive);
+            } catch (IOException e) {
+                out.println("Failed: " + archive + ": " + e);
+            }
+        } else if (Boolean.getBoolean("glossary.incremental")) {
+            /*
+             * only rewrite what changed since the last build
+             */
+            try {
+                IncrementalBuild.Result result;
+                if (graph != null) {
+                    result = IncrementalBuild.build(folder, glossary, graph,
+                            backlinks, engine);
+                } else {
+                    result = IncrementalBuild.build(folder, glossary,
+                            matcher, engine);
+                }
+                out.println("Rewrote " + result.pagesWritten()
+                        + " term pages, deleted " + result.pagesDeleted()
+                        + (result.indexWritten() ? ", rewrote index.html"
+                                : ""));
+                for (String failure : result.failures()) {
+                    out.println("Failed: " + failure);
+                }
+            } catch (IOException e) {
+                out.println("Failed: " + e);
+            }
+        } else {
+            try {
+                engine.writeIndex(folder, glossary);
+            } catch (IOException e) {
+                out.println("Failed: index.html: " + e);
+            }
+            PageRenderEngine.Report report;
+            if (graph != null) {
+                report = engine.renderAll(folder, glossary, graph,
+                        backlinks);
+            } else {
+                report = engine.renderAll(folder, glossary, matcher);
+            }
+            out.println("Wrote " + report.pagesWritten() + " term pages");
+            for (String failure : report.failures()) {
+                out.println("Failed: " + failure);
+            }
+        }
+        if (search != null) {
+            try {
+                out.println("Wrote " + search.get() + " search blocks");
+            } catch (InterruptedException | ExecutionException e) {
+                out.println("Failed: search index: " + e.getCause());
+            }
+        }
+        out.println("Wrote " + engine.output().filesWritten() + " files, "
+                + engine.output().bytesWritten() + " bytes, "
+                + engine.output().ioNanos() / NANOS_PER_MILLI + " ms in I/O");
+        String metricsFile = System.getProperty("glossary.metrics");
+        if (metricsFile != null) {
+            try {
+                Files.write(Paths.get(metricsFile), metrics.toJson()
+                        .getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                out.println("Failed: " + metricsFile + ": " + e);
+            }
+        }
+        if (offHeap != null) {
+            try {
+                offHeap.close();
+            } catch (IOException e) {
+                out.println("Failed: spill file: " + e);
+            }
+        }
+        if (mapped != null) {
+            try {
+                mapped.close();
+            } catch (IOException e) {
+                out.println("Failed: " + file + ": " + e);
+            }
+        }
         /*
          * Close input and output streams
          */
         in.close();
         out.close();
-        input.close();
     }
 }
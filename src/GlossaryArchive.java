@@ -0,0 +1,293 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a whole glossary site into one ZIP archive instead of one file per
+ * term. Entries are stored uncompressed, so a reader such as
+ * {@code ArchiveServer} can serve a page straight from the archive. Pages
+ * are rendered to bytes with a {@code PageLayout}, as
+ * {@code PageRenderEngine} does, so each entry is identical to the file the
+ * folder output would write. Pages are rendered on the workers of the
+ * caller's pool. A term that appears more than once gets one entry, with its
+ * first definition, as in the folder output; an entry name that is taken
+ * (such as index.html by a term "index") is skipped rather than failing the
+ * whole archive.
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryArchive {
+
+    /**
+     * Number of pages rendered in parallel before they are written in order.
+     */
+    private static final int BATCH = 1024;
+
+    /**
+     * Size of the output stream buffer.
+     */
+    private static final int BUFFER = 1 << 16;
+
+    /**
+     * Most pages rendered by one task without splitting.
+     */
+    private static final int LEAF_PAGES = 16;
+
+    /**
+     * Renders the pages of a range of terms into an array.
+     */
+    private static final class RenderBatch extends RecursiveAction {
+
+        /**
+         * Serial version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The glossary.
+         */
+        private final transient GlossaryView glossary;
+
+        /**
+         * The term matcher.
+         */
+        private final transient TermMatcher matcher;
+
+        /**
+         * Layout of the pages.
+         */
+        private final transient PageLayout layout;
+
+        /**
+         * The rendered pages; page i goes to pages[i - first].
+         */
+        private final byte[][] pages;
+
+        /**
+         * Position of the term of pages[0].
+         */
+        private final int first;
+
+        /**
+         * Start of the range of terms.
+         */
+        private final int from;
+
+        /**
+         * End (exclusive) of the range.
+         */
+        private final int to;
+
+        /**
+         * Creates a task for the terms at positions {@code [from, to)}.
+         *
+         * @param glossary
+         *            the glossary
+         * @param matcher
+         *            the term matcher
+         * @param layout
+         *            layout of the pages
+         * @param pages
+         *            the rendered pages
+         * @param first
+         *            position of the term of pages[0]
+         * @param from
+         *            start of the range
+         * @param to
+         *            end of the range
+         */
+        RenderBatch(GlossaryView glossary, TermMatcher matcher,
+                PageLayout layout, byte[][] pages, int first, int from,
+                int to) {
+            this.glossary = glossary;
+            this.matcher = matcher;
+            this.layout = layout;
+            this.pages = pages;
+            this.first = first;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > LEAF_PAGES) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new RenderBatch(this.glossary, this.matcher,
+                                this.layout, this.pages, this.first,
+                                this.from, middle),
+                        new RenderBatch(this.glossary, this.matcher,
+                                this.layout, this.pages, this.first, middle,
+                                this.to));
+            } else {
+                for (int i = this.from; i < this.to; i++) {
+                    this.pages[i - this.first] = render(this.glossary,
+                            this.matcher, this.layout, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private GlossaryArchive() {
+    }
+
+    /**
+     * Writes index.html and the page of every term of the glossary into a
+     * ZIP archive, in term order.
+     *
+     * @param archive
+     *            the archive file
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param pool
+     *            the workers rendering the pages
+     * @return the number of entries written
+     * @throws IOException
+     *             if the archive cannot be written
+     * @ensures archive holds index.html and <term>.html for every term
+     */
+    public static int write(Path archive, GlossaryView glossary,
+            TermMatcher matcher, ForkJoinPool pool) throws IOException {
+        return write(archive, glossary, matcher, PageLayout.DEFAULT, pool);
+    }
+
+    /**
+     * Writes index.html and the page of every term of the glossary, rendered
+     * with {@code layout}, into a ZIP archive, in term order.
+     *
+     * @param archive
+     *            the archive file
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param layout
+     *            the page layout
+     * @param pool
+     *            the workers rendering the pages
+     * @return the number of entries written
+     * @throws IOException
+     *             if the archive cannot be written
+     * @ensures archive holds index.html and <term>.html for every term whose
+     *          entry name is not taken by an earlier entry
+     */
+    public static int write(Path archive, GlossaryView glossary,
+            TermMatcher matcher, PageLayout layout, ForkJoinPool pool)
+            throws IOException {
+        assert archive != null : "Violation of: archive is not null";
+        assert glossary != null : "Violation of: glossary is not null";
+        assert matcher != null : "Violation of: matcher is not null";
+        assert layout != null : "Violation of: layout is not null";
+        assert pool != null : "Violation of: pool is not null";
+
+        int entries = 0;
+        Set<String> names = new HashSet<>();
+        try (ZipOutputStream zip = new ZipOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(archive),
+                        BUFFER))) {
+            zip.setMethod(ZipOutputStream.STORED);
+            PageBuffer index = new PageBuffer();
+            layout.renderIndex(glossary, index);
+            put(zip, names, "index.html", index.toByteArray());
+            entries++;
+            /*
+             * render a batch of pages on the workers, then store them in
+             * order so the archive is the same on every run
+             */
+            for (int from = 0; from < glossary.size(); from += BATCH) {
+                int to = Math.min(glossary.size(), from + BATCH);
+                byte[][] pages = new byte[to - from][];
+                RenderBatch task = new RenderBatch(glossary, matcher, layout,
+                        pages, from, from, to);
+                if (ForkJoinTask.getPool() == pool) {
+                    task.invoke();
+                } else {
+                    pool.invoke(task);
+                }
+                for (int i = from; i < to; i++) {
+                    if (put(zip, names,
+                            HtmlEscaper.fileName(glossary.term(i)),
+                            pages[i - from])) {
+                        entries++;
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Renders the page of one term.
+     *
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the term matcher
+     * @param layout
+     *            the page layout
+     * @param i
+     *            position of the term
+     * @return the page
+     */
+    private static byte[] render(GlossaryView glossary, TermMatcher matcher,
+            PageLayout layout, int i) {
+        PageBuffer page = new PageBuffer();
+        layout.renderPage(glossary.term(i), glossary.definition(i), matcher,
+                new TermMatcher.Matches(), page);
+        return page.toByteArray();
+    }
+
+    /**
+     * Stores one page as an uncompressed entry, unless an entry of that name
+     * is already stored.
+     *
+     * @param zip
+     *            the archive
+     * @param names
+     *            names of the entries stored so far
+     * @param name
+     *            the entry name
+     * @param bytes
+     *            the page
+     * @return true iff the entry was stored
+     * @throws IOException
+     *             if the entry cannot be written
+     * @updates names
+     */
+    private static boolean put(ZipOutputStream zip, Set<String> names,
+            String name, byte[] bytes) throws IOException {
+        boolean fresh = names.add(name);
+        if (fresh) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+            /*
+             * a fixed time keeps the archive byte-for-byte reproducible
+             */
+            entry.setTime(0);
+            zip.putNextEntry(entry);
+            zip.write(bytes);
+            zip.closeEntry();
+        }
+        return fresh;
+    }
+
+}
@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Non-interactive batch build of many glossaries in one JVM. The glossaries
+ * come from a manifest of input/output pairs or from every file of a
+ * directory; they are built concurrently on one shared worker pool with one
+ * shared compiled separator table, and a timing summary is printed per
+ * glossary.
+ *
+ * <p>
+ * Usage: {@code GlossaryBatch <manifest>}, where each line of the manifest is
+ * an input file and an output folder separated by a tab (blank lines and
+ * lines starting with # are skipped), or
+ * {@code GlossaryBatch <input directory> <output directory>}, which builds
+ * each file of the input directory into a folder of the same name in the
+ * output directory. {@code glossary.parallelism} sets the number of worker
+ * threads.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryBatch {
+
+    /**
+     * Separators used for every glossary, as in {@code Glossary.main}.
+     */
+    private static final String SEPARATORS = " \t, ";
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * One glossary to build and, once built, how it went.
+     */
+    public static final class Job {
+
+        /**
+         * The glossary file.
+         */
+        private final Path input;
+
+        /**
+         * The output folder.
+         */
+        private final Path output;
+
+        /**
+         * Number of terms read.
+         */
+        private int terms;
+
+        /**
+         * Number of pages written, index included.
+         */
+        private int pages;
+
+        /**
+         * Build time in nanoseconds.
+         */
+        private long nanos;
+
+        /**
+         * Failures, empty if the build went well.
+         */
+        private final List<String> failures = new ArrayList<>();
+
+        /**
+         * Creates a job.
+         *
+         * @param input
+         *            the glossary file
+         * @param output
+         *            the output folder
+         */
+        public Job(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        /**
+         * Reports the number of pages written, index included.
+         *
+         * @return the number of pages
+         */
+        public int pages() {
+            return this.pages;
+        }
+
+        /**
+         * Returns the failures of the build.
+         *
+         * @return the failures, empty if the build went well
+         */
+        public List<String> failures() {
+            return this.failures;
+        }
+
+        /**
+         * Returns the summary line of the build.
+         *
+         * @return the summary
+         */
+        public String summary() {
+            String line = String.format("%10.1f ms %8d terms %8d pages  %s",
+                    this.nanos / NANOS_PER_MILLI, this.terms, this.pages,
+                    this.input);
+            if (!this.failures.isEmpty()) {
+                line += "  (" + this.failures.size() + " failed)";
+            }
+            return line;
+        }
+    }
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private GlossaryBatch() {
+    }
+
+    /**
+     * Reads a manifest of input/output pairs.
+     *
+     * @param manifest
+     *            the manifest file
+     * @return the jobs, in manifest order
+     * @throws IOException
+     *             if the manifest cannot be read
+     */
+    public static List<Job> readManifest(Path manifest) throws IOException {
+        assert manifest != null : "Violation of: manifest is not null";
+
+        List<Job> jobs = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest,
+                StandardCharsets.UTF_8)) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                String[] fields = line.split("\t");
+                if (fields.length != 2) {
+                    throw new IOException(
+                            manifest + ": expected input<TAB>output: " + line);
+                }
+                jobs.add(new Job(Paths.get(fields[0]), Paths.get(fields[1])));
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Lists a job for every file of a directory.
+     *
+     * @param inputs
+     *            the directory of glossary files
+     * @param outputs
+     *            the directory to build into
+     * @return the jobs, in file name order
+     * @throws IOException
+     *             if the directory cannot be listed
+     */
+    public static List<Job> jobsInDirectory(Path inputs, Path outputs)
+            throws IOException {
+        assert inputs != null : "Violation of: inputs is not null";
+        assert outputs != null : "Violation of: outputs is not null";
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(inputs)) {
+            for (Path file : dir) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        List<Job> jobs = new ArrayList<>();
+        for (Path file : files) {
+            jobs.add(new Job(file, outputs.resolve(file.getFileName())));
+        }
+        return jobs;
+    }
+
+    /**
+     * Builds every job concurrently on {@code pool}.
+     *
+     * @param jobs
+     *            the jobs
+     * @param pool
+     *            the shared worker pool
+     * @ensures every job is built or has its failures recorded
+     */
+    public static void buildAll(List<Job> jobs, ForkJoinPool pool) {
+        assert jobs != null : "Violation of: jobs is not null";
+        assert pool != null : "Violation of: pool is not null";
+
+        SeparatorTable separators = SeparatorTable.fromString(SEPARATORS);
+        PageRenderEngine engine = new PageRenderEngine(pool);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Job job : jobs) {
+            tasks.add(pool.submit(() -> build(job, separators, engine)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Builds one glossary.
+     *
+     * @param job
+     *            the job
+     * @param separators
+     *            the shared separator table
+     * @param engine
+     *            the shared page engine
+     */
+    private static void build(Job job, SeparatorTable separators,
+            PageRenderEngine engine) {
+        long start = System.nanoTime();
+        try {
+            if (!Files.isReadable(job.input)) {
+                throw new IOException("cannot read " + job.input);
+            }
+            Files.createDirectories(job.output);
+            SimpleReader in = new SimpleReader1L(job.input.toString());
+            TermDictionary glossary = TermDictionary
+                    .freeze(new GlossaryIngester().ingest(in));
+            in.close();
+            job.terms = glossary.size();
+            TermMatcher matcher = TermMatcher.of(glossary, separators,
+                    TermMatcher.Boundary.SEPARATOR);
+            engine.writeIndex(job.output.toString(), glossary);
+            PageRenderEngine.Report report = engine
+                    .renderAll(job.output.toString(), glossary, matcher);
+            job.pages = report.pagesWritten() + 1;
+            job.failures.addAll(report.failures());
+        } catch (IOException | RuntimeException e) {
+            job.failures.add(job.input + ": " + e);
+        }
+        job.nanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            a manifest, or an input directory and an output directory
+     * @throws IOException
+     *             if the manifest or the input directory cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        List<Job> jobs;
+        if (args.length == 1) {
+            jobs = readManifest(Paths.get(args[0]));
+        } else if (args.length == 2) {
+            jobs = jobsInDirectory(Paths.get(args[0]), Paths.get(args[1]));
+        } else {
+            System.err.println("usage: GlossaryBatch <manifest>");
+            System.err.println("       GlossaryBatch <input dir> <output dir>");
+            jobs = new ArrayList<>();
+        }
+        if (!jobs.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool(Integer.getInteger(
+                    "glossary.parallelism",
+                    Runtime.getRuntime().availableProcessors()));
+            long start = System.nanoTime();
+            buildAll(jobs, pool);
+            long nanos = System.nanoTime() - start;
+            pool.shutdown();
+            int failed = 0;
+            for (Job job : jobs) {
+                System.out.println(job.summary());
+                for (String failure : job.failures()) {
+                    System.out.println("    Failed: " + failure);
+                }
+                if (!job.failures().isEmpty()) {
+                    failed++;
+                }
+            }
+            System.out.println(String.format(
+                    "%d glossaries in %.1f ms, %d with failures", jobs.size(),
+                    nanos / NANOS_PER_MILLI, failed));
+        }
+    }
+
+}
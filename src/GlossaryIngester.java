@@ -0,0 +1,553 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+import components.simplereader.SimpleReader;
+
+/**
+ * Streaming reader for glossary files. Term/definition blocks are parsed in
+ * one pass into growable arrays and sorted a single time at the end, instead
+ * of re-sorting the whole term queue after each entry.
+ *
+ * <p>
+ * A large file can also be read in parallel: it is cut into chunks, each
+ * split point moved forward to just after a blank line, and the chunks are
+ * decoded, parsed and sorted on their own workers, then k-way merged by
+ * {@code StringLT}. A blank line only ends a block when it follows the
+ * definition's first line, so every chunk boundary is checked in file order
+ * against the state the previous chunk ended in, and a chunk that started in
+ * the middle of a block is parsed again from the right state. Ties in the
+ * merge go to the earlier chunk, so the result is the one the sequential
+ * reader gives.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryIngester {
+
+    /**
+     * Initial capacity of the entry arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Smallest chunk of a parallel read, in bytes.
+     */
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Chunks per worker of a parallel read, to even out their sizes.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Order used for the terms.
+     */
+    private static final Comparator<String> ORDER = new Glossary.StringLT();
+
+    /**
+     * Parser state: the next line is a term.
+     */
+    private static final int TERM = 0;
+
+    /**
+     * Parser state: the next line is the first line of a definition.
+     */
+    private static final int FIRST_LINE = 1;
+
+    /**
+     * Parser state: the next line continues a definition; a blank one ends
+     * it.
+     */
+    private static final int MORE_LINES = 2;
+
+    /**
+     * Number of entries read by the last call to {@code ingest}.
+     */
+    private int entries;
+
+    /**
+     * Time spent by the last call to {@code ingest}, in nanoseconds.
+     */
+    private long elapsedNanos;
+
+    /**
+     * Part of {@code elapsedNanos} spent sorting.
+     */
+    private long sortNanos;
+
+    /**
+     * Terms found more than once by the last call to {@code ingest}.
+     */
+    private List<String> duplicates;
+
+    /**
+     * Creates an ingester with no statistics yet.
+     */
+    public GlossaryIngester() {
+        this.entries = 0;
+        this.elapsedNanos = 0;
+        this.sortNanos = 0;
+        this.duplicates = Collections.emptyList();
+    }
+
+    /**
+     * The blocks of one chunk of a file, sorted.
+     */
+    private static final class Chunk {
+
+        /**
+         * Terms of the complete blocks, sorted once parsed.
+         */
+        private String[] terms = new String[INITIAL_CAPACITY];
+
+        /**
+         * Definitions of the complete blocks.
+         */
+        private String[] definitions = new String[INITIAL_CAPACITY];
+
+        /**
+         * Number of complete blocks.
+         */
+        private int size;
+
+        /**
+         * Parser state at the end of the chunk.
+         */
+        private int state;
+
+        /**
+         * Term of the block left open at the end of the chunk.
+         */
+        private String term;
+
+        /**
+         * Definition read so far of the block left open.
+         */
+        private final StringBuilder definition = new StringBuilder();
+
+        /**
+         * Parses {@code text} from parser state {@code state}, inside the
+         * block {@code term} whose definition so far is {@code definition}
+         * when the state is not TERM, and sorts the complete blocks.
+         *
+         * @param text
+         *            the chunk
+         * @param last
+         *            whether the chunk ends the file, closing an open block
+         * @param state
+         *            parser state at the start of the chunk
+         * @param term
+         *            term of the open block, or null
+         * @param definition
+         *            definition so far of the open block
+         */
+        Chunk(String text, boolean last, int state, String term,
+                CharSequence definition) {
+            this.state = state;
+            this.term = term;
+            this.definition.append(definition);
+            int start = 0;
+            while (start < text.length()) {
+                int end = text.indexOf('\n', start);
+                int next;
+                if (end < 0) {
+                    end = text.length();
+                    next = end;
+                } else {
+                    next = end + 1;
+                }
+                if (end > start && text.charAt(end - 1) == '\r') {
+                    end--;
+                }
+                this.line(text, start, end);
+                start = next;
+            }
+            if (last && this.state != TERM) {
+                /*
+                 * the file ended inside a block
+                 */
+                this.add();
+                this.state = TERM;
+            }
+            SortedGlossary sorted = new SortedGlossary(this.terms,
+                    this.definitions, this.size);
+            for (int i = 0; i < this.size; i++) {
+                this.terms[i] = sorted.term(i);
+                this.definitions[i] = sorted.definition(i);
+            }
+        }
+
+        /**
+         * Feeds the line {@code text[start, end)} to the block parser.
+         *
+         * @param text
+         *            the chunk
+         * @param start
+         *            start of the line
+         * @param end
+         *            end of the line, without its line break
+         */
+        private void line(String text, int start, int end) {
+            if (this.state == TERM) {
+                this.term = text.substring(start, end);
+                this.definition.setLength(0);
+                this.state = FIRST_LINE;
+            } else {
+                this.definition.append(text, start, end);
+                if (this.state == MORE_LINES && end == start) {
+                    /*
+                     * a blank line ends the block
+                     */
+                    this.add();
+                    this.state = TERM;
+                } else {
+                    this.state = MORE_LINES;
+                }
+            }
+        }
+
+        /**
+         * Adds the open block to the complete ones.
+         */
+        private void add() {
+            if (this.size == this.terms.length) {
+                this.terms = Arrays.copyOf(this.terms, 2 * this.size);
+                this.definitions = Arrays.copyOf(this.definitions,
+                        2 * this.size);
+            }
+            this.terms[this.size] = this.term;
+            this.definitions[this.size] = this.definition.toString();
+            this.size++;
+        }
+    }
+
+    /**
+     * Reads every term/definition block from {@code input}. A block is a term
+     * line followed by one or more definition lines and ends at a blank line
+     * or at the end of the input; definition lines are joined as they are.
+     *
+     * @param input
+     *            the reader to read from
+     * @return the sorted glossary
+     * @requires input is open
+     * @ensures ingest contains every block of input sorted by StringLT
+     */
+    public SortedGlossary ingest(SimpleReader input) {
+        assert input != null : "Violation of: input is not null";
+
+        long start = System.nanoTime();
+        String[] terms = new String[INITIAL_CAPACITY];
+        String[] definitions = new String[INITIAL_CAPACITY];
+        int n = 0;
+        StringBuilder sb = new StringBuilder();
+        while (!input.atEOS()) {
+            String word = readBlock(input, sb);
+            if (n == terms.length) {
+                terms = Arrays.copyOf(terms, 2 * n);
+                definitions = Arrays.copyOf(definitions, 2 * n);
+            }
+            terms[n] = word;
+            definitions[n] = sb.toString();
+            n++;
+        }
+        long sortStart = System.nanoTime();
+        SortedGlossary result = new SortedGlossary(terms, definitions, n);
+        long end = System.nanoTime();
+        this.entries = n;
+        this.elapsedNanos = end - start;
+        this.sortNanos = end - sortStart;
+        this.duplicates = new ArrayList<>();
+        for (int i = 1; i < n; i++) {
+            if (result.term(i).equals(result.term(i - 1)) && (i == 1
+                    || !result.term(i).equals(result.term(i - 2)))) {
+                this.duplicates.add(result.term(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the next term/definition block from {@code input}: a term line
+     * followed by one or more definition lines, ending at a blank line or at
+     * the end of the input. Definition lines are joined as they are.
+     *
+     * @param input
+     *            the reader to read from
+     * @param definition
+     *            the definition of the block
+     * @return the term of the block
+     * @replaces definition
+     * @requires input is open and not at the end of the stream
+     */
+    static String readBlock(SimpleReader input, StringBuilder definition) {
+        assert input != null : "Violation of: input is not null";
+        assert definition != null : "Violation of: definition is not null";
+
+        String word = input.nextLine();
+        /*
+         * the definition starts on the line after the word and continues
+         * until an empty line or the end of the file
+         */
+        definition.setLength(0);
+        definition.append(input.nextLine());
+        String line = "something";
+        while (line.length() != 0 && !input.atEOS()) {
+            line = input.nextLine();
+            definition.append(line);
+        }
+        return word;
+    }
+
+    /**
+     * Reads every term/definition block of a UTF-8 file in parallel on
+     * {@code pool}, with the same result as {@code ingest(SimpleReader)}.
+     *
+     * @param file
+     *            the glossary file
+     * @param pool
+     *            the worker pool
+     * @return the sorted glossary
+     * @throws IOException
+     *             if the file cannot be read
+     * @requires file is UTF-8
+     * @ensures ingest contains every block of file sorted by StringLT
+     */
+    public SortedGlossary ingest(Path file, ForkJoinPool pool)
+            throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert pool != null : "Violation of: pool is not null";
+
+        long size = Files.size(file);
+        int chunks = (int) Math.max(1, Math.min(
+                (long) CHUNKS_PER_WORKER * pool.getParallelism(),
+                size / MIN_CHUNK_BYTES));
+        return this.ingest(file, pool, chunks);
+    }
+
+    /**
+     * Reads every term/definition block of a UTF-8 file in parallel on
+     * {@code pool}, cut into about {@code chunks} chunks.
+     *
+     * @param file
+     *            the glossary file
+     * @param pool
+     *            the worker pool
+     * @param chunks
+     *            the number of chunks to aim for
+     * @return the sorted glossary
+     * @throws IOException
+     *             if the file cannot be read
+     * @requires file is UTF-8 and chunks > 0
+     */
+    SortedGlossary ingest(Path file, ForkJoinPool pool, int chunks)
+            throws IOException {
+        long start = System.nanoTime();
+        byte[] bytes = Files.readAllBytes(file);
+        int[] splits = splits(bytes, chunks);
+        int count = splits.length - 1;
+        Chunk[] parsed = new Chunk[count];
+        Runnable parse = () -> IntStream.range(0, count).parallel()
+                .forEach(k -> parsed[k] = new Chunk(
+                        new String(bytes, splits[k], splits[k + 1] - splits[k],
+                                StandardCharsets.UTF_8),
+                        k == count - 1, TERM, null, ""));
+        if (ForkJoinTask.getPool() == pool) {
+            parse.run();
+        } else {
+            pool.submit(parse).join();
+        }
+        /*
+         * a chunk is right if the chunk before it ended between blocks;
+         * otherwise parse it again, carrying on the block left open
+         */
+        for (int k = 1; k < count; k++) {
+            Chunk before = parsed[k - 1];
+            if (before.state != TERM) {
+                parsed[k] = new Chunk(
+                        new String(bytes, splits[k], splits[k + 1] - splits[k],
+                                StandardCharsets.UTF_8),
+                        k == count - 1, before.state, before.term,
+                        before.definition);
+            }
+        }
+        long sortStart = System.nanoTime();
+        SortedGlossary result = this.merge(parsed);
+        long end = System.nanoTime();
+        this.entries = result.size();
+        this.elapsedNanos = end - start;
+        this.sortNanos = end - sortStart;
+        return result;
+    }
+
+    /**
+     * Cuts a file into about {@code chunks} ranges, each split point moved
+     * forward to just after the next blank line that follows a line with
+     * text.
+     *
+     * @param bytes
+     *            the file
+     * @param chunks
+     *            the number of chunks to aim for
+     * @return the split points, starting with 0 and ending with the length
+     */
+    private static int[] splits(byte[] bytes, int chunks) {
+        int[] splits = new int[chunks + 1];
+        int count = 1;
+        long step = Math.max(1, (long) bytes.length / chunks);
+        for (int k = 1; k < chunks; k++) {
+            int at = Math.max(splits[count - 1], (int) (k * step));
+            int split = blankLineEnd(bytes, at);
+            if (split > splits[count - 1] && split < bytes.length) {
+                splits[count] = split;
+                count++;
+            }
+        }
+        splits[count] = bytes.length;
+        return Arrays.copyOf(splits, count + 1);
+    }
+
+    /**
+     * Finds the end of the first blank line at or after {@code from} that
+     * follows a line with text.
+     *
+     * @param bytes
+     *            the file
+     * @param from
+     *            where to start looking
+     * @return the offset after the blank line's line break, or the length
+     *         of the file if there is none
+     */
+    private static int blankLineEnd(byte[] bytes, int from) {
+        int result = bytes.length;
+        boolean text = false;
+        int lineStart = from;
+        for (int i = from; i < bytes.length && result == bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                boolean blank = i == lineStart
+                        || (i == lineStart + 1 && bytes[lineStart] == '\r');
+                if (blank && text) {
+                    result = i + 1;
+                }
+                text = !blank;
+                lineStart = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * K-way merges the sorted chunks, ties going to the earlier chunk, and
+     * records the terms found more than once.
+     *
+     * @param chunks
+     *            the chunks, in file order
+     * @return the glossary
+     */
+    private SortedGlossary merge(Chunk[] chunks) {
+        int n = 0;
+        for (Chunk c : chunks) {
+            n += c.size;
+        }
+        String[] terms = new String[n];
+        String[] definitions = new String[n];
+        int[] cursor = new int[chunks.length];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(
+                Math.max(1, chunks.length),
+                (a, b) -> {
+                    int order = ORDER.compare(chunks[a].terms[cursor[a]],
+                            chunks[b].terms[cursor[b]]);
+                    if (order == 0) {
+                        order = Integer.compare(a, b);
+                    }
+                    return order;
+                });
+        for (int k = 0; k < chunks.length; k++) {
+            if (chunks[k].size > 0) {
+                heads.add(k);
+            }
+        }
+        this.duplicates = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int k = heads.poll();
+            terms[i] = chunks[k].terms[cursor[k]];
+            definitions[i] = chunks[k].definitions[cursor[k]];
+            cursor[k]++;
+            if (cursor[k] < chunks[k].size) {
+                heads.add(k);
+            }
+            if (i > 0 && terms[i].equals(terms[i - 1])
+                    && (i == 1 || !terms[i].equals(terms[i - 2]))) {
+                this.duplicates.add(terms[i]);
+            }
+        }
+        return SortedGlossary.ofSorted(terms, definitions);
+    }
+
+    /**
+     * Reports the number of entries read by the last {@code ingest}.
+     *
+     * @return the number of entries
+     */
+    public int entries() {
+        return this.entries;
+    }
+
+    /**
+     * Reports the time taken by the last {@code ingest}, in nanoseconds.
+     *
+     * @return the elapsed time
+     */
+    public long elapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Reports the part of the time taken by the last {@code ingest} spent
+     * sorting, in nanoseconds.
+     *
+     * @return the sort time
+     */
+    public long sortNanos() {
+        return this.sortNanos;
+    }
+
+    /**
+     * Reports the terms found more than once by the last {@code ingest}; all
+     * their blocks are kept, in file order.
+     *
+     * @return the duplicated terms, in StringLT order
+     */
+    public List<String> duplicates() {
+        return Collections.unmodifiableList(this.duplicates);
+    }
+
+    /**
+     * Reports the throughput of the last {@code ingest}.
+     *
+     * @return entries handled per second, 0 if nothing was timed
+     */
+    public double entriesPerSecond() {
+        double rate = 0;
+        if (this.elapsedNanos > 0) {
+            rate = this.entries * NANOS_PER_SECOND / this.elapsedNanos;
+        }
+        return rate;
+    }
+
+}
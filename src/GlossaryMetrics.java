@@ -0,0 +1,344 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Timers, counters and a render latency histogram of a glossary build. Every
+ * recording method is thread-safe and cheap (an adder or an array slot), so
+ * the render workers record each page as they go. The metrics can be
+ * registered as an MBean and dumped as a JSON report.
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryMetrics implements GlossaryMetricsMBean {
+
+    /**
+     * Phases of a build.
+     */
+    public enum Phase {
+        /**
+         * Reading the glossary file.
+         */
+        INGEST,
+        /**
+         * Sorting the terms.
+         */
+        SORT,
+        /**
+         * Finding the terms in the definitions.
+         */
+        LINK,
+        /**
+         * Rendering the pages.
+         */
+        RENDER,
+        /**
+         * Writing the pages.
+         */
+        WRITE
+    }
+
+    /**
+     * Number of histogram buckets; bucket b counts times in [2^b, 2^(b+1)) ns.
+     */
+    private static final int BUCKETS = Long.SIZE;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Nanoseconds per microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * Median.
+     */
+    private static final double P50 = 0.50;
+
+    /**
+     * 99th percentile.
+     */
+    private static final double P99 = 0.99;
+
+    /**
+     * Time per phase.
+     */
+    private final LongAdder[] phaseNanos;
+
+    /**
+     * Terms read.
+     */
+    private final LongAdder terms = new LongAdder();
+
+    /**
+     * Definition characters scanned.
+     */
+    private final LongAdder definitionChars = new LongAdder();
+
+    /**
+     * Links made.
+     */
+    private final LongAdder links = new LongAdder();
+
+    /**
+     * Term pages rendered.
+     */
+    private final LongAdder pages = new LongAdder();
+
+    /**
+     * Render times of term pages, by power of two.
+     */
+    private final AtomicLongArray renderHistogram = new AtomicLongArray(
+            BUCKETS);
+
+    /**
+     * Writer whose byte count is reported.
+     */
+    private final PageOutput output;
+
+    /**
+     * Bytes already written by {@code output} at the last reset.
+     */
+    private final AtomicLong bytesAtReset = new AtomicLong();
+
+    /**
+     * Creates empty metrics reporting the bytes written by {@code output}.
+     *
+     * @param output
+     *            the page writer
+     */
+    public GlossaryMetrics(PageOutput output) {
+        assert output != null : "Violation of: output is not null";
+
+        this.output = output;
+        this.phaseNanos = new LongAdder[Phase.values().length];
+        for (int i = 0; i < this.phaseNanos.length; i++) {
+            this.phaseNanos[i] = new LongAdder();
+        }
+        this.bytesAtReset.set(output.bytesWritten());
+    }
+
+    /**
+     * Adds time to a phase.
+     *
+     * @param phase
+     *            the phase
+     * @param nanos
+     *            the time in ns
+     */
+    public void addTime(Phase phase, long nanos) {
+        this.phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Reports the time spent in a phase, summed over all threads.
+     *
+     * @param phase
+     *            the phase
+     * @return the time in ns
+     */
+    public long nanos(Phase phase) {
+        return this.phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Adds read terms.
+     *
+     * @param n
+     *            the number of terms
+     */
+    public void addTerms(long n) {
+        this.terms.add(n);
+    }
+
+    /**
+     * Records one rendered term page.
+     *
+     * @param chars
+     *            length of its definition
+     * @param linksMade
+     *            number of links in it
+     * @param renderNanos
+     *            time taken to render it
+     */
+    public void addPage(int chars, int linksMade, long renderNanos) {
+        this.definitionChars.add(chars);
+        this.links.add(linksMade);
+        this.pages.increment();
+        this.renderHistogram.incrementAndGet(
+                BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(1,
+                        renderNanos)));
+    }
+
+    /**
+     * Returns an upper bound of the render time below which a fraction
+     * {@code q} of the pages were rendered.
+     *
+     * @param q
+     *            the fraction
+     * @return the time in ns, a power of two; 0 if no page was rendered
+     * @requires 0 < q <= 1
+     */
+    public long renderPercentileNanos(double q) {
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += this.renderHistogram.get(b);
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        long result = 0;
+        for (int b = 0; b < BUCKETS && total > 0 && result == 0; b++) {
+            seen += this.renderHistogram.get(b);
+            if (seen >= rank) {
+                result = b + 1 < BUCKETS ? 1L << (b + 1) : Long.MAX_VALUE;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public double getIngestMillis() {
+        return this.nanos(Phase.INGEST) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSortMillis() {
+        return this.nanos(Phase.SORT) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLinkMillis() {
+        return this.nanos(Phase.LINK) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRenderMillis() {
+        return this.nanos(Phase.RENDER) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getWriteMillis() {
+        return this.nanos(Phase.WRITE) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getTerms() {
+        return this.terms.sum();
+    }
+
+    @Override
+    public long getDefinitionChars() {
+        return this.definitionChars.sum();
+    }
+
+    @Override
+    public long getLinksResolved() {
+        return this.links.sum();
+    }
+
+    @Override
+    public long getPagesRendered() {
+        return this.pages.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return this.output.bytesWritten() - this.bytesAtReset.get();
+    }
+
+    @Override
+    public double getRenderP50Micros() {
+        return this.renderPercentileNanos(P50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getRenderP99Micros() {
+        return this.renderPercentileNanos(P99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder a : this.phaseNanos) {
+            a.reset();
+        }
+        this.terms.reset();
+        this.definitionChars.reset();
+        this.links.reset();
+        this.pages.reset();
+        for (int b = 0; b < BUCKETS; b++) {
+            this.renderHistogram.set(b, 0);
+        }
+        this.bytesAtReset.set(this.output.bytesWritten());
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * {@code glossary:type=Metrics,name=<name>}.
+     *
+     * @param name
+     *            the name of the build
+     * @return the object name registered
+     * @throws JMException
+     *             if the name is taken or not valid
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(
+                "glossary:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                objectName);
+        return objectName;
+    }
+
+    /**
+     * Returns the metrics as a JSON object.
+     *
+     * @return the JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"phasesMillis\": {");
+        for (Phase p : Phase.values()) {
+            json.append(p.ordinal() == 0 ? "\n" : ",\n")
+                    .append(String.format(Locale.ROOT, "    \"%s\": %.3f",
+                            p.name().toLowerCase(Locale.ROOT),
+                            this.nanos(p) / NANOS_PER_MILLI));
+        }
+        json.append("\n  },\n");
+        json.append("  \"terms\": ").append(this.getTerms()).append(",\n");
+        json.append("  \"definitionChars\": ")
+                .append(this.getDefinitionChars()).append(",\n");
+        json.append("  \"linksResolved\": ").append(this.getLinksResolved())
+                .append(",\n");
+        json.append("  \"pagesRendered\": ").append(this.getPagesRendered())
+                .append(",\n");
+        json.append("  \"bytesWritten\": ").append(this.getBytesWritten())
+                .append(",\n");
+        json.append("  \"renderNanosHistogram\": {");
+        boolean first = true;
+        for (int b = 0; b < BUCKETS; b++) {
+            long count = this.renderHistogram.get(b);
+            if (count > 0) {
+                json.append(first ? "\n" : ",\n").append("    \"<")
+                        .append(b + 1 < BUCKETS ? 1L << (b + 1)
+                                : Long.MAX_VALUE)
+                        .append("\": ").append(count);
+                first = false;
+            }
+        }
+        json.append("\n  },\n");
+        json.append(String.format(Locale.ROOT, "  \"renderP50Micros\": %.3f,\n",
+                this.getRenderP50Micros()));
+        json.append(String.format(Locale.ROOT, "  \"renderP99Micros\": %.3f\n",
+                this.getRenderP99Micros()));
+        json.append("}\n");
+        return json.toString();
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Management interface of {@code GlossaryMetrics}, as seen over JMX. Times
+ * are in milliseconds, render latencies in microseconds.
+ *
+ * @author Zheyuan Gao
+ */
+public interface GlossaryMetricsMBean {
+
+    /**
+     * Reports the time spent reading the glossary.
+     *
+     * @return the time in ms
+     */
+    double getIngestMillis();
+
+    /**
+     * Reports the time spent sorting the terms.
+     *
+     * @return the time in ms
+     */
+    double getSortMillis();
+
+    /**
+     * Reports the time spent finding the terms in the definitions, summed
+     * over all threads.
+     *
+     * @return the time in ms
+     */
+    double getLinkMillis();
+
+    /**
+     * Reports the time spent rendering pages, summed over all threads.
+     *
+     * @return the time in ms
+     */
+    double getRenderMillis();
+
+    /**
+     * Reports the time spent writing pages, summed over all threads.
+     *
+     * @return the time in ms
+     */
+    double getWriteMillis();
+
+    /**
+     * Reports the number of terms read.
+     *
+     * @return the number of terms
+     */
+    long getTerms();
+
+    /**
+     * Reports the number of definition characters scanned for terms.
+     *
+     * @return the number of characters
+     */
+    long getDefinitionChars();
+
+    /**
+     * Reports the number of links made from definitions to term pages.
+     *
+     * @return the number of links
+     */
+    long getLinksResolved();
+
+    /**
+     * Reports the number of term pages rendered.
+     *
+     * @return the number of pages
+     */
+    long getPagesRendered();
+
+    /**
+     * Reports the number of bytes written, all files included.
+     *
+     * @return the number of bytes
+     */
+    long getBytesWritten();
+
+    /**
+     * Reports the median render time of a term page.
+     *
+     * @return the time in us, rounded up to a power of two ns
+     */
+    double getRenderP50Micros();
+
+    /**
+     * Reports the 99th percentile render time of a term page.
+     *
+     * @return the time in us, rounded up to a power of two ns
+     */
+    double getRenderP99Micros();
+
+    /**
+     * Clears every timer, counter and histogram.
+     */
+    void reset();
+
+}
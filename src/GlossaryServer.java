@@ -0,0 +1,560 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Local HTTP server rendering the pages of a glossary on request instead of
+ * writing them all out. index.html and {@code <term>.html} are rendered with
+ * a {@code PageLayout} the first time they are asked for and kept in an LRU
+ * cache bounded by the total size of the pages in it. Every page carries a
+ * strong ETag, a hash of its bytes, and a request whose If-None-Match names
+ * it gets 304 Not Modified without a body.
+ *
+ * <p>
+ * The glossary is a {@code ConcurrentGlossary}. Each page is rendered from
+ * one snapshot of it and the matcher of that snapshot's terms, read together
+ * with one volatile read, so a page never mixes two versions. {@code update}
+ * applies a batch of changes, updates the matcher, publishes the new pair
+ * and empties the cache; a page rendered from an older snapshot is not
+ * cached.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryServer {
+
+    /**
+     * Default port.
+     */
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Number of terms added to the matcher by updates after which it is
+     * rebuilt from scratch.
+     */
+    private static final int REBUILD_TERMS = 256;
+
+    /**
+     * Default bound of the page cache, in bytes.
+     */
+    private static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+    /**
+     * Separators used by {@code Glossary.main}.
+     */
+    private static final String SEPARATORS = " \t, ";
+
+    /**
+     * Property turning off Nagle's algorithm in the JDK HTTP server.
+     */
+    private static final String NODELAY = "sun.net.httpserver.nodelay";
+
+    /**
+     * HTTP status: OK.
+     */
+    private static final int OK = 200;
+
+    /**
+     * HTTP status: not modified.
+     */
+    private static final int NOT_MODIFIED = 304;
+
+    /**
+     * HTTP status: not found.
+     */
+    private static final int NOT_FOUND = 404;
+
+    /**
+     * HTTP status: method not allowed.
+     */
+    private static final int BAD_METHOD = 405;
+
+    /**
+     * FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Mask of the low byte.
+     */
+    private static final int BYTE = 0xFF;
+
+    /**
+     * A rendered page.
+     */
+    private static final class Page {
+
+        /**
+         * The page.
+         */
+        private final byte[] body;
+
+        /**
+         * Its entity tag, quoted.
+         */
+        private final String etag;
+
+        /**
+         * Version of the snapshot the page was rendered from.
+         */
+        private final long version;
+
+        /**
+         * Creates a page.
+         *
+         * @param body
+         *            the page
+         * @param version
+         *            version of the snapshot it was rendered from
+         */
+        Page(byte[] body, long version) {
+            this.body = body;
+            this.version = version;
+            long hash = FNV_OFFSET;
+            for (byte b : body) {
+                hash = (hash ^ (b & BYTE)) * FNV_PRIME;
+            }
+            this.etag = "\"" + Long.toHexString(hash) + "\"";
+        }
+    }
+
+    /**
+     * A snapshot of the glossary and the matcher of its terms.
+     */
+    private static final class Version {
+
+        /**
+         * The snapshot.
+         */
+        private final ConcurrentGlossary.Snapshot snapshot;
+
+        /**
+         * The matcher of its terms.
+         */
+        private final TermMatcher matcher;
+
+        /**
+         * Pairs a snapshot with its matcher.
+         *
+         * @param snapshot
+         *            the snapshot
+         * @param matcher
+         *            the matcher of its terms
+         */
+        Version(ConcurrentGlossary.Snapshot snapshot, TermMatcher matcher) {
+            this.snapshot = snapshot;
+            this.matcher = matcher;
+        }
+    }
+
+    /**
+     * The glossary; updates are serialized on it.
+     */
+    private final ConcurrentGlossary glossary;
+
+    /**
+     * The snapshot pages are rendered from, with its matcher; replaced
+     * while holding {@code cache}.
+     */
+    private volatile Version current;
+
+    /**
+     * Layout of the pages.
+     */
+    private final PageLayout layout;
+
+    /**
+     * Bound of the total size of the cached pages, in bytes.
+     */
+    private final long cacheBytes;
+
+    /**
+     * Cached pages by file name, least recently used first; guarded by
+     * itself.
+     */
+    private final LinkedHashMap<String, Page> cache = new LinkedHashMap<>(
+            16, 0.75f, true);
+
+    /**
+     * Total size of the cached pages; guarded by {@code cache}.
+     */
+    private long cachedBytes;
+
+    /**
+     * Requests answered from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Requests that rendered a page.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a server for a glossary; {@code start} runs it.
+     *
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of its current snapshot
+     * @param layout
+     *            layout of the pages
+     * @param cacheBytes
+     *            bound of the total size of the cached pages, in bytes
+     */
+    public GlossaryServer(ConcurrentGlossary glossary, TermMatcher matcher,
+            PageLayout layout, long cacheBytes) {
+        assert glossary != null : "Violation of: glossary is not null";
+        assert matcher != null : "Violation of: matcher is not null";
+        assert layout != null : "Violation of: layout is not null";
+
+        this.glossary = glossary;
+        this.current = new Version(glossary.snapshot(), matcher);
+        this.layout = layout;
+        this.cacheBytes = cacheBytes;
+    }
+
+    /**
+     * Creates a server for the terms of a glossary, copied into a
+     * {@code ConcurrentGlossary}; {@code start} runs it.
+     *
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param layout
+     *            layout of the pages
+     * @param cacheBytes
+     *            bound of the total size of the cached pages, in bytes
+     */
+    public GlossaryServer(GlossaryView glossary, TermMatcher matcher,
+            PageLayout layout, long cacheBytes) {
+        this(new ConcurrentGlossary(glossary), matcher, layout, cacheBytes);
+    }
+
+    /**
+     * Applies a batch of changes to the glossary, as
+     * {@code ConcurrentGlossary.putAll} does, and serves pages of the new
+     * snapshot from then on. The matcher is updated with the terms added and
+     * removed, and rebuilt once {@code REBUILD_TERMS} terms were added. The
+     * cache is emptied.
+     *
+     * @param additions
+     *            terms to add or whose definitions to replace
+     * @param deletions
+     *            terms to remove, unless also in additions
+     * @updates this
+     */
+    public void update(GlossaryView additions, GlossaryView deletions) {
+        assert additions != null : "Violation of: additions is not null";
+        assert deletions != null : "Violation of: deletions is not null";
+
+        synchronized (this.glossary) {
+            Version old = this.current;
+            List<String> fresh = new ArrayList<>();
+            for (int i = 0; i < additions.size(); i++) {
+                String term = additions.term(i);
+                if (old.snapshot.indexOf(term) < 0 && (fresh.isEmpty()
+                        || !fresh.get(fresh.size() - 1).equals(term))) {
+                    fresh.add(term);
+                }
+            }
+            List<String> gone = new ArrayList<>();
+            for (int i = 0; i < deletions.size(); i++) {
+                String term = deletions.term(i);
+                if (old.snapshot.indexOf(term) >= 0
+                        && additions.indexOf(term) < 0) {
+                    gone.add(term);
+                }
+            }
+            ConcurrentGlossary.Snapshot snapshot = this.glossary
+                    .putAll(additions, deletions);
+            TermMatcher matcher = old.matcher;
+            if (old.matcher.addedCount() + fresh.size() > REBUILD_TERMS) {
+                matcher = old.matcher.rebuilt(snapshot);
+            } else if (!fresh.isEmpty() || !gone.isEmpty()) {
+                matcher = old.matcher.update(fresh.toArray(new String[0]),
+                        gone.toArray(new String[0]));
+            }
+            synchronized (this.cache) {
+                this.current = new Version(snapshot, matcher);
+                this.cache.clear();
+                this.cachedBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Turns off Nagle's algorithm in every JDK HTTP server of this JVM,
+     * unless {@code -Dsun.net.httpserver.nodelay} is already given. Headers
+     * and body go out in separate writes; with Nagle's algorithm on, the body
+     * waits for the client's delayed ACK (about 40 ms a request on keep-alive
+     * connections). The JDK reads the property once, when the first server is
+     * created, so this is for a main method to call at startup;
+     * {@code start} leaves system properties alone.
+     */
+    static void useNoDelay() {
+        if (System.getProperty(NODELAY) == null) {
+            System.setProperty(NODELAY, "true");
+        }
+    }
+
+    /**
+     * Starts serving the glossary. Call {@code useNoDelay} first, or pass
+     * {@code -Dsun.net.httpserver.nodelay=true}, for keep-alive latency
+     * without Nagle's delay.
+     *
+     * @param port
+     *            the port to listen on, 0 for any free port
+     * @return the running server; its executor is shut down by
+     *         {@code stop}
+     * @throws IOException
+     *             if the server cannot be started
+     */
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer
+                .create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/", this::serve);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    /**
+     * Stops a server started by {@code start}.
+     *
+     * @param server
+     *            the server
+     */
+    public static void stop(HttpServer server) {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdown();
+    }
+
+    /**
+     * Reports the number of requests answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long hits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Reports the number of requests that rendered a page.
+     *
+     * @return the number of cache misses
+     */
+    public long misses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Reports the total size of the cached pages.
+     *
+     * @return the size in bytes
+     */
+    public long cachedBytes() {
+        synchronized (this.cache) {
+            return this.cachedBytes;
+        }
+    }
+
+    /**
+     * Returns a page, from the cache or rendered.
+     *
+     * @param name
+     *            the file name of the page
+     * @return the page, or null if there is no such page
+     */
+    private Page page(String name) {
+        Page page;
+        synchronized (this.cache) {
+            page = this.cache.get(name);
+        }
+        if (page != null) {
+            this.hits.increment();
+        } else {
+            Version version = this.current;
+            ConcurrentGlossary.Snapshot glossary = version.snapshot;
+            PageBuffer out = new PageBuffer();
+            if (name.equals("index.html")) {
+                this.layout.renderIndex(glossary, out);
+            } else if (HtmlEscaper.termOf(name) != null) {
+                int i = glossary.indexOf(HtmlEscaper.termOf(name));
+                if (i >= 0) {
+                    this.layout.renderPage(glossary.term(i),
+                            glossary.definition(i), version.matcher,
+                            new TermMatcher.Matches(), out);
+                }
+            }
+            if (out.length() > 0) {
+                this.misses.increment();
+                page = new Page(out.toByteArray(), glossary.version());
+                this.put(name, page);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Caches a page, evicting the least recently used pages until the cache
+     * is within its bound. A page larger than the bound, or rendered from a
+     * snapshot older than the current one, is not cached.
+     *
+     * @param name
+     *            the file name of the page
+     * @param page
+     *            the page
+     */
+    private void put(String name, Page page) {
+        if (page.body.length <= this.cacheBytes) {
+            synchronized (this.cache) {
+                if (page.version == this.current.snapshot.version()) {
+                    Page old = this.cache.put(name, page);
+                    if (old != null) {
+                        this.cachedBytes -= old.body.length;
+                    }
+                    this.cachedBytes += page.body.length;
+                    Iterator<Map.Entry<String, Page>> eldest = this.cache
+                            .entrySet().iterator();
+                    while (this.cachedBytes > this.cacheBytes) {
+                        this.cachedBytes -= eldest.next().getValue()
+                                .body.length;
+                        eldest.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports whether an If-None-Match header names an entity tag.
+     *
+     * @param header
+     *            the header, or null
+     * @param etag
+     *            the entity tag
+     * @return true iff the header names etag or is "*"
+     */
+    private static boolean matches(String header, String etag) {
+        boolean found = false;
+        if (header != null) {
+            for (String tag : header.split(",")) {
+                String t = tag.trim();
+                if (t.startsWith("W/")) {
+                    t = t.substring(2);
+                }
+                found = found || t.equals(etag) || t.equals("*");
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Answers one request.
+     *
+     * @param exchange
+     *            the request
+     * @throws IOException
+     *             if the answer cannot be sent
+     */
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            /*
+             * the JDK server resets a keep-alive connection closed after a
+             * response without a body (304, 404) when the request body was
+             * not read, even an empty one
+             */
+            exchange.getRequestBody().readAllBytes();
+            String name = exchange.getRequestURI().getPath().substring(1);
+            if (name.isEmpty()) {
+                name = "index.html";
+            }
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(BAD_METHOD, -1);
+            } else {
+                Page page = this.page(name);
+                if (page == null) {
+                    exchange.sendResponseHeaders(NOT_FOUND, -1);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", page.etag);
+                    if (matches(exchange.getRequestHeaders()
+                            .getFirst("If-None-Match"), page.etag)) {
+                        exchange.sendResponseHeaders(NOT_MODIFIED, -1);
+                    } else {
+                        exchange.getResponseHeaders().set("Content-Type",
+                                "text/html; charset=utf-8");
+                        exchange.sendResponseHeaders(OK, page.body.length);
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            out.write(page.body);
+                        }
+                    }
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Main method. The cache bound is {@code glossary.cacheBytes}, and
+     * {@code glossary.templates} names a directory of page templates.
+     *
+     * @param args
+     *            the glossary file, then optionally the port
+     * @throws IOException
+     *             if the templates cannot be read or the server started
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: GlossaryServer <glossary> [port]");
+        } else {
+            useNoDelay();
+            int port = DEFAULT_PORT;
+            if (args.length > 1) {
+                port = Integer.parseInt(args[1]);
+            }
+            SimpleReader in = new SimpleReader1L(args[0]);
+            ConcurrentGlossary glossary = new ConcurrentGlossary(
+                    new GlossaryIngester().ingest(in));
+            in.close();
+            PageLayout layout = PageLayout.DEFAULT;
+            String templates = System.getProperty("glossary.templates");
+            if (templates != null) {
+                layout = PageLayout.load(Paths.get(templates));
+            }
+            GlossaryServer glossaryServer = new GlossaryServer(glossary,
+                    TermMatcher.of(glossary.snapshot(),
+                            SeparatorTable.fromString(SEPARATORS),
+                            TermMatcher.Boundary.SEPARATOR),
+                    layout, Long.getLong("glossary.cacheBytes",
+                            DEFAULT_CACHE_BYTES));
+            HttpServer server = glossaryServer.start(port);
+            System.out.println("Serving " + glossary.snapshot().size()
+                    + " terms of " + args[0] + " on http://localhost:"
+                    + server.getAddress().getPort() + "/");
+        }
+    }
+
+}
@@ -0,0 +1,391 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Precompiled binary form of a glossary, so a build can start without
+ * reading and sorting the text file or searching the definitions for links.
+ * A snapshot holds the terms in {@code StringLT} order, their definitions,
+ * the links of every definition (the arrays of a {@code LinkGraph}), and the
+ * separators the links were found with. It is loaded with one read of the
+ * file; the only work left is decoding the strings.
+ *
+ * <p>
+ * The file starts with a magic number and a format version, then records the
+ * size, modification time and CRC-32 of the glossary file it was compiled
+ * from, and ends with a CRC-32 of everything before it. A snapshot of another
+ * format version, of a glossary file that has changed since, compiled with
+ * other separators, or failing its checksum is refused, and the caller falls
+ * back to the text file. A change of size or time is enough to refuse it;
+ * otherwise the glossary file is read once to compare its CRC-32, since an
+ * edit that keeps the size can land within the resolution of the time. So is a snapshot larger than a Java array can hold
+ * (about 2 GiB), which {@code write} refuses to produce in the first place.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossarySnapshot {
+
+    /**
+     * First four bytes of a snapshot: "GLSN".
+     */
+    private static final int MAGIC = 0x474C534E;
+
+    /**
+     * Format version; bump it whenever the layout changes.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Size of the output stream buffer.
+     */
+    private static final int BUFFER = 1 << 16;
+
+    /**
+     * Size of the trailing checksum.
+     */
+    private static final int CHECKSUM_BYTES = Long.BYTES;
+
+    /**
+     * Largest snapshot loaded: the largest array most JVMs allocate.
+     */
+    static final int MAX_BYTES = Integer.MAX_VALUE - 8;
+
+    /**
+     * The glossary.
+     */
+    private final SortedGlossary glossary;
+
+    /**
+     * Start of the links of each term; one more entry than terms.
+     */
+    private final int[] offsets;
+
+    /**
+     * Term linked to by each link.
+     */
+    private final int[] targets;
+
+    /**
+     * Start of each link in its definition.
+     */
+    private final int[] starts;
+
+    /**
+     * End (exclusive) of each link in its definition.
+     */
+    private final int[] ends;
+
+    /**
+     * Creates a loaded snapshot.
+     *
+     * @param glossary
+     *            the glossary
+     * @param offsets
+     *            start of the links of each term
+     * @param targets
+     *            targets of the links
+     * @param starts
+     *            starts of the links
+     * @param ends
+     *            ends of the links
+     */
+    private GlossarySnapshot(SortedGlossary glossary, int[] offsets,
+            int[] targets, int[] starts, int[] ends) {
+        this.glossary = glossary;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Returns the glossary.
+     *
+     * @return the glossary, terms in StringLT order
+     */
+    public GlossaryView glossary() {
+        return this.glossary;
+    }
+
+    /**
+     * Returns the links of the glossary.
+     *
+     * @param matcher
+     *            the matcher built from the terms of the glossary with the
+     *            separators of the snapshot
+     * @return the link graph
+     */
+    public LinkGraph links(TermMatcher matcher) {
+        assert matcher != null : "Violation of: matcher is not null";
+
+        return LinkGraph.of(matcher, this.offsets, this.targets, this.starts,
+                this.ends);
+    }
+
+    /**
+     * Writes a snapshot of a glossary compiled from {@code source}, replacing
+     * the old one atomically.
+     *
+     * @param snapshot
+     *            the snapshot file
+     * @param source
+     *            the glossary file the glossary was read from
+     * @param separators
+     *            the separator characters the links were found with
+     * @param glossary
+     *            the glossary
+     * @param graph
+     *            the links of glossary
+     * @throws IOException
+     *             if the source cannot be examined or the snapshot written,
+     *             or if the snapshot would be larger than {@code MAX_BYTES}
+     */
+    public static void write(Path snapshot, Path source, String separators,
+            GlossaryView glossary, LinkGraph graph) throws IOException {
+        assert snapshot != null : "Violation of: snapshot is not null";
+        assert source != null : "Violation of: source is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert glossary != null : "Violation of: glossary is not null";
+        assert graph != null : "Violation of: graph is not null";
+
+        BasicFileAttributes stamp = Files.readAttributes(source,
+                BasicFileAttributes.class);
+        long sourceCrc = checksum(source);
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try {
+            try (OutputStream file = Files.newOutputStream(tmp)) {
+                DataOutputStream out = new DataOutputStream(
+                        new CheckedOutputStream(
+                                new BufferedOutputStream(file, BUFFER), crc));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(stamp.size());
+                out.writeLong(stamp.lastModifiedTime().toMillis());
+                out.writeLong(sourceCrc);
+                writeString(out, separators);
+                int n = glossary.size();
+                out.writeInt(n);
+                for (int i = 0; i < n; i++) {
+                    writeString(out, glossary.term(i));
+                    writeString(out, glossary.definition(i));
+                    checkSize(out, tmp);
+                }
+                out.writeInt(graph.links());
+                int offset = 0;
+                out.writeInt(offset);
+                for (int i = 0; i < n; i++) {
+                    offset += graph.outDegree(i);
+                    out.writeInt(offset);
+                }
+                TermMatcher.Matches matches = new TermMatcher.Matches();
+                for (int i = 0; i < n; i++) {
+                    graph.matches(i, matches);
+                    for (int k = 0; k < matches.count(); k++) {
+                        out.writeInt(matches.termId(k));
+                        out.writeInt(matches.start(k));
+                        out.writeInt(matches.end(k));
+                    }
+                }
+                /*
+                 * the checksum itself is not checksummed
+                 */
+                out.flush();
+                checkSize(out, tmp);
+                DataOutputStream tail = new DataOutputStream(file);
+                tail.writeLong(crc.getValue());
+                tail.flush();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the CRC-32 of the bytes of a file.
+     *
+     * @param file
+     *            the file
+     * @return the checksum
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n = in.read(buffer);
+            while (n >= 0) {
+                crc.update(buffer, 0, n);
+                n = in.read(buffer);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Gives up writing a snapshot that has grown too large to be loaded.
+     *
+     * @param out
+     *            the stream
+     * @param tmp
+     *            the file being written
+     * @throws IOException
+     *             if the snapshot, with its checksum, would be larger than
+     *             {@code MAX_BYTES}
+     */
+    private static void checkSize(DataOutputStream out, Path tmp)
+            throws IOException {
+        /*
+         * size() stops at Integer.MAX_VALUE, which is over the limit
+         */
+        if (out.size() > MAX_BYTES - CHECKSUM_BYTES) {
+            throw new IOException(tmp + ": snapshot larger than "
+                    + MAX_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes.
+     *
+     * @param out
+     *            the stream
+     * @param s
+     *            the string
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Loads a snapshot compiled from {@code source} with {@code separators}.
+     *
+     * @param snapshot
+     *            the snapshot file
+     * @param source
+     *            the glossary file
+     * @param separators
+     *            the separator characters the links must have been found with
+     * @return the snapshot
+     * @throws IOException
+     *             if the snapshot cannot be read, is corrupt, or does not
+     *             match source or separators; the message says which
+     */
+    public static GlossarySnapshot read(Path snapshot, Path source,
+            String separators) throws IOException {
+        assert snapshot != null : "Violation of: snapshot is not null";
+        assert source != null : "Violation of: source is not null";
+        assert separators != null : "Violation of: separators is not null";
+
+        long size = Files.size(snapshot);
+        if (size > MAX_BYTES) {
+            throw new IOException(snapshot + ": snapshot of " + size
+                    + " bytes is too large to load");
+        }
+        byte[] bytes = Files.readAllBytes(snapshot);
+        if (bytes.length < 2 * Integer.BYTES + CHECKSUM_BYTES) {
+            throw new IOException(snapshot + ": truncated snapshot");
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.getInt() != MAGIC) {
+            throw new IOException(snapshot + ": not a glossary snapshot");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException(snapshot + ": snapshot format " + version
+                    + ", expected " + VERSION);
+        }
+        int body = bytes.length - CHECKSUM_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, body);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, body, CHECKSUM_BYTES)
+                .getLong()) {
+            throw new IOException(snapshot + ": checksum mismatch");
+        }
+        BasicFileAttributes stamp = Files.readAttributes(source,
+                BasicFileAttributes.class);
+        /*
+         * size and time first, so most edits are caught without reading the
+         * source
+         */
+        if (in.getLong() != stamp.size()
+                || in.getLong() != stamp.lastModifiedTime().toMillis()
+                || in.getLong() != checksum(source)) {
+            throw new IOException(snapshot + ": " + source
+                    + " has changed since the snapshot");
+        }
+        GlossarySnapshot result;
+        try {
+            if (!readString(in, bytes).equals(separators)) {
+                throw new IOException(
+                        snapshot + ": compiled with other separators");
+            }
+            int n = in.getInt();
+            String[] terms = new String[n];
+            String[] definitions = new String[n];
+            for (int i = 0; i < n; i++) {
+                terms[i] = readString(in, bytes);
+                definitions[i] = readString(in, bytes);
+            }
+            int links = in.getInt();
+            int[] offsets = new int[n + 1];
+            in.asIntBuffer().get(offsets);
+            in.position(in.position() + Integer.BYTES * (n + 1));
+            int[] targets = new int[links];
+            int[] starts = new int[links];
+            int[] ends = new int[links];
+            for (int e = 0; e < links; e++) {
+                targets[e] = in.getInt();
+                starts[e] = in.getInt();
+                ends[e] = in.getInt();
+            }
+            if (in.position() != body) {
+                throw new IOException(snapshot + ": malformed snapshot");
+            }
+            result = new GlossarySnapshot(
+                    SortedGlossary.ofSorted(terms, definitions), offsets,
+                    targets, starts, ends);
+        } catch (BufferUnderflowException | IllegalArgumentException
+                | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException(snapshot + ": malformed snapshot", e);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a string written by {@code writeString}.
+     *
+     * @param in
+     *            the buffer, positioned at the string
+     * @param bytes
+     *            the array behind in
+     * @return the string
+     */
+    private static String readString(ByteBuffer in, byte[] bytes) {
+        int length = in.getInt();
+        int start = in.position();
+        in.position(start + length);
+        return new String(bytes, start, length, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Read-only view of a glossary whose terms are kept in {@code StringLT}
+ * order. Position {@code i} names the i-th term of the sorted term list and
+ * its definition.
+ *
+ * @author Zheyuan Gao
+ */
+public interface GlossaryView {
+
+    /**
+     * Reports the number of terms in the glossary.
+     *
+     * @return the number of terms
+     * @ensures size = |terms|
+     */
+    int size();
+
+    /**
+     * Returns the term at the given position of the sorted term list.
+     *
+     * @param i
+     *            the position of the term
+     * @return the term at position {@code i}
+     * @requires 0 <= i < size
+     */
+    String term(int i);
+
+    /**
+     * Returns the term at the given position without copying it, when the
+     * glossary can: pointing {@code span} at it and returning the span.
+     * Otherwise the term is returned as {@code term(i)} returns it.
+     *
+     * @param i
+     *            the position of the term
+     * @param span
+     *            a span the glossary may reuse
+     * @return the term at position {@code i}, valid until span is reused
+     * @requires 0 <= i < size
+     */
+    default CharSequence term(int i, CharSpan span) {
+        return this.term(i);
+    }
+
+    /**
+     * Returns the definition of the term at the given position.
+     *
+     * @param i
+     *            the position of the term
+     * @return the definition of the term at position {@code i}
+     * @requires 0 <= i < size
+     */
+    String definition(int i);
+
+    /**
+     * Returns the definition of the term at the given position without
+     * copying it, when the glossary can: pointing {@code span} at it and
+     * returning the span. Otherwise the definition is returned as
+     * {@code definition(i)} returns it.
+     *
+     * @param i
+     *            the position of the term
+     * @param span
+     *            a span the glossary may reuse
+     * @return the definition of the term at position {@code i}, valid until
+     *         span is reused
+     * @requires 0 <= i < size
+     */
+    default CharSequence definition(int i, CharSpan span) {
+        return this.definition(i);
+    }
+
+    /**
+     * Returns the position of the given term, or a negative number if the
+     * term is not in the glossary.
+     *
+     * @param term
+     *            the term to look for
+     * @return the position of {@code term}, negative if absent
+     * @ensures if term is in terms then term(indexOf) = term else indexOf < 0
+     */
+    int indexOf(String term);
+
+}
@@ -0,0 +1,931 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running watch mode. The glossary file is watched with a
+ * {@code WatchService}; bursts of change events are debounced into one
+ * update. An update re-parses only the blocks of the file between the first
+ * and the last changed character, diffs them against the glossary held in
+ * memory, and regenerates just the pages that changed: edited and added
+ * terms, pages that link to added or removed terms, and index.html when the
+ * term set changed. Pages of removed terms are deleted.
+ *
+ * <p>
+ * An update costs about the size of the change, not of the glossary. The
+ * changes are spliced into the sorted arrays of a {@code ConcurrentGlossary}
+ * and the matcher is updated rather than rebuilt (it is rebuilt once
+ * {@code REBUILD_TERMS} terms were added). The pages linking to a removed
+ * term come from a reverse index of the links, built from the link graph
+ * and kept up to date with every page written; the pages mentioning an added
+ * term come from an index of the words of the definitions, with the matcher
+ * only run on the definitions holding the first word of the term.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code GlossaryWatch <glossary file> <output folder>}. Terms are
+ * expected to be unique, as {@code Glossary.readFileStoreInMap} requires.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class GlossaryWatch {
+
+    /**
+     * Quiet time, in milliseconds, that ends a burst of change events.
+     */
+    private static final long DEBOUNCE_MILLIS = 30;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Separators used by {@code Glossary.main}.
+     */
+    private static final String SEPARATORS = " \t, ";
+
+    /**
+     * Number of terms added to the matcher by updates after which it is
+     * rebuilt from scratch.
+     */
+    private static final int REBUILD_TERMS = 256;
+
+    /**
+     * Bytes compared at a time when looking for the common suffix of two
+     * versions of the file.
+     */
+    private static final int SUFFIX_CHUNK = 4096;
+
+    /**
+     * One term/definition block of the glossary file.
+     */
+    private static final class Block {
+
+        /**
+         * Offset of the term line in the file.
+         */
+        private int start;
+
+        /**
+         * The term.
+         */
+        private final String term;
+
+        /**
+         * The definition.
+         */
+        private final String definition;
+
+        /**
+         * Whether the block was replaced by a later parse of its region.
+         */
+        private boolean replaced;
+
+        /**
+         * Creates a block.
+         *
+         * @param start
+         *            offset of the term line
+         * @param term
+         *            the term
+         * @param definition
+         *            the definition
+         */
+        Block(int start, String term, String definition) {
+            this.start = start;
+            this.term = term;
+            this.definition = definition;
+        }
+    }
+
+    /**
+     * What one update did.
+     */
+    public static final class Update {
+
+        /**
+         * Number of term pages written.
+         */
+        private final int pagesWritten;
+
+        /**
+         * Number of term pages deleted.
+         */
+        private final int pagesDeleted;
+
+        /**
+         * Whether index.html was written.
+         */
+        private final boolean indexWritten;
+
+        /**
+         * Creates an update summary.
+         *
+         * @param pagesWritten
+         *            number of pages written
+         * @param pagesDeleted
+         *            number of pages deleted
+         * @param indexWritten
+         *            whether index.html was written
+         */
+        Update(int pagesWritten, int pagesDeleted, boolean indexWritten) {
+            this.pagesWritten = pagesWritten;
+            this.pagesDeleted = pagesDeleted;
+            this.indexWritten = indexWritten;
+        }
+
+        /**
+         * Reports the number of term pages written.
+         *
+         * @return the number of pages written
+         */
+        public int pagesWritten() {
+            return this.pagesWritten;
+        }
+
+        /**
+         * Reports the number of term pages deleted.
+         *
+         * @return the number of pages deleted
+         */
+        public int pagesDeleted() {
+            return this.pagesDeleted;
+        }
+
+        /**
+         * Reports whether index.html was written.
+         *
+         * @return true iff index.html was written
+         */
+        public boolean indexWritten() {
+            return this.indexWritten;
+        }
+    }
+
+    /**
+     * The watched glossary file.
+     */
+    private final Path input;
+
+    /**
+     * The output folder.
+     */
+    private final String folder;
+
+    /**
+     * The separator table.
+     */
+    private final SeparatorTable separators;
+
+    /**
+     * The page engine.
+     */
+    private final PageRenderEngine engine;
+
+    /**
+     * Bytes of the file as last parsed.
+     */
+    private byte[] text;
+
+    /**
+     * Blocks of the file as last parsed, in file order.
+     */
+    private List<Block> blocks;
+
+    /**
+     * The terms and definitions, in StringLT order.
+     */
+    private ConcurrentGlossary glossary;
+
+    /**
+     * Matcher over every term.
+     */
+    private TermMatcher matcher;
+
+    /**
+     * Terms linked from the page of each term, for the pages with links.
+     */
+    private final HashMap<String, String[]> links;
+
+    /**
+     * Terms whose pages link to each term: {@code links} inverted.
+     */
+    private final HashMap<String, Set<String>> backlinks;
+
+    /**
+     * Blocks by the words of their definitions. Blocks are added as they are
+     * parsed; replaced ones are dropped from a word's list when it is looked
+     * up.
+     */
+    private final HashMap<String, List<Block>> words;
+
+    /**
+     * Entries of index.html of every term, in term order.
+     */
+    private PageBuffer entries;
+
+    /**
+     * End of the entry of each term in {@code entries}, in term order.
+     */
+    private int[] entryEnds;
+
+    /**
+     * Creates a watcher; nothing is read until {@code buildAll}.
+     *
+     * @param input
+     *            the glossary file
+     * @param folder
+     *            the output folder
+     * @param separators
+     *            the separator table
+     * @param engine
+     *            the page engine
+     */
+    public GlossaryWatch(Path input, String folder, SeparatorTable separators,
+            PageRenderEngine engine) {
+        assert input != null : "Violation of: input is not null";
+        assert folder != null : "Violation of: folder is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert engine != null : "Violation of: engine is not null";
+
+        this.input = input;
+        this.folder = folder;
+        this.separators = separators;
+        this.engine = engine;
+        this.text = new byte[0];
+        this.blocks = new ArrayList<>();
+        this.glossary = new ConcurrentGlossary();
+        this.links = new HashMap<>();
+        this.backlinks = new HashMap<>();
+        this.words = new HashMap<>();
+        this.entries = new PageBuffer();
+        this.entryEnds = new int[0];
+    }
+
+    /**
+     * Parses blocks of {@code text} from offset {@code from}, which must be
+     * the start of a block, as {@code GlossaryIngester} would. Parsing stops
+     * at the first block starting at or after {@code resyncFrom} whose offset
+     * minus {@code delta} is the start of one of {@code oldStarts}.
+     *
+     * @param text
+     *            the bytes of the file
+     * @param from
+     *            where to start
+     * @param resyncFrom
+     *            first offset where parsing may stop early
+     * @param delta
+     *            shift between new and old offsets past the change
+     * @param oldStarts
+     *            block starts of the old text, sorted
+     * @param out
+     *            receives the blocks parsed
+     * @return the offset where parsing stopped
+     */
+    private static int parse(byte[] text, int from, int resyncFrom,
+            int delta, int[] oldStarts, List<Block> out) {
+        int pos = from;
+        boolean stop = false;
+        while (pos < text.length && !stop) {
+            stop = pos >= resyncFrom
+                    && Arrays.binarySearch(oldStarts, pos - delta) >= 0;
+            if (!stop) {
+                int start = pos;
+                int end = lineEnd(text, pos);
+                String term = line(text, pos, end);
+                pos = next(text, end);
+                StringBuilder definition = new StringBuilder();
+                if (pos < text.length) {
+                    end = lineEnd(text, pos);
+                    definition.append(line(text, pos, end));
+                    pos = next(text, end);
+                    boolean blank = false;
+                    while (!blank && pos < text.length) {
+                        end = lineEnd(text, pos);
+                        blank = stripped(text, pos, end) == pos;
+                        definition.append(line(text, pos, end));
+                        pos = next(text, end);
+                    }
+                }
+                out.add(new Block(start, term, definition.toString()));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the offset of the line break ending the line at {@code pos},
+     * or the text length.
+     *
+     * @param text
+     *            the bytes of the file
+     * @param pos
+     *            start of the line
+     * @return end of the line
+     */
+    private static int lineEnd(byte[] text, int pos) {
+        int end = pos;
+        while (end < text.length && text[end] != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the offset after the line break at {@code end}.
+     *
+     * @param text
+     *            the bytes of the file
+     * @param end
+     *            end of a line
+     * @return start of the next line
+     */
+    private static int next(byte[] text, int end) {
+        return Math.min(text.length, end + 1);
+    }
+
+    /**
+     * Returns the end of a line without a trailing carriage return.
+     *
+     * @param text
+     *            the bytes of the file
+     * @param start
+     *            start of the line
+     * @param end
+     *            end of the line
+     * @return end of the line's content
+     */
+    private static int stripped(byte[] text, int start, int end) {
+        int e = end;
+        if (e > start && text[e - 1] == '\r') {
+            e--;
+        }
+        return e;
+    }
+
+    /**
+     * Returns the content of a line.
+     *
+     * @param text
+     *            the bytes of the file
+     * @param start
+     *            start of the line
+     * @param end
+     *            end of the line
+     * @return the line without its line break
+     */
+    private static String line(byte[] text, int start, int end) {
+        return new String(text, start, stripped(text, start, end) - start,
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the whole glossary and writes every page.
+     *
+     * @throws IOException
+     *             if the file cannot be read or the index written
+     */
+    public void buildAll() throws IOException {
+        this.text = Files.readAllBytes(this.input);
+        this.blocks = new ArrayList<>();
+        parse(this.text, 0, Integer.MAX_VALUE, 0, new int[0], this.blocks);
+        this.words.clear();
+        for (Block b : this.blocks) {
+            this.index(b);
+        }
+        this.glossary = new ConcurrentGlossary(sorted(this.blocks));
+        ConcurrentGlossary.Snapshot view = this.glossary.snapshot();
+        this.matcher = TermMatcher.of(view, this.separators,
+                TermMatcher.Boundary.SEPARATOR);
+        /*
+         * find the links once: the pages are rendered from them, and they
+         * are kept, with their reverse, for the updates
+         */
+        LinkGraph graph = LinkGraph.build(view, this.matcher,
+                this.engine.pool());
+        Backlinks inverted = Backlinks.of(graph);
+        this.links.clear();
+        this.backlinks.clear();
+        for (int i = 0; i < view.size(); i++) {
+            Set<String> targets = new HashSet<>();
+            for (int k = 0; k < graph.outDegree(i); k++) {
+                if (graph.target(i, k) != i) {
+                    targets.add(view.term(graph.target(i, k)));
+                }
+            }
+            if (!targets.isEmpty()) {
+                this.links.put(view.term(i), targets.toArray(new String[0]));
+            }
+            if (inverted.count(i) > 0) {
+                this.backlinks.put(view.term(i),
+                        new HashSet<>(inverted.terms(view, i)));
+            }
+        }
+        this.entries = new PageBuffer();
+        this.entryEnds = new int[view.size()];
+        for (int i = 0; i < view.size(); i++) {
+            this.engine.layout().renderEntry(view.term(i), this.entries);
+            this.entryEnds[i] = this.entries.length();
+        }
+        this.engine.writeIndex(this.folder, view, this.entries);
+        this.engine.renderAll(this.folder, view, graph);
+    }
+
+    /**
+     * Returns the blocks with the given terms as a sorted glossary.
+     *
+     * @param blocks
+     *            the blocks
+     * @return the glossary of their terms and definitions
+     */
+    private static SortedGlossary sorted(List<Block> blocks) {
+        String[] t = new String[blocks.size()];
+        String[] d = new String[blocks.size()];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = blocks.get(i).term;
+            d[i] = blocks.get(i).definition;
+        }
+        return new SortedGlossary(t, d, t.length);
+    }
+
+    /**
+     * Records the terms the page of {@code term} links to, in place of
+     * those recorded before, and updates the reverse index.
+     *
+     * @param term
+     *            the term
+     * @param targets
+     *            the terms its page links to, empty if it has no page
+     */
+    private void relink(String term, Set<String> targets) {
+        String[] old = this.links.remove(term);
+        if (old != null) {
+            for (String target : old) {
+                Set<String> sources = this.backlinks.get(target);
+                sources.remove(term);
+                if (sources.isEmpty()) {
+                    this.backlinks.remove(target);
+                }
+            }
+        }
+        if (!targets.isEmpty()) {
+            this.links.put(term, targets.toArray(new String[0]));
+            for (String target : targets) {
+                this.backlinks.computeIfAbsent(target, t -> new HashSet<>())
+                        .add(term);
+            }
+        }
+    }
+
+    /**
+     * Records {@code block} under each word of its definition.
+     *
+     * @param block
+     *            the block
+     */
+    private void index(Block block) {
+        String definition = block.definition;
+        int pos = 0;
+        while (pos < definition.length()) {
+            int end = this.separators.tokenEnd(definition, pos);
+            if (!this.separators.isSeparator(definition.codePointAt(pos))) {
+                List<Block> found = this.words.computeIfAbsent(
+                        definition.substring(pos, end),
+                        w -> new ArrayList<>());
+                if (found.isEmpty() || found.get(found.size() - 1) != block) {
+                    found.add(block);
+                }
+            }
+            pos = end;
+        }
+    }
+
+    /**
+     * Re-reads the file and regenerates what its changes affect.
+     *
+     * @return what the update did
+     * @throws IOException
+     *             if the file cannot be read or a page written
+     */
+    public Update update() throws IOException {
+        byte[] newText = Files.readAllBytes(this.input);
+        Update result = new Update(0, 0, false);
+        if (!Arrays.equals(newText, this.text)) {
+            result = this.apply(newText);
+        }
+        return result;
+    }
+
+    /**
+     * Applies a new version of the file.
+     *
+     * @param newText
+     *            the new bytes of the file
+     * @return what the update did
+     * @throws IOException
+     *             if a page cannot be written
+     */
+    private Update apply(byte[] newText) throws IOException {
+        byte[] oldText = this.text;
+        /*
+         * the changed region: everything between the common prefix and the
+         * common suffix, both found with the vectorized array comparisons,
+         * the suffix a chunk at a time
+         */
+        int limit = Math.min(oldText.length, newText.length);
+        int prefix = Arrays.mismatch(oldText, newText);
+        int suffix = 0;
+        while (suffix + SUFFIX_CHUNK <= limit - prefix && Arrays.equals(
+                oldText, oldText.length - suffix - SUFFIX_CHUNK,
+                oldText.length - suffix, newText,
+                newText.length - suffix - SUFFIX_CHUNK,
+                newText.length - suffix)) {
+            suffix += SUFFIX_CHUNK;
+        }
+        while (suffix < limit - prefix && oldText[oldText.length - 1
+                - suffix] == newText[newText.length - 1 - suffix]) {
+            suffix++;
+        }
+        int delta = newText.length - oldText.length;
+        int[] oldStarts = new int[this.blocks.size()];
+        for (int i = 0; i < oldStarts.length; i++) {
+            oldStarts[i] = this.blocks.get(i).start;
+        }
+        /*
+         * re-parse from the block holding the first change until the parse
+         * lines up with an old block past the last change
+         */
+        int first = Arrays.binarySearch(oldStarts, prefix);
+        if (first < 0) {
+            first = Math.max(0, -first - 2);
+        }
+        int from = 0;
+        if (first < oldStarts.length) {
+            from = oldStarts[first];
+        }
+        List<Block> parsed = new ArrayList<>();
+        int stop = parse(newText, from, newText.length - suffix, delta,
+                oldStarts, parsed);
+        int last = oldStarts.length;
+        if (stop < newText.length) {
+            last = Arrays.binarySearch(oldStarts, stop - delta);
+        }
+        /*
+         * diff the old blocks of the region with the new ones
+         */
+        HashMap<String, String> before = new HashMap<>();
+        for (int i = first; i < last; i++) {
+            before.put(this.blocks.get(i).term,
+                    this.blocks.get(i).definition);
+        }
+        TreeSet<String> changed = new TreeSet<>();
+        TreeSet<String> added = new TreeSet<>();
+        for (Block b : parsed) {
+            String old = before.remove(b.term);
+            if (old == null) {
+                added.add(b.term);
+            } else if (!old.equals(b.definition)) {
+                changed.add(b.term);
+            }
+        }
+        TreeSet<String> removed = new TreeSet<>(before.keySet());
+        /*
+         * splice the new blocks in and shift the ones after them
+         */
+        for (int i = first; i < last; i++) {
+            this.blocks.get(i).replaced = true;
+        }
+        for (Block b : parsed) {
+            this.index(b);
+        }
+        List<Block> updated = new ArrayList<>(
+                this.blocks.size() - (last - first) + parsed.size());
+        updated.addAll(this.blocks.subList(0, first));
+        updated.addAll(parsed);
+        for (int i = last; i < this.blocks.size(); i++) {
+            Block b = this.blocks.get(i);
+            b.start += delta;
+            updated.add(b);
+        }
+        this.blocks = updated;
+        this.text = newText;
+        List<Block> edits = new ArrayList<>();
+        for (Block b : parsed) {
+            if (changed.contains(b.term) || added.contains(b.term)) {
+                edits.add(b);
+            }
+        }
+        return this.regenerate(edits, changed, added, removed);
+    }
+
+    /**
+     * Applies a change to the glossary and regenerates the pages it affects.
+     *
+     * @param edits
+     *            blocks of the changed and added terms
+     * @param changed
+     *            terms whose definition changed
+     * @param added
+     *            terms added
+     * @param removed
+     *            terms removed
+     * @return what was regenerated
+     * @throws IOException
+     *             if the index cannot be written
+     */
+    private Update regenerate(List<Block> edits, TreeSet<String> changed,
+            TreeSet<String> added, TreeSet<String> removed)
+            throws IOException {
+        boolean termSetChanged = !added.isEmpty() || !removed.isEmpty();
+        String[] gone = removed.toArray(new String[0]);
+        ConcurrentGlossary.Snapshot before = this.glossary.snapshot();
+        ConcurrentGlossary.Snapshot view = this.glossary.putAll(sorted(edits),
+                new SortedGlossary(gone, new String[gone.length],
+                        gone.length));
+        TreeSet<String> pages = new TreeSet<>(changed);
+        pages.addAll(added);
+        if (termSetChanged) {
+            String[] fresh = added.toArray(new String[0]);
+            if (this.matcher.addedCount() + fresh.length > REBUILD_TERMS) {
+                this.matcher = TermMatcher.of(view, this.separators,
+                        TermMatcher.Boundary.SEPARATOR);
+            } else {
+                this.matcher = this.matcher.update(fresh, gone);
+            }
+            /*
+             * pages linking to a removed term or mentioning an added one
+             * link differently now
+             */
+            for (String term : removed) {
+                Set<String> sources = this.backlinks.get(term);
+                if (sources != null) {
+                    pages.addAll(sources);
+                }
+            }
+            pages.addAll(this.mentioning(view, fresh));
+            pages.removeAll(removed);
+        }
+        int[] ids = new int[pages.size()];
+        int k = 0;
+        for (String term : pages) {
+            ids[k] = view.indexOf(term);
+            k++;
+        }
+        PageRenderEngine.Report report = this.engine.render(this.folder,
+                view, this.matcher, ids);
+        /*
+         * keep the reverse index in step with the pages
+         */
+        for (String term : removed) {
+            this.relink(term, new HashSet<>());
+        }
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        for (int id : ids) {
+            String term = view.term(id);
+            String definition = view.definition(id);
+            this.matcher.findAll(definition, matches);
+            Set<String> targets = new HashSet<>();
+            for (int m = 0; m < matches.count(); m++) {
+                targets.add(definition.substring(matches.start(m),
+                        matches.end(m)));
+            }
+            targets.remove(term);
+            this.relink(term, targets);
+        }
+        int deleted = 0;
+        for (String term : removed) {
+            if (Files.deleteIfExists(Paths.get(this.folder,
+                    HtmlEscaper.fileName(term)))) {
+                deleted++;
+            }
+        }
+        if (termSetChanged) {
+            this.spliceEntries(before, view);
+            this.engine.writeIndex(this.folder, view, this.entries);
+        }
+        return new Update(report.pagesWritten(), deleted, termSetChanged);
+    }
+
+    /**
+     * Brings the index entries from the terms of {@code before} to those of
+     * {@code after}: the entries of the terms in both are copied a run at a
+     * time, and only those of added terms are rendered.
+     *
+     * @param before
+     *            the glossary the entries were rendered for
+     * @param after
+     *            the glossary now
+     */
+    private void spliceEntries(GlossaryView before, GlossaryView after) {
+        PageBuffer next = new PageBuffer();
+        int[] ends = new int[after.size()];
+        int i = 0;
+        int j = 0;
+        while (j < after.size()) {
+            int at = before.indexOf(after.term(j));
+            if (at < 0) {
+                this.engine.layout().renderEntry(after.term(j), next);
+                ends[j] = next.length();
+                j++;
+            } else {
+                /*
+                 * skip removed terms, then copy the run of terms in both,
+                 * up to the next added term
+                 */
+                i = at;
+                int run = 1;
+                while (j + run < after.size() && i + run < before.size()
+                        && after.term(j + run) == before.term(i + run)) {
+                    run++;
+                }
+                int from = 0;
+                if (i > 0) {
+                    from = this.entryEnds[i - 1];
+                }
+                int shift = next.length() - from;
+                next.append(this.entries, from, this.entryEnds[i + run - 1]);
+                for (int k = 0; k < run; k++) {
+                    ends[j + k] = this.entryEnds[i + k] + shift;
+                }
+                i += run;
+                j += run;
+            }
+        }
+        this.entries = next;
+        this.entryEnds = ends;
+    }
+
+    /**
+     * Returns the terms whose definitions mention one of {@code terms}. Only
+     * the definitions holding the first word of one of them, found in
+     * {@code words}, are run through a matcher of the terms; every
+     * definition is when one of them starts with a separator.
+     *
+     * @param view
+     *            the glossary
+     * @param terms
+     *            the terms
+     * @return the terms of the definitions mentioning one of them
+     */
+    private TreeSet<String> mentioning(GlossaryView view, String[] terms) {
+        List<String> wanted = new ArrayList<>();
+        for (String term : terms) {
+            /*
+             * an empty term is never found
+             */
+            if (!term.isEmpty()) {
+                wanted.add(term);
+            }
+        }
+        TreeSet<String> result = new TreeSet<>();
+        if (!wanted.isEmpty()) {
+            TermMatcher wantedMatcher = new TermMatcher(
+                    wanted.toArray(new String[0]), this.separators,
+                    TermMatcher.Boundary.SEPARATOR);
+            TermMatcher.Matches matches = new TermMatcher.Matches();
+            Set<Block> candidates = new HashSet<>();
+            boolean scanAll = false;
+            for (String term : wanted) {
+                if (this.separators.isSeparator(term.codePointAt(0))) {
+                    scanAll = true;
+                } else {
+                    List<Block> found = this.words.get(term.substring(0,
+                            this.separators.tokenEnd(term, 0)));
+                    if (found != null) {
+                        found.removeIf(b -> b.replaced);
+                        candidates.addAll(found);
+                    }
+                }
+            }
+            if (scanAll) {
+                for (int i = 0; i < view.size(); i++) {
+                    wantedMatcher.findAll(view.definition(i), matches);
+                    if (matches.count() > 0) {
+                        result.add(view.term(i));
+                    }
+                }
+            } else {
+                for (Block b : candidates) {
+                    wantedMatcher.findAll(b.definition, matches);
+                    if (matches.count() > 0) {
+                        result.add(b.term);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Watches the glossary file until the thread is interrupted, updating the
+     * pages after each debounced burst of changes.
+     *
+     * @throws IOException
+     *             if the file cannot be watched
+     * @throws InterruptedException
+     *             when the thread is interrupted
+     */
+    public void watch() throws IOException, InterruptedException {
+        Path dir = this.input.toAbsolutePath().getParent();
+        Path name = this.input.getFileName();
+        try (WatchService service = FileSystems.getDefault()
+                .newWatchService()) {
+            dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                boolean relevant = drain(key, name);
+                /*
+                 * coalesce the rest of the burst
+                 */
+                key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    relevant = drain(key, name) || relevant;
+                    key = service.poll(DEBOUNCE_MILLIS,
+                            TimeUnit.MILLISECONDS);
+                }
+                if (relevant) {
+                    long start = System.nanoTime();
+                    try {
+                        Update u = this.update();
+                        System.out.println(String.format(
+                                "%.1f ms: %d pages written, %d deleted%s",
+                                (System.nanoTime() - start) / NANOS_PER_MILLI,
+                                u.pagesWritten(), u.pagesDeleted(),
+                                u.indexWritten() ? ", index.html written"
+                                        : ""));
+                    } catch (IOException e) {
+                        System.out.println("Failed: " + e);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Consumes the events of a key.
+     *
+     * @param key
+     *            the key
+     * @param name
+     *            name of the watched file
+     * @return true iff one of the events is about the watched file
+     */
+    private static boolean drain(WatchKey key, Path name) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            relevant = relevant || name.equals(event.context())
+                    || event.kind() == StandardWatchEventKinds.OVERFLOW;
+        }
+        key.reset();
+        return relevant;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the glossary file and the output folder
+     * @throws IOException
+     *             if the glossary cannot be read or watched
+     * @throws InterruptedException
+     *             when interrupted
+     */
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        if (args.length != 2) {
+            System.err.println("usage: GlossaryWatch <glossary> <folder>");
+        } else {
+            Files.createDirectories(Paths.get(args[1]));
+            GlossaryWatch watch = new GlossaryWatch(Paths.get(args[0]),
+                    args[1], SeparatorTable.fromString(SEPARATORS),
+                    new PageRenderEngine(Integer.getInteger(
+                            "glossary.parallelism",
+                            Runtime.getRuntime().availableProcessors())));
+            watch.buildAll();
+            System.out.println("Watching " + args[0]);
+            watch.watch();
+        }
+    }
+
+}
@@ -0,0 +1,304 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escaping of terms and definitions for the places a page puts them: HTML
+ * text, attribute values, and the links to term pages. One lookup table
+ * classifies every ASCII character for every context, and gives each context
+ * a table of the replacements of the characters it escapes. Text is escaped
+ * inside the UTF-8 encoding loop of {@code PageBuffer}, so escaping costs one
+ * table lookup per ASCII character and no second pass; in a link, the bytes
+ * of non-ASCII characters are replaced in the same loop.
+ *
+ * <p>
+ * A term page is named after its term, with the characters that cannot be in
+ * a file name (path separators, reserved characters of common file systems,
+ * control characters, and {@code %} itself) written as {@code %XX}, so no
+ * term can reach outside the output folder. A link to a term page is that
+ * file name percent-encoded as a URL path segment.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class HtmlEscaper {
+
+    /**
+     * Where text is put in a page.
+     */
+    public enum Context {
+        /**
+         * Text between tags: {@code &}, {@code <} and {@code >} are escaped.
+         */
+        TEXT,
+
+        /**
+         * An attribute value, quoted or not: quotes, backquote, {@code =} and
+         * white space are escaped too.
+         */
+        ATTRIBUTE,
+
+        /**
+         * A link to the page of a term: the page name of the term,
+         * percent-encoded.
+         */
+        URL
+    }
+
+    /**
+     * Characters with a class in the table.
+     */
+    private static final int ASCII = 128;
+
+    /**
+     * Class bit: escaped in HTML text.
+     */
+    private static final int TEXT = 1;
+
+    /**
+     * Class bit: escaped in attribute values.
+     */
+    private static final int ATTRIBUTE = 2;
+
+    /**
+     * Class bit: not an unreserved URL character.
+     */
+    private static final int URL = 4;
+
+    /**
+     * Class bit: not allowed in a page name.
+     */
+    private static final int FILE = 8;
+
+    /**
+     * Class bits of each ASCII character.
+     */
+    private static final byte[] CLASSES = new byte[ASCII];
+
+    /**
+     * Class bits escaped in each context, by ordinal.
+     */
+    private static final int[] MASKS = {TEXT, ATTRIBUTE, URL | FILE};
+
+    /**
+     * Character reference of each ASCII character escaped in text or
+     * attributes.
+     */
+    private static final byte[][] REFERENCES = new byte[ASCII][];
+
+    /**
+     * In a link, {@code %XX} of each byte value escaped in a URL, and
+     * {@code %25XX}, the percent-encoding of its {@code %XX}, of each ASCII
+     * character escaped in page names.
+     */
+    private static final byte[][] LINKS = new byte[2 * ASCII][];
+
+    /**
+     * Replacement of each character escaped in each context, null for the
+     * others, by ordinal.
+     */
+    private static final byte[][][] TABLES = new byte[MASKS.length][][];
+
+    /**
+     * Hexadecimal digits.
+     */
+    private static final String HEX = "0123456789ABCDEF";
+
+    /**
+     * Bits of a hexadecimal digit.
+     */
+    private static final int NIBBLE = 4;
+
+    /**
+     * Mask of a hexadecimal digit.
+     */
+    private static final int NIBBLE_MASK = 0xF;
+
+    /**
+     * Extension of a term page.
+     */
+    private static final String EXTENSION = ".html";
+
+    /**
+     * The DEL control character.
+     */
+    private static final char DEL = 0x7F;
+
+    static {
+        for (char c = 0; c < ASCII; c++) {
+            boolean unreserved = (c >= 'a' && c <= 'z')
+                    || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "-._~".indexOf(c) >= 0;
+            if (!unreserved) {
+                CLASSES[c] |= URL;
+            }
+            if (c < ' ' || c == DEL || "/\\:*?\"<>|%".indexOf(c) >= 0) {
+                CLASSES[c] |= FILE;
+            }
+            if ("&<>".indexOf(c) >= 0) {
+                CLASSES[c] |= TEXT;
+            }
+            if ("&<>\"'`= \t\n\f\r".indexOf(c) >= 0) {
+                CLASSES[c] |= ATTRIBUTE;
+            }
+        }
+        REFERENCES['&'] = bytes("&amp;");
+        REFERENCES['<'] = bytes("&lt;");
+        REFERENCES['>'] = bytes("&gt;");
+        REFERENCES['"'] = bytes("&quot;");
+        for (char c : "'`= \t\n\f\r".toCharArray()) {
+            REFERENCES[c] = bytes("&#" + (int) c + ";");
+        }
+        for (int b = 0; b < LINKS.length; b++) {
+            if (b >= ASCII || (CLASSES[b] & URL) != 0) {
+                LINKS[b] = bytes(percent(b));
+            }
+            if (b < ASCII && (CLASSES[b] & FILE) != 0) {
+                LINKS[b] = bytes("%25" + percent(b).substring(1));
+            }
+        }
+        for (int k = 0; k < MASKS.length; k++) {
+            TABLES[k] = LINKS;
+            if ((MASKS[k] & URL) == 0) {
+                TABLES[k] = new byte[ASCII][];
+                for (int c = 0; c < ASCII; c++) {
+                    if ((CLASSES[c] & MASKS[k]) != 0) {
+                        TABLES[k][c] = REFERENCES[c];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private HtmlEscaper() {
+    }
+
+    /**
+     * Encodes ASCII text.
+     *
+     * @param s
+     *            the text
+     * @return its bytes
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns {@code %XX} of a byte value.
+     *
+     * @param b
+     *            the byte value
+     * @return its percent-encoding
+     */
+    private static String percent(int b) {
+        return "%" + HEX.charAt(b >>> NIBBLE) + HEX.charAt(b & NIBBLE_MASK);
+    }
+
+    /**
+     * Appends characters {@code [start, end)} of {@code text}, escaped for
+     * {@code context}, encoded to UTF-8.
+     *
+     * @param context
+     *            where the text goes
+     * @param text
+     *            the text
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @param out
+     *            the page being rendered
+     * @updates out
+     * @requires 0 <= start <= end <= |text|
+     * @throws IllegalArgumentException
+     *             if the range holds an unpaired surrogate
+     */
+    public static void append(Context context, CharSequence text, int start,
+            int end, PageBuffer out) {
+        assert context != null : "Violation of: context is not null";
+        assert text != null : "Violation of: text is not null";
+        assert out != null : "Violation of: out is not null";
+
+        out.appendUtf8(text, start, end, TABLES[context.ordinal()]);
+    }
+
+    /**
+     * Returns {@code text} escaped for {@code context}.
+     *
+     * @param context
+     *            where the text goes
+     * @param text
+     *            the text
+     * @return the escaped text
+     */
+    public static String escape(Context context, CharSequence text) {
+        PageBuffer out = new PageBuffer();
+        append(context, text, 0, text.length(), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the file name of the page of a term.
+     *
+     * @param term
+     *            the term
+     * @return the term, characters not allowed in a file name written as
+     *         {@code %XX}, followed by ".html"
+     */
+    public static String fileName(CharSequence term) {
+        assert term != null : "Violation of: term is not null";
+
+        StringBuilder name = new StringBuilder(
+                term.length() + EXTENSION.length());
+        for (int k = 0; k < term.length(); k++) {
+            char c = term.charAt(k);
+            if (c < ASCII && (CLASSES[c] & FILE) != 0) {
+                name.append(percent(c));
+            } else {
+                name.append(c);
+            }
+        }
+        return name.append(EXTENSION).toString();
+    }
+
+    /**
+     * Returns the term whose page has the given file name.
+     *
+     * @param fileName
+     *            the file name
+     * @return the term, or null if fileName is not the name of a term page
+     */
+    public static String termOf(String fileName) {
+        assert fileName != null : "Violation of: fileName is not null";
+
+        boolean valid = fileName.endsWith(EXTENSION);
+        int length = fileName.length() - EXTENSION.length();
+        StringBuilder term = new StringBuilder();
+        int k = 0;
+        while (valid && k < length) {
+            char c = fileName.charAt(k);
+            if (c == '%') {
+                valid = k + 2 < length
+                        && HEX.indexOf(fileName.charAt(k + 1)) >= 0
+                        && HEX.indexOf(fileName.charAt(k + 2)) >= 0;
+                if (valid) {
+                    term.append((char) ((HEX.indexOf(fileName.charAt(k + 1))
+                            << NIBBLE) | HEX.indexOf(fileName.charAt(k + 2))));
+                }
+                k += 3;
+            } else {
+                valid = c >= ASCII || (CLASSES[c] & FILE) == 0;
+                term.append(c);
+                k++;
+            }
+        }
+        String result = null;
+        if (valid) {
+            result = term.toString();
+        }
+        return result;
+    }
+
+}
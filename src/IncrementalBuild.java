@@ -0,0 +1,555 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Incremental build of a glossary folder. A manifest kept next to the output
+ * folder ({@code <folder>.manifest}) records, for every term, a hash of what
+ * its page shows (the definition and the terms linked from it) and the set
+ * of terms it links to. The next build only rewrites the pages whose hash
+ * changed or whose file is missing, rewrites index.html only if the term set
+ * changed, and deletes the pages of removed terms. The manifest also records
+ * the fingerprint of the page layout; a build with another layout, or with
+ * another manifest version, rewrites every page but still deletes the pages
+ * of the terms the old manifest lists. A build from a link graph with
+ * backlinks also hashes the terms referring to each page, so a new link from
+ * A to B rewrites the page of B, and is recorded as such in the manifest
+ * header: turning backlinks on or off rewrites every page.
+ *
+ * @author Zheyuan Gao
+ */
+public final class IncrementalBuild {
+
+    /**
+     * First line of a manifest, followed by the layout fingerprint. A manifest
+     * with another header (older page format) or fingerprint (other
+     * templates) only says which pages exist: every page is rebuilt.
+     */
+    private static final String HEADER = "glossary-manifest 2";
+
+    /**
+     * Start of the first line of every version of the manifest.
+     */
+    private static final String MAGIC = "glossary-manifest ";
+
+    /**
+     * End of the first line of a manifest of a build with backlinks.
+     */
+    private static final String BACKLINKS = " backlinks";
+
+    /**
+     * Hash recorded for a page that failed; it matches no page, so the next
+     * build retries it.
+     */
+    private static final String NO_HASH = "-";
+
+    /**
+     * FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Outcome of an incremental build.
+     */
+    public static final class Result {
+
+        /**
+         * Number of term pages rewritten.
+         */
+        private final int pagesWritten;
+
+        /**
+         * Number of pages of removed terms deleted.
+         */
+        private final int pagesDeleted;
+
+        /**
+         * Whether index.html was rewritten.
+         */
+        private final boolean indexWritten;
+
+        /**
+         * Failed pages, as "term: reason".
+         */
+        private final List<String> failures;
+
+        /**
+         * Creates a result.
+         *
+         * @param pagesWritten
+         *            number of pages rewritten
+         * @param pagesDeleted
+         *            number of pages deleted
+         * @param indexWritten
+         *            whether index.html was rewritten
+         * @param failures
+         *            failed pages
+         */
+        Result(int pagesWritten, int pagesDeleted, boolean indexWritten,
+                List<String> failures) {
+            this.pagesWritten = pagesWritten;
+            this.pagesDeleted = pagesDeleted;
+            this.indexWritten = indexWritten;
+            this.failures = failures;
+        }
+
+        /**
+         * Reports the number of term pages rewritten.
+         *
+         * @return the number of pages rewritten
+         */
+        public int pagesWritten() {
+            return this.pagesWritten;
+        }
+
+        /**
+         * Reports the number of pages of removed terms that were deleted.
+         *
+         * @return the number of pages deleted
+         */
+        public int pagesDeleted() {
+            return this.pagesDeleted;
+        }
+
+        /**
+         * Reports whether index.html was rewritten.
+         *
+         * @return true iff index.html was rewritten
+         */
+        public boolean indexWritten() {
+            return this.indexWritten;
+        }
+
+        /**
+         * Returns the pages that failed, as "term: reason".
+         *
+         * @return the failures
+         */
+        public List<String> failures() {
+            return this.failures;
+        }
+    }
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private IncrementalBuild() {
+    }
+
+    /**
+     * Returns the manifest file of an output folder.
+     *
+     * @param folder
+     *            the output folder
+     * @return the manifest path
+     */
+    public static Path manifestOf(String folder) {
+        Path dir = Paths.get(folder).toAbsolutePath().normalize();
+        return dir.resolveSibling(dir.getFileName() + ".manifest");
+    }
+
+    /**
+     * Brings {@code folder} up to date with {@code glossary}, writing only
+     * what changed since the build recorded in the manifest.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param engine
+     *            the engine rendering the pages
+     * @return what the build did
+     * @throws IOException
+     *             if the index or the manifest cannot be written
+     * @requires folder exists
+     * @ensures folder holds the same pages a full build would write, and the
+     *          manifest describes them
+     */
+    public static Result build(String folder, GlossaryView glossary,
+            TermMatcher matcher, PageRenderEngine engine) throws IOException {
+        assert matcher != null : "Violation of: matcher is not null";
+
+        return build(folder, glossary, matcher, null, null, engine);
+    }
+
+    /**
+     * Brings {@code folder} up to date with {@code glossary}, taking the
+     * links from a link graph and listing on each page the terms referring
+     * to it when {@code backlinks} is not null, writing only what changed
+     * since the build recorded in the manifest.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param graph
+     *            the link graph built from glossary
+     * @param backlinks
+     *            the backlinks of graph, or null
+     * @param engine
+     *            the engine rendering the pages
+     * @return what the build did
+     * @throws IOException
+     *             if the index or the manifest cannot be written
+     * @requires folder exists
+     * @ensures folder holds the same pages a full build would write, and the
+     *          manifest describes them
+     */
+    public static Result build(String folder, GlossaryView glossary,
+            LinkGraph graph, Backlinks backlinks, PageRenderEngine engine)
+            throws IOException {
+        assert graph != null : "Violation of: graph is not null";
+
+        return build(folder, glossary, graph.matcher(), graph, backlinks,
+                engine);
+    }
+
+    /**
+     * Brings {@code folder} up to date with {@code glossary}, with the links
+     * taken from {@code graph} when it is not null and found by
+     * {@code matcher} otherwise.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param graph
+     *            the link graph built from glossary, or null
+     * @param backlinks
+     *            the backlinks of graph, or null
+     * @param engine
+     *            the engine rendering the pages
+     * @return what the build did
+     * @throws IOException
+     *             if the index or the manifest cannot be written
+     */
+    private static Result build(String folder, GlossaryView glossary,
+            TermMatcher matcher, LinkGraph graph, Backlinks backlinks,
+            PageRenderEngine engine) throws IOException {
+        assert folder != null : "Violation of: folder is not null";
+        assert glossary != null : "Violation of: glossary is not null";
+        assert engine != null : "Violation of: engine is not null";
+
+        Path manifest = manifestOf(folder);
+        String header = HEADER + " "
+                + Long.toHexString(engine.layout().fingerprint())
+                + (backlinks != null ? BACKLINKS : "");
+        HashMap<String, String> previous = new HashMap<>();
+        boolean current = readManifest(manifest, header, previous);
+        /*
+         * hash every page and compare with the previous build
+         */
+        int n = glossary.size();
+        String[] hashes = new String[n];
+        String[][] links = new String[n][];
+        int[] changed = new int[n];
+        int changedCount = 0;
+        int distinct = 0;
+        boolean termSetChanged = !current;
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        for (int i = 0; i < n; i++) {
+            String term = glossary.term(i);
+            if (i == 0 || !term.equals(glossary.term(i - 1))) {
+                distinct++;
+            }
+            String definition = glossary.definition(i);
+            if (graph != null) {
+                graph.matches(i, matches);
+            } else {
+                matcher.findAll(definition, matches);
+            }
+            long hash = hash(FNV_OFFSET, definition);
+            TreeSet<String> linked = new TreeSet<>();
+            for (int k = 0; k < matches.count(); k++) {
+                hash = mix(hash, matches.start(k));
+                hash = mix(hash, matches.end(k));
+                linked.add(glossary.term(matches.termId(k)));
+            }
+            if (backlinks != null) {
+                /*
+                 * the referring terms by name, not position, so adding a
+                 * term elsewhere does not change the hash
+                 */
+                for (int k = 0; k < backlinks.count(i); k++) {
+                    hash = mix(hash, '\n');
+                    hash = hash(hash, glossary.term(backlinks.source(i, k)));
+                }
+            }
+            hashes[i] = Long.toHexString(hash);
+            links[i] = linked.toArray(new String[0]);
+            String old = previous.get(term);
+            termSetChanged = termSetChanged || old == null;
+            if (!current || !hashes[i].equals(old)
+                    || !Files.exists(
+                            Paths.get(folder, HtmlEscaper.fileName(term)))) {
+                changed[changedCount] = i;
+                changedCount++;
+            }
+        }
+        /*
+         * the manifest has a line per distinct term, so with every term of
+         * the glossary in it, it has no other
+         */
+        termSetChanged = termSetChanged || previous.size() != distinct;
+        /*
+         * rewrite the changed pages, and the index if the terms or the
+         * layout changed
+         */
+        int[] ids = new int[changedCount];
+        System.arraycopy(changed, 0, ids, 0, changedCount);
+        PageRenderEngine.Report report;
+        if (graph != null) {
+            report = engine.render(folder, glossary, graph, backlinks, ids);
+        } else {
+            report = engine.render(folder, glossary, matcher, ids);
+        }
+        boolean indexWritten = termSetChanged
+                || !Files.exists(Paths.get(folder, "index.html"));
+        if (indexWritten) {
+            engine.writeIndex(folder, glossary);
+        }
+        /*
+         * delete the pages of terms that are gone
+         */
+        int deleted = 0;
+        for (String term : previous.keySet()) {
+            if (glossary.indexOf(term) < 0
+                    && Files.deleteIfExists(
+                            Paths.get(folder, HtmlEscaper.fileName(term)))) {
+                deleted++;
+            }
+        }
+        /*
+         * failed pages are recorded without a hash so the next build retries
+         * them
+         */
+        boolean[] failed = new boolean[n];
+        for (int i : report.failedIds()) {
+            failed[i] = true;
+        }
+        List<String> failures = new ArrayList<>(report.failures());
+        writeManifest(manifest, header, glossary, hashes, links, failed);
+        return new Result(report.pagesWritten(), deleted, indexWritten,
+                failures);
+    }
+
+    /**
+     * Reads the page hash of every term from a manifest.
+     *
+     * @param manifest
+     *            the manifest path
+     * @param header
+     *            the first line of a manifest of this build
+     * @param hashes
+     *            term to page hash
+     * @return true iff the manifest has the given header and every line has
+     *         a term and a hash, so its hashes can be compared with those of
+     *         this build
+     * @throws IOException
+     *             if the manifest exists but cannot be read
+     * @replaces hashes
+     * @ensures hashes holds the terms of the manifest, empty if there is no
+     *          usable manifest
+     */
+    private static boolean readManifest(Path manifest, String header,
+            HashMap<String, String> hashes) throws IOException {
+        hashes.clear();
+        boolean current = false;
+        if (Files.exists(manifest)) {
+            try (BufferedReader in = Files.newBufferedReader(manifest,
+                    StandardCharsets.UTF_8)) {
+                String first = in.readLine();
+                if (first != null && first.startsWith(MAGIC)) {
+                    current = first.equals(header);
+                    String line = in.readLine();
+                    while (line != null) {
+                        String[] fields = line.split("\t", -1);
+                        if (fields.length < 2) {
+                            /*
+                             * a truncated or hand-edited line: rebuild all
+                             */
+                            current = false;
+                            hashes.clear();
+                            line = null;
+                        } else {
+                            hashes.put(unescape(fields[0]), fields[1]);
+                            line = in.readLine();
+                        }
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Writes the manifest of a build, replacing the old one atomically.
+     *
+     * @param manifest
+     *            the manifest path
+     * @param header
+     *            the first line of the manifest
+     * @param glossary
+     *            the glossary
+     * @param hashes
+     *            page hash of each term
+     * @param links
+     *            sorted terms linked from each page
+     * @param failed
+     *            whether the page of each term failed
+     * @throws IOException
+     *             if the manifest cannot be written
+     */
+    private static void writeManifest(Path manifest, String header,
+            GlossaryView glossary, String[] hashes, String[][] links,
+            boolean[] failed) throws IOException {
+        Path tmp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp,
+                StandardCharsets.UTF_8)) {
+            out.write(header);
+            out.newLine();
+            for (int i = 0; i < glossary.size(); i++) {
+                String term = glossary.term(i);
+                /*
+                 * equal terms share the page of the first
+                 */
+                if (i == 0 || !term.equals(glossary.term(i - 1))) {
+                    out.write(escape(term));
+                    out.write('\t');
+                    if (failed[i]) {
+                        out.write(NO_HASH);
+                    } else {
+                        out.write(hashes[i]);
+                    }
+                    for (String link : links[i]) {
+                        out.write('\t');
+                        out.write(escape(link));
+                    }
+                    out.newLine();
+                }
+            }
+        }
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the terms the page of {@code term} linked to in the build
+     * recorded by a manifest.
+     *
+     * @param folder
+     *            the output folder
+     * @param term
+     *            the term
+     * @return the linked terms, empty if the term is not in the manifest
+     * @throws IOException
+     *             if the manifest cannot be read
+     */
+    public static List<String> linksOf(String folder, String term)
+            throws IOException {
+        List<String> links = new ArrayList<>();
+        Path manifest = manifestOf(folder);
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest,
+                    StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length > 1 && unescape(fields[0]).equals(term)) {
+                    for (int k = 2; k < fields.length; k++) {
+                        links.add(unescape(fields[k]));
+                    }
+                }
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Adds the characters of {@code str} to a FNV-1a hash.
+     *
+     * @param hash
+     *            the hash so far
+     * @param str
+     *            the text
+     * @return the new hash
+     */
+    private static long hash(long hash, String str) {
+        long h = hash;
+        for (int i = 0; i < str.length(); i++) {
+            h = mix(h, str.charAt(i));
+        }
+        return h;
+    }
+
+    /**
+     * Adds one value to a FNV-1a hash.
+     *
+     * @param hash
+     *            the hash so far
+     * @param value
+     *            the value
+     * @return the new hash
+     */
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    /**
+     * Escapes tabs, line breaks and backslashes of a term for the manifest.
+     *
+     * @param str
+     *            the term
+     * @return the escaped term
+     */
+    private static String escape(String str) {
+        return str.replace("\\", "\\\\").replace("\t", "\\t")
+                .replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    /**
+     * Reverses {@code escape}.
+     *
+     * @param str
+     *            the escaped term
+     * @return the term
+     */
+    private static String unescape(String str) {
+        StringBuilder sb = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '\\' && i + 1 < str.length()) {
+                i++;
+                char e = str.charAt(i);
+                if (e == 't') {
+                    c = '\t';
+                } else if (e == 'r') {
+                    c = '\r';
+                } else if (e == 'n') {
+                    c = '\n';
+                } else {
+                    c = e;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,528 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * The links between the terms of a glossary, found once in every definition
+ * and kept in compressed sparse row form: the links of term i are entries
+ * {@code offsets[i]} to {@code offsets[i + 1]} of the target, start and end
+ * arrays, in the order they appear in the definition. Term ids are positions
+ * in the glossary. The page generator takes its links from here instead of
+ * searching the definitions again, and the graph reports orphan terms,
+ * links to terms without a definition, strongly connected components and the
+ * most linked-to terms.
+ *
+ * @author Zheyuan Gao
+ */
+public final class LinkGraph {
+
+    /**
+     * Number of terms scanned by one task of the parallel pass.
+     */
+    private static final int CHUNK = 1024;
+
+    /**
+     * Not yet visited, in the component search.
+     */
+    private static final int UNVISITED = -1;
+
+    /**
+     * The matcher the links were found with.
+     */
+    private final TermMatcher matcher;
+
+    /**
+     * Start of the links of each term; one more entry than terms.
+     */
+    private final int[] offsets;
+
+    /**
+     * Term linked to by each link.
+     */
+    private final int[] targets;
+
+    /**
+     * Start of each link in the definition.
+     */
+    private final int[] starts;
+
+    /**
+     * End (exclusive) of each link in the definition.
+     */
+    private final int[] ends;
+
+    /**
+     * Number of other terms linking to each term; a term mentioned several
+     * times in one definition counts once, and links of a term to itself
+     * not at all.
+     */
+    private final int[] inDegree;
+
+    /**
+     * Links found in one chunk of terms.
+     */
+    private static final class Chunk {
+
+        /**
+         * Number of links of each term of the chunk.
+         */
+        private final int[] counts;
+
+        /**
+         * Targets of the links, term after term.
+         */
+        private int[] targets = new int[CHUNK];
+
+        /**
+         * Starts of the links.
+         */
+        private int[] starts = new int[CHUNK];
+
+        /**
+         * Ends of the links.
+         */
+        private int[] ends = new int[CHUNK];
+
+        /**
+         * Number of links.
+         */
+        private int size;
+
+        /**
+         * Finds the links of the terms at {@code [from, to)}.
+         *
+         * @param glossary
+         *            the glossary
+         * @param matcher
+         *            the matcher
+         * @param from
+         *            the first term
+         * @param to
+         *            the term after the last
+         */
+        Chunk(GlossaryView glossary, TermMatcher matcher, int from, int to) {
+            this.counts = new int[to - from];
+            TermMatcher.Matches matches = new TermMatcher.Matches();
+            for (int i = from; i < to; i++) {
+                matcher.findAll(glossary.definition(i), matches);
+                this.counts[i - from] = matches.count();
+                if (this.size + matches.count() > this.targets.length) {
+                    int capacity = Math.max(2 * this.targets.length,
+                            this.size + matches.count());
+                    this.targets = Arrays.copyOf(this.targets, capacity);
+                    this.starts = Arrays.copyOf(this.starts, capacity);
+                    this.ends = Arrays.copyOf(this.ends, capacity);
+                }
+                for (int k = 0; k < matches.count(); k++) {
+                    this.targets[this.size] = matches.termId(k);
+                    this.starts[this.size] = matches.start(k);
+                    this.ends[this.size] = matches.end(k);
+                    this.size++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a graph from its arrays.
+     *
+     * @param matcher
+     *            the matcher the links were found with
+     * @param offsets
+     *            start of the links of each term
+     * @param targets
+     *            targets of the links
+     * @param starts
+     *            starts of the links
+     * @param ends
+     *            ends of the links
+     */
+    private LinkGraph(TermMatcher matcher, int[] offsets, int[] targets,
+            int[] starts, int[] ends) {
+        this.matcher = matcher;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.starts = starts;
+        this.ends = ends;
+        this.inDegree = new int[offsets.length - 1];
+        /*
+         * last term seen linking to each term, so each source counts once
+         */
+        int[] lastSource = new int[this.inDegree.length];
+        Arrays.fill(lastSource, -1);
+        for (int i = 0; i < this.inDegree.length; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                int t = targets[e];
+                if (t != i && lastSource[t] != i) {
+                    lastSource[t] = i;
+                    this.inDegree[t]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the links in every definition of the glossary, in parallel on
+     * {@code pool}.
+     *
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param pool
+     *            the worker pool
+     * @return the graph
+     */
+    public static LinkGraph build(GlossaryView glossary, TermMatcher matcher,
+            ForkJoinPool pool) {
+        assert glossary != null : "Violation of: glossary is not null";
+        assert matcher != null : "Violation of: matcher is not null";
+        assert pool != null : "Violation of: pool is not null";
+
+        int n = glossary.size();
+        int chunkCount = (n + CHUNK - 1) / CHUNK;
+        Chunk[] chunks = new Chunk[chunkCount];
+        Runnable scan = () -> IntStream.range(0, chunkCount).parallel()
+                .forEach(c -> chunks[c] = new Chunk(glossary, matcher,
+                        c * CHUNK, Math.min(n, (c + 1) * CHUNK)));
+        if (ForkJoinTask.getPool() == pool) {
+            scan.run();
+        } else {
+            pool.submit(scan).join();
+        }
+        /*
+         * concatenate the chunks in term order
+         */
+        int[] offsets = new int[n + 1];
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total = Math.addExact(total, chunk.size);
+        }
+        int[] targets = new int[total];
+        int[] starts = new int[total];
+        int[] ends = new int[total];
+        int e = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            Chunk chunk = chunks[c];
+            for (int k = 0; k < chunk.counts.length; k++) {
+                int i = c * CHUNK + k;
+                offsets[i + 1] = offsets[i] + chunk.counts[k];
+            }
+            System.arraycopy(chunk.targets, 0, targets, e, chunk.size);
+            System.arraycopy(chunk.starts, 0, starts, e, chunk.size);
+            System.arraycopy(chunk.ends, 0, ends, e, chunk.size);
+            e += chunk.size;
+        }
+        return new LinkGraph(matcher, offsets, targets, starts, ends);
+    }
+
+    /**
+     * Creates a graph from links found earlier, as a
+     * {@code GlossarySnapshot} stores them. The arrays are kept.
+     *
+     * @param matcher
+     *            the matcher built from the terms of the glossary
+     * @param offsets
+     *            start of the links of each term; one more entry than terms
+     * @param targets
+     *            targets of the links
+     * @param starts
+     *            starts of the links
+     * @param ends
+     *            ends of the links
+     * @return the graph
+     * @requires the arrays describe the links matcher finds in the glossary
+     */
+    static LinkGraph of(TermMatcher matcher, int[] offsets, int[] targets,
+            int[] starts, int[] ends) {
+        assert matcher != null : "Violation of: matcher is not null";
+        assert offsets != null : "Violation of: offsets is not null";
+        assert targets != null : "Violation of: targets is not null";
+        assert starts != null : "Violation of: starts is not null";
+        assert ends != null : "Violation of: ends is not null";
+
+        return new LinkGraph(matcher, offsets, targets, starts, ends);
+    }
+
+    /**
+     * Returns the matcher the links were found with.
+     *
+     * @return the matcher
+     */
+    public TermMatcher matcher() {
+        return this.matcher;
+    }
+
+    /**
+     * Reports the number of terms.
+     *
+     * @return the number of terms
+     */
+    public int size() {
+        return this.inDegree.length;
+    }
+
+    /**
+     * Reports the number of links.
+     *
+     * @return the number of links
+     */
+    public int links() {
+        return this.targets.length;
+    }
+
+    /**
+     * Reports the number of links in the definition of term {@code i}.
+     *
+     * @param i
+     *            the term
+     * @return its number of links
+     */
+    public int outDegree(int i) {
+        return this.offsets[i + 1] - this.offsets[i];
+    }
+
+    /**
+     * Reports the number of other terms whose definitions link to term
+     * {@code i}, however many times each mentions it.
+     *
+     * @param i
+     *            the term
+     * @return its number of linking terms
+     */
+    public int inDegree(int i) {
+        return this.inDegree[i];
+    }
+
+    /**
+     * Returns the target of the k-th link of term {@code i}.
+     *
+     * @param i
+     *            the term
+     * @param k
+     *            the link
+     * @return the term linked to
+     * @requires 0 <= k < outDegree(i)
+     */
+    public int target(int i, int k) {
+        return this.targets[this.offsets[i] + k];
+    }
+
+    /**
+     * Fills {@code matches} with the links of term {@code i}, as
+     * {@code findAll} on its definition would.
+     *
+     * @param i
+     *            the term
+     * @param matches
+     *            the buffer to fill
+     * @replaces matches
+     */
+    public void matches(int i, TermMatcher.Matches matches) {
+        matches.clear();
+        for (int e = this.offsets[i]; e < this.offsets[i + 1]; e++) {
+            matches.add(this.starts[e], this.ends[e], this.targets[e]);
+        }
+    }
+
+    /**
+     * Returns the terms no other term links to.
+     *
+     * @return their ids, in order
+     */
+    public int[] orphans() {
+        return IntStream.range(0, this.size())
+                .filter(i -> this.inDegree[i] == 0).toArray();
+    }
+
+    /**
+     * Returns the links to terms whose definition is blank: references to
+     * terms that exist but are not really defined. Every link goes to a
+     * term of the glossary, since only its terms are matched.
+     *
+     * @param glossary
+     *            the glossary the graph was built from
+     * @return pairs of term ids, from and to, flattened
+     */
+    public int[] undefinedReferences(GlossaryView glossary) {
+        boolean[] blank = new boolean[this.size()];
+        for (int i = 0; i < blank.length; i++) {
+            blank[i] = glossary.definition(i).isBlank();
+        }
+        int[] pairs = new int[0];
+        int n = 0;
+        for (int i = 0; i < this.size(); i++) {
+            for (int e = this.offsets[i]; e < this.offsets[i + 1]; e++) {
+                if (blank[this.targets[e]]) {
+                    if (n + 2 > pairs.length) {
+                        pairs = Arrays.copyOf(pairs, 2 * n + 2);
+                    }
+                    pairs[n] = i;
+                    pairs[n + 1] = this.targets[e];
+                    n += 2;
+                }
+            }
+        }
+        return Arrays.copyOf(pairs, n);
+    }
+
+    /**
+     * Finds the strongly connected components with Tarjan's algorithm,
+     * iteratively so deep chains cannot overflow the stack.
+     *
+     * @return the components of more than one term or with a link to
+     *         themselves, largest first, each sorted by id
+     */
+    public List<int[]> stronglyConnectedComponents() {
+        int n = this.size();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, UNVISITED);
+        int[] stack = new int[n];
+        int top = 0;
+        int[] callNode = new int[n];
+        int[] callEdge = new int[n];
+        int next = 0;
+        List<int[]> components = new ArrayList<>();
+        for (int root = 0; root < n; root++) {
+            if (index[root] == UNVISITED) {
+                int depth = 0;
+                callNode[0] = root;
+                callEdge[0] = this.offsets[root];
+                index[root] = next;
+                low[root] = next;
+                next++;
+                stack[top] = root;
+                top++;
+                onStack[root] = true;
+                while (depth >= 0) {
+                    int v = callNode[depth];
+                    if (callEdge[depth] < this.offsets[v + 1]) {
+                        int w = this.targets[callEdge[depth]];
+                        callEdge[depth]++;
+                        if (index[w] == UNVISITED) {
+                            index[w] = next;
+                            low[w] = next;
+                            next++;
+                            stack[top] = w;
+                            top++;
+                            onStack[w] = true;
+                            depth++;
+                            callNode[depth] = w;
+                            callEdge[depth] = this.offsets[w];
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], index[w]);
+                        }
+                    } else {
+                        if (low[v] == index[v]) {
+                            int from = top;
+                            do {
+                                from--;
+                                onStack[stack[from]] = false;
+                            } while (stack[from] != v);
+                            int[] component = Arrays.copyOfRange(stack, from,
+                                    top);
+                            top = from;
+                            if (component.length > 1 || this.linksTo(v, v)) {
+                                Arrays.sort(component);
+                                components.add(component);
+                            }
+                        }
+                        depth--;
+                        if (depth >= 0) {
+                            int u = callNode[depth];
+                            low[u] = Math.min(low[u], low[v]);
+                        }
+                    }
+                }
+            }
+        }
+        components.sort(Comparator.<int[]>comparingInt(c -> -c.length)
+                .thenComparingInt(c -> c[0]));
+        return components;
+    }
+
+    /**
+     * Reports whether term {@code i} links to term {@code j}.
+     *
+     * @param i
+     *            the term linking
+     * @param j
+     *            the term linked to
+     * @return true iff the definition of i links to j
+     */
+    private boolean linksTo(int i, int j) {
+        boolean found = false;
+        for (int e = this.offsets[i]; e < this.offsets[i + 1] && !found; e++) {
+            found = this.targets[e] == j;
+        }
+        return found;
+    }
+
+    /**
+     * Returns the {@code k} terms linked to by the most other terms, by
+     * falling in-degree, then by id.
+     *
+     * @param k
+     *            how many terms
+     * @return their ids
+     */
+    public int[] topFanIn(int k) {
+        return IntStream.range(0, this.size()).boxed()
+                .sorted(Comparator.<Integer>comparingInt(
+                        i -> -this.inDegree[i]).thenComparingInt(i -> i))
+                .limit(k).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Writes a plain text report of the graph.
+     *
+     * @param glossary
+     *            the glossary the graph was built from
+     * @param top
+     *            number of most linked-to terms to list
+     * @return the report
+     */
+    public String report(GlossaryView glossary, int top) {
+        String nl = System.lineSeparator();
+        StringBuilder r = new StringBuilder();
+        r.append(this.size()).append(" terms, ").append(this.links())
+                .append(" links").append(nl);
+        int[] orphans = this.orphans();
+        r.append(nl).append("Orphans (").append(orphans.length).append(')')
+                .append(nl);
+        for (int i : orphans) {
+            r.append("  ").append(glossary.term(i)).append(nl);
+        }
+        int[] undefined = this.undefinedReferences(glossary);
+        r.append(nl).append("Links to terms without a definition (")
+                .append(undefined.length / 2).append(')').append(nl);
+        for (int k = 0; k < undefined.length; k += 2) {
+            r.append("  ").append(glossary.term(undefined[k])).append(" -> ")
+                    .append(glossary.term(undefined[k + 1])).append(nl);
+        }
+        List<int[]> components = this.stronglyConnectedComponents();
+        r.append(nl).append("Cycles: strongly connected components (")
+                .append(components.size()).append(')').append(nl);
+        for (int[] component : components) {
+            r.append("  ").append(component.length).append(':');
+            for (int i : component) {
+                r.append(' ').append(glossary.term(i));
+            }
+            r.append(nl);
+        }
+        r.append(nl).append("Most linked-to terms (linking terms)")
+                .append(nl);
+        for (int i : this.topFanIn(top)) {
+            r.append(String.format("  %8d  %s", this.inDegree[i],
+                    glossary.term(i))).append(nl);
+        }
+        return r.toString();
+    }
+
+}
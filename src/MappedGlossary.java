@@ -0,0 +1,458 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Glossary read straight from a memory-mapped UTF-8 file. The file is
+ * scanned once over the mapped bytes for its term/definition/blank-line
+ * structure; each entry is kept as byte offsets into the mapping, and a term
+ * or definition only becomes a {@code String} when it is asked for. Blocks
+ * are recognized exactly as {@code GlossaryIngester} does: the term line, the
+ * line after it, then every line up to a blank line, joined as they are.
+ *
+ * @author Zheyuan Gao
+ */
+public final class MappedGlossary implements GlossaryView, Closeable {
+
+    /**
+     * log2 of the size of a mapped window.
+     */
+    private static final int WINDOW_SHIFT = 30;
+
+    /**
+     * Size of a mapped window; files larger than this are mapped in pieces.
+     */
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+
+    /**
+     * Offset of a byte inside its window.
+     */
+    private static final long WINDOW_MASK = WINDOW_SIZE - 1;
+
+    /**
+     * Longs per entry: term start, term end, definition start, definition
+     * end.
+     */
+    private static final int FIELDS = 4;
+
+    /**
+     * Initial number of entries.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Mask of a byte value.
+     */
+    private static final int BYTE = 0xFF;
+
+    /**
+     * Smallest UTF-8 lead byte of U+E000..U+FFFF, which UTF-16 (and so
+     * {@code String.compareTo}) sorts after supplementary characters.
+     */
+    private static final int HIGH_BMP_LEAD = 0xEE;
+
+    /**
+     * Shift moving lead bytes 0xEE and 0xEF above the supplementary lead
+     * bytes 0xF0..0xF4.
+     */
+    private static final int HIGH_BMP_SHIFT = 7;
+
+    /**
+     * Parser state: the next line is a term.
+     */
+    private static final int TERM = 0;
+
+    /**
+     * Parser state: the next line is the first line of a definition.
+     */
+    private static final int FIRST_LINE = 1;
+
+    /**
+     * Parser state: the next line continues a definition.
+     */
+    private static final int MORE_LINES = 2;
+
+    /**
+     * The mapped file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped windows of the file.
+     */
+    private final MappedByteBuffer[] windows;
+
+    /**
+     * Offsets of the entries, {@code FIELDS} longs each, in file order.
+     */
+    private long[] entries;
+
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    /**
+     * Entry numbers in term order.
+     */
+    private int[] order;
+
+    /**
+     * Maps {@code file} and scans it.
+     *
+     * @param file
+     *            the glossary file
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    private MappedGlossary(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        long length = this.channel.size();
+        int count = (int) ((length + WINDOW_SIZE - 1) >>> WINDOW_SHIFT);
+        this.windows = new MappedByteBuffer[count];
+        for (int w = 0; w < count; w++) {
+            long start = (long) w << WINDOW_SHIFT;
+            this.windows[w] = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                    start, Math.min(WINDOW_SIZE, length - start));
+        }
+        this.entries = new long[FIELDS * INITIAL_CAPACITY];
+        this.size = 0;
+        this.scan(length);
+        this.order = new int[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.order[i] = i;
+        }
+        this.sort(this.order, new int[this.size], 0, this.size);
+    }
+
+    /**
+     * Maps a glossary file and scans it for entries.
+     *
+     * @param file
+     *            the glossary file
+     * @return the glossary
+     * @throws IOException
+     *             if the file cannot be mapped
+     * @requires file is UTF-8
+     * @ensures the glossary has the same entries GlossaryIngester would read
+     */
+    public static MappedGlossary open(Path file) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        return new MappedGlossary(file);
+    }
+
+    /**
+     * Returns the byte at an offset of the file.
+     *
+     * @param pos
+     *            the offset
+     * @return the byte
+     */
+    private byte byteAt(long pos) {
+        return this.windows[(int) (pos >>> WINDOW_SHIFT)]
+                .get((int) (pos & WINDOW_MASK));
+    }
+
+    /**
+     * Scans the whole file line by line, recording each entry.
+     *
+     * @param length
+     *            the file length
+     */
+    private void scan(long length) {
+        int state = TERM;
+        long lineStart = 0;
+        for (int w = 0; w < this.windows.length; w++) {
+            MappedByteBuffer window = this.windows[w];
+            long base = (long) w << WINDOW_SHIFT;
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    long next = base + i + 1;
+                    state = this.line(state, lineStart, next);
+                    lineStart = next;
+                }
+            }
+        }
+        if (lineStart < length) {
+            state = this.line(state, lineStart, length);
+        }
+        if (state != TERM) {
+            /*
+             * the file ended inside a block
+             */
+            this.size++;
+        }
+    }
+
+    /**
+     * Feeds one line to the block parser.
+     *
+     * @param state
+     *            the parser state
+     * @param start
+     *            offset of the line
+     * @param next
+     *            offset after the line and its line break
+     * @return the new parser state
+     */
+    private int line(int state, long start, long next) {
+        int result = state;
+        if (state == TERM) {
+            int e = FIELDS * this.size;
+            if (e == this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries, 2 * e);
+            }
+            this.entries[e] = start;
+            this.entries[e + 1] = this.contentEnd(start, next);
+            this.entries[e + 2] = next;
+            this.entries[e + 3] = next;
+            result = FIRST_LINE;
+        } else {
+            int e = FIELDS * this.size;
+            this.entries[e + 3] = next;
+            result = MORE_LINES;
+            if (state == MORE_LINES && this.contentEnd(start, next) == start) {
+                /*
+                 * a blank line ends the block
+                 */
+                this.size++;
+                result = TERM;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the end of a line without its line break.
+     *
+     * @param start
+     *            offset of the line
+     * @param next
+     *            offset after the line and its line break
+     * @return offset of the end of the line's text
+     */
+    private long contentEnd(long start, long next) {
+        long end = next;
+        if (end > start && this.byteAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && this.byteAt(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Compares two byte ranges of the file in {@code String.compareTo}
+     * order.
+     *
+     * @param s1
+     *            start of the first range
+     * @param e1
+     *            end of the first range
+     * @param s2
+     *            start of the second range
+     * @param e2
+     *            end of the second range
+     * @return negative, zero or positive as the first range sorts before, with
+     *         or after the second
+     */
+    private int compare(long s1, long e1, long s2, long e2) {
+        long n = Math.min(e1 - s1, e2 - s2);
+        int result = 0;
+        for (long k = 0; k < n && result == 0; k++) {
+            result = rank(this.byteAt(s1 + k)) - rank(this.byteAt(s2 + k));
+        }
+        if (result == 0) {
+            result = Long.compare(e1 - s1, e2 - s2);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sort rank of a UTF-8 byte, so that comparing ranks of the
+     * first differing bytes gives UTF-16 order.
+     *
+     * @param b
+     *            the byte
+     * @return its rank
+     */
+    private static int rank(byte b) {
+        int v = b & BYTE;
+        if (v == HIGH_BMP_LEAD || v == HIGH_BMP_LEAD + 1) {
+            v += HIGH_BMP_SHIFT;
+        }
+        return v;
+    }
+
+    /**
+     * Merge-sorts {@code a[from, to)} by term.
+     *
+     * @param a
+     *            the entry numbers
+     * @param tmp
+     *            scratch space as long as a
+     * @param from
+     *            start of the range
+     * @param to
+     *            end of the range
+     */
+    private void sort(int[] a, int[] tmp, int from, int to) {
+        if (to - from > 1) {
+            int middle = (from + to) >>> 1;
+            this.sort(a, tmp, from, middle);
+            this.sort(a, tmp, middle, to);
+            int i = from;
+            int j = middle;
+            int k = from;
+            while (i < middle && j < to) {
+                if (this.compareTerms(a[j], a[i]) < 0) {
+                    tmp[k] = a[j];
+                    j++;
+                } else {
+                    tmp[k] = a[i];
+                    i++;
+                }
+                k++;
+            }
+            System.arraycopy(a, i, tmp, k, middle - i);
+            System.arraycopy(a, j, tmp, k + middle - i, to - j);
+            System.arraycopy(tmp, from, a, from, to - from);
+        }
+    }
+
+    /**
+     * Compares the terms of two entries.
+     *
+     * @param x
+     *            first entry number
+     * @param y
+     *            second entry number
+     * @return negative, zero or positive as in {@code compare}
+     */
+    private int compareTerms(int x, int y) {
+        return this.compare(this.entries[FIELDS * x],
+                this.entries[FIELDS * x + 1], this.entries[FIELDS * y],
+                this.entries[FIELDS * y + 1]);
+    }
+
+    /**
+     * Decodes a byte range of the file.
+     *
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @return the decoded text
+     */
+    private String decode(long start, long end) {
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int k = 0; k < bytes.length; k++) {
+            bytes[k] = this.byteAt(start + k);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public String term(int i) {
+        int e = FIELDS * this.order[i];
+        return this.decode(this.entries[e], this.entries[e + 1]);
+    }
+
+    @Override
+    public String definition(int i) {
+        int e = FIELDS * this.order[i];
+        long end = this.entries[e + 3];
+        StringBuilder sb = new StringBuilder();
+        /*
+         * join the lines of the definition without their line breaks
+         */
+        long start = this.entries[e + 2];
+        while (start < end) {
+            long next = start;
+            while (next < end && this.byteAt(next) != '\n') {
+                next++;
+            }
+            if (next < end) {
+                next++;
+            }
+            sb.append(this.decode(start, this.contentEnd(start, next)));
+            start = next;
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public int indexOf(String term) {
+        assert term != null : "Violation of: term is not null";
+
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = this.size - 1;
+        int result = -1;
+        while (low <= high && result < 0) {
+            int middle = (low + high) >>> 1;
+            int e = FIELDS * this.order[middle];
+            int c = this.compareKey(this.entries[e], this.entries[e + 1], key);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                result = middle;
+            }
+        }
+        if (result < 0) {
+            result = -(low + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Compares a byte range of the file with a UTF-8 key.
+     *
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @param key
+     *            the key
+     * @return negative, zero or positive as the range sorts before, with or
+     *         after the key
+     */
+    private int compareKey(long start, long end, byte[] key) {
+        long n = Math.min(end - start, key.length);
+        int result = 0;
+        for (int k = 0; k < n && result == 0; k++) {
+            result = rank(this.byteAt(start + k)) - rank(key[k]);
+        }
+        if (result == 0) {
+            result = Long.compare(end - start, key.length);
+        }
+        return result;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released once it is no longer
+     * reachable.
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+}
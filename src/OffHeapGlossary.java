@@ -0,0 +1,400 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import components.simplereader.SimpleReader;
+
+/**
+ * Glossary whose definitions are kept off the heap. Only the terms and, for
+ * each definition, where it is stored and its length stay on the heap; the
+ * definitions are encoded to UTF-8 as they are read and appended either to
+ * direct buffers or to a spill file, and a definition is decoded only when
+ * it is asked for, so a build needs heap for the terms and the pages being
+ * rendered, not for the whole glossary. Reads are positional, so pages can
+ * be rendered from several threads at once.
+ *
+ * <p>
+ * Direct buffers are not free memory: together they are capped by
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size
+ * ({@code -Xmx}), so a glossary too large for the heap is usually too large
+ * for direct buffers as well. Reading without naming a spill file therefore
+ * spills to a temporary file; direct buffers are only used when asked for,
+ * and running out of direct memory is reported as an {@code IOException}
+ * naming the flag to raise.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class OffHeapGlossary implements GlossaryView, Closeable {
+
+    /**
+     * Size of one direct buffer.
+     */
+    private static final int SEGMENT = 1 << 26;
+
+    /**
+     * Size of the write buffer of a spill file.
+     */
+    private static final int SPILL_BUFFER = 1 << 20;
+
+    /**
+     * Initial capacity of the entry arrays.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Bits of a direct location holding the position in its buffer.
+     */
+    private static final int POSITION_BITS = 32;
+
+    /**
+     * Mask of the position in a direct location.
+     */
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+    /**
+     * Order used for the terms.
+     */
+    private static final Comparator<String> ORDER = new Glossary.StringLT();
+
+    /**
+     * Sorted terms.
+     */
+    private final String[] terms;
+
+    /**
+     * Where each definition is stored, in term order: the buffer number and
+     * the position in it, or the offset in the spill file.
+     */
+    private final long[] locations;
+
+    /**
+     * Length in bytes of each definition, in term order.
+     */
+    private final int[] lengths;
+
+    /**
+     * The direct buffers; empty when the definitions are spilled.
+     */
+    private final List<ByteBuffer> segments;
+
+    /**
+     * The spill file, or null.
+     */
+    private final Path spill;
+
+    /**
+     * The open spill file, or null.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Creates a glossary from its parts.
+     *
+     * @param terms
+     *            the sorted terms
+     * @param locations
+     *            where each definition is stored
+     * @param lengths
+     *            length of each definition
+     * @param segments
+     *            the direct buffers
+     * @param spill
+     *            the spill file, or null
+     * @param channel
+     *            the open spill file, or null
+     */
+    private OffHeapGlossary(String[] terms, long[] locations, int[] lengths,
+            List<ByteBuffer> segments, Path spill, FileChannel channel) {
+        this.terms = terms;
+        this.locations = locations;
+        this.lengths = lengths;
+        this.segments = segments;
+        this.spill = spill;
+        this.channel = channel;
+    }
+
+    /**
+     * Reads every term/definition block from {@code input}, as
+     * {@code GlossaryIngester} does, storing the definitions in a temporary
+     * spill file, deleted when the glossary is closed.
+     *
+     * @param input
+     *            the reader to read from
+     * @return the glossary
+     * @throws IOException
+     *             if the spill file cannot be created or written
+     * @requires input is open
+     * @ensures the glossary has the same entries GlossaryIngester would read
+     */
+    public static OffHeapGlossary read(SimpleReader input)
+            throws IOException {
+        Path spill = Files.createTempFile("glossary", ".spill");
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(spill, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            Files.deleteIfExists(spill);
+            throw e;
+        }
+        return read(input, spill, channel);
+    }
+
+    /**
+     * Reads every term/definition block from {@code input}, as
+     * {@code GlossaryIngester} does, storing the definitions in direct
+     * buffers, or in {@code spill} when it is not null. The spill file must
+     * not exist yet, so an existing file is never overwritten; it is created
+     * here and deleted when the glossary is closed.
+     *
+     * @param input
+     *            the reader to read from
+     * @param spill
+     *            the spill file, or null
+     * @return the glossary
+     * @throws IOException
+     *             if the spill file already exists or cannot be written, or
+     *             the direct buffers would go over
+     *             {@code -XX:MaxDirectMemorySize}
+     * @requires input is open
+     * @ensures the glossary has the same entries GlossaryIngester would read
+     */
+    public static OffHeapGlossary read(SimpleReader input, Path spill)
+            throws IOException {
+        FileChannel channel = null;
+        if (spill != null) {
+            channel = FileChannel.open(spill, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return read(input, spill, channel);
+    }
+
+    /**
+     * Reads every term/definition block from {@code input} into direct
+     * buffers, or into {@code channel} when it is not null. The spill file
+     * is one this class created: it is deleted if reading fails, and when
+     * the glossary is closed otherwise.
+     *
+     * @param input
+     *            the reader to read from
+     * @param spill
+     *            the spill file, or null
+     * @param channel
+     *            the open, empty spill file, or null
+     * @return the glossary
+     * @throws IOException
+     *             if the spill file cannot be written, or the direct buffers
+     *             would go over {@code -XX:MaxDirectMemorySize}
+     * @requires input is open
+     */
+    private static OffHeapGlossary read(SimpleReader input, Path spill,
+            FileChannel channel) throws IOException {
+        assert input != null : "Violation of: input is not null";
+
+        List<ByteBuffer> segments = new ArrayList<>();
+        ByteBuffer pending = null;
+        long spilled = 0;
+        String[] terms = new String[INITIAL_CAPACITY];
+        long[] locations = new long[INITIAL_CAPACITY];
+        int[] lengths = new int[INITIAL_CAPACITY];
+        int n = 0;
+        StringBuilder sb = new StringBuilder();
+        try {
+            if (channel != null) {
+                pending = ByteBuffer.allocateDirect(SPILL_BUFFER);
+            }
+            while (!input.atEOS()) {
+                String word = GlossaryIngester.readBlock(input, sb);
+                if (n == terms.length) {
+                    terms = Arrays.copyOf(terms, 2 * n);
+                    locations = Arrays.copyOf(locations, 2 * n);
+                    lengths = Arrays.copyOf(lengths, 2 * n);
+                }
+                byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                terms[n] = word;
+                lengths[n] = bytes.length;
+                if (channel != null) {
+                    locations[n] = spilled;
+                    spilled += bytes.length;
+                    int done = 0;
+                    while (done < bytes.length) {
+                        int k = Math.min(pending.remaining(),
+                                bytes.length - done);
+                        pending.put(bytes, done, k);
+                        done += k;
+                        if (!pending.hasRemaining()) {
+                            flush(channel, pending);
+                        }
+                    }
+                } else {
+                    locations[n] = store(segments, bytes);
+                }
+                n++;
+            }
+            if (channel != null) {
+                flush(channel, pending);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+                Files.deleteIfExists(spill);
+            }
+            throw e;
+        }
+        /*
+         * sort the terms once, stable so the first of two equal terms keeps
+         * its place, and the locations with them
+         */
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        String[] unsorted = terms;
+        Arrays.sort(order, (a, b) -> ORDER.compare(unsorted[a], unsorted[b]));
+        String[] sortedTerms = new String[n];
+        long[] sortedLocations = new long[n];
+        int[] sortedLengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            sortedTerms[i] = terms[order[i]];
+            sortedLocations[i] = locations[order[i]];
+            sortedLengths[i] = lengths[order[i]];
+        }
+        return new OffHeapGlossary(sortedTerms, sortedLocations,
+                sortedLengths, segments, spill, channel);
+    }
+
+    /**
+     * Writes out the write buffer of a spill file.
+     *
+     * @param channel
+     *            the spill file
+     * @param pending
+     *            the write buffer
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer pending)
+            throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Appends a definition to the direct buffers, starting a new buffer when
+     * it does not fit in the last one.
+     *
+     * @param segments
+     *            the direct buffers
+     * @param bytes
+     *            the encoded definition
+     * @return its location
+     * @throws IOException
+     *             if a new buffer would go over the direct memory limit
+     */
+    private static long store(List<ByteBuffer> segments, byte[] bytes)
+            throws IOException {
+        ByteBuffer last = null;
+        if (!segments.isEmpty()) {
+            last = segments.get(segments.size() - 1);
+        }
+        if (last == null || last.remaining() < bytes.length) {
+            try {
+                last = ByteBuffer
+                        .allocateDirect(Math.max(SEGMENT, bytes.length));
+            } catch (OutOfMemoryError e) {
+                throw new IOException("out of direct memory after "
+                        + segments.size() + " buffers; raise"
+                        + " -XX:MaxDirectMemorySize or use a spill file", e);
+            }
+            segments.add(last);
+        }
+        long location = ((long) (segments.size() - 1) << POSITION_BITS)
+                | last.position();
+        last.put(bytes);
+        return location;
+    }
+
+    @Override
+    public int size() {
+        return this.terms.length;
+    }
+
+    @Override
+    public String term(int i) {
+        return this.terms[i];
+    }
+
+    @Override
+    public String definition(int i) {
+        byte[] bytes = new byte[this.lengths[i]];
+        long location = this.locations[i];
+        if (this.channel != null) {
+            ByteBuffer dst = ByteBuffer.wrap(bytes);
+            try {
+                while (dst.hasRemaining()) {
+                    int read = this.channel.read(dst,
+                            location + dst.position());
+                    if (read < 0) {
+                        throw new IOException("unexpected end of spill file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(this.spill.toString(), e);
+            }
+        } else {
+            this.segments.get((int) (location >>> POSITION_BITS)).get(
+                    (int) (location & POSITION_MASK), bytes, 0,
+                    bytes.length);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int indexOf(String term) {
+        assert term != null : "Violation of: term is not null";
+        return Arrays.binarySearch(this.terms, term, ORDER);
+    }
+
+    /**
+     * Reports the number of bytes of definitions stored off the heap.
+     *
+     * @return the number of bytes
+     */
+    public long storedBytes() {
+        long total = 0;
+        for (int length : this.lengths) {
+            total += length;
+        }
+        return total;
+    }
+
+    /**
+     * Closes and deletes the spill file, which this class created. Direct buffers are released once
+     * the glossary is no longer reachable.
+     *
+     * @throws IOException
+     *             if the spill file cannot be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            Files.deleteIfExists(this.spill);
+        }
+    }
+
+}
@@ -0,0 +1,437 @@
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer a page is rendered into as UTF-8. Static parts of a
+ * page are appended as pre-encoded bytes and only the terms and definitions
+ * are encoded, straight from their characters. A buffer is meant to be
+ * cleared and reused from page to page.
+ *
+ * @author Zheyuan Gao
+ */
+public final class PageBuffer {
+
+    /**
+     * Initial capacity.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    /**
+     * Smallest code point encoded in two bytes.
+     */
+    private static final int TWO_BYTES = 0x80;
+
+    /**
+     * Smallest code point encoded in three bytes.
+     */
+    private static final int THREE_BYTES = 0x800;
+
+    /**
+     * Lead bits of a continuation byte.
+     */
+    private static final int CONTINUATION = 0x80;
+
+    /**
+     * Payload bits of a continuation byte.
+     */
+    private static final int SIX_BITS = 0x3F;
+
+    /**
+     * Lead bits of the first of two bytes.
+     */
+    private static final int LEAD_TWO = 0xC0;
+
+    /**
+     * Lead bits of the first of three bytes.
+     */
+    private static final int LEAD_THREE = 0xE0;
+
+    /**
+     * Lead bits of the first of four bytes.
+     */
+    private static final int LEAD_FOUR = 0xF0;
+
+    /**
+     * Bits per continuation byte.
+     */
+    private static final int SHIFT = 6;
+
+    /**
+     * Mask of the bits of a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Replacements of {@code appendUtf8}: every character is kept.
+     */
+    private static final byte[][] NONE = new byte[TWO_BYTES][];
+
+    /**
+     * The bytes; only the first {@code length} are the page.
+     */
+    private byte[] bytes;
+
+    /**
+     * Number of bytes of the page.
+     */
+    private int length;
+
+    /**
+     * Characters of the text being encoded, when it is not a span.
+     */
+    private char[] chars = new char[INITIAL_CAPACITY];
+
+    /**
+     * Creates an empty buffer.
+     */
+    public PageBuffer() {
+        this.bytes = new byte[INITIAL_CAPACITY];
+        this.length = 0;
+    }
+
+    /**
+     * Makes room for {@code n} more bytes.
+     *
+     * @param n
+     *            the number of bytes
+     */
+    private void reserve(int n) {
+        int needed = Math.addExact(this.length, n);
+        if (needed > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes,
+                    Math.max(needed, 2 * this.bytes.length));
+        }
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity.
+     */
+    public void clear() {
+        this.length = 0;
+    }
+
+    /**
+     * Reports the number of bytes of the page.
+     *
+     * @return the length
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Returns the backing array; the page is its first {@code length} bytes.
+     * The array is replaced when the buffer grows.
+     *
+     * @return the backing array
+     */
+    byte[] array() {
+        return this.bytes;
+    }
+
+    /**
+     * Appends pre-encoded bytes.
+     *
+     * @param b
+     *            the bytes
+     * @updates this
+     */
+    public void append(byte[] b) {
+        this.reserve(b.length);
+        System.arraycopy(b, 0, this.bytes, this.length, b.length);
+        this.length += b.length;
+    }
+
+    /**
+     * Appends bytes {@code [from, to)} of another page.
+     *
+     * @param page
+     *            the page
+     * @param from
+     *            start of the range
+     * @param to
+     *            end of the range
+     * @updates this
+     * @requires 0 <= from <= to <= |page|
+     */
+    public void append(PageBuffer page, int from, int to) {
+        this.reserve(to - from);
+        System.arraycopy(page.bytes, from, this.bytes, this.length, to - from);
+        this.length += to - from;
+    }
+
+    /**
+     * Appends characters {@code [start, end)} of {@code text} encoded to
+     * UTF-8.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @updates this
+     * @requires 0 <= start <= end <= |text|
+     * @throws IllegalArgumentException
+     *             if the range holds an unpaired surrogate
+     */
+    public void appendUtf8(CharSequence text, int start, int end) {
+        this.appendUtf8(text, start, end, NONE);
+    }
+
+    /**
+     * Appends characters {@code [start, end)} of {@code text} encoded to
+     * UTF-8, except that an ASCII character {@code c} with an entry
+     * {@code replacements[c]} is replaced by those bytes. When
+     * {@code replacements} has an entry for every byte value, each byte of
+     * the encoding of a non-ASCII character is replaced by its entry too.
+     * Escaping this way costs one pass over the text: the lookup of each
+     * ASCII character rides along with its encoding.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @param replacements
+     *            the bytes replacing each ASCII character, null for those
+     *            kept, and each byte of the non-ASCII ones if it has 256
+     *            entries
+     * @updates this
+     * @requires 0 <= start <= end <= |text|
+     * @throws IllegalArgumentException
+     *             if the range holds an unpaired surrogate
+     */
+    void appendUtf8(CharSequence text, int start, int end,
+            byte[][] replacements) {
+        /*
+         * at most three bytes per char; a surrogate pair is four bytes for
+         * two chars
+         */
+        this.reserve(Math.multiplyExact(3, end - start));
+        if (text instanceof String) {
+            this.encode((String) text, start, end, replacements);
+        } else if (text instanceof CharSpan
+                && ((CharSpan) text).array() != null) {
+            CharSpan span = (CharSpan) text;
+            this.encode(span.array(), span.offset() + start,
+                    span.offset() + end, -span.offset(), replacements);
+        } else {
+            if (this.chars.length < end - start) {
+                this.chars = new char[Math.max(end - start,
+                        2 * this.chars.length)];
+            }
+            for (int k = start; k < end; k++) {
+                this.chars[k - start] = text.charAt(k);
+            }
+            this.encode(this.chars, 0, end - start, start, replacements);
+        }
+    }
+
+    /**
+     * Encodes characters {@code [from, to)} of {@code text} as
+     * {@code appendUtf8} does, with room for them already reserved.
+     *
+     * @param text
+     *            the text
+     * @param from
+     *            start of the range
+     * @param to
+     *            end of the range
+     * @param replacements
+     *            the bytes replacing each ASCII character, null for those
+     *            kept, and each byte of the non-ASCII ones if it has 256
+     *            entries
+     */
+    private void encode(String text, int from, int to,
+            byte[][] replacements) {
+        byte[] b = this.bytes;
+        int n = this.length;
+        int k = from;
+        while (k < to) {
+            char c = text.charAt(k);
+            if (c < TWO_BYTES && replacements[c] == null) {
+                b[n] = (byte) c;
+                n++;
+                k++;
+            } else if (c >= TWO_BYTES) {
+                char next = 0;
+                if (k + 1 < to) {
+                    next = text.charAt(k + 1);
+                }
+                n = this.encodeWide(n, c, next, k, replacements, to - k - 1);
+                b = this.bytes;
+                k++;
+                if (Character.isSurrogate(c)) {
+                    k++;
+                }
+            } else {
+                n = this.replace(n, replacements[c], to - k - 1);
+                b = this.bytes;
+                k++;
+            }
+        }
+        this.length = n;
+    }
+
+    /**
+     * Encodes characters {@code [from, to)} of {@code chars} as
+     * {@code appendUtf8} does, with room for them already reserved.
+     *
+     * @param chars
+     *            the characters
+     * @param from
+     *            start of the range
+     * @param to
+     *            end of the range
+     * @param shift
+     *            added to a position of chars to report it in the caller's
+     *            text
+     * @param replacements
+     *            the bytes replacing each ASCII character, null for those
+     *            kept, and each byte of the non-ASCII ones if it has 256
+     *            entries
+     */
+    private void encode(char[] chars, int from, int to, int shift,
+            byte[][] replacements) {
+        byte[] b = this.bytes;
+        int n = this.length;
+        int k = from;
+        while (k < to) {
+            char c = chars[k];
+            if (c < TWO_BYTES && replacements[c] == null) {
+                b[n] = (byte) c;
+                n++;
+                k++;
+            } else if (c >= TWO_BYTES) {
+                char next = 0;
+                if (k + 1 < to) {
+                    next = chars[k + 1];
+                }
+                n = this.encodeWide(n, c, next, k + shift, replacements,
+                        to - k - 1);
+                b = this.bytes;
+                k++;
+                if (Character.isSurrogate(c)) {
+                    k++;
+                }
+            } else {
+                n = this.replace(n, replacements[c], to - k - 1);
+                b = this.bytes;
+                k++;
+            }
+        }
+        this.length = n;
+    }
+
+    /**
+     * Puts the UTF-8 bytes of a non-ASCII character at {@code n}: two or
+     * three bytes, or four for a surrogate pair {@code c} and {@code next},
+     * each replaced by its entry of {@code replacements} if it has one for
+     * every byte value.
+     *
+     * @param n
+     *            where the bytes go
+     * @param c
+     *            the character
+     * @param next
+     *            the character after it, 0 if there is none
+     * @param position
+     *            position of c in the caller's text, for the error message
+     * @param replacements
+     *            the replacements
+     * @param remaining
+     *            characters still to encode after this one
+     * @return the position after the bytes
+     * @throws IllegalArgumentException
+     *             if c is an unpaired surrogate
+     */
+    private int encodeWide(int n, char c, char next, int position,
+            byte[][] replacements, int remaining) {
+        byte[] b = this.bytes;
+        int m = n;
+        if (c < THREE_BYTES) {
+            b[m] = (byte) (LEAD_TWO | (c >> SHIFT));
+            b[m + 1] = (byte) (CONTINUATION | (c & SIX_BITS));
+            m += 2;
+        } else if (!Character.isSurrogate(c)) {
+            b[m] = (byte) (LEAD_THREE | (c >> (2 * SHIFT)));
+            b[m + 1] = (byte) (CONTINUATION | ((c >> SHIFT) & SIX_BITS));
+            b[m + 2] = (byte) (CONTINUATION | (c & SIX_BITS));
+            m += 3;
+        } else {
+            if (!Character.isHighSurrogate(c)
+                    || !Character.isLowSurrogate(next)) {
+                this.length = n;
+                throw new IllegalArgumentException(
+                        "unpaired surrogate at " + position);
+            }
+            int cp = Character.toCodePoint(c, next);
+            b[m] = (byte) (LEAD_FOUR | (cp >> (3 * SHIFT)));
+            b[m + 1] = (byte) (CONTINUATION | ((cp >> (2 * SHIFT)) & SIX_BITS));
+            b[m + 2] = (byte) (CONTINUATION | ((cp >> SHIFT) & SIX_BITS));
+            b[m + 3] = (byte) (CONTINUATION | (cp & SIX_BITS));
+            m += 4;
+        }
+        if (replacements.length > BYTE_MASK) {
+            /*
+             * at most four bytes: keep them in an int while their
+             * replacements are written over them
+             */
+            int encoded = 0;
+            for (int j = n; j < m; j++) {
+                encoded = (encoded << Byte.SIZE) | (b[j] & BYTE_MASK);
+            }
+            int count = m - n;
+            m = n;
+            for (int j = count - 1; j >= 0; j--) {
+                m = this.replace(m, replacements[(encoded >>> (j * Byte.SIZE))
+                        & BYTE_MASK], remaining + j);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Puts {@code replacement} at {@code n} in place of one character or
+     * byte, keeping room for three bytes per character or byte still to
+     * come.
+     *
+     * @param n
+     *            where the bytes go
+     * @param replacement
+     *            the bytes
+     * @param remaining
+     *            characters or bytes still to encode after this one
+     * @return the position after the bytes
+     */
+    private int replace(int n, byte[] replacement, int remaining) {
+        this.length = n;
+        this.reserve(replacement.length + 3 * remaining);
+        System.arraycopy(replacement, 0, this.bytes, n, replacement.length);
+        return n + replacement.length;
+    }
+
+    /**
+     * Appends {@code text} encoded to UTF-8.
+     *
+     * @param text
+     *            the text
+     * @updates this
+     * @throws IllegalArgumentException
+     *             if text holds an unpaired surrogate
+     */
+    public void appendUtf8(CharSequence text) {
+        this.appendUtf8(text, 0, text.length());
+    }
+
+    /**
+     * Returns a copy of the page bytes.
+     *
+     * @return the bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.bytes, this.length);
+    }
+
+}
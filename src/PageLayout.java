@@ -0,0 +1,584 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compiled templates of a glossary site: index.html, one entry of the
+ * index, a term page, a link in a definition, and the list of the terms
+ * referring to a term. {@code DEFAULT} is the
+ * original layout of {@code Glossary}; {@code load} reads user templates,
+ * checking them once when they are loaded. Pages are rendered by appending
+ * the pre-encoded segments of a template and encoding only the terms and
+ * definitions, so a custom layout renders as fast as the default one.
+ *
+ * <p>
+ * Slots: <code>{{entries}}</code> and <code>{{nav}}</code> (the links
+ * between the pages of a sharded index, empty otherwise) in index.tmpl,
+ * <code>{{term}}</code> in entry.tmpl, <code>{{definition}}</code>,
+ * <code>{{term}}</code> and <code>{{backlinks}}</code> in page.tmpl,
+ * <code>{{term}}</code> in link.tmpl, and <code>{{entries}}</code> in
+ * referenced.tmpl. The definition slot is filled with the definition, with
+ * link.tmpl in place of every term found in it. The backlinks slot is
+ * filled with referenced.tmpl, its entries rendered with entry.tmpl, when
+ * the page is rendered with a non-empty list of referring terms, and left
+ * empty otherwise. Terms and definitions are escaped for where their slot
+ * is: as HTML text, as an attribute value, or, in an href, as the link to
+ * the page of the term.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class PageLayout {
+
+    /**
+     * Line separator written after each line, as {@code println} does.
+     */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /**
+     * Slots of index.tmpl; the entries are required, the navigation links of
+     * a sharded index are not.
+     */
+    private static final String[] INDEX_SLOTS = {"entries", "nav"};
+
+    /**
+     * The entries slot of index.tmpl.
+     */
+    private static final int ENTRIES = 0;
+
+    /**
+     * Slots of entry.tmpl and link.tmpl.
+     */
+    private static final String[] TERM_SLOTS = {"term"};
+
+    /**
+     * Slots of page.tmpl; the definition is required, the term and the
+     * terms referring to it are not.
+     */
+    private static final String[] PAGE_SLOTS = {"definition", "term",
+            "backlinks"};
+
+    /**
+     * The definition slot of page.tmpl.
+     */
+    private static final int DEFINITION = 0;
+
+    /**
+     * The term slot of page.tmpl.
+     */
+    private static final int TERM = 1;
+
+    /**
+     * Slots of referenced.tmpl.
+     */
+    private static final String[] REFERENCED_SLOTS = {"entries"};
+
+    /**
+     * The original list of referring terms.
+     */
+    private static final String REFERENCED = lines("  <h3>Referenced by</h3>",
+            "  <ul>") + "{{entries}}" + lines("  </ul>");
+
+    /**
+     * Multiplier combining the fingerprints of the templates.
+     */
+    private static final long FINGERPRINT_MULTIPLIER = 31;
+
+    /**
+     * The original layout.
+     */
+    public static final PageLayout DEFAULT = new PageLayout(
+            lines("<html>", " <head>", "  <title>Glossary</title>",
+                    " </head>", " <body>", "  <h2>Glossary</h2>", "  <hr>",
+                    "  <h3>Index</h3>", "  <ul>")
+                    + "{{entries}}" + lines("  </ul>") + "{{nav}}"
+                    + lines(" </body>", "</html>"),
+            lines("   <li>", "    <a href={{term}}.html>{{term}}</a>",
+                    "   </li>"),
+            lines("<html>", " <head>", "  <title>term</title>", " </head>",
+                    " <body>", "  <h2>", "   <b>", "    <i>",
+                    "     <font color = red>{{term}}</font>", "    </i>",
+                    "   </b>", "  </h2>", "  <blockquote>")
+                    + "    {{definition}}" + lines("   </blockquote>")
+                    + "{{backlinks}}" + lines("  <hr>", "  <p>",
+                            "   Return to ",
+                            "   <a href = index.html>index</a>", "   .",
+                            "  </p>", " </body>", "</html>"),
+            NEWLINE + lines("    <a href={{term}}.html>{{term}}</a>"),
+            REFERENCED);
+
+    /**
+     * Compiled index.tmpl.
+     */
+    private final PageTemplate index;
+
+    /**
+     * Compiled entry.tmpl.
+     */
+    private final PageTemplate entry;
+
+    /**
+     * Compiled page.tmpl.
+     */
+    private final PageTemplate page;
+
+    /**
+     * Compiled link.tmpl.
+     */
+    private final PageTemplate link;
+
+    /**
+     * Compiled referenced.tmpl.
+     */
+    private final PageTemplate referenced;
+
+    /**
+     * Compiles a layout with the default list of referring terms.
+     *
+     * @param index
+     *            source of index.tmpl
+     * @param entry
+     *            source of entry.tmpl
+     * @param page
+     *            source of page.tmpl
+     * @param link
+     *            source of link.tmpl
+     * @throws IllegalArgumentException
+     *             if a template is not valid
+     */
+    public PageLayout(String index, String entry, String page, String link) {
+        this(index, entry, page, link, REFERENCED);
+    }
+
+    /**
+     * Compiles a layout.
+     *
+     * @param index
+     *            source of index.tmpl
+     * @param entry
+     *            source of entry.tmpl
+     * @param page
+     *            source of page.tmpl
+     * @param link
+     *            source of link.tmpl
+     * @param referenced
+     *            source of referenced.tmpl
+     * @throws IllegalArgumentException
+     *             if a template is not valid
+     */
+    public PageLayout(String index, String entry, String page, String link,
+            String referenced) {
+        this.index = PageTemplate.compile("index.tmpl", index, INDEX_SLOTS,
+                1);
+        this.entry = PageTemplate.compile("entry.tmpl", entry, TERM_SLOTS,
+                1);
+        this.page = PageTemplate.compile("page.tmpl", page, PAGE_SLOTS, 1);
+        this.link = PageTemplate.compile("link.tmpl", link, TERM_SLOTS, 1);
+        this.referenced = PageTemplate.compile("referenced.tmpl", referenced,
+                REFERENCED_SLOTS, 1);
+    }
+
+    /**
+     * Returns a hash of the compiled templates. Two layouts with the same
+     * fingerprint render the same pages, so a build recorded with another
+     * fingerprint has to be redone.
+     *
+     * @return the fingerprint
+     */
+    public long fingerprint() {
+        PageTemplate[] templates = {this.index, this.entry, this.page,
+                this.link, this.referenced};
+        long hash = 0;
+        for (PageTemplate template : templates) {
+            hash = FINGERPRINT_MULTIPLIER * hash + template.fingerprint();
+        }
+        return hash;
+    }
+
+    /**
+     * Joins lines, each followed by a line separator.
+     *
+     * @param lines
+     *            the lines
+     * @return the text
+     */
+    private static String lines(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append(NEWLINE);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Loads a layout from the templates in {@code dir}: index.tmpl,
+     * entry.tmpl, page.tmpl, link.tmpl and referenced.tmpl. A template
+     * missing from the directory is taken from {@code DEFAULT}.
+     *
+     * @param dir
+     *            the template directory
+     * @return the layout
+     * @throws IOException
+     *             if a template cannot be read or is not valid
+     */
+    public static PageLayout load(Path dir) throws IOException {
+        assert dir != null : "Violation of: dir is not null";
+
+        try {
+            return new PageLayout(read(dir, "index.tmpl", DEFAULT.index),
+                    read(dir, "entry.tmpl", DEFAULT.entry),
+                    read(dir, "page.tmpl", DEFAULT.page),
+                    read(dir, "link.tmpl", DEFAULT.link),
+                    read(dir, "referenced.tmpl", DEFAULT.referenced));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads one template, or returns the source of the default one.
+     *
+     * @param dir
+     *            the template directory
+     * @param name
+     *            the template file name
+     * @param fallback
+     *            the default template
+     * @return the template source
+     * @throws IOException
+     *             if the template cannot be read
+     */
+    private static String read(Path dir, String name, PageTemplate fallback)
+            throws IOException {
+        Path file = dir.resolve(name);
+        String source;
+        if (Files.exists(file)) {
+            source = Files.readString(file, StandardCharsets.UTF_8);
+        } else {
+            source = fallback.source();
+        }
+        return source;
+    }
+
+    /**
+     * Renders index.html.
+     *
+     * @param glossary
+     *            the glossary
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    public void renderIndex(GlossaryView glossary, PageBuffer out) {
+        assert glossary != null : "Violation of: glossary is not null";
+
+        this.renderIndex(glossary, 0, glossary.size(), "", out);
+    }
+
+    /**
+     * Renders an index page holding the terms at positions
+     * {@code [from, to)} of the glossary, with {@code nav} in the nav slot.
+     *
+     * @param glossary
+     *            the glossary
+     * @param from
+     *            position of the first term
+     * @param to
+     *            position after the last term
+     * @param nav
+     *            the navigation links
+     * @param out
+     *            the page being rendered
+     * @updates out
+     * @requires 0 <= from <= to <= |glossary|
+     */
+    public void renderIndex(GlossaryView glossary, int from, int to,
+            CharSequence nav, PageBuffer out) {
+        this.renderIndex(glossary, from, to, nav, "", out);
+    }
+
+    /**
+     * Renders a page of the index listing the terms at {@code [from, to)},
+     * for a page in another folder than the term pages: {@code base} goes
+     * before every link to a term page.
+     *
+     * @param glossary
+     *            the glossary
+     * @param from
+     *            position of the first term
+     * @param to
+     *            position after the last term
+     * @param nav
+     *            the navigation links
+     * @param base
+     *            path from the page to the folder of the term pages, such as
+     *            "../"
+     * @param out
+     *            the page being rendered
+     * @updates out
+     * @requires 0 <= from <= to <= |glossary|
+     */
+    public void renderIndex(GlossaryView glossary, int from, int to,
+            CharSequence nav, String base, PageBuffer out) {
+        assert glossary != null : "Violation of: glossary is not null";
+        assert nav != null : "Violation of: nav is not null";
+        assert base != null : "Violation of: base is not null";
+        assert out != null : "Violation of: out is not null";
+
+        for (int k = 0; k < this.index.slotCount(); k++) {
+            this.index.appendSegment(k, out);
+            if (this.index.slot(k) == ENTRIES) {
+                for (int i = from; i < to; i++) {
+                    String term = glossary.term(i);
+                    this.fill(this.entry, base, term, 0, term.length(), out);
+                }
+            } else {
+                out.appendUtf8(nav);
+            }
+        }
+        this.index.appendSegment(this.index.slotCount(), out);
+    }
+
+    /**
+     * Renders index.html for terms given in order.
+     *
+     * @param terms
+     *            the terms, in StringLT order
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    public void renderIndex(Iterable<String> terms, PageBuffer out) {
+        assert terms != null : "Violation of: terms is not null";
+        assert out != null : "Violation of: out is not null";
+
+        for (int k = 0; k < this.index.slotCount(); k++) {
+            this.index.appendSegment(k, out);
+            if (this.index.slot(k) == ENTRIES) {
+                for (String term : terms) {
+                    this.renderEntry(term, out);
+                }
+            }
+        }
+        this.index.appendSegment(this.index.slotCount(), out);
+    }
+
+    /**
+     * Renders index.html from entries already rendered with
+     * {@code renderEntry}, such as those a watcher keeps between updates.
+     *
+     * @param entries
+     *            the rendered entries, in StringLT order of their terms
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    public void renderIndex(PageBuffer entries, PageBuffer out) {
+        assert entries != null : "Violation of: entries is not null";
+        assert out != null : "Violation of: out is not null";
+
+        for (int k = 0; k < this.index.slotCount(); k++) {
+            this.index.appendSegment(k, out);
+            if (this.index.slot(k) == ENTRIES) {
+                out.append(entries, 0, entries.length());
+            }
+        }
+        this.index.appendSegment(this.index.slotCount(), out);
+    }
+
+    /**
+     * Renders an index page whose entries are already rendered, such as the
+     * navigation page of a sharded index.
+     *
+     * @param entries
+     *            the rendered entries
+     * @param nav
+     *            the navigation links
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    public void renderIndex(CharSequence entries, CharSequence nav,
+            PageBuffer out) {
+        assert entries != null : "Violation of: entries is not null";
+        assert nav != null : "Violation of: nav is not null";
+        assert out != null : "Violation of: out is not null";
+
+        for (int k = 0; k < this.index.slotCount(); k++) {
+            this.index.appendSegment(k, out);
+            if (this.index.slot(k) == ENTRIES) {
+                out.appendUtf8(entries);
+            } else {
+                out.appendUtf8(nav);
+            }
+        }
+        this.index.appendSegment(this.index.slotCount(), out);
+    }
+
+    /**
+     * Renders the entry of one term in index.html.
+     *
+     * @param term
+     *            the term
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    public void renderEntry(String term, PageBuffer out) {
+        assert term != null : "Violation of: term is not null";
+        assert out != null : "Violation of: out is not null";
+
+        this.fill(this.entry, "", term, 0, term.length(), out);
+    }
+
+    /**
+     * Renders a template whose only slot is the term
+     * {@code text[start, end)}, with {@code base} before it where it is a
+     * link.
+     *
+     * @param template
+     *            the template
+     * @param base
+     *            path to the folder of the term pages, empty for the same
+     *            folder
+     * @param text
+     *            text holding the term
+     * @param start
+     *            start of the term
+     * @param end
+     *            end of the term
+     * @param out
+     *            the page being rendered
+     */
+    private void fill(PageTemplate template, String base, CharSequence text,
+            int start, int end, PageBuffer out) {
+        for (int k = 0; k < template.slotCount(); k++) {
+            template.appendSegment(k, out);
+            if (!base.isEmpty()
+                    && template.context(k) == HtmlEscaper.Context.URL) {
+                out.appendUtf8(base);
+            }
+            HtmlEscaper.append(template.context(k), text, start, end, out);
+        }
+        template.appendSegment(template.slotCount(), out);
+    }
+
+    /**
+     * Renders the page of one term: the term, and its definition with every
+     * term found by {@code matcher} linked to its own page.
+     *
+     * @param term
+     *            the term
+     * @param definition
+     *            the definition of the term
+     * @param matcher
+     *            the matcher for every term of the glossary
+     * @param matches
+     *            scratch buffer for the matches in the definition
+     * @param out
+     *            the page being rendered
+     * @updates out, matches
+     */
+    public void renderPage(CharSequence term, CharSequence definition,
+            TermMatcher matcher, TermMatcher.Matches matches, PageBuffer out) {
+        assert term != null : "Violation of: term is not null";
+        assert definition != null : "Violation of: definition is not null";
+        assert matcher != null : "Violation of: matcher is not null";
+        assert matches != null : "Violation of: matches is not null";
+        assert out != null : "Violation of: out is not null";
+
+        matcher.findAll(definition, matches);
+        this.renderPage(term, definition, matches, out);
+    }
+
+    /**
+     * Renders the page of one term whose definition has already been
+     * searched for terms.
+     *
+     * @param term
+     *            the term
+     * @param definition
+     *            the definition of the term
+     * @param matches
+     *            the terms found in definition
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    public void renderPage(CharSequence term, CharSequence definition,
+            TermMatcher.Matches matches, PageBuffer out) {
+        this.renderPage(term, definition, matches,
+                Collections.<String>emptyList(), out);
+    }
+
+    /**
+     * Renders the page of one term whose definition has already been
+     * searched for terms, listing the terms whose definitions refer to it.
+     *
+     * @param term
+     *            the term
+     * @param definition
+     *            the definition of the term
+     * @param matches
+     *            the terms found in definition
+     * @param referencedBy
+     *            the terms referring to term, in StringLT order
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    public void renderPage(CharSequence term, CharSequence definition,
+            TermMatcher.Matches matches, List<String> referencedBy,
+            PageBuffer out) {
+        assert term != null : "Violation of: term is not null";
+        assert definition != null : "Violation of: definition is not null";
+        assert matches != null : "Violation of: matches is not null";
+        assert referencedBy != null : "Violation of: referencedBy is not null";
+        assert out != null : "Violation of: out is not null";
+
+        for (int k = 0; k < this.page.slotCount(); k++) {
+            this.page.appendSegment(k, out);
+            HtmlEscaper.Context context = this.page.context(k);
+            if (this.page.slot(k) == DEFINITION) {
+                int position = 0;
+                for (int m = 0; m < matches.count(); m++) {
+                    HtmlEscaper.append(context, definition, position,
+                            matches.start(m), out);
+                    this.fill(this.link, "", definition, matches.start(m),
+                            matches.end(m), out);
+                    position = matches.end(m);
+                }
+                HtmlEscaper.append(context, definition, position,
+                        definition.length(), out);
+            } else if (this.page.slot(k) == TERM) {
+                HtmlEscaper.append(context, term, 0, term.length(), out);
+            } else if (!referencedBy.isEmpty()) {
+                this.renderReferenced(referencedBy, out);
+            }
+        }
+        this.page.appendSegment(this.page.slotCount(), out);
+    }
+
+    /**
+     * Renders the list of the terms referring to a term.
+     *
+     * @param referencedBy
+     *            the terms
+     * @param out
+     *            the page being rendered
+     * @updates out
+     */
+    private void renderReferenced(List<String> referencedBy, PageBuffer out) {
+        for (int k = 0; k < this.referenced.slotCount(); k++) {
+            this.referenced.appendSegment(k, out);
+            for (String term : referencedBy) {
+                this.renderEntry(term, out);
+            }
+        }
+        this.referenced.appendSegment(this.referenced.slotCount(), out);
+    }
+
+}
@@ -0,0 +1,258 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes whole rendered pages to files. Each page is encoded to UTF-8 once,
+ * or copied when it is already rendered to bytes, into a pooled direct
+ * buffer (one per thread, reused from page to page) and written with a
+ * single {@code FileChannel} write, instead of one {@code println} per line.
+ * The pooled buffer grows with the pages up to {@code MAX_POOLED} bytes; a
+ * larger page is written through it in chunks, so a single huge page does
+ * not pin its size in native memory on every thread for the life of the JVM.
+ * Counts the bytes and files written and the time spent opening, writing and
+ * closing files.
+ *
+ * @author Zheyuan Gao
+ */
+public final class PageOutput {
+
+    /**
+     * Initial size of a pooled buffer.
+     */
+    private static final int INITIAL_BUFFER = 1 << 14;
+
+    /**
+     * Largest size of a pooled buffer; larger pages are written in chunks of
+     * this size.
+     */
+    static final int MAX_POOLED = 1 << 20;
+
+    /**
+     * Encoder of the calling thread.
+     */
+    private static final ThreadLocal<CharsetEncoder> ENCODER = ThreadLocal
+            .withInitial(() -> StandardCharsets.UTF_8.newEncoder());
+
+    /**
+     * Pooled buffer of the calling thread.
+     */
+    private static final ThreadLocal<ByteBuffer[]> BUFFER = ThreadLocal
+            .withInitial(() -> new ByteBuffer[] {
+                    ByteBuffer.allocateDirect(INITIAL_BUFFER) });
+
+    /**
+     * Bytes written.
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Files written.
+     */
+    private final AtomicLong files = new AtomicLong();
+
+    /**
+     * Nanoseconds spent in open, write and close.
+     */
+    private final AtomicLong ioNanos = new AtomicLong();
+
+    /**
+     * Returns the pooled buffer of the calling thread, cleared, grown to
+     * hold {@code size} bytes if that is at most {@code MAX_POOLED}.
+     *
+     * @param size
+     *            the bytes to write
+     * @return the buffer
+     */
+    private static ByteBuffer pooled(long size) {
+        ByteBuffer[] pooled = BUFFER.get();
+        int capacity = (int) Math.min(size, MAX_POOLED);
+        if (pooled[0].capacity() < capacity) {
+            pooled[0] = ByteBuffer.allocateDirect(capacity);
+        }
+        pooled[0].clear();
+        return pooled[0];
+    }
+
+    /**
+     * Reports the capacity of the pooled buffer of the calling thread.
+     *
+     * @return the capacity in bytes
+     */
+    static int pooledCapacity() {
+        return BUFFER.get()[0].capacity();
+    }
+
+    /**
+     * Writes {@code page} to {@code file}, replacing its contents.
+     *
+     * @param file
+     *            the file
+     * @param page
+     *            the page text
+     * @throws IOException
+     *             if the file cannot be written
+     * @ensures file contains the UTF-8 encoding of page
+     */
+    public void write(Path file, CharSequence page) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert page != null : "Violation of: page is not null";
+
+        CharsetEncoder encoder = ENCODER.get();
+        ByteBuffer buffer = pooled(
+                (long) page.length() * (long) encoder.maxBytesPerChar());
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(page);
+        FileChannel channel = this.open(file);
+        try {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            while (result.isOverflow()) {
+                this.drain(channel, buffer);
+                result = encoder.encode(chars, buffer, true);
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                this.drain(channel, buffer);
+            }
+            this.drain(channel, buffer);
+        } finally {
+            this.close(channel);
+        }
+        this.files.incrementAndGet();
+    }
+
+    /**
+     * Writes the bytes of {@code page} to {@code file}, replacing its
+     * contents.
+     *
+     * @param file
+     *            the file
+     * @param page
+     *            the rendered page
+     * @throws IOException
+     *             if the file cannot be written
+     * @ensures file contains the bytes of page
+     */
+    public void write(Path file, PageBuffer page) throws IOException {
+        assert file != null : "Violation of: file is not null";
+        assert page != null : "Violation of: page is not null";
+
+        ByteBuffer buffer = pooled(page.length());
+        FileChannel channel = this.open(file);
+        try {
+            int offset = 0;
+            do {
+                int chunk = Math.min(buffer.capacity(),
+                        page.length() - offset);
+                buffer.put(page.array(), offset, chunk);
+                offset += chunk;
+                this.drain(channel, buffer);
+            } while (offset < page.length());
+        } finally {
+            this.close(channel);
+        }
+        this.files.incrementAndGet();
+    }
+
+    /**
+     * Opens {@code file} for writing, replacing its contents.
+     *
+     * @param file
+     *            the file
+     * @return the channel
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    private FileChannel open(Path file) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } finally {
+            this.ioNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes the bytes put in {@code buffer} to {@code channel} and clears
+     * it.
+     *
+     * @param channel
+     *            the channel
+     * @param buffer
+     *            the bytes, not yet flipped
+     * @throws IOException
+     *             if the bytes cannot be written
+     */
+    private void drain(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        int size = buffer.remaining();
+        long start = System.nanoTime();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            this.ioNanos.addAndGet(System.nanoTime() - start);
+        }
+        buffer.clear();
+        this.bytes.addAndGet(size);
+    }
+
+    /**
+     * Closes {@code channel}.
+     *
+     * @param channel
+     *            the channel
+     * @throws IOException
+     *             if the channel cannot be closed
+     */
+    private void close(FileChannel channel) throws IOException {
+        long start = System.nanoTime();
+        try {
+            channel.close();
+        } finally {
+            this.ioNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reports the number of bytes written.
+     *
+     * @return the number of bytes written
+     */
+    public long bytesWritten() {
+        return this.bytes.get();
+    }
+
+    /**
+     * Reports the number of files written.
+     *
+     * @return the number of files written
+     */
+    public long filesWritten() {
+        return this.files.get();
+    }
+
+    /**
+     * Reports the time spent opening, writing and closing files, summed over
+     * all threads.
+     *
+     * @return the time in nanoseconds
+     */
+    public long ioNanos() {
+        return this.ioNanos.get();
+    }
+
+}
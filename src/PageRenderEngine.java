@@ -0,0 +1,672 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders and writes the term pages of a glossary in parallel on a
+ * fork-join pool. Each page is rendered to bytes with a {@code PageLayout}
+ * and written by {@code PageOutput}; with the default layout this is exactly
+ * what the sequential {@code Glossary.outputWordPage} does, so the files are
+ * the same byte for byte whatever the parallelism. A term given more than
+ * once has one page, rendered from its first definition, the one its links
+ * lead to. A page that cannot be written is reported and the other pages are
+ * still written.
+ *
+ * @author Zheyuan Gao
+ */
+public final class PageRenderEngine {
+
+    /**
+     * Number of pages below which a task renders its range itself instead of
+     * splitting it.
+     */
+    private static final int LEAF_PAGES = 64;
+
+    /**
+     * Outcome of a run: how many pages were written and which failed.
+     */
+    public static final class Report {
+
+        /**
+         * Number of pages written.
+         */
+        private final int pagesWritten;
+
+        /**
+         * Failed pages, sorted, as "term: reason".
+         */
+        private final List<String> failures;
+
+        /**
+         * Positions of the terms of the failed pages, sorted.
+         */
+        private final int[] failedIds;
+
+        /**
+         * Creates a report.
+         *
+         * @param pagesWritten
+         *            number of pages written
+         * @param failures
+         *            the failed pages
+         * @param failedIds
+         *            positions of their terms
+         */
+        Report(int pagesWritten, List<String> failures, int[] failedIds) {
+            this.pagesWritten = pagesWritten;
+            this.failures = failures;
+            this.failedIds = failedIds;
+        }
+
+        /**
+         * Reports the number of pages written.
+         *
+         * @return the number of pages written
+         */
+        public int pagesWritten() {
+            return this.pagesWritten;
+        }
+
+        /**
+         * Returns the failed pages as "term: reason", in term order.
+         *
+         * @return the failures
+         */
+        public List<String> failures() {
+            return this.failures;
+        }
+
+        /**
+         * Returns the positions in the glossary of the terms whose pages
+         * failed, in term order.
+         *
+         * @return the positions
+         */
+        public int[] failedIds() {
+            return this.failedIds.clone();
+        }
+    }
+
+    /**
+     * Worker pool rendering the pages.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Writer of the pages.
+     */
+    private final PageOutput output;
+
+    /**
+     * Layout of the pages.
+     */
+    private final PageLayout layout;
+
+    /**
+     * Most terms on one index page; 0 keeps the whole index in index.html.
+     */
+    private final int indexPageSize;
+
+    /**
+     * Timers and counters of the pages rendered.
+     */
+    private final GlossaryMetrics metrics;
+
+    /**
+     * Creates an engine with the given number of worker threads.
+     *
+     * @param parallelism
+     *            the number of worker threads
+     * @requires parallelism > 0
+     */
+    public PageRenderEngine(int parallelism) {
+        this(new ForkJoinPool(parallelism));
+    }
+
+    /**
+     * Creates an engine rendering on a shared worker pool, so several
+     * glossaries can be built at once on the same threads.
+     *
+     * @param pool
+     *            the worker pool
+     */
+    public PageRenderEngine(ForkJoinPool pool) {
+        this(pool, PageLayout.DEFAULT);
+    }
+
+    /**
+     * Creates an engine rendering pages with {@code layout} on a worker
+     * pool.
+     *
+     * @param pool
+     *            the worker pool
+     * @param layout
+     *            the page layout
+     */
+    public PageRenderEngine(ForkJoinPool pool, PageLayout layout) {
+        this(pool, layout, 0);
+    }
+
+    /**
+     * Creates an engine rendering pages with {@code layout} on a worker pool
+     * and splitting an index of more than {@code indexPageSize} terms into
+     * shards.
+     *
+     * @param pool
+     *            the worker pool
+     * @param layout
+     *            the page layout
+     * @param indexPageSize
+     *            the most terms on one index page, 0 for a single index.html
+     * @requires indexPageSize >= 0
+     */
+    public PageRenderEngine(ForkJoinPool pool, PageLayout layout,
+            int indexPageSize) {
+        assert pool != null : "Violation of: pool is not null";
+        assert layout != null : "Violation of: layout is not null";
+        assert indexPageSize >= 0 : "Violation of: indexPageSize >= 0";
+
+        this.pool = pool;
+        this.output = new PageOutput();
+        this.layout = layout;
+        this.indexPageSize = indexPageSize;
+        this.metrics = new GlossaryMetrics(this.output);
+    }
+
+    /**
+     * Returns the writer of the pages, with its counters.
+     *
+     * @return the page writer
+     */
+    public PageOutput output() {
+        return this.output;
+    }
+
+    /**
+     * Returns the worker pool rendering the pages.
+     *
+     * @return the pool
+     */
+    public ForkJoinPool pool() {
+        return this.pool;
+    }
+
+    /**
+     * Returns the layout of the pages.
+     *
+     * @return the layout
+     */
+    public PageLayout layout() {
+        return this.layout;
+    }
+
+    /**
+     * Returns the metrics of the pages rendered, with the bytes written by
+     * {@code output}.
+     *
+     * @return the metrics
+     */
+    public GlossaryMetrics metrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Writes index.html for the glossary into {@code folder}; when the engine
+     * has an index page size and the glossary is larger, index.html is a
+     * navigation page over the shards of a {@code ShardedIndex}.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @throws IOException
+     *             if the index cannot be written
+     * @requires folder exists
+     */
+    public void writeIndex(String folder, GlossaryView glossary)
+            throws IOException {
+        assert folder != null : "Violation of: folder is not null";
+        assert glossary != null : "Violation of: glossary is not null";
+
+        if (this.indexPageSize > 0 && glossary.size() > this.indexPageSize) {
+            ShardedIndex.write(Paths.get(folder), glossary,
+                    this.indexPageSize, this.layout, this.output, this.pool);
+        } else {
+            PageBuffer page = new PageBuffer();
+            this.layout.renderIndex(glossary, page);
+            this.output.write(Paths.get(folder, "index.html"), page);
+            if (this.indexPageSize > 0) {
+                /*
+                 * the glossary shrank below one page since the last build
+                 */
+                ShardedIndex.deleteStale(Paths.get(folder), glossary,
+                        Collections.<ShardedIndex.Shard>emptyList());
+            }
+        }
+    }
+
+    /**
+     * Writes index.html for the glossary into {@code folder} as
+     * {@code writeIndex(folder, glossary)} does, from its entries already
+     * rendered with {@code layout().renderEntry}, unless the index is
+     * sharded.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param entries
+     *            the entries of every term of glossary, in order
+     * @throws IOException
+     *             if the index cannot be written
+     * @requires folder exists
+     */
+    public void writeIndex(String folder, GlossaryView glossary,
+            PageBuffer entries) throws IOException {
+        assert entries != null : "Violation of: entries is not null";
+
+        if (this.indexPageSize > 0) {
+            this.writeIndex(folder, glossary);
+        } else {
+            PageBuffer page = new PageBuffer();
+            this.layout.renderIndex(entries, page);
+            this.output.write(Paths.get(folder, "index.html"), page);
+        }
+    }
+
+    /**
+     * Renders and writes the page of every term of the glossary into
+     * {@code folder}.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @return the report of the run
+     * @requires folder exists
+     * @ensures every page that could be written is, and every one that could
+     *          not is in the report
+     */
+    public Report renderAll(String folder, GlossaryView glossary,
+            TermMatcher matcher) {
+        int[] ids = new int[glossary.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        return this.render(folder, glossary, matcher, ids);
+    }
+
+    /**
+     * Renders and writes the pages of the given terms of the glossary into
+     * {@code folder}.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param ids
+     *            positions in glossary of the terms to render
+     * @return the report of the run
+     * @requires folder exists and 0 <= ids[k] < |glossary|
+     * @ensures every page that could be written is, and every one that could
+     *          not is in the report
+     */
+    public Report render(String folder, GlossaryView glossary,
+            TermMatcher matcher, int[] ids) {
+        assert matcher != null : "Violation of: matcher is not null";
+
+        return this.render(folder, glossary, matcher, null, null, ids);
+    }
+
+    /**
+     * Renders and writes the pages of the given terms into {@code folder},
+     * taking the links from a link graph, and listing on each page the terms
+     * referring to it when {@code backlinks} is not null.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param graph
+     *            the link graph built from glossary
+     * @param backlinks
+     *            the backlinks of graph, or null
+     * @param ids
+     *            positions in glossary of the terms to render
+     * @return the report of the run
+     * @requires folder exists and 0 <= ids[k] < |glossary|
+     * @ensures every page that could be written is, and every one that could
+     *          not is in the report
+     */
+    public Report render(String folder, GlossaryView glossary,
+            LinkGraph graph, Backlinks backlinks, int[] ids) {
+        assert graph != null : "Violation of: graph is not null";
+
+        return this.render(folder, glossary, graph.matcher(), graph,
+                backlinks, ids);
+    }
+
+    /**
+     * Renders and writes the page of every term of the glossary into
+     * {@code folder}, taking the links from a link graph instead of searching
+     * the definitions again.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param graph
+     *            the link graph built from glossary
+     * @return the report of the run
+     * @requires folder exists
+     * @ensures every page that could be written is, and every one that could
+     *          not is in the report
+     */
+    public Report renderAll(String folder, GlossaryView glossary,
+            LinkGraph graph) {
+        return this.renderAll(folder, glossary, graph, null);
+    }
+
+    /**
+     * Renders and writes the page of every term of the glossary into
+     * {@code folder}, taking the links from a link graph, and listing on each
+     * page the terms referring to it when {@code backlinks} is not null.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param graph
+     *            the link graph built from glossary
+     * @param backlinks
+     *            the backlinks of graph, or null
+     * @return the report of the run
+     * @requires folder exists
+     * @ensures every page that could be written is, and every one that could
+     *          not is in the report
+     */
+    public Report renderAll(String folder, GlossaryView glossary,
+            LinkGraph graph, Backlinks backlinks) {
+        assert graph != null : "Violation of: graph is not null";
+
+        int[] ids = new int[glossary.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        return this.render(folder, glossary, graph.matcher(), graph,
+                backlinks, ids);
+    }
+
+    /**
+     * Renders and writes the pages of the given terms, with their links taken
+     * from {@code graph} when it is not null and found by {@code matcher}
+     * otherwise.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param matcher
+     *            the matcher built from the terms of glossary
+     * @param graph
+     *            the link graph built from glossary, or null
+     * @param backlinks
+     *            the backlinks of graph, or null
+     * @param ids
+     *            positions in glossary of the terms to render
+     * @return the report of the run
+     */
+    private Report render(String folder, GlossaryView glossary,
+            TermMatcher matcher, LinkGraph graph, Backlinks backlinks,
+            int[] ids) {
+        assert folder != null : "Violation of: folder is not null";
+        assert glossary != null : "Violation of: glossary is not null";
+        assert ids != null : "Violation of: ids is not null";
+
+        AtomicInteger written = new AtomicInteger();
+        ConcurrentSkipListMap<Integer, String> failed =
+                new ConcurrentSkipListMap<>();
+        RenderRange task = new RenderRange(Paths.get(folder), this.output,
+                this.layout, this.metrics, glossary, matcher, graph,
+                backlinks, ids, 0, ids.length, written, failed);
+        if (ForkJoinTask.getPool() == this.pool) {
+            /*
+             * already on one of the workers (a batch build): run in place
+             */
+            task.invoke();
+        } else {
+            this.pool.invoke(task);
+        }
+        List<String> failures = new ArrayList<>(failed.values());
+        int[] failedIds = new int[failures.size()];
+        int k = 0;
+        for (int i : failed.keySet()) {
+            failedIds[k] = i;
+            k++;
+        }
+        return new Report(written.get(), failures, failedIds);
+    }
+
+    /**
+     * Task rendering the pages of a range of an array of term positions,
+     * split in halves until the range is small.
+     */
+    private static final class RenderRange extends RecursiveAction {
+
+        /**
+         * Serial version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The output folder.
+         */
+        private final transient Path folder;
+
+        /**
+         * Writer of the pages.
+         */
+        private final transient PageOutput output;
+
+        /**
+         * Layout of the pages.
+         */
+        private final transient PageLayout layout;
+
+        /**
+         * Metrics recorded per page.
+         */
+        private final transient GlossaryMetrics metrics;
+
+        /**
+         * The glossary.
+         */
+        private final transient GlossaryView glossary;
+
+        /**
+         * The term matcher.
+         */
+        private final transient TermMatcher matcher;
+
+        /**
+         * The link graph, or null to search every definition.
+         */
+        private final transient LinkGraph graph;
+
+        /**
+         * The backlinks, or null to list no referring terms.
+         */
+        private final transient Backlinks backlinks;
+
+        /**
+         * Positions of the terms to render.
+         */
+        private final int[] ids;
+
+        /**
+         * Start of the range of ids.
+         */
+        private final int from;
+
+        /**
+         * End (exclusive) of the range.
+         */
+        private final int to;
+
+        /**
+         * Count of written pages.
+         */
+        private final AtomicInteger written;
+
+        /**
+         * Failed pages as "term: reason", by position of the term.
+         */
+        private final transient ConcurrentSkipListMap<Integer, String> failed;
+
+        /**
+         * Creates a task for the terms at {@code ids[from, to)}.
+         *
+         * @param folder
+         *            the output folder
+         * @param output
+         *            writer of the pages
+         * @param layout
+         *            layout of the pages
+         * @param metrics
+         *            metrics recorded per page
+         * @param glossary
+         *            the glossary
+         * @param matcher
+         *            the term matcher
+         * @param graph
+         *            the link graph, or null
+         * @param backlinks
+         *            the backlinks, or null
+         * @param ids
+         *            positions of the terms to render
+         * @param from
+         *            start of the range
+         * @param to
+         *            end of the range
+         * @param written
+         *            count of written pages
+         * @param failed
+         *            failed pages
+         */
+        RenderRange(Path folder, PageOutput output, PageLayout layout,
+                GlossaryMetrics metrics, GlossaryView glossary,
+                TermMatcher matcher, LinkGraph graph, Backlinks backlinks,
+                int[] ids, int from, int to, AtomicInteger written,
+                ConcurrentSkipListMap<Integer, String> failed) {
+            this.folder = folder;
+            this.output = output;
+            this.layout = layout;
+            this.metrics = metrics;
+            this.glossary = glossary;
+            this.matcher = matcher;
+            this.graph = graph;
+            this.backlinks = backlinks;
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.written = written;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > LEAF_PAGES) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new RenderRange(this.folder, this.output, this.layout,
+                                this.metrics, this.glossary, this.matcher,
+                                this.graph, this.backlinks, this.ids,
+                                this.from, middle, this.written, this.failed),
+                        new RenderRange(this.folder, this.output, this.layout,
+                                this.metrics, this.glossary, this.matcher,
+                                this.graph, this.backlinks, this.ids, middle,
+                                this.to, this.written, this.failed));
+            } else {
+                PageBuffer page = new PageBuffer();
+                TermMatcher.Matches matches = new TermMatcher.Matches();
+                CharSpan span = new CharSpan();
+                CharSpan previous = new CharSpan();
+                for (int k = this.from; k < this.to; k++) {
+                    int i = this.ids[k];
+                    String term = this.glossary.term(i);
+                    /*
+                     * equal terms are next to each other; only the first
+                     * writes the page, so no two tasks write the same file
+                     */
+                    if (i == 0 || !term.contentEquals(
+                            this.glossary.term(i - 1, previous))) {
+                        this.renderPage(i, term, page, matches, span);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Renders and writes the page of the term at position {@code i},
+         * recording it as written or failed.
+         *
+         * @param i
+         *            the position of the term
+         * @param term
+         *            the term
+         * @param page
+         *            reused page buffer
+         * @param matches
+         *            reused match buffer
+         * @param span
+         *            reused definition span
+         */
+        private void renderPage(int i, String term, PageBuffer page,
+                TermMatcher.Matches matches, CharSpan span) {
+            try {
+                CharSequence definition = this.glossary.definition(i, span);
+                long start = System.nanoTime();
+                if (this.graph != null) {
+                    this.graph.matches(i, matches);
+                } else {
+                    this.matcher.findAll(definition, matches);
+                }
+                long linked = System.nanoTime();
+                page.clear();
+                if (this.backlinks != null) {
+                    this.layout.renderPage(term, definition, matches,
+                            this.backlinks.terms(this.glossary, i), page);
+                } else {
+                    this.layout.renderPage(term, definition, matches, page);
+                }
+                long rendered = System.nanoTime();
+                this.output.write(
+                        this.folder.resolve(HtmlEscaper.fileName(term)), page);
+                this.metrics.addTime(GlossaryMetrics.Phase.LINK,
+                        linked - start);
+                this.metrics.addTime(GlossaryMetrics.Phase.RENDER,
+                        rendered - linked);
+                this.metrics.addTime(GlossaryMetrics.Phase.WRITE,
+                        System.nanoTime() - rendered);
+                this.metrics.addPage(definition.length(), matches.count(),
+                        rendered - start);
+                this.written.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                this.failed.put(i, term + ": " + e);
+            }
+        }
+    }
+
+}
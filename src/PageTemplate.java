@@ -0,0 +1,272 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A page layout compiled once: static text pre-encoded to UTF-8 byte
+ * segments, separated by slots such as <code>{{term}}</code> that are filled
+ * in for each page. A template is checked when it is compiled, so rendering
+ * never fails on the template itself.
+ *
+ * @author Zheyuan Gao
+ */
+public final class PageTemplate {
+
+    /**
+     * Opening of a slot.
+     */
+    private static final String OPEN = "{{";
+
+    /**
+     * Closing of a slot.
+     */
+    private static final String CLOSE = "}}";
+
+    /**
+     * End of a tag text holding a URL attribute, up to a slot in its value.
+     */
+    private static final Pattern URL_ATTRIBUTE = Pattern.compile(
+            "(?i)\\s(href|src|action)\\s*=\\s*[\"']?[^\"'\\s>]*$");
+
+    /**
+     * FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The template text.
+     */
+    private final String source;
+
+    /**
+     * Static segments; one more than slots.
+     */
+    private final byte[][] segments;
+
+    /**
+     * Slot after each segment but the last, as an index into the slot names
+     * the template was compiled with.
+     */
+    private final int[] slots;
+
+    /**
+     * Where each slot is in the page, so what its text is escaped for.
+     */
+    private final HtmlEscaper.Context[] contexts;
+
+    /**
+     * Creates a compiled template.
+     *
+     * @param source
+     *            the template text
+     * @param segments
+     *            the static segments
+     * @param slots
+     *            the slots between them
+     * @param contexts
+     *            where each slot is
+     */
+    private PageTemplate(String source, byte[][] segments, int[] slots,
+            HtmlEscaper.Context[] contexts) {
+        this.source = source;
+        this.segments = segments;
+        this.slots = slots;
+        this.contexts = contexts;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param name
+     *            name of the template, for error messages
+     * @param source
+     *            the template text
+     * @param names
+     *            the slot names the template may use
+     * @param required
+     *            how many of the first slot names must each appear at least
+     *            once
+     * @return the compiled template
+     * @throws IllegalArgumentException
+     *             if the template has an unknown or unclosed slot or misses a
+     *             required one
+     */
+    public static PageTemplate compile(String name, String source,
+            String[] names, int required) {
+        assert name != null : "Violation of: name is not null";
+        assert source != null : "Violation of: source is not null";
+        assert names != null : "Violation of: names is not null";
+
+        List<byte[]> segments = new ArrayList<>();
+        List<HtmlEscaper.Context> contexts = new ArrayList<>();
+        int[] slots = new int[0];
+        boolean[] seen = new boolean[names.length];
+        int position = 0;
+        int open = source.indexOf(OPEN);
+        while (open >= 0) {
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException(
+                        where(name, source, open) + "unclosed slot");
+            }
+            String slot = source.substring(open + OPEN.length(), close);
+            int id = Arrays.asList(names).indexOf(slot);
+            if (id < 0) {
+                throw new IllegalArgumentException(where(name, source, open)
+                        + "unknown slot {{" + slot + "}}, expected one of "
+                        + Arrays.toString(names));
+            }
+            seen[id] = true;
+            segments.add(source.substring(position, open)
+                    .getBytes(StandardCharsets.UTF_8));
+            slots = Arrays.copyOf(slots, slots.length + 1);
+            slots[slots.length - 1] = id;
+            contexts.add(contextAt(source, open));
+            position = close + CLOSE.length();
+            open = source.indexOf(OPEN, position);
+        }
+        segments.add(source.substring(position)
+                .getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < required; i++) {
+            if (!seen[i]) {
+                throw new IllegalArgumentException(
+                        name + ": missing slot {{" + names[i] + "}}");
+            }
+        }
+        return new PageTemplate(source, segments.toArray(new byte[0][]),
+                slots, contexts.toArray(new HtmlEscaper.Context[0]));
+    }
+
+    /**
+     * Finds where a position of a template is in the page: inside the value
+     * of an href, src or action attribute, elsewhere inside a tag, or in the
+     * text between tags.
+     *
+     * @param source
+     *            the template text
+     * @param offset
+     *            the position
+     * @return the context of the position
+     */
+    private static HtmlEscaper.Context contextAt(String source, int offset) {
+        int tag = source.lastIndexOf('<', offset - 1);
+        HtmlEscaper.Context context = HtmlEscaper.Context.TEXT;
+        if (tag > source.lastIndexOf('>', offset - 1)) {
+            context = HtmlEscaper.Context.ATTRIBUTE;
+            if (URL_ATTRIBUTE.matcher(source.substring(tag, offset)).find()) {
+                context = HtmlEscaper.Context.URL;
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Describes a position of a template for an error message.
+     *
+     * @param name
+     *            name of the template
+     * @param source
+     *            the template text
+     * @param offset
+     *            the position
+     * @return "name:line:column: "
+     */
+    private static String where(String name, String source, int offset) {
+        int line = 1;
+        int lineStart = 0;
+        for (int k = 0; k < offset; k++) {
+            if (source.charAt(k) == '\n') {
+                line++;
+                lineStart = k + 1;
+            }
+        }
+        return name + ":" + line + ":" + (offset - lineStart + 1) + ": ";
+    }
+
+    /**
+     * Returns the template text.
+     *
+     * @return the source
+     */
+    public String source() {
+        return this.source;
+    }
+
+    /**
+     * Reports the number of slots.
+     *
+     * @return the number of slots
+     */
+    public int slotCount() {
+        return this.slots.length;
+    }
+
+    /**
+     * Returns the slot after segment {@code k}.
+     *
+     * @param k
+     *            the segment
+     * @return index of the slot name
+     * @requires 0 <= k < slotCount
+     */
+    public int slot(int k) {
+        return this.slots[k];
+    }
+
+    /**
+     * Returns where the slot after segment {@code k} is in the page, which
+     * says how the text filling it is escaped.
+     *
+     * @param k
+     *            the segment
+     * @return the context of the slot
+     * @requires 0 <= k < slotCount
+     */
+    public HtmlEscaper.Context context(int k) {
+        return this.contexts[k];
+    }
+
+    /**
+     * Appends static segment {@code k}.
+     *
+     * @param k
+     *            the segment
+     * @param out
+     *            the page being rendered
+     * @updates out
+     * @requires 0 <= k <= slotCount
+     */
+    public void appendSegment(int k, PageBuffer out) {
+        out.append(this.segments[k]);
+    }
+
+    /**
+     * Returns a hash of the compiled template: its segments, and the slot
+     * after each one with its context. Templates that render differently
+     * have different fingerprints, as far as a 64-bit hash can tell.
+     *
+     * @return the fingerprint
+     */
+    public long fingerprint() {
+        long hash = FNV_OFFSET;
+        for (int k = 0; k < this.segments.length; k++) {
+            hash = (hash ^ this.segments[k].length) * FNV_PRIME;
+            for (byte b : this.segments[k]) {
+                hash = (hash ^ Byte.toUnsignedInt(b)) * FNV_PRIME;
+            }
+            if (k < this.slots.length) {
+                hash = (hash ^ this.slots[k]) * FNV_PRIME;
+                hash = (hash ^ this.contexts[k].ordinal()) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+}
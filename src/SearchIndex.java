@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Prefix-searchable term index for the browser, written into the search
+ * folder of a site. The sorted terms are cut into blocks of {@code BLOCK}
+ * terms written as 0.txt, 1.txt, ..., one term per line, and blocks.txt
+ * holds the first term of every block. search.js loads blocks.txt, binary
+ * searches it for the block where a prefix would start, and reads blocks
+ * from there until the terms no longer start with the prefix, so a lookup
+ * loads a small table and one or two blocks, never the whole term list.
+ * search.html is a search box using it.
+ *
+ * @author Zheyuan Gao
+ */
+public final class SearchIndex {
+
+    /**
+     * Number of terms per block.
+     */
+    public static final int BLOCK = 256;
+
+    /**
+     * Name of the search folder.
+     */
+    public static final String FOLDER = "search";
+
+    /**
+     * Line separator of the generated files; search.js splits on it.
+     */
+    private static final String NEWLINE = "\n";
+
+    /**
+     * The lookup: {@code glossarySearch(prefix, limit)} returns a promise of
+     * at most limit terms starting with prefix, in order.
+     */
+    private static final String SCRIPT = String.join(NEWLINE,
+            "var glossarySearch = (function () {",
+            "  var firsts = null, blocks = {};",
+            "  function get(url) {",
+            "    return fetch(url).then(function (r) {",
+            "      return r.text();",
+            "    }).then(function (t) {",
+            "      return t.length ? t.split('\\n') : [];",
+            "    });",
+            "  }",
+            "  function block(k) {",
+            "    if (!blocks[k]) {",
+            "      blocks[k] = get(k + '.txt');",
+            "    }",
+            "    return blocks[k];",
+            "  }",
+            "  function start(f, prefix) {",
+            "    var lo = 0, hi = f.length - 1, k = 0;",
+            "    while (lo <= hi) {",
+            "      var m = (lo + hi) >> 1;",
+            "      if (f[m] <= prefix) {",
+            "        k = m;",
+            "        lo = m + 1;",
+            "      } else {",
+            "        hi = m - 1;",
+            "      }",
+            "    }",
+            "    return k;",
+            "  }",
+            "  return function (prefix, limit) {",
+            "    var ready = firsts ? Promise.resolve(firsts)",
+            "      : get('blocks.txt').then(function (f) {",
+            "        firsts = f;",
+            "        return f;",
+            "      });",
+            "    return ready.then(function (f) {",
+            "      var found = [];",
+            "      function scan(k) {",
+            "        if (k >= f.length || found.length >= limit) {",
+            "          return found;",
+            "        }",
+            "        return block(k).then(function (terms) {",
+            "          for (var i = 0; i < terms.length; i++) {",
+            "            if (found.length >= limit) {",
+            "              return found;",
+            "            } else if (terms[i].lastIndexOf(prefix, 0) === 0) {",
+            "              found.push(terms[i]);",
+            "            } else if (terms[i] > prefix) {",
+            "              return found;",
+            "            }",
+            "          }",
+            "          return scan(k + 1);",
+            "        });",
+            "      }",
+            "      return scan(start(f, prefix));",
+            "    });",
+            "  };",
+            "})();",
+            "");
+
+    /**
+     * The search page.
+     */
+    private static final String PAGE = String.join(NEWLINE, "<html>",
+            " <head>", "  <title>Search</title>",
+            "  <script src=search.js></script>", " </head>", " <body>",
+            "  <h2>Search</h2>", "  <input id=q autofocus>", "  <ul id=r></ul>",
+            "  <script>",
+            "   document.getElementById('q').oninput = function () {",
+            "     var q = this.value;",
+            "     glossarySearch(q, 50).then(function (terms) {",
+            "       if (q !== document.getElementById('q').value) { return; }",
+            "       var r = document.getElementById('r');",
+            "       r.innerHTML = '';",
+            "       terms.forEach(function (t) {",
+            "         var a = document.createElement('a');",
+            "         var name = t.replace(",
+            "             /[\\x00-\\x1f\\x7f\\/\\\\:*?\"<>|%]/g,",
+            "             function (c) {",
+            "               var x = c.charCodeAt(0).toString(16);",
+            "               return (x.length < 2 ? '%0' : '%')",
+            "                   + x.toUpperCase();",
+            "             });",
+            "         a.href = '../' + encodeURIComponent(name) + '.html';",
+            "         a.textContent = t;",
+            "         var li = document.createElement('li');",
+            "         r.appendChild(li).appendChild(a);",
+            "       });",
+            "     });",
+            "   };",
+            "  </script>", "  <p>", "   <a href = ../index.html>index</a>",
+            "  </p>", " </body>", "</html>", "");
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private SearchIndex() {
+    }
+
+    /**
+     * Writes the search index of the glossary into the search folder of
+     * {@code folder}, the blocks in parallel on the pool of the calling
+     * task (or the common pool).
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param output
+     *            the page writer
+     * @return the number of blocks written
+     * @throws IOException
+     *             if a file cannot be written
+     * @requires folder exists
+     */
+    public static int write(Path folder, GlossaryView glossary,
+            PageOutput output) throws IOException {
+        assert folder != null : "Violation of: folder is not null";
+        assert glossary != null : "Violation of: glossary is not null";
+        assert output != null : "Violation of: output is not null";
+
+        Path dir = Files.createDirectories(folder.resolve(FOLDER));
+        int blocks = (glossary.size() + BLOCK - 1) / BLOCK;
+        ConcurrentLinkedQueue<IOException> failed =
+                new ConcurrentLinkedQueue<>();
+        IntStream.range(0, blocks).parallel().forEach(k -> {
+            StringBuilder block = new StringBuilder();
+            int to = Math.min(glossary.size(), (k + 1) * BLOCK);
+            for (int i = k * BLOCK; i < to; i++) {
+                if (i > k * BLOCK) {
+                    block.append(NEWLINE);
+                }
+                block.append(glossary.term(i));
+            }
+            try {
+                output.write(dir.resolve(k + ".txt"), block);
+            } catch (IOException e) {
+                failed.add(e);
+            }
+        });
+        if (!failed.isEmpty()) {
+            throw failed.peek();
+        }
+        StringBuilder firsts = new StringBuilder();
+        for (int k = 0; k < blocks; k++) {
+            if (k > 0) {
+                firsts.append(NEWLINE);
+            }
+            firsts.append(glossary.term(k * BLOCK));
+        }
+        output.write(dir.resolve("blocks.txt"), firsts);
+        output.write(dir.resolve("search.js"), SCRIPT);
+        output.write(dir.resolve("search.html"), PAGE);
+        return blocks;
+    }
+
+}
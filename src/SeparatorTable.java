@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+import components.set.Set;
+
+/**
+ * Compiled set of separator characters. BMP characters are looked up in a
+ * 64K-bit table; supplementary code points fall back to a sorted array. A
+ * table is immutable once built, so it can be shared between threads.
+ *
+ * @author Zheyuan Gao
+ */
+public final class SeparatorTable {
+
+    /**
+     * Number of bits in one word of the table.
+     */
+    private static final int WORD_BITS = 64;
+
+    /**
+     * Shift turning a character into its word index.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Number of characters in the BMP.
+     */
+    private static final int BMP_SIZE = 0x10000;
+
+    /**
+     * One bit per BMP character.
+     */
+    private final long[] bmp;
+
+    /**
+     * Sorted supplementary code points.
+     */
+    private final int[] supplementary;
+
+    /**
+     * Number of distinct separators.
+     */
+    private final int size;
+
+    /**
+     * Builds a table from its parts.
+     *
+     * @param bmp
+     *            the BMP bit table
+     * @param supplementary
+     *            the sorted supplementary code points
+     * @param size
+     *            the number of distinct separators
+     */
+    private SeparatorTable(long[] bmp, int[] supplementary, int size) {
+        this.bmp = bmp;
+        this.supplementary = supplementary;
+        this.size = size;
+    }
+
+    /**
+     * Compiles the separators given as the characters of a {@code String},
+     * the same input {@code Glossary.generateElements} takes.
+     *
+     * @param str
+     *            the separator characters
+     * @return the compiled table
+     * @ensures isSeparator(c) iff c is a code point of str
+     */
+    public static SeparatorTable fromString(String str) {
+        assert str != null : "Violation of: str is not null";
+
+        long[] bmp = new long[BMP_SIZE / WORD_BITS];
+        int[] supplementary = str.codePoints().filter(cp -> cp >= BMP_SIZE)
+                .sorted().distinct().toArray();
+        int size = supplementary.length;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            boolean surrogatePair = Character.isHighSurrogate(c)
+                    && i + 1 < str.length()
+                    && Character.isLowSurrogate(str.charAt(i + 1));
+            if (surrogatePair) {
+                i++;
+            } else if ((bmp[c >>> WORD_SHIFT] & (1L << c)) == 0) {
+                bmp[c >>> WORD_SHIFT] |= 1L << c;
+                size++;
+            }
+        }
+        return new SeparatorTable(bmp, supplementary, size);
+    }
+
+    /**
+     * Compiles the separators in the given {@code Set}.
+     *
+     * @param separators
+     *            the separator characters
+     * @return the compiled table
+     * @ensures isSeparator(c) iff c is in separators
+     */
+    public static SeparatorTable fromSet(Set<Character> separators) {
+        assert separators != null : "Violation of: separators is not null";
+
+        long[] bmp = new long[BMP_SIZE / WORD_BITS];
+        for (char c : separators) {
+            bmp[c >>> WORD_SHIFT] |= 1L << c;
+        }
+        return new SeparatorTable(bmp, new int[0], separators.size());
+    }
+
+    /**
+     * Reports whether the given character is a separator.
+     *
+     * @param c
+     *            the character
+     * @return true iff c is a separator
+     */
+    public boolean isSeparator(char c) {
+        return (this.bmp[c >>> WORD_SHIFT] & (1L << c)) != 0;
+    }
+
+    /**
+     * Reports whether the given code point is a separator.
+     *
+     * @param codePoint
+     *            the code point
+     * @return true iff codePoint is a separator
+     */
+    public boolean isSeparator(int codePoint) {
+        boolean result;
+        if (codePoint < BMP_SIZE) {
+            result = this.isSeparator((char) codePoint);
+        } else {
+            result = Arrays.binarySearch(this.supplementary, codePoint) >= 0;
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of distinct separators.
+     *
+     * @return the number of separators
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the end (exclusive) of the word or separator run starting at
+     * {@code position}; the span {@code [position, tokenEnd)} is what
+     * {@code Glossary.nextWordOrSeparator} returns, without copying it.
+     *
+     * @param text
+     *            the text to scan
+     * @param position
+     *            the starting index
+     * @return the end of the token starting at position
+     * @requires 0 <= position < |text|
+     * @ensures position < tokenEnd <= |text| and [position, tokenEnd) is a
+     *          maximal run of words or of separators
+     */
+    public int tokenEnd(CharSequence text, int position) {
+        assert text != null : "Violation of: text is not null";
+        assert 0 <= position : "Violation of: 0 <= position";
+        assert position < text.length() : "Violation of: position < |text|";
+
+        int end = position;
+        int length = text.length();
+        boolean separator = this.isSeparatorAt(text, position);
+        end += Character.charCount(Character.codePointAt(text, position));
+        if (this.supplementary.length == 0) {
+            /*
+             * fast path: every separator is a single char
+             */
+            while (end < length
+                    && this.isSeparator(text.charAt(end)) == separator) {
+                end++;
+            }
+        } else {
+            while (end < length && this.isSeparatorAt(text, end) == separator) {
+                end += Character.charCount(Character.codePointAt(text, end));
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Reports whether the code point at {@code index} is a separator.
+     *
+     * @param text
+     *            the text
+     * @param index
+     *            the index
+     * @return true iff the code point at index is a separator
+     */
+    private boolean isSeparatorAt(CharSequence text, int index) {
+        boolean result;
+        if (this.supplementary.length == 0) {
+            result = this.isSeparator(text.charAt(index));
+        } else {
+            result = this.isSeparator(Character.codePointAt(text, index));
+        }
+        return result;
+    }
+
+}
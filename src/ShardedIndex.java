@@ -0,0 +1,357 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Index of a large glossary split into pages of at most {@code pageSize}
+ * terms. The sorted terms are cut, in one pass, into runs sharing their first
+ * character, and each run into pages: index/a.html, index/a-2.html, ... The
+ * shards live in the index subfolder, a name no term page (always a .html
+ * file) can take. index.html becomes a navigation page listing every shard
+ * with its first and last term. Shards are rendered in parallel with the
+ * index template of the layout, their links to term pages pointing up one
+ * folder, with links to the navigation page and to the previous and next
+ * shard in its nav slot.
+ *
+ * @author Zheyuan Gao
+ */
+public final class ShardedIndex {
+
+    /**
+     * Line separator written after each line, as {@code println} does.
+     */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /**
+     * Radix of the code of a first character that is not a letter or digit.
+     */
+    private static final int HEX = 16;
+
+    /**
+     * Subfolder of the output folder holding the shards.
+     */
+    static final String FOLDER = "index";
+
+    /**
+     * Prefix of the shards written next to the term pages by earlier
+     * versions.
+     */
+    private static final String OLD_PREFIX = "index-";
+
+    /**
+     * One page of the index: the terms at {@code [from, to)}.
+     */
+    public static final class Shard {
+
+        /**
+         * File name of the page in the shard folder.
+         */
+        private final String name;
+
+        /**
+         * Position of the first term.
+         */
+        private final int from;
+
+        /**
+         * Position after the last term.
+         */
+        private final int to;
+
+        /**
+         * Creates a shard.
+         *
+         * @param name
+         *            file name of the page in the shard folder
+         * @param from
+         *            position of the first term
+         * @param to
+         *            position after the last term
+         */
+        Shard(String name, int from, int to) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the file name of the page in the shard folder.
+         *
+         * @return the file name
+         */
+        public String name() {
+            return this.name;
+        }
+
+        /**
+         * Returns the position of the first term.
+         *
+         * @return the position
+         */
+        public int from() {
+            return this.from;
+        }
+
+        /**
+         * Returns the position after the last term.
+         *
+         * @return the position
+         */
+        public int to() {
+            return this.to;
+        }
+    }
+
+    /**
+     * Default constructor--private to prevent instantiation.
+     */
+    private ShardedIndex() {
+    }
+
+    /**
+     * Returns the shard key of a term: its first character when it is a
+     * lower case ASCII letter or a digit, "cap-" and the letter in lower case
+     * for an upper case one (so the names differ on case-insensitive file
+     * systems), and "u" and the hex code of the character otherwise. Terms
+     * with the same key are adjacent in StringLT order.
+     *
+     * @param term
+     *            the term
+     * @return the key
+     */
+    static String key(String term) {
+        String key;
+        if (term.isEmpty()) {
+            key = "empty";
+        } else {
+            char c = term.charAt(0);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                key = String.valueOf(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                key = "cap-" + Character.toLowerCase(c);
+            } else {
+                key = "u" + Integer.toString(c, HEX);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Cuts the sorted terms into shards.
+     *
+     * @param glossary
+     *            the glossary
+     * @param pageSize
+     *            the most terms of a shard
+     * @return the shards, in term order
+     * @requires pageSize > 0
+     */
+    public static List<Shard> plan(GlossaryView glossary, int pageSize) {
+        assert glossary != null : "Violation of: glossary is not null";
+        assert pageSize > 0 : "Violation of: pageSize > 0";
+
+        List<Shard> shards = new ArrayList<>();
+        int from = 0;
+        while (from < glossary.size()) {
+            String key = key(glossary.term(from));
+            int end = from + 1;
+            while (end < glossary.size()
+                    && key.equals(key(glossary.term(end)))) {
+                end++;
+            }
+            int page = 1;
+            for (int start = from; start < end; start += pageSize) {
+                String name = key;
+                if (page > 1) {
+                    name += "-" + page;
+                }
+                shards.add(new Shard(name + ".html", start,
+                        Math.min(end, start + pageSize)));
+                page++;
+            }
+            from = end;
+        }
+        return shards;
+    }
+
+    /**
+     * Renders the entries of the navigation page.
+     *
+     * @param glossary
+     *            the glossary
+     * @param shards
+     *            the shards
+     * @return the entries
+     */
+    static String navigation(GlossaryView glossary, List<Shard> shards) {
+        StringBuilder entries = new StringBuilder();
+        for (Shard s : shards) {
+            entries.append("   <li>").append(NEWLINE);
+            entries.append("    <a href=").append(FOLDER).append('/')
+                    .append(s.name).append('>')
+                    .append(HtmlEscaper.escape(HtmlEscaper.Context.TEXT,
+                            glossary.term(s.from)));
+            if (s.to - s.from > 1) {
+                entries.append(" - ").append(HtmlEscaper.escape(
+                        HtmlEscaper.Context.TEXT, glossary.term(s.to - 1)));
+            }
+            entries.append("</a>").append(NEWLINE);
+            entries.append("   </li>").append(NEWLINE);
+        }
+        return entries.toString();
+    }
+
+    /**
+     * Renders the nav slot of shard {@code k}.
+     *
+     * @param shards
+     *            the shards
+     * @param k
+     *            the shard
+     * @return the links
+     */
+    static String links(List<Shard> shards, int k) {
+        StringBuilder nav = new StringBuilder();
+        nav.append("  <p>").append(NEWLINE);
+        if (k > 0) {
+            nav.append("   <a href=").append(shards.get(k - 1).name)
+                    .append(">previous</a>").append(NEWLINE);
+        }
+        nav.append("   <a href = ../index.html>index</a>").append(NEWLINE);
+        if (k + 1 < shards.size()) {
+            nav.append("   <a href=").append(shards.get(k + 1).name)
+                    .append(">next</a>").append(NEWLINE);
+        }
+        nav.append("  </p>").append(NEWLINE);
+        return nav.toString();
+    }
+
+    /**
+     * Writes the navigation page as index.html into {@code folder} and every
+     * shard into its index subfolder, the shards in parallel on
+     * {@code pool}, and deletes shards left over from an earlier, larger
+     * build.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param pageSize
+     *            the most terms of a shard
+     * @param layout
+     *            the page layout
+     * @param output
+     *            the page writer
+     * @param pool
+     *            the worker pool
+     * @return the number of shards written
+     * @throws IOException
+     *             if a page cannot be written
+     * @requires folder exists and pageSize > 0
+     */
+    public static int write(Path folder, GlossaryView glossary, int pageSize,
+            PageLayout layout, PageOutput output, ForkJoinPool pool)
+            throws IOException {
+        assert folder != null : "Violation of: folder is not null";
+        assert layout != null : "Violation of: layout is not null";
+        assert output != null : "Violation of: output is not null";
+        assert pool != null : "Violation of: pool is not null";
+
+        List<Shard> shards = plan(glossary, pageSize);
+        Path shardFolder = Files.createDirectories(folder.resolve(FOLDER));
+        ConcurrentLinkedQueue<IOException> failed =
+                new ConcurrentLinkedQueue<>();
+        Runnable renderShards = () -> IntStream.range(0, shards.size())
+                .parallel().forEach(k -> {
+                    Shard s = shards.get(k);
+                    PageBuffer page = new PageBuffer();
+                    layout.renderIndex(glossary, s.from, s.to,
+                            links(shards, k), "../", page);
+                    try {
+                        output.write(shardFolder.resolve(s.name), page);
+                    } catch (IOException e) {
+                        failed.add(e);
+                    }
+                });
+        if (ForkJoinTask.getPool() == pool) {
+            /*
+             * already on one of the workers: the parallel stream runs here
+             */
+            renderShards.run();
+        } else {
+            pool.submit(renderShards).join();
+        }
+        if (!failed.isEmpty()) {
+            throw failed.peek();
+        }
+        PageBuffer page = new PageBuffer();
+        layout.renderIndex(navigation(glossary, shards), "", page);
+        output.write(folder.resolve("index.html"), page);
+        deleteStale(folder, glossary, shards);
+        return shards.size();
+    }
+
+    /**
+     * Deletes the shards in the index subfolder of {@code folder} that are
+     * not in {@code shards}, and the subfolder itself once it is empty. Also
+     * deletes the shards an earlier version wrote next to the term pages
+     * (index-a.html, ...), keeping the pages of terms named like one.
+     *
+     * @param folder
+     *            the output folder
+     * @param glossary
+     *            the glossary
+     * @param shards
+     *            the current shards, empty if the index is not sharded
+     * @throws IOException
+     *             if the folder cannot be listed or a shard deleted
+     */
+    public static void deleteStale(Path folder, GlossaryView glossary,
+            List<Shard> shards) throws IOException {
+        HashSet<String> current = new HashSet<>();
+        for (Shard s : shards) {
+            current.add(s.name);
+        }
+        List<Path> stale = new ArrayList<>();
+        Path shardFolder = folder.resolve(FOLDER);
+        boolean emptied = Files.isDirectory(shardFolder);
+        if (emptied) {
+            try (DirectoryStream<Path> dir = Files
+                    .newDirectoryStream(shardFolder)) {
+                for (Path file : dir) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".html") && !current.contains(name)) {
+                        stale.add(file);
+                    } else {
+                        emptied = false;
+                    }
+                }
+            }
+        }
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(folder,
+                OLD_PREFIX + "*.html")) {
+            for (Path file : dir) {
+                String term = HtmlEscaper
+                        .termOf(file.getFileName().toString());
+                if (term == null || glossary.indexOf(term) < 0) {
+                    stale.add(file);
+                }
+            }
+        }
+        for (Path file : stale) {
+            Files.delete(file);
+        }
+        if (emptied) {
+            Files.delete(shardFolder);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+import components.map.Map;
+import components.queue.Queue;
+
+/**
+ * Glossary stored as two parallel arrays (terms and definitions) sorted once
+ * by {@code StringLT}. Lookups are binary searches over the sorted terms.
+ *
+ * @author Zheyuan Gao
+ */
+public final class SortedGlossary implements GlossaryView {
+
+    /**
+     * Order used for the term list.
+     */
+    private static final Comparator<String> ORDER = new Glossary.StringLT();
+
+    /**
+     * Sorted terms.
+     */
+    private final String[] terms;
+
+    /**
+     * Definitions, {@code definitions[i]} belongs to {@code terms[i]}.
+     */
+    private final String[] definitions;
+
+    /**
+     * Builds a glossary from the first {@code n} unsorted term/definition
+     * pairs. The arrays are sorted in place.
+     *
+     * @param terms
+     *            the terms, in input order
+     * @param definitions
+     *            the definitions, in input order
+     * @param n
+     *            the number of pairs in use
+     * @requires |terms| >= n and |definitions| >= n
+     * @ensures terms are sorted by StringLT with definitions kept beside them
+     */
+    SortedGlossary(String[] terms, String[] definitions, int n) {
+        assert terms != null : "Violation of: terms is not null";
+        assert definitions != null : "Violation of: definitions is not null";
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        /*
+         * sort once at the end, stable so the first of two equal terms keeps
+         * its place
+         */
+        Arrays.sort(order, (a, b) -> ORDER.compare(terms[a], terms[b]));
+        this.terms = new String[n];
+        this.definitions = new String[n];
+        for (int i = 0; i < n; i++) {
+            this.terms[i] = terms[order[i]];
+            this.definitions[i] = definitions[order[i]];
+        }
+    }
+
+    /**
+     * Wraps arrays that are already sorted.
+     *
+     * @param terms
+     *            the sorted terms
+     * @param definitions
+     *            the definitions, {@code definitions[i]} belonging to
+     *            {@code terms[i]}
+     */
+    private SortedGlossary(String[] terms, String[] definitions) {
+        this.terms = terms;
+        this.definitions = definitions;
+    }
+
+    /**
+     * Builds a glossary from term/definition pairs already sorted by
+     * {@code StringLT}, without sorting them again. The arrays are kept.
+     *
+     * @param terms
+     *            the sorted terms
+     * @param definitions
+     *            the definitions, in the same order
+     * @return the glossary
+     * @requires |terms| = |definitions| and terms is sorted by StringLT
+     */
+    static SortedGlossary ofSorted(String[] terms, String[] definitions) {
+        assert terms != null : "Violation of: terms is not null";
+        assert definitions != null : "Violation of: definitions is not null";
+        assert terms.length == definitions.length
+                : "Violation of: |terms| = |definitions|";
+
+        return new SortedGlossary(terms, definitions);
+    }
+
+    @Override
+    public int size() {
+        return this.terms.length;
+    }
+
+    @Override
+    public String term(int i) {
+        return this.terms[i];
+    }
+
+    @Override
+    public String definition(int i) {
+        return this.definitions[i];
+    }
+
+    @Override
+    public int indexOf(String term) {
+        assert term != null : "Violation of: term is not null";
+        return Arrays.binarySearch(this.terms, term, ORDER);
+    }
+
+    /**
+     * Copies the glossary into the queue/map pair used by {@code Glossary}.
+     *
+     * @param termQueue
+     *            the queue to receive the terms
+     * @param termMap
+     *            the map to receive the term-definition pairs
+     * @updates termQueue, termMap
+     * @ensures termQueue = #termQueue * terms and termMap = #termMap union
+     *          pairs
+     */
+    public void copyTo(Queue<String> termQueue, Map<String, String> termMap) {
+        assert termQueue != null : "Violation of: termQueue is not null";
+        assert termMap != null : "Violation of: termMap is not null";
+
+        for (int i = 0; i < this.terms.length; i++) {
+            termQueue.enqueue(this.terms[i]);
+            termMap.add(this.terms[i], this.definitions[i]);
+        }
+    }
+
+}
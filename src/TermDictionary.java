@@ -0,0 +1,519 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import components.map.Map;
+import components.queue.Queue;
+
+/**
+ * Read-only term dictionary frozen after ingestion. All terms are stored in
+ * one array and all definitions in another, with offset tables in sorted
+ * term order; an open-addressing hash index over the terms answers lookups.
+ * When every character is Latin-1 the arrays hold one byte per character,
+ * as compact {@code String}s do, and {@code char} arrays otherwise. Compared
+ * with a {@code Map1L} plus a {@code Queue1L} of keys this keeps a single
+ * copy of each term and no per-entry objects.
+ *
+ * @author Zheyuan Gao
+ */
+public final class TermDictionary implements GlossaryView {
+
+    /**
+     * Marker of a free slot of the hash index.
+     */
+    private static final int FREE = -1;
+
+    /**
+     * Multiplier of the term hash.
+     */
+    private static final int HASH_MULTIPLIER = 31;
+
+    /**
+     * Multiplier spreading a hash code over all bits (2^32 divided by the
+     * golden ratio); the slot of a term is the top bits of the product.
+     * Short terms like "tab" and "tabb" have nearly consecutive hash codes,
+     * which the low bits alone would put in one long run of slots.
+     */
+    private static final int GOLDEN = 0x9E3779B9;
+
+    /**
+     * Number of bits in an int.
+     */
+    private static final int INT_BITS = 32;
+
+    /**
+     * Largest Latin-1 character.
+     */
+    private static final char LATIN1_MAX = 0xFF;
+
+    /**
+     * Characters of all terms, in sorted order; null if termBytes holds
+     * them.
+     */
+    private final char[] termChars;
+
+    /**
+     * Latin-1 characters of all terms, in sorted order; null if termChars
+     * holds them.
+     */
+    private final byte[] termBytes;
+
+    /**
+     * Start of each term in the term array; one more entry than terms.
+     */
+    private final int[] termOffsets;
+
+    /**
+     * Characters of all definitions, in sorted term order; null if
+     * definitionBytes holds them.
+     */
+    private final char[] definitionChars;
+
+    /**
+     * Latin-1 characters of all definitions, in sorted term order; null if
+     * definitionChars holds them.
+     */
+    private final byte[] definitionBytes;
+
+    /**
+     * Start of each definition in the definition array; one more entry than
+     * terms.
+     */
+    private final int[] definitionOffsets;
+
+    /**
+     * Hash index: term position per slot, or FREE.
+     */
+    private final int[] slots;
+
+    /**
+     * Hash of each term, to skip most character comparisons.
+     */
+    private final int[] hashes;
+
+    /**
+     * Shift turning a hash into a slot: 32 minus log2 of the slot count.
+     */
+    private final int slotShift;
+
+    /**
+     * Builds a dictionary from sorted terms and their definitions.
+     *
+     * @param terms
+     *            the terms, sorted by StringLT, no duplicates
+     * @param definitions
+     *            the definitions
+     */
+    private TermDictionary(String[] terms, String[] definitions) {
+        int n = terms.length;
+        this.termOffsets = new int[n + 1];
+        this.definitionOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            this.termOffsets[i + 1] = Math.addExact(this.termOffsets[i],
+                    terms[i].length());
+            this.definitionOffsets[i + 1] = Math.addExact(
+                    this.definitionOffsets[i], definitions[i].length());
+        }
+        boolean latin1 = true;
+        for (int i = 0; latin1 && i < n; i++) {
+            latin1 = isLatin1(terms[i]) && isLatin1(definitions[i]);
+        }
+        if (latin1) {
+            this.termChars = null;
+            this.definitionChars = null;
+            this.termBytes = new byte[this.termOffsets[n]];
+            this.definitionBytes = new byte[this.definitionOffsets[n]];
+            for (int i = 0; i < n; i++) {
+                copyLatin1(terms[i], this.termBytes, this.termOffsets[i]);
+                copyLatin1(definitions[i], this.definitionBytes,
+                        this.definitionOffsets[i]);
+            }
+        } else {
+            this.termBytes = null;
+            this.definitionBytes = null;
+            this.termChars = new char[this.termOffsets[n]];
+            this.definitionChars = new char[this.definitionOffsets[n]];
+            for (int i = 0; i < n; i++) {
+                terms[i].getChars(0, terms[i].length(), this.termChars,
+                        this.termOffsets[i]);
+                definitions[i].getChars(0, definitions[i].length(),
+                        this.definitionChars, this.definitionOffsets[i]);
+            }
+        }
+        /*
+         * hash index at most half full
+         */
+        this.slots = new int[Integer.highestOneBit(Math.max(1, 2 * n)) * 2];
+        Arrays.fill(this.slots, FREE);
+        this.hashes = new int[n];
+        this.slotShift = INT_BITS
+                - Integer.numberOfTrailingZeros(this.slots.length);
+        int mask = this.slots.length - 1;
+        for (int i = 0; i < n; i++) {
+            int h = hash(terms[i], 0, terms[i].length());
+            this.hashes[i] = h;
+            int s = this.slot(h);
+            while (this.slots[s] != FREE) {
+                s = (s + 1) & mask;
+            }
+            this.slots[s] = i;
+        }
+    }
+
+    /**
+     * Freezes a glossary into a dictionary.
+     *
+     * @param glossary
+     *            the glossary
+     * @return the dictionary
+     * @ensures the dictionary has the same terms, order and definitions as
+     *          glossary
+     */
+    public static TermDictionary freeze(GlossaryView glossary) {
+        assert glossary != null : "Violation of: glossary is not null";
+
+        String[] terms = new String[glossary.size()];
+        String[] definitions = new String[glossary.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = glossary.term(i);
+            definitions[i] = glossary.definition(i);
+        }
+        return new TermDictionary(terms, definitions);
+    }
+
+    /**
+     * Freezes the queue/map pair used by {@code Glossary} into a dictionary.
+     *
+     * @param termQueue
+     *            the terms, in StringLT order
+     * @param termMap
+     *            the term-definition pairs
+     * @return the dictionary
+     * @requires terms in termQueue are in alphabet order and are the keys of
+     *           termMap
+     */
+    public static TermDictionary freeze(Queue<String> termQueue,
+            Map<String, String> termMap) {
+        assert termQueue != null : "Violation of: termQueue is not null";
+        assert termMap != null : "Violation of: termMap is not null";
+
+        String[] terms = new String[termQueue.length()];
+        String[] definitions = new String[terms.length];
+        int i = 0;
+        for (String term : termQueue) {
+            terms[i] = term;
+            definitions[i] = termMap.value(term);
+            i++;
+        }
+        return new TermDictionary(terms, definitions);
+    }
+
+    /**
+     * Reports whether every character of {@code s} is Latin-1.
+     *
+     * @param s
+     *            the string
+     * @return true iff no character of s is above U+00FF
+     */
+    private static boolean isLatin1(String s) {
+        boolean latin1 = true;
+        for (int k = 0; latin1 && k < s.length(); k++) {
+            latin1 = s.charAt(k) <= LATIN1_MAX;
+        }
+        return latin1;
+    }
+
+    /**
+     * Copies the Latin-1 characters of {@code s} into {@code bytes} from
+     * position {@code offset}.
+     *
+     * @param s
+     *            the string
+     * @param bytes
+     *            the array
+     * @param offset
+     *            position of the first character
+     * @updates bytes
+     * @requires every character of s is Latin-1 and it fits in bytes
+     */
+    private static void copyLatin1(String s, byte[] bytes, int offset) {
+        for (int k = 0; k < s.length(); k++) {
+            bytes[offset + k] = (byte) s.charAt(k);
+        }
+    }
+
+    /**
+     * Appends Latin-1 bytes {@code [start, end)} to {@code sb}.
+     *
+     * @param bytes
+     *            the array
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @param sb
+     *            the builder
+     * @updates sb
+     */
+    private static void appendLatin1(byte[] bytes, int start, int end,
+            StringBuilder sb) {
+        for (int k = start; k < end; k++) {
+            sb.append((char) (bytes[k] & LATIN1_MAX));
+        }
+    }
+
+    /**
+     * Hashes characters {@code [start, end)} of a text. The hash is the
+     * {@code String.hashCode} of the range, spread, so a {@code String} key
+     * can use its cached hash code.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @return the hash
+     */
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int k = start; k < end; k++) {
+            h = HASH_MULTIPLIER * h + text.charAt(k);
+        }
+        return spread(h);
+    }
+
+    /**
+     * Spreads a hash code over all bits.
+     *
+     * @param h
+     *            the hash code
+     * @return the spread hash
+     */
+    private static int spread(int h) {
+        return h * GOLDEN;
+    }
+
+    /**
+     * Returns the home slot of a spread hash: its top bits.
+     *
+     * @param h
+     *            the spread hash
+     * @return the slot
+     */
+    private int slot(int h) {
+        return h >>> this.slotShift;
+    }
+
+    @Override
+    public int size() {
+        return this.hashes.length;
+    }
+
+    @Override
+    public String term(int i) {
+        int start = this.termOffsets[i];
+        int count = this.termOffsets[i + 1] - start;
+        String term;
+        if (this.termBytes != null) {
+            term = new String(this.termBytes, start, count,
+                    StandardCharsets.ISO_8859_1);
+        } else {
+            term = new String(this.termChars, start, count);
+        }
+        return term;
+    }
+
+    @Override
+    public String definition(int i) {
+        int start = this.definitionOffsets[i];
+        int count = this.definitionOffsets[i + 1] - start;
+        String definition;
+        if (this.definitionBytes != null) {
+            definition = new String(this.definitionBytes, start, count,
+                    StandardCharsets.ISO_8859_1);
+        } else {
+            definition = new String(this.definitionChars, start, count);
+        }
+        return definition;
+    }
+
+    @Override
+    public CharSequence term(int i, CharSpan span) {
+        assert span != null : "Violation of: span is not null";
+
+        if (this.termBytes != null) {
+            span.set(this.termBytes, this.termOffsets[i],
+                    this.termOffsets[i + 1]);
+        } else {
+            span.set(this.termChars, this.termOffsets[i],
+                    this.termOffsets[i + 1]);
+        }
+        return span;
+    }
+
+    @Override
+    public CharSequence definition(int i, CharSpan span) {
+        assert span != null : "Violation of: span is not null";
+
+        if (this.definitionBytes != null) {
+            span.set(this.definitionBytes, this.definitionOffsets[i],
+                    this.definitionOffsets[i + 1]);
+        } else {
+            span.set(this.definitionChars, this.definitionOffsets[i],
+                    this.definitionOffsets[i + 1]);
+        }
+        return span;
+    }
+
+    /**
+     * Appends the term at position {@code i} to {@code sb} without creating
+     * a {@code String}.
+     *
+     * @param i
+     *            the position
+     * @param sb
+     *            the builder
+     * @updates sb
+     * @requires 0 <= i < size
+     */
+    public void appendTerm(int i, StringBuilder sb) {
+        if (this.termBytes != null) {
+            appendLatin1(this.termBytes, this.termOffsets[i],
+                    this.termOffsets[i + 1], sb);
+        } else {
+            sb.append(this.termChars, this.termOffsets[i],
+                    this.termOffsets[i + 1] - this.termOffsets[i]);
+        }
+    }
+
+    /**
+     * Appends the definition at position {@code i} to {@code sb} without
+     * creating a {@code String}.
+     *
+     * @param i
+     *            the position
+     * @param sb
+     *            the builder
+     * @updates sb
+     * @requires 0 <= i < size
+     */
+    public void appendDefinition(int i, StringBuilder sb) {
+        if (this.definitionBytes != null) {
+            appendLatin1(this.definitionBytes, this.definitionOffsets[i],
+                    this.definitionOffsets[i + 1], sb);
+        } else {
+            sb.append(this.definitionChars, this.definitionOffsets[i],
+                    this.definitionOffsets[i + 1] - this.definitionOffsets[i]);
+        }
+    }
+
+    /**
+     * Returns the position of the term spelled by characters
+     * {@code [start, end)} of {@code text}, without creating a
+     * {@code String}.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @return the position of the term, -1 if it is not in the dictionary
+     * @requires 0 <= start <= end <= |text|
+     */
+    public int indexOf(CharSequence text, int start, int end) {
+        assert text != null : "Violation of: text is not null";
+
+        return this.find(hash(text, start, end), text, start, end);
+    }
+
+    /**
+     * Looks up characters {@code [start, end)} of {@code text} in the hash
+     * index.
+     *
+     * @param h
+     *            the hash of the range
+     * @param text
+     *            the text
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @return the position of the term, -1 if it is not in the dictionary
+     */
+    private int find(int h, CharSequence text, int start, int end) {
+        int mask = this.slots.length - 1;
+        int s = this.slot(h);
+        int result = -1;
+        while (result < 0 && this.slots[s] != FREE) {
+            int i = this.slots[s];
+            if (this.hashes[i] == h && this.termEquals(i, text, start, end)) {
+                result = i;
+            }
+            s = (s + 1) & mask;
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether the term at position {@code i} is spelled by
+     * characters {@code [start, end)} of {@code text}.
+     *
+     * @param i
+     *            the position
+     * @param text
+     *            the text
+     * @param start
+     *            start of the range
+     * @param end
+     *            end of the range
+     * @return true iff they are equal
+     */
+    private boolean termEquals(int i, CharSequence text, int start, int end) {
+        int offset = this.termOffsets[i];
+        boolean equal = this.termOffsets[i + 1] - offset == end - start;
+        if (this.termBytes != null) {
+            for (int k = 0; equal && k < end - start; k++) {
+                equal = (this.termBytes[offset + k]
+                        & LATIN1_MAX) == text.charAt(start + k);
+            }
+        } else {
+            for (int k = 0; equal && k < end - start; k++) {
+                equal = this.termChars[offset + k] == text.charAt(start + k);
+            }
+        }
+        return equal;
+    }
+
+    @Override
+    public int indexOf(String term) {
+        assert term != null : "Violation of: term is not null";
+        return this.find(spread(term.hashCode()), term, 0, term.length());
+    }
+
+    /**
+     * Reports whether {@code term} is in the dictionary.
+     *
+     * @param term
+     *            the term
+     * @return true iff term is a key
+     */
+    public boolean hasKey(String term) {
+        return this.indexOf(term) >= 0;
+    }
+
+    /**
+     * Returns the definition of {@code term}.
+     *
+     * @param term
+     *            the term
+     * @return its definition
+     * @requires hasKey(term)
+     */
+    public String value(String term) {
+        int i = this.indexOf(term);
+        assert i >= 0 : "Violation of: term is in DOMAIN(this)";
+        return this.definition(i);
+    }
+
+}
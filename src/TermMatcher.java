@@ -0,0 +1,710 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+
+/**
+ * Aho-Corasick automaton over every term of a glossary. It is built once and
+ * then finds all term occurrences in a definition, multi-word terms included,
+ * in a single left-to-right pass. Overlapping occurrences are resolved
+ * leftmost-longest, and an optional boundary rule only accepts occurrences
+ * that start and end at separators.
+ *
+ * <p>
+ * A matcher can be updated for a few added and removed terms without
+ * rebuilding the automaton: the states of removed terms are switched off,
+ * and added terms go into a second, small automaton scanned alongside the
+ * first. Matches are the same as those of a matcher built from scratch for
+ * the new terms; only term ids differ.
+ * </p>
+ *
+ * @author Zheyuan Gao
+ */
+public final class TermMatcher {
+
+    /**
+     * Which occurrences of a term count as a match.
+     */
+    public enum Boundary {
+        /**
+         * Any occurrence matches, even inside a longer word.
+         */
+        NONE,
+        /**
+         * An occurrence must be preceded and followed by a separator or the
+         * edge of the text (whole words only).
+         */
+        SEPARATOR
+    }
+
+    /**
+     * Reusable buffer of matches found in one text. Matches are sorted by
+     * start and never overlap.
+     */
+    public static final class Matches {
+
+        /**
+         * Start of each match.
+         */
+        private int[] starts = new int[INITIAL_CAPACITY];
+
+        /**
+         * End (exclusive) of each match.
+         */
+        private int[] ends = new int[INITIAL_CAPACITY];
+
+        /**
+         * Term id of each match.
+         */
+        private int[] ids = new int[INITIAL_CAPACITY];
+
+        /**
+         * Number of matches.
+         */
+        private int count;
+
+        /**
+         * Longest accepted match length starting at each text index.
+         */
+        private int[] bestLength = new int[0];
+
+        /**
+         * Term id of the longest accepted match at each text index.
+         */
+        private int[] bestId = new int[0];
+
+        /**
+         * Reports the number of matches.
+         *
+         * @return the number of matches
+         */
+        public int count() {
+            return this.count;
+        }
+
+        /**
+         * Returns the start of the i-th match.
+         *
+         * @param i
+         *            the match number
+         * @return its start index
+         * @requires 0 <= i < count
+         */
+        public int start(int i) {
+            return this.starts[i];
+        }
+
+        /**
+         * Returns the end (exclusive) of the i-th match.
+         *
+         * @param i
+         *            the match number
+         * @return its end index
+         * @requires 0 <= i < count
+         */
+        public int end(int i) {
+            return this.ends[i];
+        }
+
+        /**
+         * Returns the id of the term of the i-th match, its position in the
+         * term list the matcher was built from.
+         *
+         * @param i
+         *            the match number
+         * @return its term id
+         * @requires 0 <= i < count
+         */
+        public int termId(int i) {
+            return this.ids[i];
+        }
+
+        /**
+         * Makes room for a text of the given length and forgets old matches.
+         *
+         * @param length
+         *            the text length
+         */
+        private void reset(int length) {
+            if (this.bestLength.length < length) {
+                this.bestLength = new int[length];
+                this.bestId = new int[length];
+            } else {
+                Arrays.fill(this.bestLength, 0, length, 0);
+            }
+            this.count = 0;
+        }
+
+        /**
+         * Forgets every match, for a buffer filled with matches found
+         * earlier rather than by {@code findAll}.
+         */
+        void clear() {
+            this.count = 0;
+        }
+
+        /**
+         * Appends a match.
+         *
+         * @param start
+         *            its start
+         * @param end
+         *            its end
+         * @param id
+         *            its term id
+         */
+        void add(int start, int end, int id) {
+            if (this.count == this.starts.length) {
+                int capacity = 2 * this.count;
+                this.starts = Arrays.copyOf(this.starts, capacity);
+                this.ends = Arrays.copyOf(this.ends, capacity);
+                this.ids = Arrays.copyOf(this.ids, capacity);
+            }
+            this.starts[this.count] = start;
+            this.ends[this.count] = end;
+            this.ids[this.count] = id;
+            this.count++;
+        }
+    }
+
+    /**
+     * Initial capacity of growable arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Bits of a transition key used by the character.
+     */
+    private static final int CHAR_BITS = 16;
+
+    /**
+     * Multiplier used to spread transition keys over the table.
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Root state.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Marker for "no state" or "no term".
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Transition table keys ({@code state << 16 | char}), open addressing.
+     */
+    private final long[] keys;
+
+    /**
+     * Transition table targets, parallel to {@code keys}; NONE for free.
+     */
+    private final int[] targets;
+
+    /**
+     * Number of states.
+     */
+    private int states;
+
+    /**
+     * Failure link of each state.
+     */
+    private final int[] fail;
+
+    /**
+     * Term id ending exactly at each state, or NONE.
+     */
+    private final int[] output;
+
+    /**
+     * Nearest state on the failure chain with an output, or NONE.
+     */
+    private final int[] dictionaryLink;
+
+    /**
+     * Depth (length of the path from the root) of each state.
+     */
+    private final int[] depth;
+
+    /**
+     * Parent of each state in the trie.
+     */
+    private final int[] parent;
+
+    /**
+     * Character on the edge from the parent of each state.
+     */
+    private final char[] edge;
+
+    /**
+     * Separator characters used by the boundary rule.
+     */
+    private final SeparatorTable separators;
+
+    /**
+     * Boundary rule.
+     */
+    private final Boundary boundary;
+
+    /**
+     * Number of terms the automaton was built from.
+     */
+    private final int termCount;
+
+    /**
+     * States whose term was removed by an update, or null if there are
+     * none.
+     */
+    private final BitSet removed;
+
+    /**
+     * Terms added by updates, not in the automaton.
+     */
+    private final String[] addedTerms;
+
+    /**
+     * Automaton over {@code addedTerms}, or null if there are none.
+     */
+    private final TermMatcher added;
+
+    /**
+     * Builds the automaton for the given terms. Term ids are positions in
+     * {@code terms}. An empty term, which a glossary gets from an extra blank
+     * line between entries, is never found.
+     *
+     * @param terms
+     *            the terms to find
+     * @param separators
+     *            the separator characters
+     * @param boundary
+     *            the boundary rule
+     */
+    public TermMatcher(String[] terms, SeparatorTable separators,
+            Boundary boundary) {
+        assert terms != null : "Violation of: terms is not null";
+        assert separators != null : "Violation of: separators is not null";
+        assert boundary != null : "Violation of: boundary is not null";
+
+        this.separators = separators;
+        this.boundary = boundary;
+        this.termCount = terms.length;
+        this.removed = null;
+        this.addedTerms = new String[0];
+        this.added = null;
+        int capacity = INITIAL_CAPACITY;
+        for (String term : terms) {
+            capacity += term.length();
+        }
+        this.fail = new int[capacity];
+        this.output = new int[capacity];
+        this.dictionaryLink = new int[capacity];
+        this.depth = new int[capacity];
+        this.parent = new int[capacity];
+        this.edge = new char[capacity];
+        int tableSize = Integer.highestOneBit(2 * capacity - 1) * 2;
+        this.keys = new long[tableSize];
+        this.targets = new int[tableSize];
+        Arrays.fill(this.targets, NONE);
+        this.states = 1;
+        this.output[ROOT] = NONE;
+
+        /*
+         * build the trie
+         */
+        for (int id = 0; id < terms.length; id++) {
+            String term = terms[id];
+            int state = ROOT;
+            for (int i = 0; i < term.length(); i++) {
+                int next = this.transition(state, term.charAt(i));
+                if (next == NONE) {
+                    next = this.states;
+                    this.states++;
+                    this.output[next] = NONE;
+                    this.depth[next] = this.depth[state] + 1;
+                    this.parent[next] = state;
+                    this.edge[next] = term.charAt(i);
+                    this.putTransition(state, term.charAt(i), next);
+                }
+                state = next;
+            }
+            /*
+             * the root never outputs, so an empty term is skipped
+             */
+            if (state != ROOT && this.output[state] == NONE) {
+                this.output[state] = id;
+            }
+        }
+        this.linkFailures();
+    }
+
+    /**
+     * Creates a matcher sharing the automaton of {@code base}, with other
+     * removed and added terms.
+     *
+     * @param base
+     *            the matcher whose automaton is shared
+     * @param removed
+     *            states of the automaton whose term is removed, or null
+     * @param addedTerms
+     *            terms not in the automaton
+     */
+    private TermMatcher(TermMatcher base, BitSet removed,
+            String[] addedTerms) {
+        this.keys = base.keys;
+        this.targets = base.targets;
+        this.states = base.states;
+        this.fail = base.fail;
+        this.output = base.output;
+        this.dictionaryLink = base.dictionaryLink;
+        this.depth = base.depth;
+        this.parent = base.parent;
+        this.edge = base.edge;
+        this.separators = base.separators;
+        this.boundary = base.boundary;
+        this.termCount = base.termCount;
+        this.removed = removed;
+        this.addedTerms = addedTerms;
+        if (addedTerms.length > 0) {
+            this.added = new TermMatcher(addedTerms, base.separators,
+                    base.boundary);
+        } else {
+            this.added = null;
+        }
+    }
+
+    /**
+     * Builds the automaton for every term of a glossary; term ids are the
+     * positions in {@code glossary}.
+     *
+     * @param glossary
+     *            the glossary
+     * @param separators
+     *            the separator characters
+     * @param boundary
+     *            the boundary rule
+     * @return the matcher
+     */
+    public static TermMatcher of(GlossaryView glossary,
+            SeparatorTable separators, Boundary boundary) {
+        assert glossary != null : "Violation of: glossary is not null";
+
+        String[] terms = new String[glossary.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = glossary.term(i);
+        }
+        return new TermMatcher(terms, separators, boundary);
+    }
+
+    /**
+     * Returns a matcher finding the terms of this one, without
+     * {@code removedTerms} and with {@code newTerms}, sharing this automaton.
+     * It costs time proportional to the length of the terms given and of the
+     * terms added by earlier updates, not to the size of the automaton. Term
+     * ids of the terms of the automaton are kept; ids of added terms follow
+     * them, so they are not positions in a glossary.
+     *
+     * @param newTerms
+     *            terms to add
+     * @param removedTerms
+     *            terms to remove
+     * @return the updated matcher
+     * @requires newTerms and removedTerms have no term in common
+     */
+    public TermMatcher update(String[] newTerms, String[] removedTerms) {
+        assert newTerms != null : "Violation of: newTerms is not null";
+        assert removedTerms != null : "Violation of: removedTerms is not null";
+
+        BitSet off = new BitSet();
+        if (this.removed != null) {
+            off.or(this.removed);
+        }
+        LinkedHashSet<String> extra = new LinkedHashSet<>(
+                Arrays.asList(this.addedTerms));
+        for (String term : removedTerms) {
+            int state = this.stateOf(term);
+            if (!extra.remove(term) && state != NONE) {
+                off.set(state);
+            }
+        }
+        for (String term : newTerms) {
+            int state = this.stateOf(term);
+            if (state != NONE) {
+                off.clear(state);
+            } else {
+                extra.add(term);
+            }
+        }
+        BitSet kept = null;
+        if (!off.isEmpty()) {
+            kept = off;
+        }
+        return new TermMatcher(this, kept, extra.toArray(new String[0]));
+    }
+
+    /**
+     * Reports the number of terms found by the second automaton, those added
+     * by updates. A matcher rebuilt from scratch has none.
+     *
+     * @return the number of added terms
+     */
+    public int addedCount() {
+        return this.addedTerms.length;
+    }
+
+    /**
+     * Builds the automaton for every term of a glossary from scratch, with
+     * the separators and boundary rule of this matcher.
+     *
+     * @param glossary
+     *            the glossary
+     * @return the matcher, with no added terms
+     */
+    public TermMatcher rebuilt(GlossaryView glossary) {
+        return of(glossary, this.separators, this.boundary);
+    }
+
+    /**
+     * Returns the state where {@code term} ends, if it is a term of the
+     * automaton.
+     *
+     * @param term
+     *            the term
+     * @return its state, or NONE if it is not a term of the automaton
+     */
+    private int stateOf(String term) {
+        int state = ROOT;
+        for (int i = 0; i < term.length() && state != NONE; i++) {
+            state = this.transition(state, term.charAt(i));
+        }
+        if (state == ROOT || (state != NONE && this.output[state] == NONE)) {
+            state = NONE;
+        }
+        return state;
+    }
+
+    /**
+     * Computes failure and dictionary links breadth-first.
+     */
+    private void linkFailures() {
+        int[][] children = this.children();
+        int[] queue = new int[this.states];
+        int head = 0;
+        int tail = 0;
+        this.fail[ROOT] = ROOT;
+        this.dictionaryLink[ROOT] = NONE;
+        queue[tail] = ROOT;
+        tail++;
+        while (head < tail) {
+            int state = queue[head];
+            head++;
+            for (int child : children[state]) {
+                char c = this.edge[child];
+                int f = NONE;
+                if (state != ROOT) {
+                    int s = this.fail[state];
+                    f = this.transition(s, c);
+                    while (f == NONE && s != ROOT) {
+                        s = this.fail[s];
+                        f = this.transition(s, c);
+                    }
+                }
+                if (f == NONE) {
+                    f = ROOT;
+                }
+                this.fail[child] = f;
+                if (this.output[f] != NONE) {
+                    this.dictionaryLink[child] = f;
+                } else {
+                    this.dictionaryLink[child] = this.dictionaryLink[f];
+                }
+                queue[tail] = child;
+                tail++;
+            }
+        }
+    }
+
+    /**
+     * Lists the children of every state.
+     *
+     * @return the children of each state
+     */
+    private int[][] children() {
+        int[] childCount = new int[this.states];
+        for (int state = 1; state < this.states; state++) {
+            childCount[this.parent[state]]++;
+        }
+        int[][] children = new int[this.states][];
+        for (int state = 0; state < this.states; state++) {
+            children[state] = new int[childCount[state]];
+            childCount[state] = 0;
+        }
+        for (int state = 1; state < this.states; state++) {
+            int p = this.parent[state];
+            children[p][childCount[p]] = state;
+            childCount[p]++;
+        }
+        return children;
+    }
+
+    /**
+     * Returns the slot of the transition table for the given key.
+     *
+     * @param key
+     *            the transition key
+     * @return the slot holding key, or the free slot where it would go
+     */
+    private int slot(long key) {
+        int mask = this.keys.length - 1;
+        int i = (int) ((key * HASH_MULTIPLIER) >>> CHAR_BITS) & mask;
+        while (this.targets[i] != NONE && this.keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the state reached from {@code state} on {@code c}.
+     *
+     * @param state
+     *            the state
+     * @param c
+     *            the character
+     * @return the next state, NONE if there is no such edge
+     */
+    private int transition(int state, char c) {
+        return this.targets[this.slot(((long) state << CHAR_BITS) | c)];
+    }
+
+    /**
+     * Adds an edge to the trie.
+     *
+     * @param state
+     *            the source state
+     * @param c
+     *            the character
+     * @param next
+     *            the target state
+     */
+    private void putTransition(int state, char c, int next) {
+        long key = ((long) state << CHAR_BITS) | c;
+        int i = this.slot(key);
+        this.keys[i] = key;
+        this.targets[i] = next;
+    }
+
+    /**
+     * Finds the term occurrences in {@code text}. Among overlapping
+     * occurrences the leftmost wins, and among those starting at the same
+     * index the longest.
+     *
+     * @param text
+     *            the text to scan
+     * @param matches
+     *            the buffer to fill
+     * @replaces matches
+     * @ensures matches holds the leftmost-longest non-overlapping term
+     *          occurrences of text accepted by the boundary rule
+     */
+    public void findAll(CharSequence text, Matches matches) {
+        assert text != null : "Violation of: text is not null";
+        assert matches != null : "Violation of: matches is not null";
+
+        int length = text.length();
+        matches.reset(length);
+        this.scan(text, matches, 0);
+        if (this.added != null) {
+            this.added.scan(text, matches, this.termCount);
+        }
+        /*
+         * keep the leftmost-longest occurrences that do not overlap
+         */
+        int i = 0;
+        while (i < length) {
+            int best = matches.bestLength[i];
+            if (best > 0) {
+                matches.add(i, i + best, matches.bestId[i]);
+                i += best;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Records in {@code matches}, for every start index of {@code text}, the
+     * longest occurrence of a term of the automaton if it is longer than the
+     * one recorded there.
+     *
+     * @param text
+     *            the text to scan
+     * @param matches
+     *            the buffer, reset for text
+     * @param firstId
+     *            added to the term ids of the automaton
+     * @updates matches
+     */
+    private void scan(CharSequence text, Matches matches, int firstId) {
+        int length = text.length();
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int next = this.transition(state, c);
+            while (next == NONE && state != ROOT) {
+                state = this.fail[state];
+                next = this.transition(state, c);
+            }
+            if (next == NONE) {
+                next = ROOT;
+            }
+            state = next;
+            int end = i + 1;
+            int s = state;
+            if (this.output[s] == NONE) {
+                s = this.dictionaryLink[s];
+            }
+            while (s != NONE) {
+                int start = end - this.depth[s];
+                if (this.depth[s] > matches.bestLength[start]
+                        && (this.removed == null || !this.removed.get(s))
+                        && this.accepts(text, start, end)) {
+                    matches.bestLength[start] = this.depth[s];
+                    matches.bestId[start] = firstId + this.output[s];
+                }
+                s = this.dictionaryLink[s];
+            }
+        }
+    }
+
+    /**
+     * Reports whether an occurrence at {@code [start, end)} passes the
+     * boundary rule.
+     *
+     * @param text
+     *            the text
+     * @param start
+     *            start of the occurrence
+     * @param end
+     *            end of the occurrence
+     * @return true iff the occurrence is accepted
+     */
+    private boolean accepts(CharSequence text, int start, int end) {
+        boolean result = true;
+        if (this.boundary == Boundary.SEPARATOR) {
+            result = (start == 0 || this.separators
+                    .isSeparator(Character.codePointBefore(text, start)))
+                    && (end == text.length() || this.separators
+                            .isSeparator(Character.codePointAt(text, end)));
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of trie states, a measure of the automaton's size.
+     *
+     * @return the number of states
+     */
+    public int states() {
+        return this.states;
+    }
+
+}
@@ -0,0 +1,113 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.set.Set;
+import components.set.Set1L;
+
+public class BacklinksTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Ids 0 apple, 1 bee, 2 cat, 3 dog: apple links to dog twice, cat to
+     * itself and dog, dog to apple and bee.
+     *
+     * @return the glossary
+     */
+    private static SortedGlossary small() {
+        return new SortedGlossary(new String[] {"dog", "cat", "bee", "apple"},
+                new String[] {"apple, bee", "cat dog", "", "dog or dog"}, 4);
+    }
+
+    /**
+     * Inverts the link graph of a glossary.
+     *
+     * @param g
+     *            the glossary
+     * @return the backlinks
+     */
+    private static Backlinks backlinks(SortedGlossary g) {
+        return Backlinks.of(LinkGraph.build(g,
+                TermMatcher.of(g, SeparatorTable.fromString(" ,"),
+                        TermMatcher.Boundary.SEPARATOR),
+                new ForkJoinPool(2)));
+    }
+
+    /*
+     * Test cases for of
+     */
+    @Test
+    public void testOf_onceEachSortedNoSelf() {
+        SortedGlossary g = small();
+        Backlinks b = backlinks(g);
+        assertEquals(Arrays.asList("dog"), b.terms(g, 0));
+        assertEquals(Arrays.asList("dog"), b.terms(g, 1));
+        assertEquals(0, b.count(2));
+        assertEquals(Arrays.asList("apple", "cat"), b.terms(g, 3));
+    }
+
+    @Test
+    public void testOf_manyReferringTerms() {
+        int n = 3000;
+        String[] terms = new String[n];
+        String[] definitions = new String[n];
+        for (int i = 0; i < n; i++) {
+            terms[i] = "t" + i;
+            definitions[i] = "t0 t" + (i + 1) % n;
+        }
+        SortedGlossary g = new SortedGlossary(terms, definitions, n);
+        Backlinks b = backlinks(g);
+        List<String> toFirst = b.terms(g, g.indexOf("t0"));
+        assertEquals(n - 1, toFirst.size());
+        for (int k = 1; k < toFirst.size(); k++) {
+            assertEquals(true,
+                    toFirst.get(k - 1).compareTo(toFirst.get(k)) < 0);
+        }
+        assertEquals(Arrays.asList("t6"), b.terms(g, g.indexOf("t7")));
+    }
+
+    /*
+     * Test cases for outputWordPage with backlinks
+     */
+    @Test
+    public void testOutputWordPage_listsReferringTerms() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        Queue<String> q = new Queue1L<>();
+        Map<String, String> m = new Map1L<>();
+        q.enqueue("bee");
+        m.add("bee", "a bug");
+        q.enqueue("bug");
+        m.add("bug", "small");
+        Set<Character> separators = new Set1L<>();
+        separators.add(' ');
+        Glossary.outputWordPage(folder.toString(), q, m, separators, true);
+        String nl = System.lineSeparator();
+        assertEquals(true, Files.readString(folder.resolve("bug.html"))
+                .contains("   </blockquote>" + nl
+                        + "  <h3>Referenced by</h3>" + nl + "  <ul>" + nl
+                        + "   <li>" + nl + "    <a href=bee.html>bee</a>" + nl
+                        + "   </li>" + nl + "  </ul>" + nl + "  <hr>" + nl));
+        assertEquals(false, Files.readString(folder.resolve("bee.html"))
+                .contains("Referenced by"));
+        assertEquals(2, q.length());
+    }
+
+}
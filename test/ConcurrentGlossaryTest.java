@@ -0,0 +1,146 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class ConcurrentGlossaryTest {
+
+    /**
+     * Checks that a snapshot's terms are sorted and unique and that each one
+     * is found at its position.
+     *
+     * @param s
+     *            the snapshot
+     */
+    private static void assertConsistent(GlossaryView s) {
+        for (int i = 0; i < s.size(); i++) {
+            if (i > 0) {
+                assertEquals(true, s.term(i - 1).compareTo(s.term(i)) < 0);
+            }
+            assertEquals(i, s.indexOf(s.term(i)));
+        }
+    }
+
+    /*
+     * Test cases for the constructor
+     */
+    @Test
+    public void testConstructor_copiesGlossary() {
+        SimpleReader in = new SimpleReader1L("data/Test3");
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        ConcurrentGlossary.Snapshot s = new ConcurrentGlossary(g).snapshot();
+        assertEquals(g.size(), s.size());
+        for (int i = 0; i < g.size(); i++) {
+            assertEquals(g.term(i), s.term(i));
+            assertEquals(g.definition(i), s.definition(i));
+        }
+        assertEquals(0, s.version());
+    }
+
+    /*
+     * Test cases for put and remove
+     */
+    @Test
+    public void testPutRemove_snapshotUnchanged() {
+        ConcurrentGlossary store = new ConcurrentGlossary();
+        store.put("term", "a word");
+        store.put("book", "a printed work");
+        ConcurrentGlossary.Snapshot before = store.snapshot();
+        store.put("book", "a volume");
+        store.put("glossary", "a list of terms");
+        assertEquals(true, store.remove("term"));
+        assertEquals(false, store.remove("term"));
+        ConcurrentGlossary.Snapshot after = store.snapshot();
+
+        assertEquals(2, before.size());
+        assertEquals("book", before.term(0));
+        assertEquals("a printed work", before.definition(0));
+        assertEquals("term", before.term(1));
+        assertEquals(2, after.size());
+        assertEquals("book", after.term(0));
+        assertEquals("a volume", after.definition(0));
+        assertEquals("glossary", after.term(1));
+        assertEquals(true, after.indexOf("term") < 0);
+        assertEquals(5, after.version());
+    }
+
+    /*
+     * Test cases for putAll
+     */
+    @Test
+    public void testPutAll_mergesBatch() {
+        ConcurrentGlossary store = new ConcurrentGlossary();
+        store.put("b", "old b");
+        store.put("d", "old d");
+        store.put("f", "old f");
+        SortedGlossary additions = SortedGlossary.ofSorted(
+                new String[] { "a", "d", "e" },
+                new String[] { "new a", "new d", "new e" });
+        SortedGlossary deletions = SortedGlossary.ofSorted(
+                new String[] { "d", "f", "z" }, new String[] { "", "", "" });
+        ConcurrentGlossary.Snapshot s = store.putAll(additions, deletions);
+        assertEquals(4, s.size());
+        assertEquals("a", s.term(0));
+        assertEquals("b", s.term(1));
+        assertEquals("old b", s.definition(1));
+        assertEquals("d", s.term(2));
+        assertEquals("new d", s.definition(2));
+        assertEquals("e", s.term(3));
+        assertEquals(s, store.snapshot());
+    }
+
+    @Test
+    public void testPut_concurrentWritersAndReaders()
+            throws InterruptedException {
+        final int writers = 4;
+        final int perWriter = 500;
+        ConcurrentGlossary store = new ConcurrentGlossary();
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                long version = -1;
+                while (!done.get()) {
+                    ConcurrentGlossary.Snapshot s = store.snapshot();
+                    assertEquals(true, s.version() >= version);
+                    version = s.version();
+                    assertConsistent(s);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            threads[w] = new Thread(() -> {
+                for (int k = 0; k < perWriter; k++) {
+                    store.put("t" + id + "_" + k, "d" + k);
+                    if (k % 2 == 1) {
+                        store.remove("t" + id + "_" + (k - 1));
+                    }
+                }
+            });
+            threads[w].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(null, failure.get());
+        ConcurrentGlossary.Snapshot s = store.snapshot();
+        assertConsistent(s);
+        assertEquals(writers * perWriter / 2, s.size());
+        assertEquals(writers * perWriter * 3 / 2, s.version());
+    }
+
+}
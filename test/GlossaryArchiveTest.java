@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpServer;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class GlossaryArchiveTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Reads data/Test3.
+     *
+     * @return the glossary
+     */
+    private static SortedGlossary glossary() {
+        SimpleReader in = new SimpleReader1L("data/Test3");
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        return g;
+    }
+
+    /*
+     * Test cases for write
+     */
+    @Test
+    public void testWrite_sameAsFolder() throws IOException {
+        SortedGlossary g = glossary();
+        TermMatcher matcher = TermMatcher.of(g,
+                SeparatorTable.fromString(" \t, "),
+                TermMatcher.Boundary.SEPARATOR);
+        Path folder = this.temporary.newFolder().toPath();
+        PageRenderEngine engine = new PageRenderEngine(1);
+        engine.writeIndex(folder.toString(), g);
+        engine.renderAll(folder.toString(), g, matcher);
+        Path archive = this.temporary.newFile().toPath();
+        assertEquals(g.size() + 1, GlossaryArchive.write(archive, g, matcher,
+                new ForkJoinPool(2)));
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(g.size() + 1, zip.size());
+            for (int i = 0; i < g.size(); i++) {
+                String name = g.term(i) + ".html";
+                try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+                    assertArrayEquals(Files.readAllBytes(folder.resolve(name)),
+                            in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWrite_duplicateNamesSkipped() throws IOException {
+        SortedGlossary g = new SortedGlossary(
+                new String[] {"index", "term", "term"},
+                new String[] {"a list", "a word", "another word"}, 3);
+        TermMatcher matcher = TermMatcher.of(g,
+                SeparatorTable.fromString(" \t, "),
+                TermMatcher.Boundary.SEPARATOR);
+        Path archive = this.temporary.newFile().toPath();
+        assertEquals(2, GlossaryArchive.write(archive, g, matcher,
+                new ForkJoinPool(2)));
+        try (ZipFile zip = new ZipFile(archive.toFile());
+                InputStream in = zip
+                        .getInputStream(zip.getEntry("term.html"))) {
+            assertEquals(2, zip.size());
+            assertEquals(true, new String(in.readAllBytes(),
+                    StandardCharsets.UTF_8).contains("a word"));
+        }
+    }
+
+    /*
+     * Test cases for ArchiveServer
+     */
+    @Test
+    public void testServe_page() throws IOException {
+        SortedGlossary g = glossary();
+        TermMatcher matcher = TermMatcher.of(g,
+                SeparatorTable.fromString(" \t, "),
+                TermMatcher.Boundary.SEPARATOR);
+        Path archive = this.temporary.newFile().toPath();
+        GlossaryArchive.write(archive, g, matcher, new ForkJoinPool(2));
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            HttpServer server = ArchiveServer.start(zip, 0);
+            try {
+                URL url = new URL("http://localhost:"
+                        + server.getAddress().getPort() + "/book.html");
+                try (InputStream in = url.openStream();
+                        InputStream entry = zip
+                                .getInputStream(zip.getEntry("book.html"))) {
+                    assertArrayEquals(entry.readAllBytes(), in.readAllBytes());
+                }
+            } finally {
+                server.stop(0);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GlossaryBatchTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /*
+     * Test cases for buildAll
+     */
+    @Test
+    public void testBuildAll_directory() throws IOException {
+        Path out = this.temporary.newFolder().toPath();
+        List<GlossaryBatch.Job> jobs = GlossaryBatch
+                .jobsInDirectory(Paths.get("data"), out);
+        assertEquals(4, jobs.size());
+        GlossaryBatch.buildAll(jobs, new ForkJoinPool(2));
+        for (GlossaryBatch.Job job : jobs) {
+            assertEquals(0, job.failures().size());
+        }
+        assertEquals(8, jobs.get(2).pages());
+        assertEquals(true,
+                Files.exists(out.resolve("Test3").resolve("book.html")));
+    }
+
+    @Test
+    public void testBuildAll_missingInput() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path manifest = dir.resolve("manifest");
+        Files.write(manifest, ("# comment\n\ndata/Test1\t" + dir.resolve("a")
+                + "\n" + dir.resolve("nope") + "\t" + dir.resolve("b") + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+        List<GlossaryBatch.Job> jobs = GlossaryBatch.readManifest(manifest);
+        assertEquals(2, jobs.size());
+        GlossaryBatch.buildAll(jobs, new ForkJoinPool(2));
+        assertEquals(0, jobs.get(0).failures().size());
+        assertEquals(1, jobs.get(1).failures().size());
+    }
+
+}
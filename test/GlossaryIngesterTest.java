@@ -0,0 +1,157 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class GlossaryIngesterTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /*
+     * Test cases for ingest
+     */
+    @Test
+    public void testIngest_smallBoundary() {
+        SimpleReader in = new SimpleReader1L("data/Test1");
+        GlossaryIngester ingester = new GlossaryIngester();
+        SortedGlossary g = ingester.ingest(in);
+        in.close();
+        assertEquals(1, g.size());
+        assertEquals("meaning", g.term(0));
+        assertEquals(
+                "something that one wishes to convey, especially by language",
+                g.definition(0));
+        assertEquals(1, ingester.entries());
+    }
+
+    @Test
+    public void testIngest_sortedOnce() {
+        SimpleReader in = new SimpleReader1L("data/Test3");
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        String[] expected = { "book", "definition", "glossary", "language",
+                "meaning", "term", "word" };
+        assertEquals(expected.length, g.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], g.term(i));
+        }
+    }
+
+    @Test
+    public void testIngest_twoLinesDefinition() {
+        SimpleReader in = new SimpleReader1L("data/Test4");
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        int i = g.indexOf("glossary");
+        assertEquals(1, i);
+        assertEquals(
+                "a list of difficult or specialized terms, with their definitions,usually near the end of a book",
+                g.definition(i));
+    }
+
+    @Test
+    public void testIndexOf_missing() {
+        SimpleReader in = new SimpleReader1L("data/Test2");
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        assertEquals(true, g.indexOf("book") < 0);
+        assertEquals(1, g.indexOf("term"));
+    }
+
+    /**
+     * Checks that reading {@code text} in parallel, in each number of chunks
+     * up to {@code maxChunks}, gives what the sequential reader gives.
+     *
+     * @param text
+     *            the glossary file
+     * @param maxChunks
+     *            the most chunks to try
+     * @throws IOException
+     *             if the file cannot be written or read
+     */
+    private void assertSameAsSequential(String text, int maxChunks)
+            throws IOException {
+        Path file = this.temporary.newFile().toPath();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        GlossaryIngester sequential = new GlossaryIngester();
+        SimpleReader in = new SimpleReader1L(file.toString());
+        SortedGlossary expected = sequential.ingest(in);
+        in.close();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        for (int chunks = 1; chunks <= maxChunks; chunks++) {
+            GlossaryIngester parallel = new GlossaryIngester();
+            SortedGlossary g = parallel.ingest(file, pool, chunks);
+            assertEquals(expected.size(), g.size());
+            for (int i = 0; i < g.size(); i++) {
+                assertEquals(expected.term(i), g.term(i));
+                assertEquals(expected.definition(i), g.definition(i));
+            }
+            assertEquals(sequential.duplicates(), parallel.duplicates());
+        }
+    }
+
+    /*
+     * Test cases for the parallel ingest
+     */
+    @Test
+    public void testIngestParallel_dataFiles() throws IOException {
+        for (int k = 1; k <= 4; k++) {
+            this.assertSameAsSequential(new String(
+                    Files.readAllBytes(Path.of("data/Test" + k)),
+                    StandardCharsets.UTF_8), 8);
+        }
+    }
+
+    @Test
+    public void testIngestParallel_misleadingBlankLines() throws IOException {
+        /*
+         * a blank first definition line, blank terms, and duplicates, so
+         * that many split points fall inside a block
+         */
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append("t").append(i % 7).append('\n');
+            if (i % 3 == 0) {
+                text.append('\n');
+            }
+            text.append("line ").append(i).append('\n');
+            if (i % 5 == 0) {
+                text.append("more\r\n");
+            }
+            text.append(i % 4 == 0 ? "\n\n" : "\n");
+        }
+        this.assertSameAsSequential(text.toString(), 30);
+    }
+
+    @Test
+    public void testIngestParallel_duplicatesAcrossChunks()
+            throws IOException {
+        Path file = this.temporary.newFile().toPath();
+        Files.write(file, "b\none\n\na\ntwo\n\nb\nthree\n\na\nfour\n"
+                .getBytes(StandardCharsets.UTF_8));
+        GlossaryIngester ingester = new GlossaryIngester();
+        SortedGlossary g = ingester.ingest(file, new ForkJoinPool(2), 4);
+        assertEquals(4, g.size());
+        assertEquals("two", g.definition(0));
+        assertEquals("four", g.definition(1));
+        assertEquals("one", g.definition(2));
+        assertEquals("three", g.definition(3));
+        assertEquals(Arrays.asList("a", "b"), ingester.duplicates());
+    }
+
+}
@@ -0,0 +1,92 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GlossaryMetricsTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Renders a small glossary and returns the engine.
+     *
+     * @return the engine, with its metrics
+     * @throws IOException
+     *             if the pages cannot be written
+     */
+    private PageRenderEngine render() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        SortedGlossary g = new SortedGlossary(
+                new String[] {"term", "word", "meaning"},
+                new String[] {"a word", "letters", "what a term and word say"},
+                3);
+        PageRenderEngine engine = new PageRenderEngine(1);
+        engine.writeIndex(folder.toString(), g);
+        engine.renderAll(folder.toString(), g, TermMatcher.of(g,
+                SeparatorTable.fromString(" ,"),
+                TermMatcher.Boundary.SEPARATOR));
+        return engine;
+    }
+
+    /*
+     * Test cases for the render metrics
+     */
+    @Test
+    public void testRender_countersAndHistogram() throws IOException {
+        GlossaryMetrics m = this.render().metrics();
+        assertEquals(3, m.getPagesRendered());
+        assertEquals(3, m.getLinksResolved());
+        assertEquals(6 + 7 + 24, m.getDefinitionChars());
+        assertEquals(true, m.getBytesWritten() > 0);
+        assertEquals(true, m.nanos(GlossaryMetrics.Phase.RENDER) > 0);
+        long p50 = m.renderPercentileNanos(0.5);
+        assertEquals(true, p50 > 0 && Long.bitCount(p50) == 1);
+        assertEquals(true, m.renderPercentileNanos(0.99) >= p50);
+    }
+
+    @Test
+    public void testReset() throws IOException {
+        GlossaryMetrics m = this.render().metrics();
+        m.reset();
+        assertEquals(0, m.getPagesRendered());
+        assertEquals(0, m.getBytesWritten());
+        assertEquals(0, m.renderPercentileNanos(0.5));
+    }
+
+    /*
+     * Test cases for toJson and register
+     */
+    @Test
+    public void testToJson() throws IOException {
+        GlossaryMetrics m = this.render().metrics();
+        m.addTerms(3);
+        String json = m.toJson();
+        assertEquals(true, json.contains("\"terms\": 3,"));
+        assertEquals(true, json.contains("\"pagesRendered\": 3,"));
+        assertEquals(true, json.contains("\"render\": "));
+        assertEquals(true, json.trim().endsWith("}"));
+    }
+
+    @Test
+    public void testRegister() throws IOException, JMException {
+        GlossaryMetrics m = this.render().metrics();
+        ObjectName name = m.register("test-" + System.nanoTime());
+        assertEquals(3L, ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "PagesRendered"));
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+}
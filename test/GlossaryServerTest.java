@@ -0,0 +1,166 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class GlossaryServerTest {
+
+    /**
+     * A small glossary.
+     */
+    private static final SortedGlossary GLOSSARY = new SortedGlossary(
+            new String[] {"term", "word", "meaning"},
+            new String[] {"a word", "letters", "what a term and word say"},
+            3);
+
+    /**
+     * Creates a server for the small glossary.
+     *
+     * @param cacheBytes
+     *            bound of its page cache
+     * @return the server, not started
+     */
+    private static GlossaryServer server(long cacheBytes) {
+        return new GlossaryServer(GLOSSARY,
+                TermMatcher.of(GLOSSARY, SeparatorTable.fromString(" ,"),
+                        TermMatcher.Boundary.SEPARATOR),
+                PageLayout.DEFAULT, cacheBytes);
+    }
+
+    /**
+     * Opens a request to a running server.
+     *
+     * @param server
+     *            the server
+     * @param path
+     *            the path asked for
+     * @return the connection
+     * @throws IOException
+     *             if the connection cannot be opened
+     */
+    private static HttpURLConnection open(HttpServer server, String path)
+            throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:"
+                + server.getAddress().getPort() + path).openConnection();
+    }
+
+    /*
+     * Test cases for serve
+     */
+    @Test
+    public void testServe_pageAsRendered() throws IOException {
+        GlossaryServer glossaryServer = server(1 << 20);
+        HttpServer server = glossaryServer.start(0);
+        try {
+            PageBuffer expected = new PageBuffer();
+            PageLayout.DEFAULT.renderPage("term", "a word",
+                    TermMatcher.of(GLOSSARY, SeparatorTable.fromString(" ,"),
+                            TermMatcher.Boundary.SEPARATOR),
+                    new TermMatcher.Matches(), expected);
+            for (int k = 0; k < 2; k++) {
+                HttpURLConnection c = open(server, "/term.html");
+                try (InputStream in = c.getInputStream()) {
+                    assertArrayEquals(expected.toByteArray(),
+                            in.readAllBytes());
+                }
+            }
+            assertEquals(1, glossaryServer.misses());
+            assertEquals(1, glossaryServer.hits());
+            assertEquals(404, open(server, "/nothing.html").getResponseCode());
+            assertEquals(200, open(server, "/").getResponseCode());
+        } finally {
+            GlossaryServer.stop(server);
+        }
+    }
+
+    @Test
+    public void testServe_notModified() throws IOException {
+        HttpServer server = server(1 << 20).start(0);
+        try {
+            HttpURLConnection first = open(server, "/word.html");
+            String etag = first.getHeaderField("ETag");
+            first.getInputStream().close();
+            HttpURLConnection again = open(server, "/word.html");
+            again.setRequestProperty("If-None-Match", "\"x\", " + etag);
+            assertEquals(304, again.getResponseCode());
+            assertEquals(etag, again.getHeaderField("ETag"));
+            HttpURLConnection other = open(server, "/word.html");
+            other.setRequestProperty("If-None-Match", "\"x\"");
+            assertEquals(200, other.getResponseCode());
+        } finally {
+            GlossaryServer.stop(server);
+        }
+    }
+
+    @Test
+    public void testServe_cacheBoundedBySize() throws IOException {
+        PageBuffer page = new PageBuffer();
+        PageLayout.DEFAULT.renderPage("word", "letters",
+                new TermMatcher.Matches(), page);
+        /*
+         * room for one page of this size, not two
+         */
+        GlossaryServer glossaryServer = server(page.length() * 3 / 2);
+        HttpServer server = glossaryServer.start(0);
+        try {
+            for (String path : new String[] {"/word.html", "/term.html",
+                    "/word.html"}) {
+                open(server, path).getInputStream().close();
+            }
+            assertEquals(3, glossaryServer.misses());
+            assertEquals(true,
+                    glossaryServer.cachedBytes() <= page.length() * 3 / 2);
+        } finally {
+            GlossaryServer.stop(server);
+        }
+    }
+
+    /*
+     * Test cases for update
+     */
+    @Test
+    public void testUpdate_servesNewSnapshot() throws IOException {
+        GlossaryServer glossaryServer = server(1 << 20);
+        HttpServer server = glossaryServer.start(0);
+        try {
+            open(server, "/word.html").getInputStream().close();
+            open(server, "/meaning.html").getInputStream().close();
+            glossaryServer.update(
+                    new SortedGlossary(new String[] {"word", "say"},
+                            new String[] {"many letters", "speak"}, 2),
+                    new SortedGlossary(new String[] {"term"},
+                            new String[] {null}, 1));
+            assertEquals(0, glossaryServer.cachedBytes());
+            SortedGlossary updated = new SortedGlossary(
+                    new String[] {"word", "meaning", "say"},
+                    new String[] {"many letters", "what a term and word say",
+                        "speak"},
+                    3);
+            TermMatcher matcher = TermMatcher.of(updated,
+                    SeparatorTable.fromString(" ,"),
+                    TermMatcher.Boundary.SEPARATOR);
+            for (String term : new String[] {"word", "meaning"}) {
+                PageBuffer expected = new PageBuffer();
+                PageLayout.DEFAULT.renderPage(term,
+                        updated.definition(updated.indexOf(term)), matcher,
+                        new TermMatcher.Matches(), expected);
+                HttpURLConnection c = open(server, "/" + term + ".html");
+                try (InputStream in = c.getInputStream()) {
+                    assertArrayEquals(expected.toByteArray(),
+                            in.readAllBytes());
+                }
+            }
+            assertEquals(404, open(server, "/term.html").getResponseCode());
+        } finally {
+            GlossaryServer.stop(server);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class GlossarySnapshotTest {
+
+    /**
+     * Separators used by {@code Glossary.main}.
+     */
+    private static final String SEPARATORS = " \t, ";
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Copies a test glossary into a temporary directory and writes a snapshot
+     * of it there.
+     *
+     * @param file
+     *            the test glossary
+     * @return the copy of the glossary and the snapshot
+     * @throws IOException
+     *             if the files cannot be written
+     */
+    private Path[] compile(String file) throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path source = dir.resolve("glossary.txt");
+        Files.copy(Paths.get(file), source,
+                StandardCopyOption.REPLACE_EXISTING);
+        SimpleReader in = new SimpleReader1L(source.toString());
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        TermMatcher matcher = TermMatcher.of(g,
+                SeparatorTable.fromString(SEPARATORS),
+                TermMatcher.Boundary.SEPARATOR);
+        LinkGraph graph = LinkGraph.build(g, matcher, ForkJoinPool.commonPool());
+        Path snapshot = dir.resolve("glossary.snap");
+        GlossarySnapshot.write(snapshot, source, SEPARATORS, g, graph);
+        return new Path[] { source, snapshot };
+    }
+
+    /**
+     * Checks that reading a snapshot fails with a message containing
+     * {@code reason}.
+     *
+     * @param snapshot
+     *            the snapshot
+     * @param source
+     *            the glossary file
+     * @param separators
+     *            the separators
+     * @param reason
+     *            part of the expected message
+     */
+    private static void assertRefused(Path snapshot, Path source,
+            String separators, String reason) {
+        try {
+            GlossarySnapshot.read(snapshot, source, separators);
+            fail("snapshot accepted");
+        } catch (IOException e) {
+            assertEquals(e.getMessage(), true,
+                    e.getMessage().contains(reason));
+        }
+    }
+
+    /*
+     * Test cases for write and read
+     */
+    @Test
+    public void testRead_sameGlossaryAndLinks() throws IOException {
+        for (int k = 1; k <= 4; k++) {
+            Path[] files = this.compile("data/Test" + k);
+            SimpleReader in = new SimpleReader1L(files[0].toString());
+            SortedGlossary expected = new GlossaryIngester().ingest(in);
+            in.close();
+            TermMatcher matcher = TermMatcher.of(expected,
+                    SeparatorTable.fromString(SEPARATORS),
+                    TermMatcher.Boundary.SEPARATOR);
+            LinkGraph expectedLinks = LinkGraph.build(expected, matcher,
+                    ForkJoinPool.commonPool());
+
+            GlossarySnapshot s = GlossarySnapshot.read(files[1], files[0],
+                    SEPARATORS);
+            GlossaryView g = s.glossary();
+            LinkGraph links = s.links(matcher);
+            assertEquals(expected.size(), g.size());
+            assertEquals(expectedLinks.links(), links.links());
+            TermMatcher.Matches a = new TermMatcher.Matches();
+            TermMatcher.Matches b = new TermMatcher.Matches();
+            for (int i = 0; i < g.size(); i++) {
+                assertEquals(expected.term(i), g.term(i));
+                assertEquals(expected.definition(i), g.definition(i));
+                expectedLinks.matches(i, a);
+                links.matches(i, b);
+                assertEquals(a.count(), b.count());
+                for (int m = 0; m < a.count(); m++) {
+                    assertEquals(a.start(m), b.start(m));
+                    assertEquals(a.end(m), b.end(m));
+                    assertEquals(a.termId(m), b.termId(m));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRead_staleSource() throws IOException {
+        Path[] files = this.compile("data/Test3");
+        Files.setLastModifiedTime(files[0], FileTime.fromMillis(
+                Files.getLastModifiedTime(files[0]).toMillis() + 1000));
+        assertRefused(files[1], files[0], SEPARATORS, "has changed");
+    }
+
+    @Test
+    public void testRead_sameSizeAndTimeEdit() throws IOException {
+        Path[] files = this.compile("data/Test3");
+        FileTime time = Files.getLastModifiedTime(files[0]);
+        byte[] bytes = Files.readAllBytes(files[0]);
+        bytes[0] ^= 1;
+        Files.write(files[0], bytes);
+        Files.setLastModifiedTime(files[0], time);
+        assertRefused(files[1], files[0], SEPARATORS, "has changed");
+    }
+
+    @Test
+    public void testRead_corruptByte() throws IOException {
+        Path[] files = this.compile("data/Test3");
+        byte[] bytes = Files.readAllBytes(files[1]);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(files[1], bytes);
+        assertRefused(files[1], files[0], SEPARATORS, "checksum");
+    }
+
+    @Test
+    public void testRead_otherSeparators() throws IOException {
+        Path[] files = this.compile("data/Test3");
+        assertRefused(files[1], files[0], " ", "separators");
+    }
+
+    @Test
+    public void testRead_tooLarge() throws IOException {
+        Path[] files = this.compile("data/Test3");
+        /*
+         * a sparse file: no disk space is used
+         */
+        try (RandomAccessFile file = new RandomAccessFile(files[1].toFile(),
+                "rw")) {
+            file.setLength(GlossarySnapshot.MAX_BYTES + 1L);
+        }
+        assertRefused(files[1], files[0], " \t, ", "too large");
+    }
+
+}
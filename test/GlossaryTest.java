@@ -185,6 +185,17 @@ public class GlossaryTest {
         assertEquals(subString, substringExpected);
     }
 
+    @Test
+    public void testNextWordOrSeparator_setChangedInPlace() {
+        Set<Character> separator = new Set1L<>();
+        separator.add(' ');
+        String text = "a-b c";
+        assertEquals("a-b", Glossary.nextWordOrSeparator(text, 0, separator));
+        separator.remove(' ');
+        separator.add('-');
+        assertEquals("a", Glossary.nextWordOrSeparator(text, 0, separator));
+    }
+
     /*
      * Test cases for readFileStoreInMap
      */
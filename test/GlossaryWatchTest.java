@@ -0,0 +1,198 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GlossaryWatchTest {
+
+    /**
+     * Separators used by the tests.
+     */
+    private static final SeparatorTable SEPARATORS = SeparatorTable
+            .fromString(" \t, ");
+
+    /**
+     * Glossary the tests start from.
+     */
+    private static final String START = "term\na word\n\nword\nletters\n\n"
+            + "meaning\nwhat a term says\n\n";
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Writes {@code text} to {@code file}.
+     *
+     * @param file
+     *            the file
+     * @param text
+     *            the text
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void write(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks that {@code folder} holds exactly what a full build of
+     * {@code input} writes.
+     *
+     * @param input
+     *            the glossary file
+     * @param folder
+     *            the folder kept up to date by a watcher
+     * @throws IOException
+     *             if the build fails
+     */
+    private void assertSameAsFullBuild(Path input, Path folder)
+            throws IOException {
+        Path full = this.temporary.newFolder().toPath();
+        new GlossaryWatch(input, full.toString(), SEPARATORS,
+                new PageRenderEngine(2)).buildAll();
+        String[] expected = full.toFile().list();
+        String[] actual = folder.toFile().list();
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+        for (String name : expected) {
+            assertEquals(Files.readString(full.resolve(name)),
+                    Files.readString(folder.resolve(name)));
+        }
+    }
+
+    /**
+     * Creates a watcher over {@code input} and builds everything.
+     *
+     * @param input
+     *            the glossary file
+     * @param folder
+     *            the output folder
+     * @return the watcher
+     * @throws IOException
+     *             if the build fails
+     */
+    private static GlossaryWatch start(Path input, Path folder)
+            throws IOException {
+        write(input, START);
+        GlossaryWatch watch = new GlossaryWatch(input, folder.toString(),
+                SEPARATORS, new PageRenderEngine(2));
+        watch.buildAll();
+        return watch;
+    }
+
+    /*
+     * Test cases for update
+     */
+    @Test
+    public void testUpdate_unchanged() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        GlossaryWatch watch = start(dir.resolve("g.txt"), folder);
+        GlossaryWatch.Update u = watch.update();
+        assertEquals(0, u.pagesWritten());
+        assertEquals(0, u.pagesDeleted());
+        assertEquals(false, u.indexWritten());
+    }
+
+    @Test
+    public void testUpdate_editedDefinition() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        Path input = dir.resolve("g.txt");
+        GlossaryWatch watch = start(input, folder);
+        write(input, START.replace("letters", "many letters"));
+        GlossaryWatch.Update u = watch.update();
+        assertEquals(1, u.pagesWritten());
+        assertEquals(false, u.indexWritten());
+        this.assertSameAsFullBuild(input, folder);
+    }
+
+    @Test
+    public void testUpdate_addedTermRelinksPages() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        Path input = dir.resolve("g.txt");
+        GlossaryWatch watch = start(input, folder);
+        write(input, START + "says\nspeaks\n\n");
+        GlossaryWatch.Update u = watch.update();
+        /*
+         * the new page and the page of meaning, which now links to it
+         */
+        assertEquals(2, u.pagesWritten());
+        assertEquals(true, u.indexWritten());
+        this.assertSameAsFullBuild(input, folder);
+    }
+
+    @Test
+    public void testUpdate_addedTermMentionedByEditedDefinition()
+            throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        Path input = dir.resolve("g.txt");
+        GlossaryWatch watch = start(input, folder);
+        String edited = START.replace("letters", "many short letters");
+        write(input, edited);
+        watch.update();
+        write(input, edited + "short letters\nglyphs\n\n");
+        GlossaryWatch.Update u = watch.update();
+        /*
+         * the new page and the page of word, whose edited definition now
+         * links to it
+         */
+        assertEquals(2, u.pagesWritten());
+        this.assertSameAsFullBuild(input, folder);
+    }
+
+    @Test
+    public void testUpdate_removedTerm() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        Path input = dir.resolve("g.txt");
+        GlossaryWatch watch = start(input, folder);
+        write(input, START.replace("word\nletters\n\n", ""));
+        GlossaryWatch.Update u = watch.update();
+        assertEquals(1, u.pagesDeleted());
+        assertEquals(1, u.pagesWritten());
+        assertEquals(true, u.indexWritten());
+        this.assertSameAsFullBuild(input, folder);
+    }
+
+    @Test
+    public void testUpdate_renamedTermAndLaterEdit() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        Path input = dir.resolve("g.txt");
+        GlossaryWatch watch = start(input, folder);
+        String renamed = START.replace("term\na word", "entry\na word");
+        write(input, renamed);
+        watch.update();
+        this.assertSameAsFullBuild(input, folder);
+        write(input, renamed.replace("what a term", "what an entry"));
+        watch.update();
+        this.assertSameAsFullBuild(input, folder);
+    }
+
+    @Test
+    public void testUpdate_doubledBlankLine() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Path folder = Files.createDirectory(dir.resolve("out"));
+        Path input = dir.resolve("g.txt");
+        GlossaryWatch watch = start(input, folder);
+        write(input, START.replace("letters\n\n", "letters\n\n\n"));
+        watch.update();
+        this.assertSameAsFullBuild(input, folder);
+    }
+
+}
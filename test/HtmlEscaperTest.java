@@ -0,0 +1,124 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class HtmlEscaperTest {
+
+    /*
+     * Test cases for escape
+     */
+    @Test
+    public void testEscape_cleanTextUnchanged() {
+        String s = "plain words, caf\u00E9 and \uD83D\uDE00";
+        assertEquals(s, HtmlEscaper.escape(HtmlEscaper.Context.TEXT, s));
+        String t = "plain-words_1.2~";
+        assertEquals(t, HtmlEscaper.escape(HtmlEscaper.Context.URL, t));
+    }
+
+    @Test
+    public void testEscape_text() {
+        assertEquals("a &lt;b&gt; &amp; \"c\" 'd'", HtmlEscaper
+                .escape(HtmlEscaper.Context.TEXT, "a <b> & \"c\" 'd'"));
+    }
+
+    @Test
+    public void testEscape_attribute() {
+        assertEquals("a&#32;&lt;b&gt;&#61;&quot;c&quot;&#39;d&#39;",
+                HtmlEscaper.escape(HtmlEscaper.Context.ATTRIBUTE,
+                        "a <b>=\"c\"'d'"));
+    }
+
+    @Test
+    public void testEscape_url() {
+        assertEquals("big%20apple", HtmlEscaper
+                .escape(HtmlEscaper.Context.URL, "big apple"));
+        assertEquals("a%252Fb%2525", HtmlEscaper
+                .escape(HtmlEscaper.Context.URL, "a/b%"));
+        assertEquals("caf%C3%A9%F0%9F%98%80", HtmlEscaper
+                .escape(HtmlEscaper.Context.URL, "caf\u00E9\uD83D\uDE00"));
+    }
+
+    /*
+     * Test cases for append
+     */
+    @Test
+    public void testAppend_spanAndBuilder() {
+        String s = "x<caf\u00E9 &\uD83D\uDE00>\u20AC";
+        String expected = "caf\u00E9 &amp;\uD83D\uDE00&gt;\u20AC";
+        char[] chars = ("__" + s + "__").toCharArray();
+        CharSequence[] texts = { s, new StringBuilder(s),
+                new CharSpan().set(chars, 2, 2 + s.length()) };
+        for (CharSequence text : texts) {
+            PageBuffer out = new PageBuffer();
+            HtmlEscaper.append(HtmlEscaper.Context.TEXT, text, 2,
+                    text.length(), out);
+            assertEquals(expected,
+                    new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testAppend_unpairedSurrogate() {
+        String s = "ab\uD83D";
+        char[] chars = ("_" + s).toCharArray();
+        CharSequence[] texts = { s, new StringBuilder(s),
+                new CharSpan().set(chars, 1, chars.length) };
+        for (CharSequence text : texts) {
+            String message = "";
+            try {
+                HtmlEscaper.append(HtmlEscaper.Context.TEXT, text, 1,
+                        text.length(), new PageBuffer());
+            } catch (IllegalArgumentException e) {
+                message = e.getMessage();
+            }
+            assertEquals("unpaired surrogate at 2", message);
+        }
+    }
+
+    /*
+     * Test cases for fileName and termOf
+     */
+    @Test
+    public void testFileName_staysInFolder() {
+        assertEquals("term.html", HtmlEscaper.fileName("term"));
+        assertEquals("big apple.html", HtmlEscaper.fileName("big apple"));
+        assertEquals("..%2F..%2Fetc%2Fpasswd.html",
+                HtmlEscaper.fileName("../../etc/passwd"));
+        assertEquals("a%5Cb%3Ac%25.html", HtmlEscaper.fileName("a\\b:c%"));
+    }
+
+    @Test
+    public void testTermOf_inverseOfFileName() {
+        String[] terms = { "term", "big apple", "../x", "a%2Fb", "<&>",
+                "caf\u00E9" };
+        for (String term : terms) {
+            assertEquals(term, HtmlEscaper.termOf(HtmlEscaper.fileName(term)));
+        }
+        assertEquals(null, HtmlEscaper.termOf("index.css"));
+        assertEquals(null, HtmlEscaper.termOf("a/b.html"));
+        assertEquals(null, HtmlEscaper.termOf("a%2.html"));
+    }
+
+    /*
+     * Test cases for rendering with the default layout
+     */
+    @Test
+    public void testRenderPage_escapesBySlot() {
+        String term = "a<b & c";
+        String definition = "see a<b & c here";
+        TermMatcher matcher = new TermMatcher(new String[] { term },
+                SeparatorTable.fromString(" "), TermMatcher.Boundary.SEPARATOR);
+        PageBuffer out = new PageBuffer();
+        PageLayout.DEFAULT.renderPage(term, definition, matcher,
+                new TermMatcher.Matches(), out);
+        String page = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(true,
+                page.contains("<font color = red>a&lt;b &amp; c</font>"));
+        assertEquals(true, page.contains(
+                "<a href=a%253Cb%20%26%20c.html>a&lt;b &amp; c</a>"));
+        assertEquals(false, page.contains("a<b"));
+    }
+
+}
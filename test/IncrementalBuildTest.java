@@ -0,0 +1,271 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalBuildTest {
+
+    /**
+     * Separators used by the tests.
+     */
+    private static final SeparatorTable SEPARATORS = SeparatorTable
+            .fromString(" \t, ");
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Makes a glossary of the given term/definition pairs.
+     *
+     * @param pairs
+     *            terms and definitions, alternating
+     * @return the glossary
+     */
+    private static SortedGlossary glossary(String... pairs) {
+        int n = pairs.length / 2;
+        String[] terms = new String[n];
+        String[] definitions = new String[n];
+        for (int i = 0; i < n; i++) {
+            terms[i] = pairs[2 * i];
+            definitions[i] = pairs[2 * i + 1];
+        }
+        return new SortedGlossary(terms, definitions, n);
+    }
+
+    /**
+     * Builds {@code folder} from the given term/definition pairs.
+     *
+     * @param folder
+     *            the output folder
+     * @param pairs
+     *            terms and definitions, alternating
+     * @return what the build did
+     * @throws IOException
+     *             if the build fails
+     */
+    private static IncrementalBuild.Result build(Path folder,
+            String... pairs) throws IOException {
+        return build(folder, PageLayout.DEFAULT, pairs);
+    }
+
+    /**
+     * Builds {@code folder} from the given term/definition pairs with the
+     * given layout.
+     *
+     * @param folder
+     *            the output folder
+     * @param layout
+     *            the page layout
+     * @param pairs
+     *            terms and definitions, alternating
+     * @return what the build did
+     * @throws IOException
+     *             if the build fails
+     */
+    private static IncrementalBuild.Result build(Path folder,
+            PageLayout layout, String... pairs) throws IOException {
+        SortedGlossary g = glossary(pairs);
+        return IncrementalBuild.build(folder.toString(), g,
+                TermMatcher.of(g, SEPARATORS, TermMatcher.Boundary.SEPARATOR),
+                new PageRenderEngine(new ForkJoinPool(2), layout));
+    }
+
+    /**
+     * Builds {@code folder} from the given term/definition pairs with
+     * backlinks, and checks every page is the same as in a full build.
+     *
+     * @param folder
+     *            the output folder
+     * @param pairs
+     *            terms and definitions, alternating
+     * @return what the build did
+     * @throws IOException
+     *             if the build fails
+     */
+    private IncrementalBuild.Result buildWithBacklinks(Path folder,
+            String... pairs) throws IOException {
+        SortedGlossary g = glossary(pairs);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        LinkGraph graph = LinkGraph.build(g,
+                TermMatcher.of(g, SEPARATORS, TermMatcher.Boundary.SEPARATOR),
+                pool);
+        Backlinks backlinks = Backlinks.of(graph);
+        PageRenderEngine engine = new PageRenderEngine(pool);
+        IncrementalBuild.Result r = IncrementalBuild.build(folder.toString(),
+                g, graph, backlinks, engine);
+        Path full = this.temporary.newFolder().toPath();
+        engine.renderAll(full.toString(), g, graph, backlinks);
+        for (int i = 0; i < g.size(); i++) {
+            String name = HtmlEscaper.fileName(g.term(i));
+            assertEquals(Files.readString(full.resolve(name)),
+                    Files.readString(folder.resolve(name)));
+        }
+        return r;
+    }
+
+    /*
+     * Test cases for build
+     */
+    @Test
+    public void testBuild_firstAndUnchanged() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        IncrementalBuild.Result r = build(folder, "term", "a word",
+                "word", "letters");
+        assertEquals(2, r.pagesWritten());
+        assertEquals(true, r.indexWritten());
+        r = build(folder, "term", "a word", "word", "letters");
+        assertEquals(0, r.pagesWritten());
+        assertEquals(false, r.indexWritten());
+    }
+
+    @Test
+    public void testBuild_changedDefinition() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word", "word", "letters");
+        IncrementalBuild.Result r = build(folder, "term", "a word",
+                "word", "some letters");
+        assertEquals(1, r.pagesWritten());
+        assertEquals(false, r.indexWritten());
+    }
+
+    @Test
+    public void testBuild_addedAndRemovedTerm() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word of letters", "word", "text");
+        IncrementalBuild.Result r = build(folder, "term",
+                "a word of letters", "letters", "characters");
+        /*
+         * the new term's page, and term's page which now links to it
+         */
+        assertEquals(2, r.pagesWritten());
+        assertEquals(1, r.pagesDeleted());
+        assertEquals(true, r.indexWritten());
+        assertEquals(false, Files.exists(folder.resolve("word.html")));
+        assertEquals("[letters]", IncrementalBuild
+                .linksOf(folder.toString(), "term").toString());
+    }
+
+    @Test
+    public void testBuild_changedLayoutRewritesEverything()
+            throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word", "word", "letters");
+        PageLayout plain = new PageLayout("<ul>{{entries}}</ul>",
+                "<li>{{term}}</li>", "<p>{{definition}}</p>",
+                "<a href={{term}}.html>{{term}}</a>");
+        IncrementalBuild.Result r = build(folder, plain, "term", "a word",
+                "word", "letters");
+        assertEquals(2, r.pagesWritten());
+        assertEquals(true, r.indexWritten());
+        assertEquals("<p>letters</p>",
+                Files.readString(folder.resolve("word.html")));
+        r = build(folder, plain, "term", "a word", "word", "letters");
+        assertEquals(0, r.pagesWritten());
+        assertEquals(false, r.indexWritten());
+    }
+
+    @Test
+    public void testBuild_olderManifestRewritesEverything()
+            throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word", "word", "letters");
+        /*
+         * pages of manifest version 1 were not escaped
+         */
+        Path manifest = IncrementalBuild.manifestOf(folder.toString());
+        Files.writeString(manifest, Files.readString(manifest)
+                .replaceFirst("^glossary-manifest 2 ", "glossary-manifest 1 "));
+        IncrementalBuild.Result r = build(folder, "term", "a word", "word",
+                "letters");
+        assertEquals(2, r.pagesWritten());
+        assertEquals(true, r.indexWritten());
+    }
+
+    @Test
+    public void testBuild_truncatedManifestRewritesEverything()
+            throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word", "word", "letters");
+        Path manifest = IncrementalBuild.manifestOf(folder.toString());
+        Files.writeString(manifest, Files.readString(manifest) + "cut\n");
+        IncrementalBuild.Result r = build(folder, "term", "a word", "word",
+                "letters");
+        assertEquals(2, r.pagesWritten());
+        assertEquals(true, r.indexWritten());
+    }
+
+    @Test
+    public void testBuild_duplicateTermKeepsIndex() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word", "word", "letters", "word", "other");
+        IncrementalBuild.Result r = build(folder, "term", "a word", "word",
+                "letters", "word", "other");
+        assertEquals(false, r.indexWritten());
+    }
+
+    @Test
+    public void testBuild_failedPageRetried() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        /*
+         * a folder where the page of "word" goes cannot be replaced by it;
+         * "word: x" sorts after it and must not be taken for it
+         */
+        Files.createDirectory(folder.resolve("word.html"));
+        IncrementalBuild.Result r = build(folder, "word", "letters",
+                "word: x", "more letters");
+        assertEquals(1, r.pagesWritten());
+        assertEquals(1, r.failures().size());
+        Files.delete(folder.resolve("word.html"));
+        r = build(folder, "word", "letters", "word: x", "more letters");
+        assertEquals(1, r.pagesWritten());
+        assertEquals(false, r.indexWritten());
+        assertEquals(true, Files.exists(folder.resolve("word.html")));
+    }
+
+    @Test
+    public void testBuild_changedLayoutStillDeletes() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word", "word", "letters");
+        PageLayout plain = new PageLayout("<ul>{{entries}}</ul>",
+                "<li>{{term}}</li>", "<p>{{definition}}</p>",
+                "<a href={{term}}.html>{{term}}</a>");
+        IncrementalBuild.Result r = build(folder, plain, "term", "a word");
+        assertEquals(1, r.pagesWritten());
+        assertEquals(1, r.pagesDeleted());
+        assertEquals(false, Files.exists(folder.resolve("word.html")));
+    }
+
+    @Test
+    public void testBuild_newLinkRewritesBacklinkedPage() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        buildWithBacklinks(folder, "term", "letters", "word", "text");
+        /*
+         * term now links to word, so word's page lists term
+         */
+        IncrementalBuild.Result r = buildWithBacklinks(folder, "term",
+                "a word", "word", "text");
+        assertEquals(2, r.pagesWritten());
+        r = buildWithBacklinks(folder, "term", "a word", "word", "text");
+        assertEquals(0, r.pagesWritten());
+    }
+
+    @Test
+    public void testBuild_turningBacklinksOnRewritesEverything()
+            throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        build(folder, "term", "a word", "word", "letters");
+        IncrementalBuild.Result r = buildWithBacklinks(folder, "term",
+                "a word", "word", "letters");
+        assertEquals(2, r.pagesWritten());
+    }
+
+}
@@ -0,0 +1,153 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class LinkGraphTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Builds the link graph of a glossary.
+     *
+     * @param g
+     *            the glossary
+     * @return the graph
+     */
+    private static LinkGraph graph(SortedGlossary g) {
+        TermMatcher matcher = TermMatcher.of(g,
+                SeparatorTable.fromString(" ,"),
+                TermMatcher.Boundary.SEPARATOR);
+        return LinkGraph.build(g, matcher, new ForkJoinPool(2));
+    }
+
+    /**
+     * A glossary with a cycle of two, a self-link, an orphan and a term
+     * without a definition: ids 0 apple, 1 bee, 2 cat, 3 dog, 4 eel.
+     *
+     * @return the glossary
+     */
+    private static SortedGlossary small() {
+        return new SortedGlossary(
+                new String[] {"apple", "bee", "cat", "dog", "eel"},
+                new String[] {"a bee, a cat", "an apple", "cat dog",
+                        "", "a dog"},
+                5);
+    }
+
+    /*
+     * Test cases for build
+     */
+    @Test
+    public void testBuild_degreesAndTargets() {
+        LinkGraph graph = graph(small());
+        assertEquals(5, graph.size());
+        assertEquals(6, graph.links());
+        assertEquals(2, graph.outDegree(0));
+        assertEquals(1, graph.target(0, 0));
+        assertEquals(2, graph.target(0, 1));
+        assertEquals(0, graph.outDegree(3));
+        assertEquals(1, graph.inDegree(0));
+        assertEquals(1, graph.inDegree(2));
+        assertEquals(2, graph.inDegree(3));
+        assertEquals(0, graph.inDegree(4));
+    }
+
+    @Test
+    public void testBuild_inDegreeCountsLinkingTerms() {
+        SortedGlossary g = new SortedGlossary(
+                new String[] {"apple", "bee", "cat"},
+                new String[] {"a bee, a bee, a bee", "an apple", "bee"}, 3);
+        LinkGraph graph = graph(g);
+        assertEquals(5, graph.links());
+        assertEquals(2, graph.inDegree(1));
+        assertArrayEquals(new int[] {1}, graph.topFanIn(1));
+    }
+
+    @Test
+    public void testMatches_sameAsFindAll() {
+        SimpleReader in = new SimpleReader1L("data/Test3");
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        TermMatcher matcher = TermMatcher.of(g,
+                SeparatorTable.fromString(" \t, "),
+                TermMatcher.Boundary.SEPARATOR);
+        LinkGraph graph = LinkGraph.build(g, matcher, new ForkJoinPool(3));
+        TermMatcher.Matches expected = new TermMatcher.Matches();
+        TermMatcher.Matches actual = new TermMatcher.Matches();
+        for (int i = 0; i < g.size(); i++) {
+            matcher.findAll(g.definition(i), expected);
+            graph.matches(i, actual);
+            assertEquals(expected.count(), actual.count());
+            for (int k = 0; k < expected.count(); k++) {
+                assertEquals(expected.start(k), actual.start(k));
+                assertEquals(expected.end(k), actual.end(k));
+                assertEquals(expected.termId(k), actual.termId(k));
+            }
+        }
+    }
+
+    /*
+     * Test cases for the reports
+     */
+    @Test
+    public void testOrphansAndUndefined() {
+        SortedGlossary g = small();
+        LinkGraph graph = graph(g);
+        assertArrayEquals(new int[] {4}, graph.orphans());
+        assertArrayEquals(new int[] {2, 3, 4, 3},
+                graph.undefinedReferences(g));
+    }
+
+    @Test
+    public void testStronglyConnectedComponents() {
+        List<int[]> components = graph(small())
+                .stronglyConnectedComponents();
+        assertEquals(2, components.size());
+        assertArrayEquals(new int[] {0, 1}, components.get(0));
+        assertArrayEquals(new int[] {2}, components.get(1));
+    }
+
+    @Test
+    public void testTopFanIn_tiesInTermOrder() {
+        assertArrayEquals(new int[] {3, 0, 1}, graph(small()).topFanIn(3));
+    }
+
+    /*
+     * Test cases for renderAll from a graph
+     */
+    @Test
+    public void testRenderAll_sameAsMatcher() throws IOException {
+        SortedGlossary g = small();
+        TermMatcher matcher = TermMatcher.of(g,
+                SeparatorTable.fromString(" ,"),
+                TermMatcher.Boundary.SEPARATOR);
+        Path expected = this.temporary.newFolder().toPath();
+        Path actual = this.temporary.newFolder().toPath();
+        PageRenderEngine engine = new PageRenderEngine(2);
+        engine.renderAll(expected.toString(), g, matcher);
+        engine.renderAll(actual.toString(), g,
+                LinkGraph.build(g, matcher, new ForkJoinPool(2)));
+        for (int i = 0; i < g.size(); i++) {
+            String name = g.term(i) + ".html";
+            assertEquals(Files.readString(expected.resolve(name)),
+                    Files.readString(actual.resolve(name)));
+        }
+    }
+
+}
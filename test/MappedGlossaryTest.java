@@ -0,0 +1,85 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class MappedGlossaryTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Checks that the mapped glossary of {@code file} has the same entries, in
+     * the same order, as the one GlossaryIngester reads.
+     *
+     * @param file
+     *            the glossary file
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static void assertSameAsIngester(Path file) throws IOException {
+        SimpleReader in = new SimpleReader1L(file.toString());
+        SortedGlossary expected = new GlossaryIngester().ingest(in);
+        in.close();
+        try (MappedGlossary g = MappedGlossary.open(file)) {
+            assertEquals(expected.size(), g.size());
+            for (int i = 0; i < g.size(); i++) {
+                assertEquals(expected.term(i), g.term(i));
+                assertEquals(expected.definition(i), g.definition(i));
+                assertEquals(i, g.indexOf(g.term(i)));
+            }
+        }
+    }
+
+    /*
+     * Test cases for open
+     */
+    @Test
+    public void testOpen_dataFiles() throws IOException {
+        assertSameAsIngester(Paths.get("data/Test1"));
+        assertSameAsIngester(Paths.get("data/Test2"));
+        assertSameAsIngester(Paths.get("data/Test3"));
+        assertSameAsIngester(Paths.get("data/Test4"));
+    }
+
+    @Test
+    public void testOpen_crlfAndTrailingNewline() throws IOException {
+        Path file = this.temporary.newFile().toPath();
+        Files.write(file, "word\r\nletters\r\nin a row\r\n\r\nbook\r\npages\r\n"
+                .getBytes(StandardCharsets.UTF_8));
+        try (MappedGlossary g = MappedGlossary.open(file)) {
+            assertEquals(2, g.size());
+            assertEquals("book", g.term(0));
+            assertEquals("pages", g.definition(0));
+            assertEquals("lettersin a row", g.definition(1));
+        }
+    }
+
+    @Test
+    public void testOpen_utf16Order() throws IOException {
+        Path file = this.temporary.newFile().toPath();
+        String high = "\ufb01";
+        String supplementary = new String(Character.toChars(0x1D11E));
+        Files.write(file, (high + "\na\n\n" + supplementary + "\nb\n")
+                .getBytes(StandardCharsets.UTF_8));
+        try (MappedGlossary g = MappedGlossary.open(file)) {
+            assertEquals(supplementary, g.term(0));
+            assertEquals(high, g.term(1));
+            assertEquals(true, g.indexOf("zz") < 0);
+        }
+    }
+
+}
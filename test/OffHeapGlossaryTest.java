@@ -0,0 +1,120 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class OffHeapGlossaryTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Checks that the off-heap glossary of {@code file} has the same entries,
+     * in the same order, as the one GlossaryIngester reads.
+     *
+     * @param file
+     *            the glossary file
+     * @param spill
+     *            the spill file, or null for direct buffers
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static void assertSameAsIngester(String file, Path spill)
+            throws IOException {
+        SimpleReader in = new SimpleReader1L(file);
+        SortedGlossary expected = new GlossaryIngester().ingest(in);
+        in.close();
+        in = new SimpleReader1L(file);
+        try (OffHeapGlossary g = OffHeapGlossary.read(in, spill)) {
+            assertEquals(expected.size(), g.size());
+            for (int i = 0; i < g.size(); i++) {
+                assertEquals(expected.term(i), g.term(i));
+                assertEquals(expected.definition(i), g.definition(i));
+                assertEquals(i, g.indexOf(g.term(i)));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * Test cases for read
+     */
+    @Test
+    public void testRead_directBuffers() throws IOException {
+        for (int k = 1; k <= 4; k++) {
+            assertSameAsIngester("data/Test" + k, null);
+        }
+    }
+
+    @Test
+    public void testRead_spillFileDeletedOnClose() throws IOException {
+        Path spill = this.temporary.getRoot().toPath().resolve("g.spill");
+        assertSameAsIngester("data/Test3", spill);
+        assertEquals(false, Files.exists(spill));
+    }
+
+    @Test
+    public void testRead_existingSpillFileKept() throws IOException {
+        Path spill = this.temporary.newFile().toPath();
+        Files.writeString(spill, "keep me");
+        SimpleReader in = new SimpleReader1L("data/Test3");
+        try {
+            OffHeapGlossary.read(in, spill).close();
+            fail("an existing spill file was overwritten");
+        } catch (FileAlreadyExistsException e) {
+            assertEquals("keep me", Files.readString(spill));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testRead_temporarySpillFile() throws IOException {
+        SimpleReader in = new SimpleReader1L("data/Test3");
+        SortedGlossary expected = new GlossaryIngester().ingest(in);
+        in.close();
+        in = new SimpleReader1L("data/Test3");
+        try (OffHeapGlossary g = OffHeapGlossary.read(in)) {
+            assertEquals(expected.size(), g.size());
+            for (int i = 0; i < g.size(); i++) {
+                assertEquals(expected.term(i), g.term(i));
+                assertEquals(expected.definition(i), g.definition(i));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testRead_nonAsciiDefinitions() throws IOException {
+        Path file = this.temporary.newFile().toPath();
+        Files.writeString(file, "caf\u00e9\nd\u00e9j\u00e0 vu\n\n"
+                + "clef\n\ud834\udd1e\n");
+        assertSameAsIngester(file.toString(),
+                this.temporary.getRoot().toPath().resolve("g.spill"));
+        SimpleReader in = new SimpleReader1L(file.toString());
+        try (OffHeapGlossary g = OffHeapGlossary.read(in, null)) {
+            assertEquals(g.definition(0).getBytes(StandardCharsets.UTF_8).length
+                    + g.definition(1).getBytes(StandardCharsets.UTF_8).length,
+                    g.storedBytes());
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PageLayoutTest {
+
+    /**
+     * Line separator of the default layout.
+     */
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Matcher over "term" and "word".
+     */
+    private static final TermMatcher MATCHER = new TermMatcher(
+            new String[] {"term", "word"}, SeparatorTable.fromString(" ,"),
+            TermMatcher.Boundary.SEPARATOR);
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Renders the page of {@code term} with {@code layout}.
+     *
+     * @param layout
+     *            the layout
+     * @param term
+     *            the term
+     * @param definition
+     *            its definition
+     * @return the page
+     */
+    private static String page(PageLayout layout, String term,
+            String definition) {
+        PageBuffer out = new PageBuffer();
+        layout.renderPage(term, definition, MATCHER,
+                new TermMatcher.Matches(), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Test cases for renderPage
+     */
+    @Test
+    public void testRenderPage_default() {
+        String expected = "<html>" + NL + " <head>" + NL
+                + "  <title>term</title>" + NL + " </head>" + NL + " <body>"
+                + NL + "  <h2>" + NL + "   <b>" + NL + "    <i>" + NL
+                + "     <font color = red>term</font>" + NL + "    </i>" + NL
+                + "   </b>" + NL + "  </h2>" + NL + "  <blockquote>" + NL
+                + "    a " + NL + "    <a href=word.html>word</a>" + NL
+                + " here   </blockquote>" + NL + "  <hr>" + NL + "  <p>" + NL
+                + "   Return to " + NL + "   <a href = index.html>index</a>"
+                + NL + "   ." + NL + "  </p>" + NL + " </body>" + NL
+                + "</html>" + NL;
+        assertEquals(expected, page(PageLayout.DEFAULT, "term", "a word here"));
+    }
+
+    @Test
+    public void testRenderPage_custom() {
+        PageLayout layout = new PageLayout("<ul>{{entries}}</ul>",
+                "<li>{{term}}</li>", "<h1>{{term}}</h1><p>{{definition}}</p>",
+                "<a href=\"{{term}}.html\">{{term}}</a>");
+        assertEquals(
+                "<h1>caf\u00e9</h1><p><a href=\"word.html\">word</a>"
+                        + " and <a href=\"term.html\">term</a></p>",
+                page(layout, "caf\u00e9", "word and term"));
+    }
+
+    /*
+     * Test cases for renderIndex
+     */
+    @Test
+    public void testRenderIndex_custom() {
+        PageLayout layout = new PageLayout("<ul>{{entries}}</ul>",
+                "<li>{{term}}</li>", "{{definition}}", "{{term}}");
+        PageBuffer out = new PageBuffer();
+        layout.renderIndex(new SortedGlossary(new String[] {"b", "a"},
+                new String[] {"", ""}, 2), out);
+        assertEquals("<ul><li>a</li><li>b</li></ul>",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /*
+     * Test cases for validation
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageLayout_unknownSlot() {
+        new PageLayout("{{entries}}", "{{term}}", "{{definition}}{{title}}",
+                "{{term}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageLayout_unclosedSlot() {
+        new PageLayout("{{entries}}", "{{term", "{{definition}}", "{{term}}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageLayout_missingDefinition() {
+        new PageLayout("{{entries}}", "{{term}}", "<h1>{{term}}</h1>",
+                "{{term}}");
+    }
+
+    /*
+     * Test cases for load
+     */
+    @Test
+    public void testLoad_partialDirectory() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Files.write(dir.resolve("page.tmpl"),
+                "<p>{{definition}}</p>".getBytes(StandardCharsets.UTF_8));
+        PageLayout layout = PageLayout.load(dir);
+        assertEquals("<p>a " + NL + "    <a href=word.html>word</a>" + NL
+                + "</p>", page(layout, "term", "a word"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoad_invalidTemplate() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        Files.write(dir.resolve("index.tmpl"),
+                "<ul></ul>".getBytes(StandardCharsets.UTF_8));
+        PageLayout.load(dir);
+    }
+
+}
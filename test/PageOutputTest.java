@@ -0,0 +1,101 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PageOutputTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Creates a folder deleted after the test.
+     *
+     * @return the folder
+     * @throws IOException
+     *             if it cannot be created
+     */
+    private Path folder() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        return dir;
+    }
+
+    /*
+     * Test cases for write
+     */
+    @Test
+    public void testWrite_utf8AndCounters() throws IOException {
+        Path dir = this.folder();
+        PageOutput output = new PageOutput();
+        output.write(dir.resolve("a.html"), "caf\u00e9");
+        output.write(dir.resolve("b.html"), new StringBuilder("<p>"));
+        assertEquals("caf\u00e9", new String(
+                Files.readAllBytes(dir.resolve("a.html")),
+                StandardCharsets.UTF_8));
+        assertEquals(2, output.filesWritten());
+        assertEquals(8, output.bytesWritten());
+    }
+
+    @Test
+    public void testWrite_replacesLongerFile() throws IOException {
+        Path dir = this.folder();
+        PageOutput output = new PageOutput();
+        output.write(dir.resolve("a.html"), "a long first version");
+        output.write(dir.resolve("a.html"), "short");
+        assertEquals("short", new String(
+                Files.readAllBytes(dir.resolve("a.html")),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWrite_growsBuffer() throws IOException {
+        Path dir = this.folder();
+        StringBuilder page = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            page.append('x');
+        }
+        new PageOutput().write(dir.resolve("big.html"), page);
+        assertEquals(100000, Files.size(dir.resolve("big.html")));
+    }
+
+    @Test
+    public void testWrite_textAbovePooledSize() throws IOException {
+        Path dir = this.folder();
+        StringBuilder page = new StringBuilder();
+        while (page.length() < 3 * PageOutput.MAX_POOLED) {
+            page.append("caf\u00e9 ");
+        }
+        PageOutput output = new PageOutput();
+        output.write(dir.resolve("big.html"), page);
+        assertEquals(page.toString(), new String(
+                Files.readAllBytes(dir.resolve("big.html")),
+                StandardCharsets.UTF_8));
+        assertEquals(Files.size(dir.resolve("big.html")),
+                output.bytesWritten());
+        assertEquals(PageOutput.MAX_POOLED, PageOutput.pooledCapacity());
+    }
+
+    @Test
+    public void testWrite_bytesAbovePooledSize() throws IOException {
+        Path dir = this.folder();
+        PageBuffer page = new PageBuffer();
+        while (page.length() < 2 * PageOutput.MAX_POOLED + 7) {
+            page.appendUtf8("<p>\u00e9</p>");
+        }
+        new PageOutput().write(dir.resolve("big.html"), page);
+        assertArrayEquals(page.toByteArray(),
+                Files.readAllBytes(dir.resolve("big.html")));
+        assertEquals(PageOutput.MAX_POOLED, PageOutput.pooledCapacity());
+    }
+
+}
@@ -0,0 +1,179 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.set.Set;
+import components.set.Set1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class PageRenderEngineTest {
+
+    /**
+     * Separators used by {@code Glossary.main}.
+     */
+    private static final String SEPARATORS = " \t, ";
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Creates a folder deleted after the test.
+     *
+     * @return the folder
+     * @throws IOException
+     *             if it cannot be created
+     */
+    private Path folder() throws IOException {
+        Path dir = this.temporary.newFolder().toPath();
+        return dir;
+    }
+
+    /**
+     * Writes {@code text} to a file deleted after the test.
+     *
+     * @param text
+     *            the glossary text
+     * @return the file
+     * @throws IOException
+     *             if it cannot be written
+     */
+    private Path glossaryFile(String text) throws IOException {
+        Path file = this.temporary.newFile().toPath();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Writes the term pages of {@code file} with the sequential
+     * {@code Glossary.outputWordPage}.
+     *
+     * @param file
+     *            the glossary file, without duplicate terms
+     * @return the folder of the pages
+     * @throws IOException
+     *             if the folder cannot be created
+     */
+    private Path sequential(Path file) throws IOException {
+        Path folder = this.folder();
+        Queue<String> terms = new Queue1L<>();
+        Map<String, String> definitions = new Map1L<>();
+        SimpleReader in = new SimpleReader1L(file.toString());
+        Glossary.readFileStoreInMap(in, terms, definitions);
+        in.close();
+        Set<Character> separators = new Set1L<>();
+        Glossary.generateElements(SEPARATORS, separators);
+        Glossary.outputWordPage(folder.toString(), terms, definitions,
+                separators);
+        return folder;
+    }
+
+    /**
+     * Writes the term pages of {@code file} with an engine of four workers.
+     *
+     * @param file
+     *            the glossary file
+     * @param folder
+     *            the folder of the pages
+     * @return the report of the engine
+     */
+    private static PageRenderEngine.Report parallel(Path file, Path folder) {
+        SimpleReader in = new SimpleReader1L(file.toString());
+        SortedGlossary glossary = new GlossaryIngester().ingest(in);
+        in.close();
+        TermMatcher matcher = TermMatcher.of(glossary,
+                SeparatorTable.fromString(SEPARATORS),
+                TermMatcher.Boundary.SEPARATOR);
+        return new PageRenderEngine(4).renderAll(folder.toString(), glossary,
+                matcher);
+    }
+
+    /**
+     * Checks that two folders hold the same files, byte for byte.
+     *
+     * @param expected
+     *            the expected folder
+     * @param actual
+     *            the actual folder
+     * @throws IOException
+     *             if a file cannot be read
+     */
+    private static void assertSameFiles(Path expected, Path actual)
+            throws IOException {
+        String[] names = expected.toFile().list();
+        String[] actualNames = actual.toFile().list();
+        Arrays.sort(names);
+        Arrays.sort(actualNames);
+        assertArrayEquals(names, actualNames);
+        for (String name : names) {
+            assertArrayEquals(Files.readAllBytes(expected.resolve(name)),
+                    Files.readAllBytes(actual.resolve(name)));
+        }
+    }
+
+    /*
+     * Test cases for renderAll
+     */
+    @Test
+    public void testRenderAll_sameAsSequential() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append("term ").append(i).append('\n');
+            text.append("see term ").append((i * 7) % 300).append(", term ")
+                    .append(i + 1).append(" and\nterm\n\n");
+        }
+        text.append("term\nany of them\n");
+        Path file = this.glossaryFile(text.toString());
+        Path folder = this.folder();
+        PageRenderEngine.Report report = parallel(file, folder);
+        assertEquals(301, report.pagesWritten());
+        assertEquals(0, report.failures().size());
+        assertSameFiles(this.sequential(file), folder);
+    }
+
+    @Test
+    public void testRenderAll_duplicateTermFirstDefinition()
+            throws IOException {
+        String first = "apple\na red fruit\n\nbanana\nnot an apple\n\n";
+        Path file = this.glossaryFile(first + "apple\na green fruit\n\n");
+        Path folder = this.folder();
+        PageRenderEngine.Report report = parallel(file, folder);
+        assertEquals(2, report.pagesWritten());
+        assertSameFiles(this.sequential(this.glossaryFile(first)), folder);
+    }
+
+    @Test
+    public void testRenderAll_reportsFailedPage() throws IOException {
+        Path file = this.glossaryFile(
+                "apple\na red fruit\n\nbanana\nnot an apple\n\n");
+        Path folder = this.folder();
+        /*
+         * a folder where the page of banana goes cannot be replaced by it
+         */
+        Files.createDirectory(folder.resolve("banana.html"));
+        PageRenderEngine.Report report = parallel(file, folder);
+        assertEquals(1, report.pagesWritten());
+        assertEquals(1, report.failures().size());
+        assertEquals(true, report.failures().get(0).startsWith("banana: "));
+        assertEquals(1, report.failedIds().length);
+        assertEquals(1, report.failedIds()[0]);
+        assertEquals(true, Files.exists(folder.resolve("apple.html")));
+    }
+
+}
@@ -0,0 +1,67 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SearchIndexTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Reads a file of the search folder.
+     *
+     * @param folder
+     *            the output folder
+     * @param name
+     *            the file name
+     * @return its text
+     * @throws IOException
+     *             if it cannot be read
+     */
+    private static String read(Path folder, String name) throws IOException {
+        return new String(Files.readAllBytes(
+                folder.resolve(SearchIndex.FOLDER).resolve(name)),
+                StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Test cases for write
+     */
+    @Test
+    public void testWrite_blocksAndTable() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        int n = SearchIndex.BLOCK + 2;
+        String[] terms = new String[n];
+        for (int i = 0; i < n; i++) {
+            terms[i] = String.format("t%04d", i);
+        }
+        SortedGlossary g = new SortedGlossary(terms, new String[n], n);
+        assertEquals(2, SearchIndex.write(folder, g, new PageOutput()));
+        assertEquals("t0000\nt0256", read(folder, "blocks.txt"));
+        assertEquals("t0256\nt0257", read(folder, "1.txt"));
+        assertEquals(SearchIndex.BLOCK,
+                read(folder, "0.txt").split("\n").length);
+        assertEquals(true, read(folder, "search.js").contains("blocks.txt"));
+        assertEquals(true,
+                read(folder, "search.html").contains("search.js"));
+    }
+
+    @Test
+    public void testWrite_empty() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        SortedGlossary g = new SortedGlossary(new String[0], new String[0], 0);
+        assertEquals(0, SearchIndex.write(folder, g, new PageOutput()));
+        assertEquals("", read(folder, "blocks.txt"));
+    }
+
+}
@@ -0,0 +1,67 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+public class SeparatorTableTest {
+
+    /*
+     * Test cases for isSeparator
+     */
+    @Test
+    public void testIsSeparator_fromString() {
+        SeparatorTable t = SeparatorTable.fromString(" \t, ");
+        assertEquals(true, t.isSeparator(' '));
+        assertEquals(true, t.isSeparator('\t'));
+        assertEquals(true, t.isSeparator(','));
+        assertEquals(false, t.isSeparator('a'));
+        assertEquals(3, t.size());
+    }
+
+    @Test
+    public void testIsSeparator_fromSet() {
+        Set<Character> s = new Set1L<>();
+        s.add(' ');
+        s.add(',');
+        SeparatorTable t = SeparatorTable.fromSet(s);
+        assertEquals(true, t.isSeparator(','));
+        assertEquals(false, t.isSeparator('-'));
+        assertEquals(2, t.size());
+    }
+
+    @Test
+    public void testIsSeparator_supplementary() {
+        String clef = new String(Character.toChars(0x1D11E));
+        SeparatorTable t = SeparatorTable.fromString(" " + clef);
+        assertEquals(true, t.isSeparator(0x1D11E));
+        assertEquals(false, t.isSeparator(0x1D11F));
+        assertEquals(2, t.size());
+    }
+
+    /*
+     * Test cases for tokenEnd
+     */
+    @Test
+    public void testTokenEnd_word() {
+        SeparatorTable t = SeparatorTable.fromString(" ");
+        assertEquals(4, t.tokenEnd("grab apple", 0));
+    }
+
+    @Test
+    public void testTokenEnd_separatorRun() {
+        SeparatorTable t = SeparatorTable.fromString(" ,");
+        assertEquals(7, t.tokenEnd("grab , apple", 4));
+    }
+
+    @Test
+    public void testTokenEnd_supplementarySeparator() {
+        String clef = new String(Character.toChars(0x1D11E));
+        SeparatorTable t = SeparatorTable.fromString(clef);
+        String text = "ab" + clef + clef + "cd";
+        assertEquals(2, t.tokenEnd(text, 0));
+        assertEquals(6, t.tokenEnd(text, 2));
+    }
+
+}
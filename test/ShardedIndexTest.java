@@ -0,0 +1,120 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardedIndexTest {
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /**
+     * Creates a glossary of the given terms with empty definitions.
+     *
+     * @param terms
+     *            the terms
+     * @return the glossary
+     */
+    private static SortedGlossary glossary(String... terms) {
+        return new SortedGlossary(terms, new String[terms.length],
+                terms.length);
+    }
+
+    /*
+     * Test cases for plan
+     */
+    @Test
+    public void testPlan_lettersAndPages() {
+        List<ShardedIndex.Shard> shards = ShardedIndex.plan(
+                glossary("apple", "axe", "arm", "Bee", "bat", "#tag", "9"),
+                2);
+        String[] names = { "u23.html", "9.html", "cap-b.html", "a.html",
+                "a-2.html", "b.html" };
+        assertEquals(names.length, shards.size());
+        for (int k = 0; k < names.length; k++) {
+            assertEquals(names[k], shards.get(k).name());
+        }
+        assertEquals(3, shards.get(3).from());
+        assertEquals(5, shards.get(3).to());
+    }
+
+    /*
+     * Test cases for write
+     */
+    @Test
+    public void testWrite_navigationShardsAndStale() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        Files.createDirectory(folder.resolve("index"));
+        Files.write(folder.resolve("index/z.html"), new byte[0]);
+        Files.write(folder.resolve("index-z.html"), new byte[0]);
+        Files.write(folder.resolve("index-card.html"), new byte[0]);
+        SortedGlossary g = glossary("apple", "arm", "axe", "bat",
+                "index-card");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        int shards = ShardedIndex.write(folder, g, 2, PageLayout.DEFAULT,
+                new PageOutput(), pool);
+        assertEquals(4, shards);
+        String index = new String(
+                Files.readAllBytes(folder.resolve("index.html")),
+                StandardCharsets.UTF_8);
+        assertEquals(true,
+                index.contains("<a href=index/a.html>apple - arm</a>"));
+        assertEquals(true, index.contains("<a href=index/b.html>bat</a>"));
+        String a2 = new String(
+                Files.readAllBytes(folder.resolve("index/a-2.html")),
+                StandardCharsets.UTF_8);
+        assertEquals(true, a2.contains("<a href=../axe.html>axe</a>"));
+        assertEquals(false, a2.contains("arm.html"));
+        assertEquals(true, a2.contains("<a href=a.html>previous</a>"));
+        assertEquals(true, a2.contains("<a href = ../index.html>index</a>"));
+        assertEquals(true, a2.contains("<a href=b.html>next</a>"));
+        /*
+         * the stale shards are gone, the term page named like one is not
+         */
+        assertEquals(false, Files.exists(folder.resolve("index/z.html")));
+        assertEquals(false, Files.exists(folder.resolve("index-z.html")));
+        assertEquals(true, Files.exists(folder.resolve("index-card.html")));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testWrite_keepsEscapedTermPage() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        SortedGlossary g = glossary("apple", "arm", "index-a/b");
+        String name = HtmlEscaper.fileName("index-a/b");
+        Files.write(folder.resolve(name), new byte[0]);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ShardedIndex.write(folder, g, 1, PageLayout.DEFAULT, new PageOutput(),
+                pool);
+        assertEquals(true, Files.exists(folder.resolve(name)));
+        assertEquals(true, Files.exists(folder.resolve("index/i.html")));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testWriteIndex_smallGlossaryStaysWhole() throws IOException {
+        Path folder = this.temporary.newFolder().toPath();
+        Files.createDirectory(folder.resolve("index"));
+        Files.write(folder.resolve("index/a.html"), new byte[0]);
+        PageRenderEngine engine = new PageRenderEngine(new ForkJoinPool(1),
+                PageLayout.DEFAULT, 10);
+        engine.writeIndex(folder.toString(), glossary("apple", "bat"));
+        String index = new String(
+                Files.readAllBytes(folder.resolve("index.html")),
+                StandardCharsets.UTF_8);
+        assertEquals(true, index.contains("<a href=apple.html>apple</a>"));
+        assertEquals(false, Files.exists(folder.resolve("index")));
+    }
+
+}
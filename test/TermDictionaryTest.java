@@ -0,0 +1,129 @@
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.queue.Queue;
+import components.queue.Queue1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class TermDictionaryTest {
+
+    /*
+     * Test cases for freeze
+     */
+    @Test
+    public void testFreeze_glossary() {
+        SimpleReader in = new SimpleReader1L("data/Test3");
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        TermDictionary d = TermDictionary.freeze(g);
+        assertEquals(g.size(), d.size());
+        for (int i = 0; i < g.size(); i++) {
+            assertEquals(g.term(i), d.term(i));
+            assertEquals(g.definition(i), d.definition(i));
+            assertEquals(i, d.indexOf(g.term(i)));
+        }
+    }
+
+    @Test
+    public void testFreeze_queueAndMap() {
+        Queue<String> q = new Queue1L<>();
+        Map<String, String> m = new Map1L<>();
+        q.enqueue("book");
+        q.enqueue("term");
+        m.add("book", "a printed work");
+        m.add("term", "a word");
+        TermDictionary d = TermDictionary.freeze(q, m);
+        assertEquals(true, d.hasKey("term"));
+        assertEquals(false, d.hasKey("word"));
+        assertEquals("a printed work", d.value("book"));
+    }
+
+    /*
+     * Test cases for indexOf
+     */
+    @Test
+    public void testIndexOf_span() {
+        Queue<String> q = new Queue1L<>();
+        Map<String, String> m = new Map1L<>();
+        q.enqueue("");
+        q.enqueue("hash table");
+        m.add("", "nothing");
+        m.add("hash table", "a table of hashes");
+        TermDictionary d = TermDictionary.freeze(q, m);
+        assertEquals(1, d.indexOf("a hash table here", 2, 12));
+        assertEquals(-1, d.indexOf("a hash table here", 2, 11));
+        assertEquals(0, d.indexOf(""));
+    }
+
+    @Test
+    public void testAppend_noStrings() {
+        Queue<String> q = new Queue1L<>();
+        Map<String, String> m = new Map1L<>();
+        q.enqueue("a");
+        q.enqueue("b");
+        m.add("a", "first");
+        m.add("b", "second");
+        TermDictionary d = TermDictionary.freeze(q, m);
+        StringBuilder sb = new StringBuilder();
+        d.appendTerm(1, sb);
+        sb.append('=');
+        d.appendDefinition(1, sb);
+        assertEquals("b=second", sb.toString());
+    }
+
+    /*
+     * Test cases for term and definition spans
+     */
+    @Test
+    public void testSpan_viewsWithoutCopying() {
+        Queue<String> q = new Queue1L<>();
+        Map<String, String> m = new Map1L<>();
+        q.enqueue("a");
+        q.enqueue("b");
+        m.add("a", "first");
+        m.add("b", "second");
+        TermDictionary d = TermDictionary.freeze(q, m);
+        CharSpan span = new CharSpan();
+        CharSequence def = d.definition(1, span);
+        assertEquals(true, def == span);
+        assertEquals("second", def.toString());
+        assertEquals('e', def.charAt(1));
+        assertEquals("con", def.subSequence(2, 5).toString());
+        assertEquals("a", d.term(0, span).toString());
+        assertEquals(1, span.length());
+    }
+
+    @Test
+    public void testSpan_latin1AndWideText() {
+        String[][] cases = { { "café", "crème brûlée" },
+                { "café", "Ωmega and crème" } };
+        for (String[] c : cases) {
+            Queue<String> q = new Queue1L<>();
+            Map<String, String> m = new Map1L<>();
+            q.enqueue(c[0]);
+            m.add(c[0], c[1]);
+            TermDictionary d = TermDictionary.freeze(q, m);
+            CharSpan span = new CharSpan();
+            assertEquals(c[1], d.definition(0));
+            assertEquals(c[1], d.definition(0, span).toString());
+            assertEquals(c[1].charAt(2), span.charAt(2));
+            assertEquals(c[0], d.term(0, span).toString());
+            assertEquals(0, d.indexOf("le café noir", 3, 7));
+            StringBuilder sb = new StringBuilder();
+            d.appendTerm(0, sb);
+            d.appendDefinition(0, sb);
+            assertEquals(c[0] + c[1], sb.toString());
+            PageBuffer page = new PageBuffer();
+            page.appendUtf8(d.definition(0, span));
+            assertEquals(c[1], new String(page.toByteArray(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+}
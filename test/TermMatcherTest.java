@@ -0,0 +1,168 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+public class TermMatcherTest {
+
+    /**
+     * Separators used by the tests.
+     */
+    private static final SeparatorTable SEPARATORS = SeparatorTable
+            .fromString(" \t,");
+
+    /**
+     * Folder of the files made by a test, deleted after it.
+     */
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    /*
+     * Test cases for findAll
+     */
+    @Test
+    public void testFindAll_singleWord() {
+        TermMatcher m = new TermMatcher(new String[] { "term", "word" },
+                SEPARATORS, TermMatcher.Boundary.SEPARATOR);
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        m.findAll("a word whose definition is a term", matches);
+        assertEquals(2, matches.count());
+        assertEquals(2, matches.start(0));
+        assertEquals(6, matches.end(0));
+        assertEquals(1, matches.termId(0));
+        assertEquals(29, matches.start(1));
+        assertEquals(0, matches.termId(1));
+    }
+
+    @Test
+    public void testFindAll_multiWordLongest() {
+        TermMatcher m = new TermMatcher(
+                new String[] { "hash", "hash table", "table" }, SEPARATORS,
+                TermMatcher.Boundary.SEPARATOR);
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        m.findAll("a hash table, or a table", matches);
+        assertEquals(2, matches.count());
+        assertEquals(2, matches.start(0));
+        assertEquals(12, matches.end(0));
+        assertEquals(1, matches.termId(0));
+        assertEquals(19, matches.start(1));
+        assertEquals(2, matches.termId(1));
+    }
+
+    @Test
+    public void testFindAll_wholeWordsOnly() {
+        TermMatcher m = new TermMatcher(new String[] { "term" }, SEPARATORS,
+                TermMatcher.Boundary.SEPARATOR);
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        m.findAll("terms determine a term,", matches);
+        assertEquals(1, matches.count());
+        assertEquals(18, matches.start(0));
+    }
+
+    @Test
+    public void testFindAll_noBoundary() {
+        TermMatcher m = new TermMatcher(new String[] { "term" }, SEPARATORS,
+                TermMatcher.Boundary.NONE);
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        m.findAll("terms determine", matches);
+        assertEquals(2, matches.count());
+        assertEquals(0, matches.start(0));
+        assertEquals(8, matches.start(1));
+    }
+
+    @Test
+    public void testFindAll_failureLinks() {
+        TermMatcher m = new TermMatcher(new String[] { "she", "he", "hers" },
+                SEPARATORS, TermMatcher.Boundary.NONE);
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        m.findAll("ushers", matches);
+        assertEquals(1, matches.count());
+        assertEquals(1, matches.start(0));
+        assertEquals(0, matches.termId(0));
+    }
+
+    /*
+     * Test cases for update
+     */
+    @Test
+    public void testUpdate_addAndRemoveTerms() {
+        TermMatcher m = new TermMatcher(
+                new String[] { "hash", "table", "tree" }, SEPARATORS,
+                TermMatcher.Boundary.SEPARATOR);
+        TermMatcher updated = m.update(new String[] { "hash table", "heap" },
+                new String[] { "tree" });
+        assertEquals(2, updated.addedCount());
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        updated.findAll("a hash table, a tree, a heap", matches);
+        assertEquals(2, matches.count());
+        assertEquals(2, matches.start(0));
+        assertEquals(12, matches.end(0));
+        assertEquals(24, matches.start(1));
+        assertEquals(28, matches.end(1));
+        /*
+         * the original matcher is unchanged
+         */
+        m.findAll("a hash table, a tree, a heap", matches);
+        assertEquals(3, matches.count());
+    }
+
+    @Test
+    public void testUpdate_sameMatchesAsRebuilt() {
+        TermMatcher m = new TermMatcher(
+                new String[] { "she", "he", "hers", "his" }, SEPARATORS,
+                TermMatcher.Boundary.NONE);
+        TermMatcher updated = m.update(new String[] { "us", "her" },
+                new String[] { "he" }).update(new String[] { "he" },
+                        new String[] { "us" });
+        TermMatcher rebuilt = new TermMatcher(
+                new String[] { "she", "he", "hers", "his", "her" },
+                SEPARATORS, TermMatcher.Boundary.NONE);
+        TermMatcher.Matches expected = new TermMatcher.Matches();
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        String text = "ushers his hero, she said to us";
+        rebuilt.findAll(text, expected);
+        updated.findAll(text, matches);
+        assertEquals(1, updated.addedCount());
+        assertEquals(expected.count(), matches.count());
+        for (int i = 0; i < matches.count(); i++) {
+            assertEquals(expected.start(i), matches.start(i));
+            assertEquals(expected.end(i), matches.end(i));
+        }
+    }
+
+    /*
+     * Test cases for of
+     */
+    @Test
+    public void testOf_doubledBlankLine() throws IOException {
+        Path file = this.temporary.newFile().toPath();
+        Files.write(file,
+                "apple\na red fruit\n\n\nbanana\na yellow apple\n\n"
+                        .getBytes(StandardCharsets.UTF_8));
+        SimpleReader in = new SimpleReader1L(file.toString());
+        SortedGlossary g = new GlossaryIngester().ingest(in);
+        in.close();
+        TermMatcher m = TermMatcher.of(g, SEPARATORS,
+                TermMatcher.Boundary.SEPARATOR);
+        /*
+         * the blank line starts an entry with an empty term
+         */
+        assertEquals("", g.term(0));
+        TermMatcher.Matches matches = new TermMatcher.Matches();
+        m.findAll(g.definition(0), matches);
+        assertEquals(1, matches.count());
+        assertEquals(1, matches.termId(0));
+        m.findAll("", matches);
+        assertEquals(0, matches.count());
+    }
+
+}